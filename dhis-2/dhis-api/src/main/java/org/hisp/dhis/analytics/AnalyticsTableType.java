@@ -28,6 +28,8 @@ package org.hisp.dhis.analytics;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.setting.SettingKey;
+
 /**
 * @author Lars Helge Overland
 */
@@ -52,4 +54,14 @@ public enum AnalyticsTableType
     {
         return tableName;
     }
+
+    /**
+     * Returns the name of the system setting holding the start time of the
+     * last successful update of all years of this table type. The time is used
+     * as cutoff for partial updates.
+     */
+    public String getLastUpdateSettingName()
+    {
+        return SettingKey.LAST_SUCCESSFUL_ANALYTICS_TABLES_UPDATE.getName() + "_" + name();
+    }
 }
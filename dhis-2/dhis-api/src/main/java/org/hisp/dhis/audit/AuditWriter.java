@@ -0,0 +1,82 @@
+package org.hisp.dhis.audit;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.schema.audit.MetadataAudit;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueAudit;
+import org.hisp.dhis.trackedentitydatavalue.TrackedEntityDataValueAudit;
+
+/**
+ * Writes audits. Audits are either persisted immediately within the current
+ * transaction, or, if asynchronous audits are enabled, buffered and written
+ * in batches in the background after the current transaction commits. Reads
+ * of asynchronous audits may hence not include the most recent audits.
+ *
+ * @author agent
+ */
+public interface AuditWriter
+{
+    String ID = AuditWriter.class.getName();
+
+    /**
+     * Writes the given data value audit.
+     *
+     * @param audit the {@link DataValueAudit}.
+     */
+    void write( DataValueAudit audit );
+
+    /**
+     * Writes the given tracked entity data value audit.
+     *
+     * @param audit the {@link TrackedEntityDataValueAudit}.
+     */
+    void write( TrackedEntityDataValueAudit audit );
+
+    /**
+     * Writes the given tracked entity attribute value audit.
+     *
+     * @param audit the {@link TrackedEntityAttributeValueAudit}.
+     */
+    void write( TrackedEntityAttributeValueAudit audit );
+
+    /**
+     * Writes the given metadata audit.
+     *
+     * @param audit the {@link MetadataAudit}.
+     */
+    void write( MetadataAudit audit );
+
+    /**
+     * Writes all buffered audits to the database. Should be invoked before
+     * audits are deleted, and not for reads, as the buffer may hold many
+     * audits.
+     */
+    void flush();
+}
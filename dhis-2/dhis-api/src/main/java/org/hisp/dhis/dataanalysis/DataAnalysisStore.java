@@ -98,6 +98,33 @@ public interface DataAnalysisStore
     List<DeflatedDataValue> getDeflatedDataValues( DataElement dataElement, DataElementCategoryOptionCombo categoryOptionCombo,
         Collection<Period> periods, Map<Integer, Integer> lowerBoundMap, Map<Integer, Integer> upperBoundMap );
 
+    /**
+     * Returns a page of data values which are outliers based on the standard
+     * deviation of the data values of the same data element, category option
+     * combo and organisation unit. The average and standard deviation are
+     * computed for all data elements and organisation units in a single query.
+     * Data values are outliers if they are lower than the average minus the
+     * standard deviation times the given factor, or higher than the average
+     * plus the standard deviation times the given factor. The bounds are set
+     * as min and max values of the returned data values. Outliers are ordered
+     * by data element, category option combo, organisation unit, period and
+     * attribute option combo, and a page starts after the given outlier, so
+     * that pages are found without skipping the outliers of previous pages.
+     * 
+     * @param dataElements the data elements, must be numeric.
+     * @param periods the periods for which to find outliers.
+     * @param parents the parent organisation units.
+     * @param stdDevFactor the standard deviation factor.
+     * @param from the start date of the data values to base the average and
+     *        standard deviation on.
+     * @param after the last outlier of the previous page, or null to return
+     *        the first page.
+     * @param limit the max number of outliers to return.
+     * @return a list of data values.
+     */
+    List<DeflatedDataValue> getStdDevOutliers( Collection<DataElement> dataElements, Collection<Period> periods,
+        Collection<OrganisationUnit> parents, double stdDevFactor, Date from, DeflatedDataValue after, int limit );
+
     /**
      * Returns a collection of DeflatedDataValues which are marked for followup and
      * whose source OrganisationUnit is equal or subordinate to the given OrganisationUnit.
@@ -43,6 +43,7 @@ import org.hisp.dhis.period.PeriodType;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -200,4 +201,25 @@ public interface DataValueStore
         List<OrganisationUnit> orgUnits, Collection<PeriodType> periodTypes, DataElementCategoryOptionCombo attributeCombo,
         Set<CategoryOptionGroup> cogDimensionConstraints, Set<DataElementCategoryOption> coDimensionConstraints );
 
+    /**
+     * Returns maps of values for each attribute option combo found, one map
+     * for each of the given dates. The values for all dates are fetched with
+     * a single query, which is more efficient than one query per date.
+     * <p>
+     * In the (unlikely) event that the same dataElement/optionCombo is found in
+     * more than one period for the same organisationUnit, date, and attribute
+     * combo, the value is returned from the period with the shortest duration.
+     *
+     * @param dataElementOperands DataElementOperands to fetch
+     * @param dates dates which must be present in the periods
+     * @param orgUnits organisation units for which to fetch the values
+     * @param periodTypes allowable period types in which to find the data
+     * @param attributeCombo the attribute combo to check (if restricted)
+     * @return map of value maps by date, where each value map is by org unit ID,
+     *         attribute option combo UID, and DataElementOperand
+     */
+    Map<Date, MapMapMap<Integer, String, DimensionalItemObject, Double>> getDataValueMapsByAttributeCombo(
+        Set<DataElementOperand> dataElementOperands, Collection<Date> dates, List<OrganisationUnit> orgUnits,
+        Collection<PeriodType> periodTypes, DataElementCategoryOptionCombo attributeCombo,
+        Set<CategoryOptionGroup> cogDimensionConstraints, Set<DataElementCategoryOption> coDimensionConstraints );
 }
@@ -0,0 +1,268 @@
+package org.hisp.dhis.node;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import org.hisp.dhis.node.types.CollectionNode;
+
+/**
+ * Collection node which builds the child node of each object when the
+ * children are accessed. The first iteration over the children builds the
+ * child nodes one by one and does not hold on to them. Serializers iterate
+ * the children and write each child before the next is built, so that the
+ * size of the node tree in memory is independent of the number of objects.
+ * <p>
+ * Checking whether the node is empty and accessing the first child before the
+ * first iteration build the child nodes only up to the first child, which is
+ * then handed out by the first iteration. Any other access to the children,
+ * such as the size, access by index or a second iteration, builds all child
+ * nodes once and holds on to them, so that later accesses are served from the
+ * built nodes. The node builder may return null for objects which should be
+ * excluded, such objects are skipped and are not counted in the size. Children
+ * must not be modified.
+ *
+ * @author agent
+ */
+public class LazyCollectionNode
+    extends CollectionNode
+{
+    private final List<?> objects;
+
+    private final Function<Object, ? extends Node> nodeBuilder;
+
+    private final List<Node> children = new ChildList();
+
+    /**
+     * The built non-null child nodes, null until built.
+     */
+    private List<Node> builtChildren;
+
+    /**
+     * Whether the children have been iterated without holding on to them.
+     */
+    private boolean iterated;
+
+    /**
+     * Iterator which has built the child nodes up to the first child and is
+     * handed out by the first iteration, null if not created.
+     */
+    private ChildIterator pending;
+
+    /**
+     * Whether there are no children, null until known.
+     */
+    private Boolean empty;
+
+    /**
+     * @param name the name of the node.
+     * @param objects the objects to build child nodes for.
+     * @param nodeBuilder the function which builds the child node of an
+     *        object, may return null.
+     */
+    public LazyCollectionNode( String name, List<?> objects, Function<Object, ? extends Node> nodeBuilder )
+    {
+        super( name );
+        this.objects = objects;
+        this.nodeBuilder = nodeBuilder;
+    }
+
+    @Override
+    public <T extends Node> T addChild( T child )
+    {
+        throw new UnsupportedOperationException( "Children of lazy collection node cannot be added" );
+    }
+
+    @Override
+    public List<Node> getChildren()
+    {
+        return children;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        if ( builtChildren != null )
+        {
+            return builtChildren.isEmpty();
+        }
+
+        if ( empty != null )
+        {
+            return empty;
+        }
+
+        if ( !iterated )
+        {
+            return !getPending().hasNext();
+        }
+
+        return getBuiltChildren().isEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private List<Node> getBuiltChildren()
+    {
+        if ( builtChildren == null )
+        {
+            List<Node> nodes = new ArrayList<>();
+
+            takeIterator().forEachRemaining( nodes::add );
+
+            builtChildren = nodes;
+        }
+
+        return builtChildren;
+    }
+
+    private ChildIterator getPending()
+    {
+        if ( pending == null )
+        {
+            pending = new ChildIterator();
+        }
+
+        return pending;
+    }
+
+    /**
+     * Returns the pending iterator if any, otherwise a new iterator.
+     */
+    private ChildIterator takeIterator()
+    {
+        ChildIterator iterator = pending != null ? pending : new ChildIterator();
+        pending = null;
+        return iterator;
+    }
+
+    private Node buildChild( Object object )
+    {
+        Node child = nodeBuilder.apply( object );
+
+        if ( child != null )
+        {
+            ((AbstractNode) child).setParent( this );
+        }
+
+        return child;
+    }
+
+    /**
+     * List of the children which iterates without holding on to the child
+     * nodes the first time, and otherwise uses the built child nodes.
+     */
+    private class ChildList
+        extends AbstractList<Node>
+    {
+        @Override
+        public Node get( int index )
+        {
+            if ( index == 0 && builtChildren == null && !iterated && !isEmpty() )
+            {
+                return getPending().next;
+            }
+
+            return getBuiltChildren().get( index );
+        }
+
+        @Override
+        public int size()
+        {
+            return getBuiltChildren().size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return LazyCollectionNode.this.isEmpty();
+        }
+
+        @Override
+        public Iterator<Node> iterator()
+        {
+            if ( builtChildren == null && !iterated )
+            {
+                iterated = true;
+
+                return takeIterator();
+            }
+
+            return getBuiltChildren().iterator();
+        }
+    }
+
+    /**
+     * Iterator which builds the child nodes one by one and skips objects for
+     * which no node is built.
+     */
+    private class ChildIterator
+        implements Iterator<Node>
+    {
+        private final Iterator<?> objectIterator = objects.iterator();
+
+        private Node next;
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( next == null && objectIterator.hasNext() )
+            {
+                next = buildChild( objectIterator.next() );
+            }
+
+            if ( empty == null )
+            {
+                empty = next == null;
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Node next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            Node child = next;
+            next = null;
+            return child;
+        }
+    }
+}
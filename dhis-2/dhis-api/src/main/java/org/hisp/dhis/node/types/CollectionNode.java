@@ -64,6 +64,14 @@ public class CollectionNode extends AbstractNode
         this.wrapping = wrapping;
     }
 
+    /**
+     * Indicates whether this collection has no children.
+     */
+    public boolean isEmpty()
+    {
+        return getChildren().isEmpty();
+    }
+
     @Override
     public int hashCode()
     {
@@ -53,6 +53,9 @@ public class AnalyticsJobParameters
     @Property
     private boolean skipResourceTables = false;
 
+    @Property
+    private boolean partialUpdate = false;
+
     public AnalyticsJobParameters()
     {
     }
@@ -64,6 +67,12 @@ public class AnalyticsJobParameters
         this.skipResourceTables = skipResourceTables;
     }
 
+    public AnalyticsJobParameters( Integer lastYears, Set<AnalyticsTableType> skipTableTypes, boolean skipResourceTables, boolean partialUpdate )
+    {
+        this( lastYears, skipTableTypes, skipResourceTables );
+        this.partialUpdate = partialUpdate;
+    }
+
     public Integer getLastYears()
     {
         return lastYears;
@@ -79,6 +88,11 @@ public class AnalyticsJobParameters
         return skipResourceTables;
     }
 
+    public boolean isPartialUpdate()
+    {
+        return partialUpdate;
+    }
+
     public ErrorReport validate()
     {
         return null;
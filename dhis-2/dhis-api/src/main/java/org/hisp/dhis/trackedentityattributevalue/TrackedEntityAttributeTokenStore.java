@@ -0,0 +1,91 @@
+package org.hisp.dhis.trackedentityattributevalue;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+
+/**
+ * Store for the search index of tracked entity attribute values. The index
+ * holds the distinct lower case words of each non-confidential attribute
+ * value and lets tracked entity instance queries on whole words be resolved
+ * through an index lookup instead of a pattern match against all values.
+ *
+ * @author agent
+ */
+public interface TrackedEntityAttributeTokenStore
+{
+    String ID = TrackedEntityAttributeTokenStore.class.getName();
+
+    /**
+     * Name of the search index table.
+     */
+    String TABLE_NAME = "trackedentityattributetoken";
+
+    /**
+     * Max length of words in the search index. Longer words are not indexed.
+     */
+    int MAX_TOKEN_LENGTH = 255;
+
+    /**
+     * Replaces the words of the given attribute value in the search index.
+     *
+     * @param attributeValue the {@link TrackedEntityAttributeValue}.
+     */
+    void updateTokens( TrackedEntityAttributeValue attributeValue );
+
+    /**
+     * Removes the words of the given attribute value from the search index.
+     *
+     * @param attributeValue the {@link TrackedEntityAttributeValue}.
+     */
+    void deleteTokens( TrackedEntityAttributeValue attributeValue );
+
+    /**
+     * Removes the words of all attribute values of the given tracked entity
+     * instance from the search index.
+     *
+     * @param instance the {@link TrackedEntityInstance}.
+     */
+    void deleteTokens( TrackedEntityInstance instance );
+
+    /**
+     * Indicates whether the search index holds any words.
+     */
+    boolean hasTokens();
+
+    /**
+     * Populates the search index with the words of all non-confidential
+     * attribute values. The words of each batch of tracked entity instances
+     * are replaced, so that population can be repeated after an interruption
+     * without leaving duplicate words behind.
+     *
+     * @return the number of indexed attribute values.
+     */
+    int populateTokens();
+}
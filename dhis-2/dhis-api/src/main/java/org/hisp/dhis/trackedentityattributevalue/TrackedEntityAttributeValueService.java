@@ -101,6 +101,18 @@ public interface TrackedEntityAttributeValueService
      */
     List<TrackedEntityAttributeValue> getTrackedEntityAttributeValues( Collection<TrackedEntityInstance> instances );
 
+    /**
+     * Retrieve {@link TrackedEntityAttributeValue} of the given attributes for
+     * a instance list
+     * 
+     * @param instances TrackedEntityInstance list
+     * @param attributes TrackedEntityAttribute list
+     * 
+     * @return TrackedEntityAttributeValue list
+     */
+    List<TrackedEntityAttributeValue> getTrackedEntityAttributeValues( Collection<TrackedEntityInstance> instances,
+        Collection<TrackedEntityAttribute> attributes );
+
     /**
      * Search TrackedEntityAttributeValue objects by a TrackedEntityAttribute and a attribute
      * value (performs partial search )
@@ -95,6 +95,16 @@ public interface TrackedEntityAttributeValueStore
      */
     List<TrackedEntityAttributeValue> get( Collection<TrackedEntityInstance> instances );
 
+    /**
+     * Retrieve {@link TrackedEntityAttributeValue} of the given attributes for
+     * a instance list
+     * 
+     * @param instances TrackedEntityInstance list
+     * @param attributes TrackedEntityAttribute list
+     * @return TrackedEntityAttributeValue list
+     */
+    List<TrackedEntityAttributeValue> get( Collection<TrackedEntityInstance> instances, Collection<TrackedEntityAttribute> attributes );
+
     /**
      * Search TrackedEntityAttributeValue objects by a TrackedEntityAttribute
      * and a attribute value (performs partial search )
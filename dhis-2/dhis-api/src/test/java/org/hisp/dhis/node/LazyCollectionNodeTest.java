@@ -0,0 +1,179 @@
+package org.hisp.dhis.node;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hisp.dhis.node.types.SimpleNode;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author agent
+ */
+public class LazyCollectionNodeTest
+{
+    @Test
+    public void testIterateChildren()
+    {
+        AtomicInteger builds = new AtomicInteger();
+
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", Lists.newArrayList( "A", "B", "C" ), object -> {
+            builds.incrementAndGet();
+            return new SimpleNode( "value", object );
+        } );
+
+        List<Node> children = collectionNode.getChildren();
+
+        assertEquals( 0, builds.get() );
+
+        List<Object> values = Lists.newArrayList();
+
+        for ( Node child : children )
+        {
+            assertEquals( collectionNode, child.getParent() );
+            values.add( ((SimpleNode) child).getValue() );
+        }
+
+        assertEquals( Lists.newArrayList( "A", "B", "C" ), values );
+        assertEquals( 3, builds.get() );
+    }
+
+    @Test
+    public void testBuildChildrenOnce()
+    {
+        AtomicInteger builds = new AtomicInteger();
+
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", Lists.newArrayList( "A", "B", "C" ), object -> {
+            builds.incrementAndGet();
+            return new SimpleNode( "value", object );
+        } );
+
+        List<Node> children = collectionNode.getChildren();
+
+        assertEquals( 3, children.size() );
+        assertEquals( 3, builds.get() );
+
+        Node first = children.get( 0 );
+
+        for ( Node child : children )
+        {
+            assertNotNull( child );
+        }
+
+        children.forEach( child -> assertNotNull( child ) );
+
+        assertSame( first, collectionNode.getChildren().get( 0 ) );
+        assertEquals( 3, builds.get() );
+    }
+
+    @Test
+    public void testBuildChildrenOnceAfterIteration()
+    {
+        AtomicInteger builds = new AtomicInteger();
+
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", Lists.newArrayList( "A", "B", "C" ), object -> {
+            builds.incrementAndGet();
+            return new SimpleNode( "value", object );
+        } );
+
+        collectionNode.getChildren().forEach( child -> assertNotNull( child ) );
+        collectionNode.getChildren().forEach( child -> assertNotNull( child ) );
+        collectionNode.getChildren().forEach( child -> assertNotNull( child ) );
+
+        assertEquals( 6, builds.get() );
+    }
+
+    @Test
+    public void testSkipExcludedChildren()
+    {
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", Lists.newArrayList( "A", "B", "C" ),
+            object -> "B".equals( object ) ? null : new SimpleNode( "value", object ) );
+
+        List<Object> values = Lists.newArrayList();
+
+        collectionNode.getChildren().forEach( child -> values.add( ((SimpleNode) child).getValue() ) );
+
+        assertEquals( Lists.newArrayList( "A", "C" ), values );
+        assertEquals( 2, collectionNode.getChildren().size() );
+        assertEquals( "C", ((SimpleNode) collectionNode.getChildren().get( 1 )).getValue() );
+        assertFalse( collectionNode.getChildren().isEmpty() );
+    }
+
+    @Test
+    public void testAllChildrenExcluded()
+    {
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", Lists.newArrayList( "A", "B" ), object -> null );
+
+        assertTrue( collectionNode.getChildren().isEmpty() );
+        assertFalse( collectionNode.getChildren().iterator().hasNext() );
+    }
+
+    @Test
+    public void testIsEmptyBuildsFirstChildOnly()
+    {
+        AtomicInteger builds = new AtomicInteger();
+
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", Lists.newArrayList( "A", "B", "C" ), object -> {
+            builds.incrementAndGet();
+            return "A".equals( object ) ? null : new SimpleNode( "value", object );
+        } );
+
+        assertFalse( collectionNode.isEmpty() );
+        assertFalse( collectionNode.getChildren().isEmpty() );
+        assertEquals( "B", ((SimpleNode) collectionNode.getChildren().get( 0 )).getValue() );
+        assertEquals( 2, builds.get() );
+
+        List<Object> values = Lists.newArrayList();
+
+        collectionNode.getChildren().forEach( child -> values.add( ((SimpleNode) child).getValue() ) );
+
+        assertEquals( Lists.newArrayList( "B", "C" ), values );
+        assertEquals( 3, builds.get() );
+        assertFalse( collectionNode.isEmpty() );
+        assertEquals( 3, builds.get() );
+    }
+
+    @Test
+    public void testIsEmpty()
+    {
+        assertTrue( new LazyCollectionNode( "values", Lists.newArrayList(), object -> new SimpleNode( "value", object ) ).isEmpty() );
+        assertTrue( new LazyCollectionNode( "values", Lists.newArrayList( "A" ), object -> null ).isEmpty() );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void testAddChild()
+    {
+        new LazyCollectionNode( "values", Lists.newArrayList(), object -> null ).addChild( new SimpleNode( "value", "A" ) );
+    }
+}
@@ -2,6 +2,7 @@ package org.hisp.dhis.maintenance;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.common.DeleteNotAllowedException;
 import org.hisp.dhis.commons.util.PageRange;
 import org.hisp.dhis.dataapproval.DataApprovalAuditService;
@@ -13,6 +14,7 @@ import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.user.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
@@ -99,6 +101,9 @@ public class DefaultMaintenanceService
     @Autowired
     private DataApprovalAuditService dataApprovalAuditService;
 
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
     // -------------------------------------------------------------------------
     // MaintenanceService implementation
     // -------------------------------------------------------------------------
@@ -189,6 +194,7 @@ public class DefaultMaintenanceService
         completeRegistrationService.deleteCompleteDataSetRegistrations( organisationUnit );
         dataValueAuditService.deleteDataValueAudits( organisationUnit );
         dataValueService.deleteDataValues( organisationUnit );
+        resetAnalyticsTablesLastUpdate();
         
         log.info( "Pruned data for organisation unit: " + organisationUnit );
         
@@ -209,6 +215,7 @@ public class DefaultMaintenanceService
 
         dataValueAuditService.deleteDataValueAudits( dataElement );
         dataValueService.deleteDataValues( dataElement );
+        resetAnalyticsTablesLastUpdate();
 
         log.info( "Pruned data for data element: " + dataElement );
 
@@ -255,4 +262,18 @@ public class DefaultMaintenanceService
         
         return removeCount;
     }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Removes the cutoff for partial analytics table updates. Pruned data
+     * values are deleted permanently and can not be detected by a partial
+     * update, so the next update of the analytics tables must be a full update.
+     */
+    private void resetAnalyticsTablesLastUpdate()
+    {
+        systemSettingManager.deleteSystemSetting( AnalyticsTableType.DATA_VALUE.getLastUpdateSettingName() );
+    }
 }
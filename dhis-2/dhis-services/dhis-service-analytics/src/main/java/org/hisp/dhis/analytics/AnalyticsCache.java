@@ -0,0 +1,74 @@
+package org.hisp.dhis.analytics;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache for aggregated analytics query results. Results are keyed on the
+ * normalized form of the query, see {@link DataQueryParams#getKey()}.
+ *
+ * @author agent
+ */
+public interface AnalyticsCache
+{
+    /**
+     * Returns the cached aggregated values for the given key.
+     *
+     * @param key the query key.
+     * @return the cached values, or an empty optional if not present.
+     */
+    Optional<Map<String, Object>> get( String key );
+
+    /**
+     * Puts the given aggregated values into the cache.
+     *
+     * @param key the query key.
+     * @param values the aggregated values.
+     */
+    void put( String key, Map<String, Object> values );
+
+    /**
+     * Indicates whether the cache is enabled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Removes all entries from the cache. Should be invoked whenever analytics
+     * tables are replaced.
+     */
+    void invalidateAll();
+
+    /**
+     * Returns statistics for the cache, including request, hit, miss and
+     * eviction counts.
+     */
+    Map<String, Number> getStatistics();
+}
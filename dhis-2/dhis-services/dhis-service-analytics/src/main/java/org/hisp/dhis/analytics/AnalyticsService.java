@@ -31,6 +31,7 @@ package org.hisp.dhis.analytics;
 import org.hisp.dhis.common.AnalyticalObject;
 import org.hisp.dhis.common.Grid;
 import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
+import org.hisp.dhis.system.grid.GridWriter;
 
 import java.util.List;
 import java.util.Map;
@@ -130,6 +131,16 @@ public interface AnalyticsService
      * @return raw data as a Grid object.
      */
     Grid getRawDataValues( DataQueryParams params );
+
+    /**
+     * Writes raw data values for the given query to the given writer. Rows
+     * are written as they are read from the database, which means that the
+     * raw data is never held in memory as a whole. The writer is not closed.
+     * 
+     * @param params the data query parameters.
+     * @param writer the grid writer.
+     */
+    void writeRawDataValues( DataQueryParams params, GridWriter writer );
     
     /**
      * Generates a data value set for the given query. The query must contain
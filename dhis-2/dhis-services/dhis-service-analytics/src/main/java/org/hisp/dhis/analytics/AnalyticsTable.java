@@ -28,6 +28,7 @@ package org.hisp.dhis.analytics;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Date;
 
@@ -109,6 +110,19 @@ public class AnalyticsTable
         this.partitionTables.add( partitionTable );
         return this;
     }
+
+    /**
+     * Removes all analytics partition tables from this master table except the
+     * ones for the given years.
+     * 
+     * @param years the years of the partition tables to retain.
+     * @return this analytics table.
+     */
+    public AnalyticsTable retainPartitionTables( Collection<Integer> years )
+    {
+        this.partitionTables.removeIf( partition -> !years.contains( partition.getYear() ) );
+        return this;
+    }
         
     public String getTableName()
     {
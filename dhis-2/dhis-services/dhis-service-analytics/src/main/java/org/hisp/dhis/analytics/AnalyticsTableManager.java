@@ -59,6 +59,27 @@ public interface AnalyticsTableManager
      */
     List<AnalyticsTable> getAnalyticsTables( Date earliest );
     
+    /**
+     * Returns the years for which data has been added, updated or deleted since
+     * the given date. Used to limit an analytics table update to the partitions
+     * containing changed data.
+     * 
+     * @param lastUpdated the date from which to look for changed data.
+     * @return a list of years, or null if partial update is not supported for
+     *         this type of analytics table.
+     */
+    List<Integer> getDataYearsUpdatedSince( Date lastUpdated );
+    
+    /**
+     * Indicates whether the columns of the existing analytics database master
+     * table are equal to the columns of the given analytics table. Partial
+     * updates are only possible when this is true.
+     * 
+     * @param table the analytics table.
+     * @return true if the columns are equal.
+     */
+    boolean hasEqualColumns( AnalyticsTable table );
+    
     /**
      * Returns a list of existing analytics database table names.
      * 
@@ -87,30 +108,48 @@ public interface AnalyticsTableManager
     void createTable( AnalyticsTable table, boolean skipMasterTable );
     
     /**
-     * Creates single indexes on the given columns of the analytics table with
-     * the given name.
+     * Creates the given index on the calling thread.
      * 
-     * @param indexes the analytics indexes.
-     * @return a future representing the asynchronous task.
+     * @param index the analytics index.
      */
-    Future<?> createIndexesAsync( ConcurrentLinkedQueue<AnalyticsIndex> indexes );
+    void createIndex( AnalyticsIndex index );
     
     /**
      * Attempts to drop analytics table, then rename temporary table to analytics
-     * table.
+     * table. If skipping the master table, the partition tables are attached to
+     * the existing master table.
      * 
      * @param table the analytics table.
+     * @param skipMasterTable whether to skip swapping the master analytics table.
      */
     void swapTable( AnalyticsTable table, boolean skipMasterTable );
     
     /**
-     * Copies and denormalizes rows from data value table into analytics table.
-     * The data range is based on the start date of the data value row.
+     * Copies and denormalizes rows into the given analytics table partition
+     * on the calling thread.
      * 
-     * @param tablePartitions the analytics table partitions.
-     * @return a future representing the asynchronous task.
+     * @param partition the analytics table partition.
+     */
+    void populateTable( AnalyticsTablePartition partition );
+    
+    /**
+     * Returns the rollup tables for the given analytics tables. A rollup table
+     * holds data of an analytics table pre-aggregated to an organisation unit
+     * level, and has a partition for each partition of the analytics table.
+     * Returns an empty list if rollup tables are not supported or enabled.
+     * 
+     * @param tables the analytics tables.
+     * @return a list of rollup {@link AnalyticsTable}.
+     */
+    List<AnalyticsTable> getRollupTables( List<AnalyticsTable> tables );
+    
+    /**
+     * Aggregates rows from the populated temporary analytics table partition
+     * into the given rollup table partition on the calling thread.
+     * 
+     * @param partition the rollup table partition.
      */
-    Future<?> populateTablesAsync( ConcurrentLinkedQueue<AnalyticsTablePartition> tablePartitions );
+    void populateRollupTable( AnalyticsTablePartition partition );
     
     /**
      * Invokes analytics table SQL hooks for the table type.
@@ -55,6 +55,12 @@ public class AnalyticsTableUpdateParams
      */
     boolean skipResourceTables;
     
+    /**
+     * Indicates whether to only update the table partitions for years with data
+     * which was changed since the last successful analytics table update.
+     */
+    private boolean partialUpdate;
+    
     /**
      * Analytics table types to skip.
      */
@@ -84,6 +90,11 @@ public class AnalyticsTableUpdateParams
         return skipResourceTables;
     }
 
+    public boolean isPartialUpdate()
+    {
+        return partialUpdate;
+    }
+
     public Set<AnalyticsTableType> getSkipTableTypes()
     {
         return skipTableTypes;
@@ -105,6 +116,7 @@ public class AnalyticsTableUpdateParams
             .add( "last years", lastYears )
             .add( "skip master table", skipMasterTable )
             .add( "skip resource tables", skipResourceTables )
+            .add( "partial update", partialUpdate )
             .add( "skip table types", skipTableTypes )
             .toString();
     }
@@ -138,7 +150,7 @@ public class AnalyticsTableUpdateParams
         
         public Builder withSkipMasterTable( boolean skipMasterTable )
         {
-            this.params.skipMasterTable = true;
+            this.params.skipMasterTable = skipMasterTable;
             return this;
         }
         
@@ -148,6 +160,12 @@ public class AnalyticsTableUpdateParams
             return this;
         }
         
+        public Builder withPartialUpdate( boolean partialUpdate )
+        {
+            this.params.partialUpdate = partialUpdate;
+            return this;
+        }
+        
         public Builder withSkipTableTypes( Set<AnalyticsTableType> skipTableTypes )
         {
             this.params.skipTableTypes = skipTableTypes;
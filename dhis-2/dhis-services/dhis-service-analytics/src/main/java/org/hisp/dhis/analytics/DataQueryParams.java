@@ -457,7 +457,69 @@ public class DataQueryParams
     {
         return aggregationType != null ? aggregationType.toString() : null;
     }
-            
+
+    /**
+     * Returns a key which uniquely identifies the data requested by this query.
+     * Dimensions are included in their original order, as the order determines
+     * the layout of the keys of the query response. Filters and the items of
+     * dimensions and filters are sorted, as their order does not affect the
+     * response. Two queries with equal keys will return equal data.
+     */
+    public String getKey()
+    {
+        QueryKey key = new QueryKey();
+
+        dimensions.forEach( dimension -> key.add( "dimension", getDimensionKey( dimension ) ) );
+
+        filters.stream()
+            .map( filter -> getDimensionKey( filter ) )
+            .sorted()
+            .forEach( filter -> key.add( "filter", filter ) );
+
+        new TreeMap<>( measureCriteria ).forEach( ( filter, value ) -> key.add( "measureCriteria", filter + "_" + value ) );
+        new TreeMap<>( preAggregateMeasureCriteria ).forEach( ( filter, value ) -> key.add( "preAggregateMeasureCriteria", filter + "_" + value ) );
+
+        dataApprovalLevels.entrySet().stream()
+            .map( entry -> entry.getKey().getUid() + "_" + entry.getValue() )
+            .sorted()
+            .forEach( level -> key.add( "dataApprovalLevel", level ) );
+
+        return key
+            .addIgnoreNull( "aggregationType", aggregationType )
+            .addIgnoreNull( "startDate", startDate != null ? startDate.getTime() : null )
+            .addIgnoreNull( "endDate", endDate != null ? endDate.getTime() : null )
+            .addIgnoreNull( "approvalLevel", approvalLevel )
+            .addIgnoreNull( "tableName", tableName )
+            .addIgnoreNull( "dataType", dataType )
+            .addIgnoreNull( "periodType", periodType )
+            .addIgnoreNull( "dataPeriodType", dataPeriodType != null ? dataPeriodType.getName() : null )
+            .add( "completedOnly", completedOnly )
+            .add( "duplicatesOnly", duplicatesOnly )
+            .add( "skipPartitioning", skipPartitioning )
+            .add( "timely", timely )
+            .add( "restrictByOrgUnitOpeningClosedDate", restrictByOrgUnitOpeningClosedDate )
+            .add( "restrictByCategoryOptionStartEndDate", restrictByCategoryOptionStartEndDate )
+            .asPlainKey();
+    }
+
+    /**
+     * Returns a key for the given dimension, including the dimension identifier,
+     * the filter and the sorted identifiers of the dimension items including
+     * any item aggregation type.
+     *
+     * @param dimension the {@link DimensionalObject}.
+     * @return a dimension key.
+     */
+    private String getDimensionKey( DimensionalObject dimension )
+    {
+        String items = dimension.getItems().stream()
+            .map( item -> item.getDimensionItem() + ( item.hasAggregationType() ? "_" + item.getAggregationType() : "" ) )
+            .sorted()
+            .collect( Collectors.joining( DIMENSION_SEP ) );
+
+        return dimension.getDimension() + "[" + items + "]" + ( dimension.getFilter() != null ? dimension.getFilter() : "" );
+    }
+
     /**
      * Creates a mapping between filter dimension identifiers and filter dimensions. 
      * Filters are guaranteed not to be null.
@@ -1,4 +1,4 @@
-package org.hisp.dhis.datasource;
+package org.hisp.dhis.analytics;
 
 /*
  * Copyright (c) 2004-2018, University of Oslo
@@ -28,62 +28,69 @@ package org.hisp.dhis.datasource;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 
-import javax.sql.DataSource;
-
-import org.springframework.jdbc.datasource.AbstractDataSource;
-
-import com.google.common.collect.Iterators;
+import org.apache.commons.lang3.StringUtils;
 
 /**
- * Data source implementation which routes to the configured target data sources
- * in a circular fashion.
- * 
+ * Builder of keys which uniquely identify an analytics query. The key is a
+ * concatenation of the given property names and values.
+ *
  * @author Lars Helge Overland
  */
-public class CircularRoutingDataSource
-    extends AbstractDataSource
+public class QueryKey
 {
-    private Iterator<DataSource> dataSourceIterator;
+    private static final char VALUE_SEP = ':';
+    private static final char COMPONENT_SEP = '-';
 
-    public CircularRoutingDataSource()
+    private List<String> keyComponents = new ArrayList<>();
+
+    public QueryKey()
     {
     }
-    
-    public CircularRoutingDataSource( List<DataSource> targetDataSources )
+
+    /**
+     * Adds a component to this key. Null values are included.
+     *
+     * @param property the key property name.
+     * @param value the key property value.
+     * @return this object.
+     */
+    public QueryKey add( String property, Object value )
     {
-        this.dataSourceIterator = Iterators.cycle( Collections.synchronizedList( targetDataSources ) );
+        keyComponents.add( property + VALUE_SEP + value );
+        return this;
     }
-        
-    // -------------------------------------------------------------------------
-    // AbstractDataSource implementation
-    // -------------------------------------------------------------------------
 
-    @Override
-    public Connection getConnection()
-        throws SQLException
+    /**
+     * Adds a component to this key. Null values are omitted.
+     *
+     * @param property the key property name.
+     * @param value the key property value.
+     * @return this object.
+     */
+    public QueryKey addIgnoreNull( String property, Object value )
     {
-        return getDataSource().getConnection();
+        if ( value != null )
+        {
+            add( property, value );
+        }
+
+        return this;
     }
 
-    @Override
-    public Connection getConnection( String username, String password )
-        throws SQLException
+    /**
+     * Returns a plain text key based on the added key components.
+     */
+    public String asPlainKey()
     {
-        return getDataSource().getConnection( username, password );
+        return StringUtils.join( keyComponents, COMPONENT_SEP );
     }
 
-    // -------------------------------------------------------------------------
-    // Private methods
-    // -------------------------------------------------------------------------
-
-    private synchronized DataSource getDataSource()
+    @Override
+    public String toString()
     {
-        return dataSourceIterator.next();
+        return asPlainKey();
     }
 }
@@ -28,6 +28,9 @@ package org.hisp.dhis.analytics;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.hisp.dhis.common.Grid;
 
 /**
@@ -44,5 +47,14 @@ public interface RawAnalyticsManager
      * @param grid the grid.
      * @return a grid with data.
      */
-    Grid getRawDataValues( DataQueryParams params, Grid grid );    
+    Grid getRawDataValues( DataQueryParams params, Grid grid );
+
+    /**
+     * Passes raw analytics data based on the given query to the given row
+     * handler, one row at a time as the rows are read from the database.
+     * 
+     * @param params the query.
+     * @param rowHandler the handler of rows of raw data.
+     */
+    void getRawDataValues( DataQueryParams params, Consumer<List<Object>> rowHandler );
 }
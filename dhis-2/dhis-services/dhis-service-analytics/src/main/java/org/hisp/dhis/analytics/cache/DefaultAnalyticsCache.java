@@ -0,0 +1,138 @@
+package org.hisp.dhis.analytics.cache;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.analytics.AnalyticsCache;
+import org.hisp.dhis.commons.util.SystemUtils;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Caffeine based implementation of {@link AnalyticsCache}. The cache is bounded
+ * by the total number of cached values, configured through the
+ * <code>analytics.cache.max_size</code> property. A max size of zero disables
+ * the cache. The cache is disabled during test runs.
+ *
+ * @author agent
+ */
+public class DefaultAnalyticsCache
+    implements AnalyticsCache
+{
+    private static final Log log = LogFactory.getLog( DefaultAnalyticsCache.class );
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    private Cache<String, Map<String, Object>> cache;
+
+    private boolean enabled;
+
+    @PostConstruct
+    public void init()
+    {
+        long maxSize = Long.parseLong( config.getProperty( ConfigurationKey.ANALYTICS_CACHE_MAX_SIZE ) );
+        long expiration = Long.parseLong( config.getProperty( ConfigurationKey.ANALYTICS_CACHE_EXPIRATION ) );
+
+        enabled = maxSize > 0 && !SystemUtils.isTestRun();
+
+        cache = Caffeine.newBuilder()
+            .maximumWeight( enabled ? maxSize : 0 )
+            .weigher( ( String key, Map<String, Object> values ) -> Math.max( 1, values.size() ) )
+            .expireAfterWrite( expiration, TimeUnit.SECONDS )
+            .recordStats()
+            .build();
+
+        log.info( String.format( "Analytics cache enabled: %b, max size: %d, expiration: %d seconds", enabled, maxSize, expiration ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // AnalyticsCache implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Optional<Map<String, Object>> get( String key )
+    {
+        return enabled ? Optional.ofNullable( cache.getIfPresent( key ) ) : Optional.empty();
+    }
+
+    @Override
+    public void put( String key, Map<String, Object> values )
+    {
+        if ( enabled && values != null )
+        {
+            cache.put( key, Collections.unmodifiableMap( new HashMap<>( values ) ) );
+        }
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+
+        log.info( "Analytics cache invalidated" );
+    }
+
+    @Override
+    public Map<String, Number> getStatistics()
+    {
+        CacheStats stats = cache.stats();
+
+        return ImmutableMap.<String, Number>builder()
+            .put( "entries", cache.estimatedSize() )
+            .put( "requestCount", stats.requestCount() )
+            .put( "hitCount", stats.hitCount() )
+            .put( "missCount", stats.missCount() )
+            .put( "hitRate", stats.hitRate() )
+            .put( "evictionCount", stats.evictionCount() )
+            .put( "evictionWeight", stats.evictionWeight() )
+            .build();
+    }
+}
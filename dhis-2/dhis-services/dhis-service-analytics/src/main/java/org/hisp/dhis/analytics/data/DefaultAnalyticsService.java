@@ -71,6 +71,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.function.Function;
@@ -79,6 +80,7 @@ import java.util.stream.Collectors;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.AnalyticsCache;
 import org.hisp.dhis.analytics.AnalyticsManager;
 import org.hisp.dhis.analytics.AnalyticsMetaDataKey;
 import org.hisp.dhis.analytics.AnalyticsSecurityManager;
@@ -93,6 +95,7 @@ import org.hisp.dhis.analytics.DimensionItem;
 import org.hisp.dhis.analytics.OutputFormat;
 import org.hisp.dhis.analytics.ProcessingHint;
 import org.hisp.dhis.analytics.QueryPlanner;
+import org.hisp.dhis.analytics.QueryKey;
 import org.hisp.dhis.analytics.QueryPlannerParams;
 import org.hisp.dhis.analytics.QueryValidator;
 import org.hisp.dhis.analytics.RawAnalyticsManager;
@@ -130,6 +133,8 @@ import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.reporttable.ReportTable;
 import org.hisp.dhis.setting.SettingKey;
 import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.grid.ColumnarGrid;
+import org.hisp.dhis.system.grid.GridWriter;
 import org.hisp.dhis.system.grid.ListGrid;
 import org.hisp.dhis.system.util.MathUtils;
 import org.hisp.dhis.user.User;
@@ -152,6 +157,9 @@ public class DefaultAnalyticsService
 
     @Autowired
     private AnalyticsManager analyticsManager;
+
+    @Autowired
+    private AnalyticsCache analyticsCache;
     
     @Autowired
     private RawAnalyticsManager rawAnalyticsManager;
@@ -217,16 +225,19 @@ public class DefaultAnalyticsService
     @Override
     public Grid getRawDataValues( DataQueryParams params )
     {
-        securityManager.decideAccess( params );
-
-        params = securityManager.withDataApprovalConstraints( params );
-        params = securityManager.withDimensionConstraints( params );
-
-        queryValidator.validate( params );
+        params = withRawDataAccess( params );
         
         return getRawDataGrid( params );
     }
 
+    @Override
+    public void writeRawDataValues( DataQueryParams params, GridWriter writer )
+    {
+        params = withRawDataAccess( params );
+        
+        writeRawData( params, writer );
+    }
+
     @Override
     public DataValueSet getAggregatedDataValueSet( DataQueryParams params )
     {
@@ -272,7 +283,8 @@ public class DefaultAnalyticsService
     // -------------------------------------------------------------------------
 
     /**
-     * Returns a grid with aggregated data.
+     * Returns a grid with aggregated data. The grid is columnar, as
+     * aggregated data grids can be large.
      *
      * @param params the {@link DataQueryParams}.
      * @return a grid with aggregated data.
@@ -285,7 +297,7 @@ public class DefaultAnalyticsService
         // Headers
         // ---------------------------------------------------------------------
 
-        Grid grid = new ListGrid();
+        Grid grid = new ColumnarGrid();
 
         addHeaders( params, grid );
 
@@ -870,17 +882,36 @@ public class DefaultAnalyticsService
      */
     private void applyIdScheme( DataQueryParams params, Grid grid )
     {
-        if ( !params.isSkipMeta() && params.hasNonUidOutputIdScheme() )
+        Map<String, String> map = getIdSchemeMap( params );
+        
+        if ( map != null )
         {
-            Map<String, String> map = DimensionalObjectUtils.getDimensionItemIdSchemeMap( params.getAllDimensionItems(), params.getOutputIdScheme() );
+            grid.substituteMetaData( map );
+        }
+    }
 
-            if ( params.isOutputFormat( OutputFormat.DATA_VALUE_SET ) && !params.getDataElementOperands().isEmpty() )
-            {
-                map.putAll( DimensionalObjectUtils.getDataElementOperandIdSchemeMap( asTypedList( params.getDataElementOperands() ), params.getOutputIdScheme() ) );
-            }
+    /**
+     * Returns a mapping between dimension item identifiers and the identifier
+     * scheme meta data property indicated in the query, or null if the query
+     * does not have a non-UID output identifier scheme.
+     *
+     * @param params the {@link DataQueryParams}.
+     */
+    private Map<String, String> getIdSchemeMap( DataQueryParams params )
+    {
+        if ( params.isSkipMeta() || !params.hasNonUidOutputIdScheme() )
+        {
+            return null;
+        }
+        
+        Map<String, String> map = DimensionalObjectUtils.getDimensionItemIdSchemeMap( params.getAllDimensionItems(), params.getOutputIdScheme() );
 
-            grid.substituteMetaData( map );
+        if ( params.isOutputFormat( OutputFormat.DATA_VALUE_SET ) && !params.getDataElementOperands().isEmpty() )
+        {
+            map.putAll( DimensionalObjectUtils.getDataElementOperandIdSchemeMap( asTypedList( params.getDataElementOperands() ), params.getOutputIdScheme() ) );
         }
+
+        return map;
     }
 
     /**
@@ -1080,7 +1111,8 @@ public class DefaultAnalyticsService
     /**
      * Generates a mapping between a dimension key and the aggregated value. The
      * dimension key is a concatenation of the identifiers of the dimension items
-     * separated by "-".
+     * separated by "-". Values are retrieved from the {@link AnalyticsCache}
+     * if present, and put into the cache if not.
      *
      * @param params the {@link DataQueryParams}.
      * @param tableName the table name to use for the query.
@@ -1096,6 +1128,18 @@ public class DefaultAnalyticsService
 
         int maxLimit = params.isIgnoreLimit() ? 0 : (Integer) systemSettingManager.getSystemSetting( SettingKey.ANALYTICS_MAX_LIMIT );
 
+        String cacheKey = new QueryKey()
+            .add( "query", params.getKey() )
+            .add( "table", tableName )
+            .add( "maxLimit", maxLimit ).asPlainKey();
+
+        Optional<Map<String, Object>> cachedValues = analyticsCache.get( cacheKey );
+
+        if ( cachedValues.isPresent() )
+        {
+            return new HashMap<>( cachedValues.get() );
+        }
+
         Timer timer = new Timer().start().disablePrint();
 
         QueryPlannerParams plannerParams = QueryPlannerParams.newBuilder()
@@ -1141,6 +1185,8 @@ public class DefaultAnalyticsService
 
         timer.getTime( "Got analytics values" );
 
+        analyticsCache.put( cacheKey, map );
+
         return map;
     }
     
@@ -1152,7 +1198,7 @@ public class DefaultAnalyticsService
      */
     private Grid getRawDataGrid( DataQueryParams params )
     {
-        Grid grid = new ListGrid();
+        Grid grid = new ColumnarGrid();
         
         params = preHandleRawDataQuery( params );
         
@@ -1167,6 +1213,24 @@ public class DefaultAnalyticsService
         return grid;
     }
     
+    /**
+     * Checks access to and validates the given raw data query, and returns
+     * the query with data approval and dimension constraints applied.
+     * 
+     * @param params the {@link DataQueryParams}.
+     */
+    private DataQueryParams withRawDataAccess( DataQueryParams params )
+    {
+        securityManager.decideAccess( params );
+
+        params = securityManager.withDataApprovalConstraints( params );
+        params = securityManager.withDimensionConstraints( params );
+
+        queryValidator.validate( params );
+        
+        return params;
+    }
+    
     /**
      * Prepares the given data query parameters.
      * 
@@ -1197,14 +1261,75 @@ public class DefaultAnalyticsService
     {
         if ( !params.isSkipData() )
         {
-            QueryPlannerParams plannerParams = QueryPlannerParams.newBuilder()
-                .withTableName( AnalyticsTableType.DATA_VALUE.getTableName() ).build();
-            
-            params = queryPlanner.withTableNameAndPartitions( params, plannerParams );
+            rawAnalyticsManager.getRawDataValues( withRawDataTable( params ), grid );
+        }
+    }
+    
+    /**
+     * Writes headers, meta data and raw data to the given writer. The headers
+     * and meta data are written first, after which the rows are written as
+     * they are read from the database, with the identifier scheme applied to
+     * each row.
+     * 
+     * @param params the {@link DataQueryParams}.
+     * @param writer the {@link GridWriter}.
+     */
+    private void writeRawData( DataQueryParams params, GridWriter writer )
+    {
+        params = preHandleRawDataQuery( params );
+        
+        Grid grid = new ListGrid();
+        
+        addHeaders( params, grid );
+        
+        addMetaData( params, grid );
+        
+        Map<String, String> idSchemeMap = getIdSchemeMap( params );
+        
+        if ( idSchemeMap != null )
+        {
+            grid.substituteMetaData( idSchemeMap );
+        }
+        
+        writer.writeHeaders( grid.getHeaders() );
+        writer.writeMetaData( grid.getMetaData() );
+        
+        if ( !params.isSkipData() )
+        {
+            List<Integer> metaColumnIndexes = grid.getMetaColumnIndexes();
             
-            rawAnalyticsManager.getRawDataValues( params, grid );
+            rawAnalyticsManager.getRawDataValues( withRawDataTable( params ), row -> {
+                if ( idSchemeMap != null )
+                {
+                    for ( Integer index : metaColumnIndexes )
+                    {
+                        String value = idSchemeMap.get( row.get( index ) );
+                        
+                        if ( value != null )
+                        {
+                            row.set( index, value );
+                        }
+                    }
+                }
+                
+                writer.writeRow( row );
+            } );
         }
     }
+    
+    /**
+     * Returns the given query with the table name and partitions of the raw
+     * data analytics table.
+     * 
+     * @param params the {@link DataQueryParams}.
+     */
+    private DataQueryParams withRawDataTable( DataQueryParams params )
+    {
+        QueryPlannerParams plannerParams = QueryPlannerParams.newBuilder()
+            .withTableName( AnalyticsTableType.DATA_VALUE.getTableName() ).build();
+        
+        return queryPlanner.withTableNameAndPartitions( params, plannerParams );
+    }
 
     // -------------------------------------------------------------------------
     // Supportive methods
@@ -32,6 +32,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.AnalyticsTableType;
 import org.hisp.dhis.analytics.DataQueryGroups;
 import org.hisp.dhis.analytics.DataQueryParams;
 import org.hisp.dhis.analytics.DataType;
@@ -39,7 +40,9 @@ import org.hisp.dhis.analytics.Partitions;
 import org.hisp.dhis.analytics.QueryPlanner;
 import org.hisp.dhis.analytics.QueryPlannerParams;
 import org.hisp.dhis.analytics.QueryValidator;
+import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.analytics.table.PartitionUtils;
+import org.hisp.dhis.analytics.table.RollupUtils;
 import org.hisp.dhis.common.BaseDimensionalObject;
 import org.hisp.dhis.common.DimensionType;
 import org.hisp.dhis.common.DimensionalItemObject;
@@ -48,6 +51,7 @@ import org.hisp.dhis.common.IllegalQueryException;
 import org.hisp.dhis.common.ListMap;
 import org.hisp.dhis.commons.collection.PaginatedList;
 import org.hisp.dhis.dataelement.DataElementGroup;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.system.util.MathUtils;
@@ -57,6 +61,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import javax.annotation.PostConstruct;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -77,6 +83,35 @@ public class DefaultQueryPlanner
     @Autowired
     private QueryValidator queryValidator;
 
+    @Autowired
+    private PartitionManager partitionManager;
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    /**
+     * Rollup organisation unit levels in ascending order.
+     */
+    private List<Integer> rollupLevels;
+
+    private PeriodType rollupPeriodType;
+
+    /**
+     * Reads the rollup table configuration once, as it is fixed for the
+     * lifetime of the application.
+     */
+    @PostConstruct
+    public void init()
+    {
+        rollupLevels = RollupUtils.getRollupLevels( config );
+        rollupPeriodType = RollupUtils.getRollupPeriodType( config );
+
+        if ( !rollupLevels.isEmpty() )
+        {
+            log.info( String.format( "Rollup levels: %s, period type: %s", rollupLevels, rollupPeriodType.getName() ) );
+        }
+    }
+
     // -------------------------------------------------------------------------
     // QueryPlanner implementation
     // -------------------------------------------------------------------------
@@ -113,6 +148,12 @@ public class DefaultQueryPlanner
             currentQueries.forEach( query -> queries.addAll( grouper.apply( query ) ) );
         }
 
+        // ---------------------------------------------------------------------
+        // Route queries to rollup tables where possible
+        // ---------------------------------------------------------------------
+
+        queries.replaceAll( query -> withRollupTableName( query ) );
+
         // ---------------------------------------------------------------------
         // Split queries until optimal number
         // ---------------------------------------------------------------------
@@ -581,6 +622,40 @@ public class DefaultQueryPlanner
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Sets the table name of the given query to the rollup table with the
+     * lowest organisation unit level which can serve the query, if rollup
+     * tables are enabled and the rollup table exists. Returns the given query
+     * unchanged if not.
+     */
+    private DataQueryParams withRollupTableName( DataQueryParams params )
+    {
+        if ( !AnalyticsTableType.DATA_VALUE.getTableName().equals( params.getTableName() ) )
+        {
+            return params;
+        }
+
+        Integer level = RollupUtils.getRollupLevel( params, rollupLevels, rollupPeriodType );
+
+        if ( level == null )
+        {
+            return params;
+        }
+
+        String tableName = RollupUtils.getRollupTableName( params.getTableName(), level );
+
+        if ( !partitionManager.getDataValueAnalyticsPartitions().contains( tableName ) )
+        {
+            return params;
+        }
+
+        log.debug( String.format( "Using rollup table: %s", tableName ) );
+
+        return DataQueryParams.newBuilder( params )
+            .withTableName( tableName )
+            .build();
+    }
+
     /**
      * Log query split operation.
      * 
@@ -28,6 +28,10 @@ package org.hisp.dhis.analytics.data;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -57,6 +61,8 @@ import org.hisp.dhis.common.ListMap;
 import org.hisp.dhis.commons.util.DebugUtils;
 import org.hisp.dhis.commons.util.SqlHelper;
 import org.hisp.dhis.commons.util.TextUtils;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
@@ -64,7 +70,7 @@ import org.hisp.dhis.period.PeriodType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.util.Assert;
@@ -112,6 +118,9 @@ public class JdbcAnalyticsManager
     @Autowired
     private StatementBuilder statementBuilder;
 
+    @Autowired
+    private DhisConfigurationProvider config;
+
     // -------------------------------------------------------------------------
     // AnalyticsManager implementation
     // -------------------------------------------------------------------------
@@ -570,51 +579,129 @@ public class JdbcAnalyticsManager
 
     /**
      * Retrieves data from the database based on the given query and SQL and puts
-     * into a value key and value mapping.
+     * into a value key and value mapping. Rows are processed as they are read
+     * from the result set, and are not buffered in memory. Fetching rows in
+     * batches requires auto-commit to be disabled for PostgreSQL, which is
+     * done for the duration of the query.
      */
     private Map<String, Object> getKeyValueMap( DataQueryParams params, String sql, int maxLimit )
     {
-        Map<String, Object> map = new HashMap<>();
-
         log.debug( String.format( "Analytics SQL: %s", sql ) );
 
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+        final int fetchSize = Integer.parseInt( config.getProperty( ConfigurationKey.ANALYTICS_QUERY_FETCH_SIZE ) );
 
-        int counter = 0;
-        
-        while ( rowSet.next() )
+        KeyValueRowHandler handler = new KeyValueRowHandler( params, maxLimit );
+
+        jdbcTemplate.execute( ( Connection connection ) -> {
+            boolean autoCommit = connection.getAutoCommit();
+
+            connection.setAutoCommit( false );
+
+            try ( PreparedStatement statement = connection.prepareStatement( sql ) )
+            {
+                statement.setFetchSize( fetchSize );
+
+                try ( ResultSet rs = statement.executeQuery() )
+                {
+                    while ( rs.next() )
+                    {
+                        handler.processRow( rs );
+                    }
+                }
+            }
+            finally
+            {
+                connection.setAutoCommit( autoCommit );
+            }
+
+            return null;
+        } );
+
+        return handler.getMap();
+    }
+
+    /**
+     * Row callback handler which puts each row into a value key and value mapping.
+     * Column indexes of the dimensions are resolved once for the result set.
+     */
+    private static class KeyValueRowHandler
+        implements RowCallbackHandler
+    {
+        private final List<DimensionalObject> dimensions;
+
+        private final boolean textValue;
+
+        private final int maxLimit;
+
+        private final Map<String, Object> map = new HashMap<>();
+
+        private int[] columnIndexes;
+
+        private int valueIndex;
+
+        private int counter = 0;
+
+        KeyValueRowHandler( DataQueryParams params, int maxLimit )
+        {
+            this.dimensions = params.getDimensions();
+            this.textValue = params.isDataType( TEXT );
+            this.maxLimit = maxLimit;
+        }
+
+        @Override
+        public void processRow( ResultSet rs )
+            throws SQLException
         {
             if ( maxLimit > 0 && ++counter > maxLimit )
             {
                 throw new IllegalQueryException( "Query result set exceeds max limit: " + maxLimit );
             }
-            
+
+            if ( columnIndexes == null )
+            {
+                resolveColumnIndexes( rs );
+            }
+
             StringBuilder key = new StringBuilder();
 
-            for ( DimensionalObject dim : params.getDimensions() )
+            for ( int i = 0; i < columnIndexes.length; i++ )
             {
-                String value = dim.isFixed() ? dim.getDimensionName() : rowSet.getString( dim.getDimensionName() );
-                
+                String value = columnIndexes[i] == -1 ? dimensions.get( i ).getDimensionName() : rs.getString( columnIndexes[i] );
+
                 key.append( value ).append( DIMENSION_SEP );
             }
 
             key.deleteCharAt( key.length() - 1 );
 
-            if ( params.isDataType( TEXT ) )
+            if ( textValue )
             {
-                String value = rowSet.getString( VALUE_ID );
-
-                map.put( key.toString(), value );
+                map.put( key.toString(), rs.getString( valueIndex ) );
             }
             else // NUMERIC
             {
-                Double value = rowSet.getDouble( VALUE_ID );
+                map.put( key.toString(), rs.getDouble( valueIndex ) );
+            }
+        }
+
+        private void resolveColumnIndexes( ResultSet rs )
+            throws SQLException
+        {
+            columnIndexes = new int[dimensions.size()];
+
+            for ( int i = 0; i < dimensions.size(); i++ )
+            {
+                DimensionalObject dim = dimensions.get( i );
 
-                map.put( key.toString(), value );
+                columnIndexes[i] = dim.isFixed() ? -1 : rs.findColumn( dim.getDimensionName() );
             }
+
+            valueIndex = rs.findColumn( VALUE_ID );
         }
 
-        return map;
+        public Map<String, Object> getMap()
+        {
+            return map;
+        }
     }
 
     /**
@@ -32,8 +32,12 @@ import static org.hisp.dhis.common.IdentifiableObjectUtils.getUids;
 import static org.hisp.dhis.commons.util.TextUtils.getQuotedCommaDelimitedString;
 import static org.hisp.dhis.analytics.DataQueryParams.*;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
@@ -43,7 +47,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.analytics.AnalyticsUtils;
 import org.hisp.dhis.analytics.DataQueryParams;
-import org.hisp.dhis.analytics.RawAnalyticsManager;import org.hisp.dhis.common.BaseDimensionalObject;
+import org.hisp.dhis.analytics.RawAnalyticsManager;
+import org.hisp.dhis.common.BaseDimensionalObject;
 import org.hisp.dhis.common.DimensionType;
 import org.hisp.dhis.common.DimensionalItemObject;
 import org.hisp.dhis.common.DimensionalObject;
@@ -57,7 +62,6 @@ import org.hisp.dhis.system.util.DateUtils;
 import org.hisp.dhis.util.ObjectUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.util.Assert;
 
 import com.google.api.client.util.Lists;
@@ -75,6 +79,8 @@ public class JdbcRawAnalyticsManager
     
     private static final String DIM_NAME_OU = "ou.path";
     
+    private static final int FETCH_SIZE = 10000;
+    
     @Resource( name = "readOnlyJdbcTemplate" )
     private JdbcTemplate jdbcTemplate;
 
@@ -87,6 +93,14 @@ public class JdbcRawAnalyticsManager
 
     @Override
     public Grid getRawDataValues( DataQueryParams params, Grid grid )
+    {
+        getRawDataValues( params, row -> grid.addRow().addValuesAsList( row ) );
+        
+        return grid;
+    }
+
+    @Override
+    public void getRawDataValues( DataQueryParams params, Consumer<List<Object>> rowHandler )
     {
         Assert.isTrue( params.hasStartEndDate(), "Start and end dates must be specified" );
         
@@ -103,22 +117,43 @@ public class JdbcRawAnalyticsManager
         String sql = getSelectStatement( params, dimensions );
         
         log.debug( "Get raw data SQL: " + sql );
+
+        // Rows are read through a cursor in batches of the fetch size, which
+        // requires auto-commit to be disabled for PostgreSQL
         
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
-        
-        while ( rowSet.next() )
-        {
-            grid.addRow();
+        jdbcTemplate.execute( ( Connection connection ) -> {
+            boolean autoCommit = connection.getAutoCommit();
+            
+            connection.setAutoCommit( false );
             
-            for ( DimensionalObject dim : dimensions )
+            try ( Statement statement = connection.createStatement() )
             {
-                grid.addValue( rowSet.getString( dim.getDimensionName() ) );
+                statement.setFetchSize( FETCH_SIZE );
+                
+                try ( ResultSet rs = statement.executeQuery( sql ) )
+                {
+                    while ( rs.next() )
+                    {
+                        List<Object> row = new ArrayList<>( dimensions.size() + 1 );
+                        
+                        for ( DimensionalObject dim : dimensions )
+                        {
+                            row.add( rs.getString( dim.getDimensionName() ) );
+                        }
+                        
+                        row.add( rs.getDouble( "value" ) );
+                        
+                        rowHandler.accept( row );
+                    }
+                }
+            }
+            finally
+            {
+                connection.setAutoCommit( autoCommit );
             }
             
-            grid.addValue( rowSet.getDouble( "value" ) );
-        }
-        
-        return grid;
+            return null;
+        } );
     }
 
     // -------------------------------------------------------------------------
@@ -99,30 +99,42 @@ public abstract class AbstractEventJdbcTableManager
      * @param valueType the value type to represent as database column type.
      */
     protected String getSelectClause( ValueType valueType )
+    {
+        return getSelectClause( valueType, "value" );
+    }
+
+    /**
+     * Returns the select clause, potentially with a cast statement, based on the
+     * given value type.
+     * 
+     * @param valueType the value type to represent as database column type.
+     * @param column the column holding the value as text.
+     */
+    protected String getSelectClause( ValueType valueType, String column )
     {
         if ( Double.class.equals( valueType.getJavaClass() ) )
         {
-            return "cast(value as " + statementBuilder.getDoubleColumnType() + ")";
+            return "cast(" + column + " as " + statementBuilder.getDoubleColumnType() + ")";
         }
         else if ( Integer.class.equals( valueType.getJavaClass() ) )
         {
-            return "cast(value as bigint)";
+            return "cast(" + column + " as bigint)";
         }
         else if ( Boolean.class.equals( valueType.getJavaClass() ) )
         {
-            return "case when value = 'true' then 1 when value = 'false' then 0 else null end";
+            return "case when " + column + " = 'true' then 1 when " + column + " = 'false' then 0 else null end";
         }
         else if ( LocalDateTime.class.equals( valueType.getJavaClass() ) )
         {
-            return "cast(value as timestamp)";
+            return "cast(" + column + " as timestamp)";
         }
         else if ( ValueType.COORDINATE == valueType && databaseInfo.isSpatialSupport() )
         {
-            return "ST_GeomFromGeoJSON('{\"type\":\"Point\", \"coordinates\":' || value || ', \"crs\":{\"type\":\"name\", \"properties\":{\"name\":\"EPSG:4326\"}}}')";
+            return "ST_GeomFromGeoJSON('{\"type\":\"Point\", \"coordinates\":' || " + column + " || ', \"crs\":{\"type\":\"name\", \"properties\":{\"name\":\"EPSG:4326\"}}}')";
         }
         else
         {
-            return "value";
+            return column;
         }
     }
     
@@ -60,11 +60,8 @@ import org.hisp.dhis.system.database.DatabaseInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.scheduling.annotation.Async;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -134,35 +131,67 @@ public abstract class AbstractJdbcTableManager
             createTempTable( table );
         }
         
-        createTempTablePartitions( table );
+        createTempTablePartitions( table, skipMasterTable );
+    }
+
+    /**
+     * Returns null as partial update is not supported by default. Override to
+     * support partial updates.
+     */
+    @Override
+    public List<Integer> getDataYearsUpdatedSince( Date lastUpdated )
+    {
+        return null;
+    }
+
+    /**
+     * Returns an empty list as rollup tables are not supported by default.
+     * Override to support rollup tables.
+     */
+    @Override
+    public List<AnalyticsTable> getRollupTables( List<AnalyticsTable> tables )
+    {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Does nothing as rollup tables are not supported by default. Override
+     * to support rollup tables.
+     */
+    @Override
+    public void populateRollupTable( AnalyticsTablePartition partition )
+    {
+    }
+
+    @Override
+    public boolean hasEqualColumns( AnalyticsTable table )
+    {
+        final String sql =
+            "select column_name from information_schema.columns " +
+            "where table_name = '" + table.getTableName() + "'";
+
+        Set<String> existingColumns = new HashSet<>( jdbcTemplate.queryForList( sql, String.class ) );
+
+        Set<String> columns = ListUtils.union( table.getDimensionColumns(), table.getValueColumns() ).stream()
+            .map( col -> removeQuote( col.getName() ) )
+            .collect( Collectors.toSet() );
+
+        return !existingColumns.isEmpty() && existingColumns.equals( columns );
     }
     
     @Override
-    @Async
-    public Future<?> createIndexesAsync( ConcurrentLinkedQueue<AnalyticsIndex> indexes )
+    public void createIndex( AnalyticsIndex inx )
     {
-        taskLoop : while ( true )
-        {
-            AnalyticsIndex inx = indexes.poll();
-            
-            if ( inx == null )
-            {
-                break taskLoop;
-            }
-            
-            final String indexName = getIndexName( inx );            
-            final String indexType = inx.hasType() ? " using " + inx.getType() : "";
-            
-            final String sql = "create index " + indexName + " on " + inx.getTable() + indexType + " (" + inx.getColumn() + ")";
-            
-            log.debug( "Create index: " + indexName + " SQL: " + sql );
-            
-            jdbcTemplate.execute( sql );
-            
-            log.debug( "Created index: " + indexName );
-        }
+        final String indexName = getIndexName( inx );            
+        final String indexType = inx.hasType() ? " using " + inx.getType() : "";
         
-        return null;
+        final String sql = "create index " + indexName + " on " + inx.getTable() + indexType + " (" + inx.getColumn() + ")";
+        
+        log.debug( "Create index: " + indexName + " SQL: " + sql );
+        
+        jdbcTemplate.execute( sql );
+        
+        log.debug( "Created index: " + indexName );
     }
     
     @Override
@@ -171,6 +200,11 @@ public abstract class AbstractJdbcTableManager
         for ( AnalyticsTablePartition partition : table.getPartitionTables() )
         {
             swapTable( partition.getTempTableName(), partition.getTableName() );
+            
+            if ( skipMasterTable )
+            {
+                jdbcTemplate.execute( "alter table " + partition.getTableName() + " inherit " + table.getTableName() );
+            }
         }
         
         if ( !skipMasterTable )
@@ -207,25 +241,6 @@ public abstract class AbstractJdbcTableManager
         executeSilently( sql );
     }
 
-    @Override
-    @Async
-    public Future<?> populateTablesAsync( ConcurrentLinkedQueue<AnalyticsTablePartition> partitions )
-    {
-        taskLoop: while ( true )
-        {
-            AnalyticsTablePartition partition = partitions.poll();
-
-            if ( partition == null )
-            {
-                break taskLoop;
-            }
-
-            populateTable( partition );
-        }
-
-        return null;
-    }
-    
     @Override
     public void invokeAnalyticsTableSqlHooks()
     {
@@ -246,13 +261,6 @@ public abstract class AbstractJdbcTableManager
      */
     protected abstract List<String> getPartitionChecks( AnalyticsTablePartition partition );
     
-    /**
-     * Populates the given analytics table.
-     * 
-     * @param table the analytics table to populate.
-     */
-    protected abstract void populateTable( AnalyticsTablePartition partition );
-
     // -------------------------------------------------------------------------
     // Protected supportive methods
     // -------------------------------------------------------------------------
@@ -375,26 +383,42 @@ public abstract class AbstractJdbcTableManager
     
     /**
      * Drops and creates the table partitions for the given analytics table.
+     * The partitions inherit from the temporary master table. If the master
+     * table is skipped, the partitions are created as standalone tables and
+     * attached to the existing master table when swapped, to avoid exposing 
+     * partially populated partitions through the master table.
      * 
      * @param table the {@link AnalyticsTable}.
+     * @param skipMasterTable whether the master table is skipped.
      */
-    protected void createTempTablePartitions( AnalyticsTable table )
+    protected void createTempTablePartitions( AnalyticsTable table, boolean skipMasterTable )
     {
         for ( AnalyticsTablePartition partition : table.getPartitionTables() )
         {         
             final String tableName = partition.getTempTableName();
             final List<String> checks = getPartitionChecks( partition );
             
-            String sqlCreate = "create table " + tableName + " ";
+            String sqlCreate = "create table " + tableName + " (";
+            
+            if ( skipMasterTable )
+            {
+                for ( AnalyticsTableColumn col : ListUtils.union( table.getDimensionColumns(), table.getValueColumns() ) )
+                {
+                    sqlCreate += col.getName() + " " + col.getDataType() + ",";
+                }
+            }
             
-            if ( !checks.isEmpty() )
+            for ( String check : checks )
             {
-                StringBuilder sqlCheck = new StringBuilder( "(" );
-                checks.stream().forEach( check -> sqlCheck.append( "check (" + check + "), " ) );
-                sqlCreate += TextUtils.removeLastComma( sqlCheck.toString() ) + ") ";
+                sqlCreate += "check (" + check + "),";
             }
             
-            sqlCreate += "inherits (" + table.getTempTableName() + ")";
+            sqlCreate = TextUtils.removeLastComma( sqlCreate ) + ")";
+            
+            if ( !skipMasterTable )
+            {
+                sqlCreate += " inherits (" + table.getTempTableName() + ")";
+            }
             
             log.info( String.format( "Creating partition table: %s", tableName ) );
 
@@ -0,0 +1,325 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.analytics.AnalyticsIndex;
+import org.hisp.dhis.analytics.AnalyticsTableColumn;
+import org.hisp.dhis.analytics.AnalyticsTableManager;
+import org.hisp.dhis.analytics.AnalyticsTablePartition;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.system.notification.Notifier;
+import org.hisp.dhis.system.util.Clock;
+
+/**
+ * Scheduler for the populate, index and analyze phases of an analytics table
+ * update. Each analytics table partition, which represents a table type,
+ * program where applicable and year, is a node in a task graph where the
+ * indexes of a partition are created as soon as the partition is populated,
+ * and the partition is analyzed as soon as its indexes are created. This lets
+ * index creation and analyze of completed partitions overlap with population
+ * of the remaining partitions.
+ * <p>
+ * Each phase runs on its own bounded thread pool, so that the concurrency of
+ * each phase can be tuned independently and does not compete with other
+ * asynchronous tasks. The time spent on each partition is reported through
+ * the {@link Notifier}. Workers queue the messages, which are passed to the
+ * notifier from the thread waiting for the tasks, since the notifier is not
+ * safe for concurrent use.
+ * <p>
+ * Instances are used for a single table update and must be closed after use.
+ *
+ * @author agent
+ */
+public class AnalyticsTableTaskScheduler
+    implements AutoCloseable
+{
+    private static final Log log = LogFactory.getLog( AnalyticsTableTaskScheduler.class );
+
+    /**
+     * Marker for the completion of the tasks being waited for.
+     */
+    private static final Object TASKS_COMPLETED = new Object();
+
+    private final AnalyticsTableManager tableManager;
+
+    private final Notifier notifier;
+
+    private final JobConfiguration jobId;
+
+    private final ExecutorService populateExecutor;
+
+    private final ExecutorService indexExecutor;
+
+    private final ExecutorService analyzeExecutor;
+
+    /**
+     * Messages of the tasks followed by the completion marker.
+     */
+    private final BlockingQueue<Object> messages = new LinkedBlockingQueue<>();
+
+    /**
+     * @param tableManager the {@link AnalyticsTableManager}.
+     * @param notifier the {@link Notifier}.
+     * @param jobId the job identifier.
+     * @param populateWorkers the number of threads for populating partitions.
+     * @param indexWorkers the number of threads for creating indexes.
+     * @param analyzeWorkers the number of threads for analyzing partitions.
+     */
+    public AnalyticsTableTaskScheduler( AnalyticsTableManager tableManager, Notifier notifier, JobConfiguration jobId,
+        int populateWorkers, int indexWorkers, int analyzeWorkers )
+    {
+        this.tableManager = tableManager;
+        this.notifier = notifier;
+        this.jobId = jobId;
+        this.populateExecutor = newExecutor( "populate", populateWorkers );
+        this.indexExecutor = newExecutor( "index", indexWorkers );
+        this.analyzeExecutor = newExecutor( "analyze", analyzeWorkers );
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Populates, indexes and analyzes the given partitions and blocks until
+     * all tasks are complete. If a task fails, the tasks which depend on it
+     * are not run and a runtime exception is thrown once the remaining tasks
+     * are complete.
+     *
+     * @param partitions the analytics table partitions.
+     * @param afterPopulate work which must be run after all partitions are
+     *        populated and before any index is created, or null if the
+     *        phases can overlap.
+     */
+    public void run( List<AnalyticsTablePartition> partitions, Runnable afterPopulate )
+    {
+        run( partitions, tableManager::populateTable, afterPopulate );
+    }
+
+    /**
+     * Populates the given partitions with the given populate task, then
+     * indexes and analyzes the partitions, and blocks until all tasks are
+     * complete.
+     *
+     * @param partitions the analytics table partitions.
+     * @param populateTask the task which populates a partition.
+     * @param afterPopulate work which must be run after all partitions are
+     *        populated and before any index is created, or null if the
+     *        phases can overlap.
+     */
+    public void run( List<AnalyticsTablePartition> partitions, Consumer<AnalyticsTablePartition> populateTask, Runnable afterPopulate )
+    {
+        if ( afterPopulate == null )
+        {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            for ( AnalyticsTablePartition partition : partitions )
+            {
+                futures.add( populate( partition, populateTask ).thenCompose( v -> indexAndAnalyze( partition ) ) );
+            }
+
+            waitForCompletion( futures );
+        }
+        else
+        {
+            List<CompletableFuture<Void>> populateFutures = new ArrayList<>();
+
+            for ( AnalyticsTablePartition partition : partitions )
+            {
+                populateFutures.add( populate( partition, populateTask ) );
+            }
+
+            waitForCompletion( populateFutures );
+
+            afterPopulate.run();
+
+            List<CompletableFuture<Void>> indexFutures = new ArrayList<>();
+
+            for ( AnalyticsTablePartition partition : partitions )
+            {
+                indexFutures.add( indexAndAnalyze( partition ) );
+            }
+
+            waitForCompletion( indexFutures );
+        }
+    }
+
+    /**
+     * Shuts down the thread pools of this scheduler.
+     */
+    @Override
+    public void close()
+    {
+        populateExecutor.shutdownNow();
+        indexExecutor.shutdownNow();
+        analyzeExecutor.shutdownNow();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Schedules population of the given partition with the given task.
+     */
+    private CompletableFuture<Void> populate( AnalyticsTablePartition partition, Consumer<AnalyticsTablePartition> populateTask )
+    {
+        return runTimed( partition, "Populated", populateTask, populateExecutor );
+    }
+
+    /**
+     * Schedules creation of the indexes of the given partition, followed by
+     * analyze of the partition once all indexes are created.
+     */
+    private CompletableFuture<Void> indexAndAnalyze( AnalyticsTablePartition partition )
+    {
+        List<AnalyticsIndex> indexes = getIndexes( partition );
+
+        CompletableFuture<?>[] indexFutures = new CompletableFuture<?>[indexes.size()];
+
+        Clock clock = new Clock().startClock();
+
+        for ( int i = 0; i < indexes.size(); i++ )
+        {
+            AnalyticsIndex index = indexes.get( i );
+
+            indexFutures[i] = CompletableFuture.runAsync( () -> tableManager.createIndex( index ), indexExecutor );
+        }
+
+        return CompletableFuture.allOf( indexFutures )
+            .thenRun( () -> notifyTime( partition, "Indexed", clock ) )
+            .thenCompose( v -> runTimed( partition, "Analyzed", p -> tableManager.analyzeTable( p.getTempTableName() ), analyzeExecutor ) );
+    }
+
+    /**
+     * Schedules the given task for the given partition on the given executor
+     * and reports the time spent on the task.
+     */
+    private CompletableFuture<Void> runTimed( AnalyticsTablePartition partition, String action,
+        Consumer<AnalyticsTablePartition> task, ExecutorService executor )
+    {
+        return CompletableFuture.runAsync( () -> {
+            Clock clock = new Clock().startClock();
+
+            task.accept( partition );
+
+            notifyTime( partition, action, clock );
+        }, executor );
+    }
+
+    private void notifyTime( AnalyticsTablePartition partition, String action, Clock clock )
+    {
+        String message = String.format( "%s table: %s in %s", action, partition.getTempTableName(), clock.time() );
+
+        log.info( message );
+        messages.add( message );
+    }
+
+    /**
+     * Returns the indexes to create for the given partition, one for each
+     * dimension column which is not set to skip index.
+     */
+    private List<AnalyticsIndex> getIndexes( AnalyticsTablePartition partition )
+    {
+        List<AnalyticsIndex> indexes = new ArrayList<>();
+
+        for ( AnalyticsTableColumn col : partition.getMasterTable().getDimensionColumns() )
+        {
+            if ( !col.isSkipIndex() )
+            {
+                indexes.add( new AnalyticsIndex( partition.getTempTableName(), col.getName(), col.getIndexType() ) );
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Waits for the given tasks to complete, and passes the messages of the
+     * tasks to the notifier on the calling thread while waiting.
+     */
+    private void waitForCompletion( List<CompletableFuture<Void>> futures )
+    {
+        CompletableFuture<Void> tasks = CompletableFuture.allOf( futures.toArray( new CompletableFuture<?>[futures.size()] ) );
+
+        tasks.whenComplete( ( v, ex ) -> messages.add( TASKS_COMPLETED ) );
+
+        try
+        {
+            Object message;
+
+            while ( ( message = messages.take() ) != TASKS_COMPLETED )
+            {
+                notifier.notify( jobId, (String) message );
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException( "Interrupted while waiting for tasks", ex );
+        }
+
+        try
+        {
+            tasks.join();
+        }
+        catch ( CompletionException ex )
+        {
+            throw new RuntimeException( "Exception during execution", ex.getCause() );
+        }
+    }
+
+    private static ExecutorService newExecutor( String phase, int workers )
+    {
+        AtomicInteger threadNo = new AtomicInteger();
+
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread( runnable, "analytics-table-" + phase + "-" + threadNo.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+
+        return Executors.newFixedThreadPool( Math.max( 1, workers ), threadFactory );
+    }
+}
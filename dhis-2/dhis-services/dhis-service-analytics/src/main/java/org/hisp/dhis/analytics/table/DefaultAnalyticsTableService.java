@@ -28,13 +28,18 @@ package org.hisp.dhis.analytics.table;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.analytics.*;
+import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
+import org.hisp.dhis.commons.collection.ListUtils;
 import org.hisp.dhis.commons.util.ConcurrentUtils;
 import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.resourcetable.ResourceTableService;
 import org.hisp.dhis.scheduling.JobConfiguration;
@@ -82,6 +87,18 @@ public class DefaultAnalyticsTableService
     @Autowired
     private SystemSettingManager systemSettingManager;
 
+    @Autowired
+    private AnalyticsCache analyticsCache;
+
+    @Autowired
+    private AnalyticsTableHookService tableHookService;
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    @Autowired
+    private PartitionManager partitionManager;
+
     // -------------------------------------------------------------------------
     // Implementation
     // -------------------------------------------------------------------------
@@ -97,6 +114,8 @@ public class DefaultAnalyticsTableService
     {
         JobConfiguration jobId = params.getJobId();
 
+        final Date startTime = new Date();
+
         int processNo = getProcessNo();
         int orgUnitLevelNo = organisationUnitService.getNumberOfOrganisationalLevels();
         
@@ -116,7 +135,33 @@ public class DefaultAnalyticsTableService
             return;
         }
 
-        final List<AnalyticsTable> tables = tableManager.getAnalyticsTables( earliest );
+        List<AnalyticsTable> tables = tableManager.getAnalyticsTables( earliest );
+        
+        boolean skipMasterTable = params.isSkipMasterTable();
+        
+        if ( params.isPartialUpdate() )
+        {
+            List<AnalyticsTable> partialTables = getPartialUpdateTables( tables, tableType );
+            
+            if ( partialTables != null )
+            {
+                tables = partialTables;
+                skipMasterTable = true;
+                
+                if ( PartitionUtils.getTablePartitions( tables ).isEmpty() )
+                {
+                    clock.logTime( "No data changed since last update, skipping: " + tableType.getTableName() );
+                    notifier.notify( jobId, "No data changed since last update, skipping table update" );
+                    return;
+                }
+                
+                notifier.notify( jobId, "Performing partial update of partitions: " + PartitionUtils.getTablePartitions( tables ) );
+            }
+            else
+            {
+                notifier.notify( jobId, "Partial update not possible, performing full update" );
+            }
+        }
 
         clock.logTime( "Table update start: " + tableType.getTableName() + ", earliest: " + earliest + ", parameters: " + params.toString() );
         notifier.notify( jobId, "Performing pre-create table work, org unit levels: " + orgUnitLevelNo );
@@ -131,38 +176,35 @@ public class DefaultAnalyticsTableService
         clock.logTime( "Dropped temp tables" );
         notifier.notify( jobId, "Creating analytics tables" );
 
-        createTables( tables, params.isSkipMasterTable() );
+        createTables( tables, skipMasterTable );
         
         clock.logTime( "Created analytics tables" );
-        notifier.notify( jobId, "Populating analytics tables" );
-        
-        populateTables( tables );
-        
-        clock.logTime( "Populated analytics tables" );
-        notifier.notify( jobId, "Invoking analytics table hooks" );
-                
-        tableManager.invokeAnalyticsTableSqlHooks();
-        
-        clock.logTime( "Invoked analytics table hooks" );
-        notifier.notify( jobId, "Applying aggregation levels" );
-        
-        applyAggregationLevels( tables );
+        notifier.notify( jobId, "Populating, indexing and analyzing analytics tables" );
         
-        clock.logTime( "Applied aggregation levels" );
-        notifier.notify( jobId, "Creating indexes" );
+        populateIndexAndAnalyzeTables( tables, jobId, clock );
         
-        createIndexes( tables );
+        clock.logTime( "Populated, indexed and analyzed tables" );
         
-        clock.logTime( "Created indexes" );
-        notifier.notify( jobId, "Analyzing analytics tables" );
+        List<AnalyticsTable> rollupTables = tableManager.getRollupTables( tables );
         
-        analyzeTables( tables );
+        if ( !rollupTables.isEmpty() )
+        {
+            notifier.notify( jobId, "Populating rollup tables" );
+            
+            populateRollupTables( rollupTables, skipMasterTable, jobId );
+            
+            clock.logTime( "Populated rollup tables" );
+        }
         
-        clock.logTime( "Analyzed tables" );
         notifier.notify( jobId, "Swapping analytics tables" );
         
-        swapTables( tables, params.isSkipMasterTable() );
+        swapTables( ListUtils.union( tables, rollupTables ), skipMasterTable );
         
+        if ( params.getLastYears() == null )
+        {
+            systemSettingManager.saveSystemSetting( tableType.getLastUpdateSettingName(), startTime );
+        }
+
         clock.logTime( "Table update done: " + tableType.getTableName() );
         notifier.notify( jobId, "Table update done" );
     }
@@ -191,6 +233,54 @@ public class DefaultAnalyticsTableService
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Returns the given analytics tables with the partitions limited to the
+     * years with data changed since the last successful update of all years of
+     * the table type. Returns null if a partial update is not possible, which
+     * is the case if no such update has been done, the table type does not
+     * support partial updates or the columns of the analytics tables or their
+     * rollup tables have changed. A rollup master table which does not exist,
+     * as rollup tables or levels were enabled after the last full update, has
+     * changed columns.
+     *
+     * @param tables the list of {@link AnalyticsTable}.
+     * @param tableType the {@link AnalyticsTableType}.
+     * @return a list of {@link AnalyticsTable}, or null.
+     */
+    private List<AnalyticsTable> getPartialUpdateTables( List<AnalyticsTable> tables, AnalyticsTableType tableType )
+    {
+        Date lastUpdate = (Date) systemSettingManager.getSystemSetting( tableType.getLastUpdateSettingName() );
+        
+        if ( lastUpdate == null )
+        {
+            log.info( "No successful update of all years found for table type: " + tableType + ", partial update not possible" );
+            return null;
+        }
+        
+        List<Integer> years = tableManager.getDataYearsUpdatedSince( lastUpdate );
+        
+        if ( years == null )
+        {
+            log.info( "Partial update not supported for table type: " + tableManager.getAnalyticsTableType() );
+            return null;
+        }
+        
+        for ( AnalyticsTable table : ListUtils.union( tables, tableManager.getRollupTables( tables ) ) )
+        {
+            if ( !tableManager.hasEqualColumns( table ) )
+            {
+                log.info( "Columns changed for table: " + table.getTableName() + ", partial update not possible" );
+                return null;
+            }
+        }
+        
+        log.info( String.format( "Data changed since %s for years: %s", lastUpdate, years ) );
+        
+        tables.forEach( table -> table.retainPartitionTables( years ) );
+        
+        return tables;
+    }
+
     /**
      * Drops the given temporary analytics tables.
      *
@@ -213,28 +303,101 @@ public class DefaultAnalyticsTableService
     }
     
     /**
-     * Populates the given analytics tables.
+     * Populates, indexes and analyzes the given analytics tables through an
+     * {@link AnalyticsTableTaskScheduler}, where each phase has a bounded
+     * number of workers. Indexing and analyzing of a partition starts as soon
+     * as the partition is populated, unless analytics table hooks or aggregation
+     * levels must be applied to the populated tables first.
      *
      * @param tables the list of {@link AnalyticsTable}.
+     * @param jobId the job identifier.
+     * @param clock the clock of the table update.
      */
-    private void populateTables( List<AnalyticsTable> tables )
+    private void populateIndexAndAnalyzeTables( List<AnalyticsTable> tables, JobConfiguration jobId, Clock clock )
     {
         List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
 
-        int taskNo = Math.min( getProcessNo(), partitions.size() );
+        int processNo = getProcessNo();
+        int populateWorkers = Math.min( getWorkerNo( ConfigurationKey.ANALYTICS_TABLE_POPULATE_WORKERS, processNo ), partitions.size() );
+        int indexWorkers = getWorkerNo( ConfigurationKey.ANALYTICS_TABLE_INDEX_WORKERS, processNo );
+        int analyzeWorkers = getWorkerNo( ConfigurationKey.ANALYTICS_TABLE_ANALYZE_WORKERS, processNo );
+
+        log.info( String.format( "Table task workers, populate: %d, index: %d, analyze: %d", populateWorkers, indexWorkers, analyzeWorkers ) );
+
+        boolean hasHooks = !tableHookService.getByPhaseAndAnalyticsTableType(
+            AnalyticsTablePhase.ANALYTICS_TABLE_POPULATED, tableManager.getAnalyticsTableType() ).isEmpty();
         
-        log.info( "Populate table task number: " + taskNo );
+        Runnable afterPopulate = hasHooks || hasAggregationLevels() ? () -> {
+            clock.logTime( "Populated analytics tables" );
+            notifier.notify( jobId, "Invoking analytics table hooks" );
+            
+            tableManager.invokeAnalyticsTableSqlHooks();
+            
+            clock.logTime( "Invoked analytics table hooks" );
+            notifier.notify( jobId, "Applying aggregation levels" );
+            
+            applyAggregationLevels( tables );
+            
+            clock.logTime( "Applied aggregation levels" );
+            notifier.notify( jobId, "Creating indexes and analyzing analytics tables" );
+        } : null;
+
+        try ( AnalyticsTableTaskScheduler scheduler = new AnalyticsTableTaskScheduler( 
+            tableManager, notifier, jobId, populateWorkers, indexWorkers, analyzeWorkers ) )
+        {
+            scheduler.run( partitions, afterPopulate );
+        }
+    }
+
+    /**
+     * Creates, populates, indexes and analyzes the given rollup tables from
+     * the populated temporary analytics tables.
+     *
+     * @param rollupTables the list of rollup {@link AnalyticsTable}.
+     * @param skipMasterTable whether to skip creating the master rollup table.
+     * @param jobId the job identifier.
+     */
+    private void populateRollupTables( List<AnalyticsTable> rollupTables, boolean skipMasterTable, JobConfiguration jobId )
+    {
+        dropTempTables( rollupTables );
         
-        ConcurrentLinkedQueue<AnalyticsTablePartition> partitionQ = new ConcurrentLinkedQueue<>( partitions );
+        createTables( rollupTables, skipMasterTable );
         
-        List<Future<?>> futures = new ArrayList<>();
+        List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( rollupTables );
         
-        for ( int i = 0; i < taskNo; i++ )
+        if ( partitions.isEmpty() )
         {
-            futures.add( tableManager.populateTablesAsync( partitionQ ) );
+            return;
         }
         
-        ConcurrentUtils.waitForCompletion( futures );
+        int processNo = getProcessNo();
+        int populateWorkers = Math.min( getWorkerNo( ConfigurationKey.ANALYTICS_TABLE_POPULATE_WORKERS, processNo ), partitions.size() );
+        int indexWorkers = getWorkerNo( ConfigurationKey.ANALYTICS_TABLE_INDEX_WORKERS, processNo );
+        int analyzeWorkers = getWorkerNo( ConfigurationKey.ANALYTICS_TABLE_ANALYZE_WORKERS, processNo );
+        
+        try ( AnalyticsTableTaskScheduler scheduler = new AnalyticsTableTaskScheduler( 
+            tableManager, notifier, jobId, populateWorkers, indexWorkers, analyzeWorkers ) )
+        {
+            scheduler.run( partitions, tableManager::populateRollupTable, null );
+        }
+    }
+
+    /**
+     * Indicates whether any data elements have aggregation levels.
+     */
+    private boolean hasAggregationLevels()
+    {
+        int maxLevels = organisationUnitService.getNumberOfOrganisationalLevels();
+
+        for ( int level = 1; level <= maxLevels; level++ )
+        {
+            if ( !dataElementService.getDataElementsByAggregationLevel( level ).isEmpty() )
+            {
+                return true;
+            }
+        }
+
+        return false;
     }
     
     /**
@@ -299,62 +462,14 @@ public class DefaultAnalyticsTableService
 
         for ( int i = 0; i < getProcessNo(); i++ )
         {
-            tableManager.vacuumTablesAsync( partitionQ );
+            futures.add( tableManager.vacuumTablesAsync( partitionQ ) );
         }
         
         ConcurrentUtils.waitForCompletion( futures );        
     }
     
     /**
-     * Creates indexes on the given analytics tables.
-     *
-     * @param tables the list of {@link AnalyticsTable}.
-     */
-    private void createIndexes( List<AnalyticsTable> tables )
-    {
-        List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
-
-        ConcurrentLinkedQueue<AnalyticsIndex> indexes = new ConcurrentLinkedQueue<>();
-        
-        for ( AnalyticsTablePartition partition : partitions )
-        {
-            List<AnalyticsTableColumn> columns = partition.getMasterTable().getDimensionColumns();
-
-            for ( AnalyticsTableColumn col : columns )
-            {
-                if ( !col.isSkipIndex() )
-                {
-                    indexes.add( new AnalyticsIndex( partition.getTempTableName(), col.getName(), col.getIndexType() ) );
-                }
-            }
-        }
-        
-        log.info( "No of analytics table indexes: " + indexes.size() );
-        
-        List<Future<?>> futures = new ArrayList<>();
-
-        for ( int i = 0; i < getProcessNo(); i++ )
-        {
-            futures.add( tableManager.createIndexesAsync( indexes ) );
-        }
-
-        ConcurrentUtils.waitForCompletion( futures );
-    }
-
-    /**
-     * Analyzes the given analytics tables.
-     *
-     * @param tables the list of {@link AnalyticsTable}.
-     */
-    private void analyzeTables( List<AnalyticsTable> tables )
-    {
-        List<AnalyticsTablePartition> partitions = PartitionUtils.getTablePartitions( tables );
-
-        partitions.forEach( table -> tableManager.analyzeTable( table.getTempTableName() ) );
-    }
-
-    /**
-     * Swaps the given analytics tables.
+     * Swaps the given analytics tables and invalidates the analytics cache.
      *
      * @param tables the list of {@link AnalyticsTable}.
      * @param skipMasterTable whether to skip swapping the master analtyics table.
@@ -366,6 +481,10 @@ public class DefaultAnalyticsTableService
         tables.forEach( table -> tableManager.swapTable( table, skipMasterTable ) );
         
         resourceTableService.createAllSqlViews();
+        
+        partitionManager.clearCaches();
+        
+        analyticsCache.invalidateAll();
     }
     
     /**
@@ -382,4 +501,36 @@ public class DefaultAnalyticsTableService
                         
         return cores > 2 ? ( cores - 1 ) : cores;
     }
+
+    /**
+     * Gets the number of workers for a phase of the table update. Uses the
+     * number from the given configuration key if positive, otherwise the
+     * given default number. Logs a warning and uses the default number if the
+     * configured value is not a valid number of workers.
+     *
+     * @param key the {@link ConfigurationKey}.
+     * @param defaultNo the default number of workers.
+     */
+    private int getWorkerNo( ConfigurationKey key, int defaultNo )
+    {
+        String value = StringUtils.trimToEmpty( config.getProperty( key ) );
+
+        int workers;
+
+        try
+        {
+            workers = Integer.parseInt( value );
+        }
+        catch ( NumberFormatException ex )
+        {
+            workers = -1;
+        }
+
+        if ( workers < 0 )
+        {
+            log.warn( String.format( "Invalid number of workers for %s: '%s', using: %d", key.getKey(), value, defaultNo ) );
+        }
+
+        return workers > 0 ? workers : defaultNo;
+    }
 }
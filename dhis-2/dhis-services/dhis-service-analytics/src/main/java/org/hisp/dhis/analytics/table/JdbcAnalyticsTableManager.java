@@ -28,6 +28,8 @@ package org.hisp.dhis.analytics.table;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.StringUtils;
@@ -41,6 +43,8 @@ import org.hisp.dhis.dataapproval.DataApprovalLevelService;
 import org.hisp.dhis.dataelement.CategoryOptionGroupSet;
 import org.hisp.dhis.dataelement.DataElementCategory;
 import org.hisp.dhis.dataelement.DataElementGroupSet;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.organisationunit.OrganisationUnitGroupSet;
 import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
 import org.hisp.dhis.period.PeriodType;
@@ -56,6 +60,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.hisp.dhis.commons.util.TextUtils.getQuotedCommaDelimitedString;
 import static org.hisp.dhis.dataapproval.DataApprovalLevelService.APPROVAL_LEVEL_UNAPPROVED;
@@ -77,12 +82,33 @@ import static org.hisp.dhis.dataapproval.DataApprovalLevelService.APPROVAL_LEVEL
 public class JdbcAnalyticsTableManager
     extends AbstractJdbcTableManager
 {
+    private static final Set<String> ROLLUP_EXCLUDED_COLUMNS = ImmutableSet.of( "pestartdate", "peenddate", "pe", "ou", "level" );
+
+    /**
+     * Meta-data tables which are denormalized into the dimension columns of
+     * all partitions. Changes to these tables can not be attributed to years.
+     */
+    private static final List<String> DIMENSION_TABLES = ImmutableList.of( "organisationunit", "orgunitgroup",
+        "orgunitgroupset", "dataelementgroup", "dataelementgroupset", "dataelementcategoryoption",
+        "categoryoptiongroup", "categoryoptiongroupset" );
+
+    /**
+     * Classes of the dimension tables, for which deletions are recorded as
+     * deleted objects.
+     */
+    private static final List<String> DIMENSION_CLASSES = ImmutableList.of( "OrganisationUnit", "OrganisationUnitGroup",
+        "OrganisationUnitGroupSet", "DataElementGroup", "DataElementGroupSet", "DataElementCategoryOption",
+        "CategoryOptionGroup", "CategoryOptionGroupSet" );
+
     @Autowired
     private SystemSettingManager systemSettingManager;
     
     @Autowired
     private PartitionManager partitionManager;
 
+    @Autowired
+    private DhisConfigurationProvider config;
+
     // -------------------------------------------------------------------------
     // Implementation
     // -------------------------------------------------------------------------
@@ -100,6 +126,40 @@ public class JdbcAnalyticsTableManager
         return Lists.newArrayList( getAnalyticsTable( getDataYears( earliest ), getDimensionColumns( null ), getValueColumns() ) );
     }
     
+    /**
+     * Returns the years of data values with a last updated timestamp after the
+     * given date. Soft deleted data values are included, as deletion updates
+     * the last updated timestamp. Returns null if data approval is enabled, as
+     * removal of approvals can not be detected, and if meta-data of the
+     * dimension columns such as the organisation unit hierarchy or group
+     * memberships has changed, as such changes affect all years.
+     */
+    @Override
+    public List<Integer> getDataYearsUpdatedSince( Date lastUpdated )
+    {
+        if ( isApprovalEnabled( null ) )
+        {
+            return null;
+        }
+
+        String dimensionTable = getDimensionTableUpdatedSince( lastUpdated );
+
+        if ( dimensionTable != null )
+        {
+            log.info( "Meta-data changed since last update in table: " + dimensionTable );
+            return null;
+        }
+        
+        final String sql =
+            "select distinct(extract(year from pe.startdate)) " +
+            "from datavalue dv " +
+            "inner join period pe on dv.periodid=pe.periodid " +
+            "where pe.startdate is not null " +
+            "and dv.lastupdated >= '" + DateUtils.getLongDateString( lastUpdated ) + "'";
+        
+        return jdbcTemplate.queryForList( sql, Integer.class );
+    }
+    
     @Override
     public Set<String> getExistingDatabaseTables()
     {
@@ -138,14 +198,19 @@ public class JdbcAnalyticsTableManager
     @Override
     protected List<String> getPartitionChecks( AnalyticsTablePartition partition )
     {
-        return Lists.newArrayList(
-            "yearly = '" + partition.getYear() + "'",
-            "pestartdate >= '" + DateUtils.getMediumDateString( partition.getStartDate() ) + "'",
-            "pestartdate < '" + DateUtils.getMediumDateString( partition.getEndDate() ) + "'" );
+        List<String> checks = Lists.newArrayList( "yearly = '" + partition.getYear() + "'" );
+
+        if ( !RollupUtils.isRollupTable( partition.getMasterTable().getBaseName() ) )
+        {
+            checks.add( "pestartdate >= '" + DateUtils.getMediumDateString( partition.getStartDate() ) + "'" );
+            checks.add( "pestartdate < '" + DateUtils.getMediumDateString( partition.getEndDate() ) + "'" );
+        }
+
+        return checks;
     }
     
     @Override
-    protected void populateTable( AnalyticsTablePartition partition )
+    public void populateTable( AnalyticsTablePartition partition )
     {
         final String dbl = statementBuilder.getDoubleColumnType();
         final boolean skipDataTypeValidation = (Boolean) systemSettingManager.getSystemSetting( SettingKey.SKIP_DATA_TYPE_VALIDATION_IN_ANALYTICS_TABLE_EXPORT );
@@ -166,6 +231,74 @@ public class JdbcAnalyticsTableManager
         populateTable( partition, "null", "dv.value", Sets.union( ValueType.TEXT_TYPES, ValueType.DATE_TYPES ), null, approvalClause );
     }
 
+    /**
+     * Returns a rollup table for each organisation unit level configured
+     * through {@link ConfigurationKey#ANALYTICS_ROLLUP_LEVELS}. The rollup
+     * tables have the dimension columns of the analytics table except the
+     * columns for organisation units below the level, organisation unit group
+     * sets, periods shorter than the rollup period type and single periods.
+     */
+    @Override
+    public List<AnalyticsTable> getRollupTables( List<AnalyticsTable> tables )
+    {
+        List<Integer> levels = RollupUtils.getRollupLevels( config );
+        PeriodType periodType = RollupUtils.getRollupPeriodType( config );
+
+        List<AnalyticsTable> rollupTables = new ArrayList<>();
+
+        for ( AnalyticsTable table : tables )
+        {
+            for ( Integer level : levels )
+            {
+                List<AnalyticsTableColumn> columns = table.getDimensionColumns().stream()
+                    .filter( col -> isRollupColumn( col, level, periodType ) )
+                    .collect( Collectors.toList() );
+
+                AnalyticsTable rollupTable = new AnalyticsTable( RollupUtils.getRollupTableName( table.getBaseName(), level ), columns, getRollupValueColumns() );
+
+                table.getPartitionTables().forEach( p -> rollupTable.addPartitionTable( p.getYear(), p.getStartDate(), p.getEndDate() ) );
+
+                rollupTables.add( rollupTable );
+            }
+        }
+
+        return rollupTables;
+    }
+
+    @Override
+    public void populateRollupTable( AnalyticsTablePartition partition )
+    {
+        final String sourceTableName = getTableName() + TABLE_TEMP_SUFFIX + PartitionUtils.SEP + partition.getYear();
+
+        List<AnalyticsTableColumn> columns = partition.getMasterTable().getDimensionColumns();
+        List<AnalyticsTableColumn> values = partition.getMasterTable().getValueColumns();
+
+        String dimensions = columns.stream()
+            .map( AnalyticsTableColumn::getName )
+            .collect( Collectors.joining( "," ) );
+
+        String sql = "insert into " + partition.getTempTableName() + " (" + dimensions + ",";
+
+        for ( AnalyticsTableColumn col : values )
+        {
+            sql += col.getName() + ",";
+        }
+
+        sql = TextUtils.removeLastComma( sql ) + ") select " + dimensions + ",";
+
+        for ( AnalyticsTableColumn col : values )
+        {
+            sql += col.getAlias() + ",";
+        }
+
+        sql = TextUtils.removeLastComma( sql ) + " " +
+            "from " + sourceTableName + " " +
+            "where value is not null " +
+            "group by " + dimensions;
+
+        populateAndLog( sql, partition.getTempTableName() );
+    }
+
     /**
      * Populates the given analytics table.
      *
@@ -377,6 +510,39 @@ public class JdbcAnalyticsTableManager
             new AnalyticsTableColumn( quote( "textvalue" ), "text", "textvalue" ) );
     }
 
+    private List<AnalyticsTableColumn> getRollupValueColumns()
+    {
+        final String dbl = statementBuilder.getDoubleColumnType();
+
+        return Lists.newArrayList(
+            new AnalyticsTableColumn( quote( "daysxvalue" ), dbl, "sum(daysxvalue)" ),
+            new AnalyticsTableColumn( quote( "daysno" ), "integer not null", "sum(daysno)" ),
+            new AnalyticsTableColumn( quote( "value" ), dbl, "sum(value)" ) );
+    }
+
+    /**
+     * Indicates whether the given dimension column is included in the rollup
+     * table for the given organisation unit level and period type.
+     */
+    private boolean isRollupColumn( AnalyticsTableColumn column, int level, PeriodType rollupPeriodType )
+    {
+        String name = column.getName().replace( statementBuilder.getColumnQuote(), StringUtils.EMPTY );
+
+        if ( ROLLUP_EXCLUDED_COLUMNS.contains( name ) || column.getAlias().startsWith( "ougs." ) )
+        {
+            return false;
+        }
+
+        if ( name.startsWith( PREFIX_ORGUNITLEVEL ) )
+        {
+            return Integer.valueOf( name.substring( PREFIX_ORGUNITLEVEL.length() ) ) <= level;
+        }
+
+        PeriodType periodType = PeriodType.getByNameIgnoreCase( name );
+
+        return periodType == null || RollupUtils.isRollupPeriodType( periodType, rollupPeriodType );
+    }
+
     private List<Integer> getDataYears( Date earliest )
     {
         String sql =
@@ -459,6 +625,32 @@ public class JdbcAnalyticsTableManager
      * Indicates whether the system should ignore data which has not been approved
      * in analytics tables.
      */
+    /**
+     * Returns the name of the first dimension table with meta-data added,
+     * updated or deleted since the given date, or null if there is none.
+     */
+    private String getDimensionTableUpdatedSince( Date lastUpdated )
+    {
+        final String date = DateUtils.getLongDateString( lastUpdated );
+
+        for ( String table : DIMENSION_TABLES )
+        {
+            final String sql = "select 1 from " + table + " where lastupdated >= '" + date + "' limit 1";
+
+            if ( jdbcTemplate.queryForRowSet( sql ).next() )
+            {
+                return table;
+            }
+        }
+
+        final String sql =
+            "select 1 from deletedobject " +
+            "where klass in (" + getQuotedCommaDelimitedString( DIMENSION_CLASSES ) + ") " +
+            "and deleted_at >= '" + date + "' limit 1";
+
+        return jdbcTemplate.queryForRowSet( sql ).next() ? "deletedobject" : null;
+    }
+
     private boolean isApprovalEnabled( Integer year )
     {
         boolean setting = systemSettingManager.hideUnapprovedDataInAnalytics();
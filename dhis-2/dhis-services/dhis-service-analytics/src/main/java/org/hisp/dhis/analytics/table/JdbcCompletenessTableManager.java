@@ -95,7 +95,7 @@ public class JdbcCompletenessTableManager
     }
     
     @Override
-    protected void populateTable( AnalyticsTablePartition partition )
+    public void populateTable( AnalyticsTablePartition partition )
     {
         final String start = DateUtils.getMediumDateString( partition.getStartDate() );
         final String end = DateUtils.getMediumDateString( partition.getEndDate() );
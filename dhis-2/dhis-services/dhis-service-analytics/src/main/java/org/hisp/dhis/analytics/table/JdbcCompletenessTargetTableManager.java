@@ -91,7 +91,7 @@ public class JdbcCompletenessTargetTableManager
     }
     
     @Override
-    protected void populateTable( AnalyticsTablePartition partition )
+    public void populateTable( AnalyticsTablePartition partition )
     {
         final String tableName = partition.getTempTableName();
 
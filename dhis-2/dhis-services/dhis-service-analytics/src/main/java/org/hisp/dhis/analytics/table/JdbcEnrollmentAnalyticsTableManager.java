@@ -98,7 +98,7 @@ public class JdbcEnrollmentAnalyticsTableManager
     }
     
     @Override
-    protected void populateTable( AnalyticsTablePartition partition )
+    public void populateTable( AnalyticsTablePartition partition )
     {
         final Program program = partition.getMasterTable().getProgram();
         final String tableName = partition.getTempTableName();
@@ -28,6 +28,8 @@ package org.hisp.dhis.analytics.table;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static org.hisp.dhis.common.IdentifiableObjectUtils.getIdentifiers;
+import static org.hisp.dhis.commons.util.TextUtils.getCommaDelimitedString;
 import static org.hisp.dhis.system.util.MathUtils.NUMERIC_LENIENT_REGEXP;
 
 import java.util.ArrayList;
@@ -59,12 +61,21 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 /**
+ * Manager for event analytics tables. Data element values and tracked entity
+ * attribute values are populated from pivot tables, which read the values of
+ * all events of a partition in one scan and group them into one row per event
+ * and tracked entity instance respectively, with one column per data element
+ * and attribute.
+ *
  * @author Lars Helge Overland
  */
 public class JdbcEventAnalyticsTableManager
     extends AbstractEventJdbcTableManager
 {
     private static final ImmutableSet<ValueType> NO_INDEX_VAL_TYPES = ImmutableSet.of( ValueType.TEXT, ValueType.LONG_TEXT );
+
+    private static final String DATA_VALUE_PIVOT = "tdv";
+    private static final String ATTRIBUTE_VALUE_PIVOT = "tav";
     
     @Override
     public AnalyticsTableType getAnalyticsTableType()
@@ -121,7 +132,7 @@ public class JdbcEventAnalyticsTableManager
     }
     
     @Override
-    protected void populateTable( AnalyticsTablePartition partition )
+    public void populateTable( AnalyticsTablePartition partition )
     {
         final Program program = partition.getMasterTable().getProgram();
         final String start = DateUtils.getMediumDateString( partition.getStartDate() );
@@ -160,7 +171,21 @@ public class JdbcEventAnalyticsTableManager
             "left join _organisationunitgroupsetstructure ougs on psi.organisationunitid=ougs.organisationunitid " +
                 "and (psi.executiondate >= ougs.startdate or ougs.startdate is null) and (psi.executiondate <= ougs.enddate or ougs.enddate is null) " +
             "inner join _categorystructure acs on psi.attributeoptioncomboid=acs.categoryoptioncomboid " +
-            "left join _dateperiodstructure dps on " + psiExecutionDate + "=dps.dateperiod " +
+            "left join _dateperiodstructure dps on " + psiExecutionDate + "=dps.dateperiod ";
+
+        if ( !program.getDataElements().isEmpty() )
+        {
+            sql += "left join " + getDataValuePivot( program, start, end ) + " " +
+                "on psi.programstageinstanceid=" + DATA_VALUE_PIVOT + ".programstageinstanceid ";
+        }
+
+        if ( !program.getNonConfidentialTrackedEntityAttributes().isEmpty() )
+        {
+            sql += "left join " + getAttributeValuePivot( program, start, end ) + " " +
+                "on pi.trackedentityinstanceid=" + ATTRIBUTE_VALUE_PIVOT + ".trackedentityinstanceid ";
+        }
+
+        sql +=
             "where psi.executiondate >= '" + start + "' " + 
             "and psi.executiondate < '" + end + "' " +
             "and pr.programid=" + program.getId() + " " + 
@@ -171,13 +196,96 @@ public class JdbcEventAnalyticsTableManager
         populateAndLog( sql, tableName );
     }
 
+    /**
+     * Returns a sub query which pivots the data values of the events of the
+     * given program and period into one row per event, with one text column
+     * per data element named by the data element identifier. Values which do
+     * not match the value type of the data element are left out.
+     */
+    private String getDataValuePivot( Program program, String start, String end )
+    {
+        String sql = "(select programstageinstanceid, ";
+
+        for ( DataElement dataElement : program.getDataElements() )
+        {
+            sql += "max(case when dataelementid=" + dataElement.getId() + getValueClause( dataElement.getValueType() ) +
+                " then value end) as " + quote( dataElement.getUid() ) + ",";
+        }
+
+        sql = TextUtils.removeLastComma( sql ) + " " +
+            "from trackedentitydatavalue " +
+            "where dataelementid in (" + getCommaDelimitedString( getIdentifiers( program.getDataElements() ) ) + ") " +
+            "and programstageinstanceid in (" + getEventSubQuery( program, start, end, "psi.programstageinstanceid" ) + ") " +
+            "group by programstageinstanceid) as " + DATA_VALUE_PIVOT;
+
+        return sql;
+    }
+
+    /**
+     * Returns a sub query which pivots the attribute values of the tracked
+     * entity instances with events of the given program and period into one
+     * row per tracked entity instance, with one text column per attribute
+     * named by the attribute identifier. Values which do not match the value
+     * type of the attribute are left out.
+     */
+    private String getAttributeValuePivot( Program program, String start, String end )
+    {
+        List<TrackedEntityAttribute> attributes = program.getNonConfidentialTrackedEntityAttributes();
+
+        String sql = "(select trackedentityinstanceid, ";
+
+        for ( TrackedEntityAttribute attribute : attributes )
+        {
+            sql += "max(case when trackedentityattributeid=" + attribute.getId() + getValueClause( attribute.getValueType() ) +
+                " then value end) as " + quote( attribute.getUid() ) + ",";
+        }
+
+        sql = TextUtils.removeLastComma( sql ) + " " +
+            "from trackedentityattributevalue " +
+            "where trackedentityattributeid in (" + getCommaDelimitedString( getIdentifiers( attributes ) ) + ") " +
+            "and trackedentityinstanceid in (" + getEventSubQuery( program, start, end, "pi.trackedentityinstanceid" ) + ") " +
+            "group by trackedentityinstanceid) as " + ATTRIBUTE_VALUE_PIVOT;
+
+        return sql;
+    }
+
+    /**
+     * Returns a query selecting the given column for the events of the given
+     * program and period.
+     */
+    private String getEventSubQuery( Program program, String start, String end, String column )
+    {
+        return "select " + column + " " +
+            "from programstageinstance psi " +
+            "inner join programinstance pi on psi.programinstanceid=pi.programinstanceid " +
+            "where pi.programid=" + program.getId() + " " +
+            "and psi.executiondate >= '" + start + "' " +
+            "and psi.executiondate < '" + end + "' " +
+            "and psi.deleted is false";
+    }
+
+    /**
+     * Returns a clause which restricts values to the format of the given value
+     * type, or an empty string if no restriction applies.
+     */
+    private String getValueClause( ValueType valueType )
+    {
+        if ( valueType.isNumeric() )
+        {
+            return " and value " + statementBuilder.getRegexpMatch() + " '" + NUMERIC_LENIENT_REGEXP + "'";
+        }
+        else if ( valueType.isDate() )
+        {
+            return " and value " + statementBuilder.getRegexpMatch() + " '" + DATE_REGEXP + "'";
+        }
+
+        return "";
+    }
+
     private List<AnalyticsTableColumn> getDimensionColumns( Program program )
     {
         final String dbl = statementBuilder.getDoubleColumnType();
-        final String numericClause = " and value " + statementBuilder.getRegexpMatch() + " '" + NUMERIC_LENIENT_REGEXP + "'";
-        final String dateClause = " and value " + statementBuilder.getRegexpMatch() + " '" + DATE_REGEXP + "'";
-        
-        //TODO dateClause regular expression
+        final String numericClause = getValueClause( ValueType.NUMBER );
 
         List<AnalyticsTableColumn> columns = new ArrayList<>();
 
@@ -228,12 +336,10 @@ public class JdbcEventAnalyticsTableManager
         for ( DataElement dataElement : program.getDataElements() )
         {
             String dataType = getColumnType( dataElement.getValueType() );
-            String dataClause = dataElement.isNumericType() ? numericClause : dataElement.getValueType().isDate() ? dateClause : "";
-            String select = getSelectClause( dataElement.getValueType() );
+            String select = getSelectClause( dataElement.getValueType(), DATA_VALUE_PIVOT + "." + quote( dataElement.getUid() ) );
             boolean skipIndex = NO_INDEX_VAL_TYPES.contains( dataElement.getValueType() ) && !dataElement.hasOptionSet();
 
-            String sql = "(select " + select + " from trackedentitydatavalue where programstageinstanceid=psi.programstageinstanceid " +
-                "and dataelementid=" + dataElement.getId() + dataClause + ") as " + quote( dataElement.getUid() );
+            String sql = select + " as " + quote( dataElement.getUid() );
 
             columns.add( new AnalyticsTableColumn( quote( dataElement.getUid() ), dataType, sql, skipIndex ) );
         }
@@ -244,6 +350,14 @@ public class JdbcEventAnalyticsTableManager
             {
                 String column = quote(
                     dataElement.getUid() + PartitionUtils.SEP + legendSet.getUid() );
+
+                if ( dataElement.isNumericType() )
+                {
+                    columns.add( new AnalyticsTableColumn( column, "character(11)", getLegendSubQuery( legendSet,
+                        getSelectClause( dataElement.getValueType(), DATA_VALUE_PIVOT + "." + quote( dataElement.getUid() ) ), column ) ) );
+                    continue;
+                }
+
                 String select = getSelectClause( dataElement.getValueType() );
 
                 String sql =
@@ -261,12 +375,10 @@ public class JdbcEventAnalyticsTableManager
         for ( TrackedEntityAttribute attribute : program.getNonConfidentialTrackedEntityAttributes() )
         {
             String dataType = getColumnType( attribute.getValueType() );
-            String dataClause = attribute.isNumericType() ? numericClause : attribute.isDateType() ? dateClause : "";
-            String select = getSelectClause( attribute.getValueType() );
+            String select = getSelectClause( attribute.getValueType(), ATTRIBUTE_VALUE_PIVOT + "." + quote( attribute.getUid() ) );
             boolean skipIndex = NO_INDEX_VAL_TYPES.contains( attribute.getValueType() ) && !attribute.hasOptionSet();
 
-            String sql = "(select " + select + " from trackedentityattributevalue where trackedentityinstanceid=pi.trackedentityinstanceid " + 
-                "and trackedentityattributeid=" + attribute.getId() + dataClause + ") as " + quote( attribute.getUid() );
+            String sql = select + " as " + quote( attribute.getUid() );
 
             columns.add( new AnalyticsTableColumn( quote( attribute.getUid() ), dataType, sql, skipIndex ) );
         }
@@ -276,6 +388,14 @@ public class JdbcEventAnalyticsTableManager
             for ( LegendSet legendSet : attribute.getLegendSets() )
             {
                 String column = quote( attribute.getUid() + PartitionUtils.SEP + legendSet.getUid() );
+
+                if ( attribute.isNumericType() )
+                {
+                    columns.add( new AnalyticsTableColumn( column, "character(11)", getLegendSubQuery( legendSet,
+                        getSelectClause( attribute.getValueType(), ATTRIBUTE_VALUE_PIVOT + "." + quote( attribute.getUid() ) ), column ) ) );
+                    continue;
+                }
+
                 String select = getSelectClause( attribute.getValueType() );
 
                 String sql =
@@ -321,6 +441,18 @@ public class JdbcEventAnalyticsTableManager
         return filterDimensionColumns( columns );
     }
 
+    /**
+     * Returns a sub query selecting the legend of the given legend set which
+     * the given numeric value falls within.
+     */
+    private String getLegendSubQuery( LegendSet legendSet, String value, String column )
+    {
+        return "(select l.uid from maplegend l " +
+            "where l.startvalue <= " + value + " " +
+            "and l.endvalue > " + value + " " +
+            "and l.maplegendsetid=" + legendSet.getId() + ") as " + column;
+    }
+
     private List<Integer> getDataYears( Program program, Date earliest )
     {
         String sql = 
@@ -88,7 +88,7 @@ public class JdbcOrgUnitTargetTableManager
     }
         
     @Override
-    protected void populateTable( AnalyticsTablePartition partition )
+    public void populateTable( AnalyticsTablePartition partition )
     {
         final String tableName = partition.getTempTableName();
 
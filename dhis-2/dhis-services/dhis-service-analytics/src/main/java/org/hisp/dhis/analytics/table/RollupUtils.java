@@ -0,0 +1,268 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.analytics.AggregationType.AVERAGE;
+import static org.hisp.dhis.analytics.AggregationType.SUM;
+import static org.hisp.dhis.analytics.DataQueryParams.LEVEL_PREFIX;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.DataType;
+import org.hisp.dhis.common.DimensionType;
+import org.hisp.dhis.common.DimensionalObject;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.PeriodType;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/**
+ * Utilities for analytics rollup tables. A rollup table holds the numeric data
+ * values of the analytics table pre-aggregated to an organisation unit level,
+ * where the columns for organisation units below the level, organisation unit
+ * group sets and periods shorter than the rollup period type are removed.
+ *
+ * @author agent
+ */
+public class RollupUtils
+{
+    private static final Log log = LogFactory.getLog( RollupUtils.class );
+
+    public static final String ROLLUP_SEP = "_rollup_l";
+
+    /**
+     * Dimension types which are stored in rollup tables. Organisation unit
+     * and period dimensions are stored up to the rollup level and period type.
+     */
+    private static final Set<DimensionType> ROLLUP_DIMENSION_TYPES = ImmutableSet.of(
+        DimensionType.DATA_X, DimensionType.CATEGORY_OPTION_COMBO, DimensionType.ATTRIBUTE_OPTION_COMBO,
+        DimensionType.DATA_ELEMENT_GROUP_SET, DimensionType.CATEGORY_OPTION_GROUP_SET, DimensionType.CATEGORY );
+
+    /**
+     * Returns the configured rollup organisation unit levels in ascending order.
+     * Returns an empty list if rollup tables are not enabled. Levels which are
+     * not positive numbers are ignored with a warning.
+     *
+     * @param config the {@link DhisConfigurationProvider}.
+     */
+    public static List<Integer> getRollupLevels( DhisConfigurationProvider config )
+    {
+        String levels = config.getProperty( ConfigurationKey.ANALYTICS_ROLLUP_LEVELS );
+
+        Set<Integer> rollupLevels = new TreeSet<>();
+
+        for ( String level : StringUtils.split( StringUtils.trimToEmpty( levels ), ',' ) )
+        {
+            String value = level.trim();
+
+            if ( StringUtils.isNumeric( value ) && Integer.parseInt( value ) > 0 )
+            {
+                rollupLevels.add( Integer.valueOf( value ) );
+            }
+            else
+            {
+                log.warn( String.format( "Ignoring invalid rollup level for %s: '%s'",
+                    ConfigurationKey.ANALYTICS_ROLLUP_LEVELS.getKey(), value ) );
+            }
+        }
+
+        return Lists.newArrayList( rollupLevels );
+    }
+
+    /**
+     * Returns the configured rollup period type. Defaults to monthly if the
+     * configured period type is not valid.
+     *
+     * @param config the {@link DhisConfigurationProvider}.
+     */
+    public static PeriodType getRollupPeriodType( DhisConfigurationProvider config )
+    {
+        PeriodType periodType = PeriodType.getByNameIgnoreCase( config.getProperty( ConfigurationKey.ANALYTICS_ROLLUP_PERIOD_TYPE ) );
+
+        return periodType != null ? periodType : new MonthlyPeriodType();
+    }
+
+    /**
+     * Returns the name of the rollup table for the given analytics table and
+     * organisation unit level.
+     *
+     * @param baseName the base name of the analytics table.
+     * @param level the organisation unit level.
+     */
+    public static String getRollupTableName( String baseName, int level )
+    {
+        return baseName + ROLLUP_SEP + level;
+    }
+
+    /**
+     * Indicates whether the table with the given base name is a rollup table.
+     *
+     * @param baseName the base name of the table.
+     */
+    public static boolean isRollupTable( String baseName )
+    {
+        return baseName != null && baseName.contains( ROLLUP_SEP );
+    }
+
+    /**
+     * Indicates whether the given period type is stored in rollup tables with
+     * the given rollup period type, which is the case if the period type is
+     * equal to or longer than the rollup period type.
+     *
+     * @param periodType the {@link PeriodType}.
+     * @param rollupPeriodType the rollup {@link PeriodType}.
+     */
+    public static boolean isRollupPeriodType( PeriodType periodType, PeriodType rollupPeriodType )
+    {
+        return periodType.getFrequencyOrder() >= rollupPeriodType.getFrequencyOrder();
+    }
+
+    /**
+     * Returns the lowest of the given rollup levels for which the rollup table
+     * can serve the given query, meaning the table holds all dimensions, filters
+     * and data approval levels of the query and the aggregation of the query
+     * can be computed from pre-aggregated values. Returns null if no rollup
+     * table can serve the query.
+     *
+     * @param params the {@link DataQueryParams}.
+     * @param rollupLevels the rollup levels in ascending order.
+     * @param rollupPeriodType the rollup {@link PeriodType}.
+     */
+    public static Integer getRollupLevel( DataQueryParams params, List<Integer> rollupLevels, PeriodType rollupPeriodType )
+    {
+        if ( rollupLevels.isEmpty() || !isRollupAggregation( params ) )
+        {
+            return null;
+        }
+
+        int level = 0;
+
+        for ( DimensionalObject dimension : params.getDimensionsAndFilters() )
+        {
+            DimensionType type = dimension.getDimensionType();
+
+            if ( DimensionType.ORGANISATION_UNIT == type )
+            {
+                Integer orgUnitLevel = getOrgUnitLevel( dimension.getDimensionName() );
+
+                if ( orgUnitLevel == null )
+                {
+                    return null;
+                }
+
+                level = Math.max( level, orgUnitLevel );
+            }
+            else if ( DimensionType.PERIOD == type )
+            {
+                PeriodType periodType = PeriodType.getByNameIgnoreCase( dimension.getDimensionName() );
+
+                if ( periodType == null || !isRollupPeriodType( periodType, rollupPeriodType ) )
+                {
+                    return null;
+                }
+            }
+            else if ( !ROLLUP_DIMENSION_TYPES.contains( type ) )
+            {
+                return null;
+            }
+        }
+
+        if ( params.isDataApproval() )
+        {
+            for ( OrganisationUnit unit : params.getDataApprovalLevels().keySet() )
+            {
+                level = Math.max( level, unit.getLevel() );
+            }
+        }
+
+        final int minLevel = level;
+
+        return rollupLevels.stream()
+            .filter( rollupLevel -> rollupLevel >= minLevel )
+            .findFirst()
+            .orElse( null );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the aggregation of the given query can be computed
+     * from values which are pre-aggregated by sum, which is the case for
+     * sum aggregation of numeric and boolean values and average aggregation
+     * of boolean values, as long as the query is not restricted by start and
+     * end dates, timeliness or pre-aggregate measure criteria.
+     */
+    private static boolean isRollupAggregation( DataQueryParams params )
+    {
+        AnalyticsAggregationType aggType = params.getAggregationType();
+
+        if ( aggType == null || !params.isAggregation() || aggType.isLastPeriodAggregationType() ||
+            params.hasStartEndDate() || params.isTimely() || params.hasPreAggregateMeasureCriteria() )
+        {
+            return false;
+        }
+
+        boolean sum = aggType.isAggregationType( SUM ) &&
+            ( DataType.NUMERIC == params.getDataType() || DataType.BOOLEAN == params.getDataType() );
+
+        boolean booleanAverage = aggType.isAggregationType( AVERAGE ) && aggType.isBooleanDataType() &&
+            DataType.BOOLEAN == params.getDataType();
+
+        return sum || booleanAverage;
+    }
+
+    /**
+     * Returns the organisation unit level of the given organisation unit
+     * level column name, or null if the name is not a level column name.
+     */
+    private static Integer getOrgUnitLevel( String dimensionName )
+    {
+        if ( dimensionName == null || !dimensionName.startsWith( LEVEL_PREFIX ) )
+        {
+            return null;
+        }
+
+        String level = dimensionName.substring( LEVEL_PREFIX.length() );
+
+        return StringUtils.isNumeric( level ) ? Integer.valueOf( level ) : null;
+    }
+}
@@ -65,6 +65,7 @@ public class AnalyticsTableJob
             .withJobId( jobConfiguration )
             .withSkipTableTypes( parameters.getSkipTableTypes() )
             .withSkipResourceTables( parameters.isSkipResourceTables() )
+            .withPartialUpdate( parameters.isPartialUpdate() )
             .build();
 
         analyticsTableGenerator.generateTables( params );
@@ -541,4 +541,37 @@ public class DataQueryParamsTest
         
         assertEquals( expected, params.getProgramsInAttributesAndDataElements() );        
     }
+    
+    @Test
+    public void testGetKey()
+    {
+        DataQueryParams paramsA = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA, deB ) )
+            .withOrganisationUnits( Lists.newArrayList( ouA, ouB ) )
+            .withFilterPeriods( Lists.newArrayList( peA, peB ) )
+            .build();
+
+        DataQueryParams paramsB = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deB, deA ) )
+            .withOrganisationUnits( Lists.newArrayList( ouB, ouA ) )
+            .withFilterPeriods( Lists.newArrayList( peB, peA ) )
+            .build();
+
+        DataQueryParams paramsC = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA, deB ) )
+            .withOrganisationUnits( Lists.newArrayList( ouA ) )
+            .withFilterPeriods( Lists.newArrayList( peA, peB ) )
+            .build();
+
+        DataQueryParams paramsD = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA, deB ) )
+            .withOrganisationUnits( Lists.newArrayList( ouA, ouB ) )
+            .withFilterPeriods( Lists.newArrayList( peA, peB ) )
+            .withAggregationType( AnalyticsAggregationType.AVERAGE )
+            .build();
+
+        assertEquals( paramsA.getKey(), paramsB.getKey() );
+        assertNotEquals( paramsA.getKey(), paramsC.getKey() );
+        assertNotEquals( paramsA.getKey(), paramsD.getKey() );
+    }
 }
@@ -0,0 +1,158 @@
+package org.hisp.dhis.analytics.data;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.DataQueryGroups;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.QueryPlannerParams;
+import org.hisp.dhis.analytics.QueryValidator;
+import org.hisp.dhis.analytics.partition.PartitionManager;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class DefaultQueryPlannerRollupTest
+    extends DhisConvenienceTest
+{
+    private static final String TABLE_NAME = AnalyticsTableType.DATA_VALUE.getTableName();
+
+    @Mock
+    private QueryValidator queryValidator;
+
+    @Mock
+    private PartitionManager partitionManager;
+
+    @Mock
+    private DhisConfigurationProvider config;
+
+    @InjectMocks
+    private DefaultQueryPlanner queryPlanner;
+
+    private DataElement deA;
+
+    private OrganisationUnit ouA;
+
+    private OrganisationUnit ouB;
+
+    private OrganisationUnit ouC;
+
+    @Before
+    public void before()
+    {
+        deA = createDataElement( 'A' );
+
+        ouA = createOrganisationUnit( 'A' );
+        ouB = createOrganisationUnit( 'B', ouA );
+        ouC = createOrganisationUnit( 'C', ouB );
+
+        ouA.getPath();
+        ouB.getPath();
+        ouC.getPath();
+
+        when( config.getProperty( ConfigurationKey.ANALYTICS_ROLLUP_LEVELS ) ).thenReturn( "2, x, 1, 0" );
+        when( config.getProperty( ConfigurationKey.ANALYTICS_ROLLUP_PERIOD_TYPE ) ).thenReturn( "Monthly" );
+        when( partitionManager.getDataValueAnalyticsPartitions() ).thenReturn(
+            Sets.newHashSet( TABLE_NAME + "_rollup_l1", TABLE_NAME + "_rollup_l2" ) );
+
+        queryPlanner.init();
+    }
+
+    @Test
+    public void testRouteToRollupTable()
+    {
+        assertTableNames( planQuery( ouA, "2000Q1" ), TABLE_NAME + "_rollup_l1" );
+        assertTableNames( planQuery( ouB, "200001" ), TABLE_NAME + "_rollup_l2" );
+    }
+
+    @Test
+    public void testRouteToAnalyticsTable()
+    {
+        assertTableNames( planQuery( ouC, "2000Q1" ), TABLE_NAME );
+        assertTableNames( planQuery( ouA, "2000W1" ), TABLE_NAME );
+    }
+
+    @Test
+    public void testRouteToExistingRollupTable()
+    {
+        when( partitionManager.getDataValueAnalyticsPartitions() ).thenReturn( Sets.newHashSet( TABLE_NAME + "_rollup_l1" ) );
+
+        assertTableNames( planQuery( ouA, "2000Q1" ), TABLE_NAME + "_rollup_l1" );
+        assertTableNames( planQuery( ouB, "2000Q1" ), TABLE_NAME );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private DataQueryGroups planQuery( OrganisationUnit orgUnit, String isoPeriod )
+    {
+        DataQueryParams params = DataQueryParams.newBuilder()
+            .withDataElements( Lists.newArrayList( deA ) )
+            .withOrganisationUnits( Lists.newArrayList( orgUnit ) )
+            .withPeriods( Lists.newArrayList( createPeriod( isoPeriod ) ) ).build();
+
+        QueryPlannerParams plannerParams = QueryPlannerParams.newBuilder()
+            .withOptimalQueries( 4 ).withTableName( TABLE_NAME ).build();
+
+        return queryPlanner.planQuery( params, plannerParams );
+    }
+
+    private void assertTableNames( DataQueryGroups queryGroups, String tableName )
+    {
+        List<DataQueryParams> queries = queryGroups.getAllQueries();
+
+        assertFalse( queries.isEmpty() );
+
+        for ( DataQueryParams query : queries )
+        {
+            assertEquals( tableName, query.getTableName() );
+        }
+    }
+}
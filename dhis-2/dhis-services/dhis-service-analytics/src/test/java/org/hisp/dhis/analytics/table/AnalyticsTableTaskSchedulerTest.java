@@ -0,0 +1,182 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.analytics.AnalyticsIndex;
+import org.hisp.dhis.analytics.AnalyticsTable;
+import org.hisp.dhis.analytics.AnalyticsTableColumn;
+import org.hisp.dhis.analytics.AnalyticsTableManager;
+import org.hisp.dhis.analytics.AnalyticsTablePartition;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.system.notification.Notifier;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author agent
+ */
+public class AnalyticsTableTaskSchedulerTest
+{
+    private AnalyticsTableManager tableManager;
+
+    private Notifier notifier;
+
+    private List<String> events;
+
+    private List<Thread> notifyThreads;
+
+    private List<AnalyticsTablePartition> partitions;
+
+    @Before
+    public void before()
+    {
+        events = Collections.synchronizedList( Lists.newArrayList() );
+        notifyThreads = Collections.synchronizedList( Lists.newArrayList() );
+
+        tableManager = mock( AnalyticsTableManager.class );
+
+        doAnswer( invocation -> events.add( "populate:" + ( (AnalyticsTablePartition) invocation.getArguments()[0] ).getTempTableName() ) )
+            .when( tableManager ).populateTable( any( AnalyticsTablePartition.class ) );
+        doAnswer( invocation -> events.add( "index:" + ( (AnalyticsIndex) invocation.getArguments()[0] ).getTable() ) )
+            .when( tableManager ).createIndex( any( AnalyticsIndex.class ) );
+        doAnswer( invocation -> events.add( "analyze:" + invocation.getArguments()[0] ) )
+            .when( tableManager ).analyzeTable( anyString() );
+
+        notifier = mock( Notifier.class );
+
+        doAnswer( invocation -> {
+            notifyThreads.add( Thread.currentThread() );
+            return notifier;
+        } ).when( notifier ).notify( any( JobConfiguration.class ), anyString() );
+
+        AnalyticsTable table = new AnalyticsTable( "analytics", Lists.newArrayList(
+            new AnalyticsTableColumn( "\"dx\"", "character(11)", "dx" ),
+            new AnalyticsTableColumn( "\"ou\"", "character(11)", "ou" ),
+            new AnalyticsTableColumn( "\"value\"", "text", "value", true ) ), Lists.newArrayList() );
+
+        for ( int year = 2015; year <= 2018; year++ )
+        {
+            table.addPartitionTable( year, new DateTime( year, 1, 1, 0, 0 ).toDate(), new DateTime( year + 1, 1, 1, 0, 0 ).toDate() );
+        }
+
+        partitions = table.getPartitionTables();
+    }
+
+    @Test
+    public void testRun()
+    {
+        try ( AnalyticsTableTaskScheduler scheduler = new AnalyticsTableTaskScheduler( tableManager, notifier, null, 2, 3, 2 ) )
+        {
+            scheduler.run( partitions, null );
+        }
+
+        assertEquals( partitions.size() * 4, events.size() );
+
+        for ( AnalyticsTablePartition partition : partitions )
+        {
+            String table = partition.getTempTableName();
+
+            int populated = events.indexOf( "populate:" + table );
+            int firstIndexed = events.indexOf( "index:" + table );
+            int lastIndexed = events.lastIndexOf( "index:" + table );
+            int analyzed = events.indexOf( "analyze:" + table );
+
+            assertTrue( populated >= 0 );
+            assertTrue( firstIndexed > populated );
+            assertTrue( lastIndexed > firstIndexed );
+            assertTrue( analyzed > lastIndexed );
+        }
+
+        assertEquals( partitions.size() * 3, notifyThreads.size() );
+        notifyThreads.forEach( thread -> assertSame( Thread.currentThread(), thread ) );
+    }
+
+    @Test
+    public void testRunWithAfterPopulate()
+    {
+        try ( AnalyticsTableTaskScheduler scheduler = new AnalyticsTableTaskScheduler( tableManager, notifier, null, 2, 2, 2 ) )
+        {
+            scheduler.run( partitions, () -> events.add( "afterPopulate" ) );
+        }
+
+        int afterPopulate = events.indexOf( "afterPopulate" );
+
+        assertEquals( partitions.size(), afterPopulate );
+
+        for ( int i = 0; i < afterPopulate; i++ )
+        {
+            assertTrue( events.get( i ).startsWith( "populate:" ) );
+        }
+
+        notifyThreads.forEach( thread -> assertSame( Thread.currentThread(), thread ) );
+    }
+
+    @Test
+    public void testRunWithFailedPopulate()
+    {
+        String failedTable = partitions.get( 1 ).getTempTableName();
+
+        try ( AnalyticsTableTaskScheduler scheduler = new AnalyticsTableTaskScheduler( tableManager, notifier, null, 2, 2, 2 ) )
+        {
+            scheduler.run( partitions, partition -> {
+                if ( failedTable.equals( partition.getTempTableName() ) )
+                {
+                    throw new IllegalStateException( "Populate failed" );
+                }
+
+                tableManager.populateTable( partition );
+            }, null );
+
+            fail( "Expected exception" );
+        }
+        catch ( RuntimeException ex )
+        {
+            assertTrue( ex.getCause() instanceof IllegalStateException );
+        }
+
+        assertFalse( events.contains( "index:" + failedTable ) );
+        assertFalse( events.contains( "analyze:" + failedTable ) );
+        assertTrue( events.contains( "analyze:" + partitions.get( 0 ).getTempTableName() ) );
+    }
+}
@@ -99,4 +99,24 @@ public class AnalyticsTableTest
         
         assertEquals( 1, uniqueList.size() );
     }
+    
+    @Test
+    public void testRetainPartitionTables()
+    {
+        Period periodA = new YearlyPeriodType().createPeriod( new DateTime( 2014, 1, 1, 0, 0 ).toDate() );
+        Period periodB = new YearlyPeriodType().createPeriod( new DateTime( 2015, 1, 1, 0, 0 ).toDate() );
+        Period periodC = new YearlyPeriodType().createPeriod( new DateTime( 2016, 1, 1, 0, 0 ).toDate() );
+        
+        AnalyticsTable tableA = new AnalyticsTable( "analytics", Lists.newArrayList(), Lists.newArrayList() );
+        
+        tableA.addPartitionTable( 2014, periodA.getStartDate(), periodA.getEndDate() );
+        tableA.addPartitionTable( 2015, periodB.getStartDate(), periodB.getEndDate() );
+        tableA.addPartitionTable( 2016, periodC.getStartDate(), periodC.getEndDate() );
+        
+        tableA.retainPartitionTables( Lists.newArrayList( 2015, 2016, 2017 ) );
+        
+        assertEquals( 2, tableA.getPartitionTables().size() );
+        assertEquals( "analytics_2015", tableA.getPartitionTables().get( 0 ).getTableName() );
+        assertEquals( "analytics_2016", tableA.getPartitionTables().get( 1 ).getTableName() );
+    }
 }
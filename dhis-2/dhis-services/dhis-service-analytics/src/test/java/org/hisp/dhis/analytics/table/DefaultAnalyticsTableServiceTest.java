@@ -0,0 +1,289 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.analytics.AnalyticsCache;
+import org.hisp.dhis.analytics.AnalyticsTable;
+import org.hisp.dhis.analytics.AnalyticsTableColumn;
+import org.hisp.dhis.analytics.AnalyticsTableHookService;
+import org.hisp.dhis.analytics.AnalyticsTableManager;
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.AnalyticsTableUpdateParams;
+import org.hisp.dhis.analytics.partition.PartitionManager;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.resourcetable.ResourceTableService;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.notification.Notifier;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the selection of tables and partitions for partial updates of
+ * analytics tables.
+ *
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class DefaultAnalyticsTableServiceTest
+{
+    @Mock
+    private AnalyticsTableManager tableManager;
+
+    @Mock
+    private OrganisationUnitService organisationUnitService;
+
+    @Mock
+    private DataElementService dataElementService;
+
+    @Mock
+    private ResourceTableService resourceTableService;
+
+    @Mock
+    private Notifier notifier;
+
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Mock
+    private AnalyticsCache analyticsCache;
+
+    @Mock
+    private AnalyticsTableHookService tableHookService;
+
+    @Mock
+    private DhisConfigurationProvider config;
+
+    @Mock
+    private PartitionManager partitionManager;
+
+    @InjectMocks
+    private DefaultAnalyticsTableService tableService;
+
+    private AnalyticsTable table;
+
+    private Date lastUpdate = new DateTime( 2018, 1, 1, 0, 0 ).toDate();
+
+    @Before
+    public void before()
+    {
+        table = createTable( "analytics", 2016, 2017, 2018 );
+
+        when( tableManager.getAnalyticsTableType() ).thenReturn( AnalyticsTableType.DATA_VALUE );
+        when( tableManager.getAnalyticsTables( any() ) ).thenReturn( Lists.newArrayList( table ) );
+    }
+
+    @Test
+    public void testPartialUpdate()
+    {
+        setLastUpdate( lastUpdate );
+        when( tableManager.getDataYearsUpdatedSince( lastUpdate ) ).thenReturn( Lists.newArrayList( 2017 ) );
+        when( tableManager.hasEqualColumns( table ) ).thenReturn( true );
+
+        tableService.update( getPartialUpdateParams() );
+
+        verify( tableManager ).createTable( table, true );
+        verify( tableManager ).swapTable( table, true );
+        assertEquals( Lists.newArrayList( 2017 ), getYears( table ) );
+    }
+
+    @Test
+    public void testPartialUpdateNoDataChanged()
+    {
+        setLastUpdate( lastUpdate );
+        when( tableManager.getDataYearsUpdatedSince( lastUpdate ) ).thenReturn( new ArrayList<>() );
+        when( tableManager.hasEqualColumns( table ) ).thenReturn( true );
+
+        tableService.update( getPartialUpdateParams() );
+
+        verify( tableManager, never() ).createTable( any(), anyBoolean() );
+        verify( tableManager, never() ).swapTable( any(), anyBoolean() );
+    }
+
+    @Test
+    public void testPartialUpdateNoLastUpdate()
+    {
+        tableService.update( getPartialUpdateParams() );
+
+        verify( tableManager, never() ).getDataYearsUpdatedSince( any() );
+        assertFullUpdate();
+    }
+
+    @Test
+    public void testPartialUpdateNotSupported()
+    {
+        setLastUpdate( lastUpdate );
+        when( tableManager.getDataYearsUpdatedSince( lastUpdate ) ).thenReturn( null );
+        when( tableManager.hasEqualColumns( table ) ).thenReturn( true );
+
+        tableService.update( getPartialUpdateParams() );
+
+        assertFullUpdate();
+    }
+
+    @Test
+    public void testPartialUpdateColumnsChanged()
+    {
+        setLastUpdate( lastUpdate );
+        when( tableManager.getDataYearsUpdatedSince( lastUpdate ) ).thenReturn( Lists.newArrayList( 2017 ) );
+        when( tableManager.hasEqualColumns( table ) ).thenReturn( false );
+
+        tableService.update( getPartialUpdateParams() );
+
+        assertFullUpdate();
+    }
+
+    @Test
+    public void testPartialUpdateWithRollupTables()
+    {
+        setLastUpdate( lastUpdate );
+        setRollupTables();
+        when( tableManager.getDataYearsUpdatedSince( lastUpdate ) ).thenReturn( Lists.newArrayList( 2017 ) );
+        when( tableManager.hasEqualColumns( any() ) ).thenReturn( true );
+
+        tableService.update( getPartialUpdateParams() );
+
+        ArgumentCaptor<AnalyticsTable> swapped = ArgumentCaptor.forClass( AnalyticsTable.class );
+
+        verify( tableManager, times( 2 ) ).swapTable( swapped.capture(), eq( true ) );
+        verify( tableManager, never() ).swapTable( any(), eq( false ) );
+
+        AnalyticsTable rollupTable = swapped.getAllValues().get( 1 );
+
+        assertEquals( "analytics_rollup_l2", rollupTable.getTableName() );
+        assertEquals( Lists.newArrayList( 2017 ), getYears( rollupTable ) );
+    }
+
+    @Test
+    public void testPartialUpdateRollupColumnsChanged()
+    {
+        setLastUpdate( lastUpdate );
+        setRollupTables();
+        when( tableManager.getDataYearsUpdatedSince( lastUpdate ) ).thenReturn( Lists.newArrayList( 2017 ) );
+        when( tableManager.hasEqualColumns( table ) ).thenReturn( true );
+
+        // Rollup master table does not exist or has other columns
+
+        tableService.update( getPartialUpdateParams() );
+
+        ArgumentCaptor<AnalyticsTable> swapped = ArgumentCaptor.forClass( AnalyticsTable.class );
+
+        verify( tableManager, times( 2 ) ).swapTable( swapped.capture(), eq( false ) );
+        verify( tableManager, never() ).swapTable( any(), eq( true ) );
+
+        AnalyticsTable rollupTable = swapped.getAllValues().get( 1 );
+
+        assertEquals( "analytics_rollup_l2", rollupTable.getTableName() );
+        assertEquals( Lists.newArrayList( 2016, 2017, 2018 ), getYears( rollupTable ) );
+        assertEquals( Lists.newArrayList( 2016, 2017, 2018 ), getYears( table ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns one level 2 rollup table for each analytics table, with the
+     * partitions of the analytics table, like the data value table manager.
+     */
+    @SuppressWarnings( "unchecked" )
+    private void setRollupTables()
+    {
+        when( tableManager.getRollupTables( any() ) ).thenAnswer( invocation -> {
+            List<AnalyticsTable> tables = (List<AnalyticsTable>) invocation.getArguments()[0];
+
+            return tables.stream()
+                .map( t -> createTable( "analytics_rollup_l2", getYears( t ).toArray( new Integer[0] ) ) )
+                .collect( Collectors.toList() );
+        } );
+    }
+
+    private AnalyticsTable createTable( String baseName, Integer... years )
+    {
+        List<AnalyticsTableColumn> dimensionColumns = Lists.newArrayList(
+            new AnalyticsTableColumn( "dx", "character(11) not null", "dx", true ) );
+        List<AnalyticsTableColumn> valueColumns = Lists.newArrayList(
+            new AnalyticsTableColumn( "value", "double precision", "value" ) );
+
+        AnalyticsTable analyticsTable = new AnalyticsTable( baseName, dimensionColumns, valueColumns );
+
+        for ( Integer year : years )
+        {
+            analyticsTable.addPartitionTable( year, new DateTime( year, 1, 1, 0, 0 ).toDate(), new DateTime( year, 12, 31, 0, 0 ).toDate() );
+        }
+
+        return analyticsTable;
+    }
+
+    private void setLastUpdate( Date date )
+    {
+        when( systemSettingManager.getSystemSetting( AnalyticsTableType.DATA_VALUE.getLastUpdateSettingName() ) ).thenReturn( date );
+    }
+
+    private AnalyticsTableUpdateParams getPartialUpdateParams()
+    {
+        return AnalyticsTableUpdateParams.newBuilder().withPartialUpdate( true ).build();
+    }
+
+    private List<Integer> getYears( AnalyticsTable analyticsTable )
+    {
+        return analyticsTable.getPartitionTables().stream()
+            .map( partition -> partition.getYear() )
+            .collect( Collectors.toList() );
+    }
+
+    private void assertFullUpdate()
+    {
+        verify( tableManager ).createTable( table, false );
+        verify( tableManager ).swapTable( table, false );
+        assertEquals( Lists.newArrayList( 2016, 2017, 2018 ), getYears( table ) );
+    }
+}
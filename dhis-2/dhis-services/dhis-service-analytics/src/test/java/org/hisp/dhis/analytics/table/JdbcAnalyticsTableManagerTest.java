@@ -0,0 +1,124 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.dataapproval.DataApprovalLevelService;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class JdbcAnalyticsTableManagerTest
+{
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Mock
+    private DataApprovalLevelService dataApprovalLevelService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private JdbcAnalyticsTableManager tableManager;
+
+    private Date lastUpdated = new DateTime( 2018, 1, 1, 0, 0 ).toDate();
+
+    @Before
+    public void before()
+    {
+        SqlRowSet emptyRowSet = mock( SqlRowSet.class );
+
+        when( jdbcTemplate.queryForRowSet( anyString() ) ).thenReturn( emptyRowSet );
+        when( jdbcTemplate.queryForList( contains( "from datavalue dv" ), eq( Integer.class ) ) ).thenReturn( Lists.newArrayList( 2017 ) );
+    }
+
+    @Test
+    public void testGetDataYearsUpdatedSince()
+    {
+        assertEquals( Lists.newArrayList( 2017 ), tableManager.getDataYearsUpdatedSince( lastUpdated ) );
+    }
+
+    @Test
+    public void testGetDataYearsUpdatedSinceOrgUnitChanged()
+    {
+        setChanged( "from organisationunit " );
+
+        assertNull( tableManager.getDataYearsUpdatedSince( lastUpdated ) );
+    }
+
+    @Test
+    public void testGetDataYearsUpdatedSinceGroupChanged()
+    {
+        setChanged( "from categoryoptiongroup " );
+
+        assertNull( tableManager.getDataYearsUpdatedSince( lastUpdated ) );
+    }
+
+    @Test
+    public void testGetDataYearsUpdatedSinceMetadataDeleted()
+    {
+        setChanged( "from deletedobject " );
+
+        assertNull( tableManager.getDataYearsUpdatedSince( lastUpdated ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private void setChanged( String sql )
+    {
+        SqlRowSet rowSet = mock( SqlRowSet.class );
+        when( rowSet.next() ).thenReturn( true );
+
+        when( jdbcTemplate.queryForRowSet( contains( sql ) ) ).thenReturn( rowSet );
+    }
+}
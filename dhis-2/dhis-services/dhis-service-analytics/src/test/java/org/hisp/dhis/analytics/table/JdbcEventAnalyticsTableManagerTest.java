@@ -0,0 +1,186 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.analytics.AnalyticsTable;
+import org.hisp.dhis.analytics.AnalyticsTablePartition;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementCategoryService;
+import org.hisp.dhis.jdbc.StatementBuilder;
+import org.hisp.dhis.jdbc.statementbuilder.PostgreSQLStatementBuilder;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.program.ProgramStage;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.database.DatabaseInfo;
+import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the SQL which populates event analytics tables, where data values
+ * and attribute values are read from pivot sub queries instead of one
+ * correlated sub query per column.
+ *
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class JdbcEventAnalyticsTableManagerTest
+    extends DhisConvenienceTest
+{
+    @Mock
+    private IdentifiableObjectManager idObjectManager;
+
+    @Mock
+    private OrganisationUnitService organisationUnitService;
+
+    @Mock
+    private DataElementCategoryService categoryService;
+
+    @Mock
+    private SystemSettingManager systemSettingManager;
+
+    @Mock
+    private DatabaseInfo databaseInfo;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private StatementBuilder statementBuilder = new PostgreSQLStatementBuilder();
+
+    @InjectMocks
+    private JdbcEventAnalyticsTableManager tableManager;
+
+    private DataElement deA;
+    private DataElement deB;
+    private TrackedEntityAttribute atA;
+    private TrackedEntityAttribute atB;
+
+    @Before
+    public void before()
+    {
+        deA = createDataElement( 'A' );
+        deA.setId( 11 );
+        deA.setValueType( ValueType.NUMBER );
+
+        deB = createDataElement( 'B' );
+        deB.setId( 12 );
+        deB.setValueType( ValueType.TEXT );
+
+        atA = createTrackedEntityAttribute( 'A', ValueType.DATE );
+        atA.setId( 21 );
+
+        atB = createTrackedEntityAttribute( 'B', ValueType.TEXT );
+        atB.setId( 22 );
+        atB.setConfidential( true );
+    }
+
+    @Test
+    public void testPopulateTableWithPivots()
+    {
+        ProgramStage stageA = createProgramStage( 'A', Sets.newHashSet( deA, deB ) );
+        Program programA = createProgram( 'A', Sets.newHashSet( stageA ), Sets.newHashSet( atA, atB ), null, null );
+        programA.setId( 31 );
+
+        String sql = populateTable( programA );
+
+        // Data value pivot
+
+        assertTrue( sql, sql.contains( "left join (select programstageinstanceid, " ) );
+        assertTrue( sql, sql.contains( "max(case when dataelementid=11 and value ~* '" ) );
+        assertTrue( sql, sql.contains( "max(case when dataelementid=12 then value end) as \"" + deB.getUid() + "\"" ) );
+        assertTrue( sql, sql.contains( "from trackedentitydatavalue where dataelementid in (" ) );
+        assertTrue( sql, sql.contains( "group by programstageinstanceid) as tdv on psi.programstageinstanceid=tdv.programstageinstanceid" ) );
+        assertTrue( sql, sql.contains( "cast(tdv.\"" + deA.getUid() + "\" as double precision) as \"" + deA.getUid() + "\"" ) );
+        assertTrue( sql, sql.contains( "tdv.\"" + deB.getUid() + "\" as \"" + deB.getUid() + "\"" ) );
+
+        // Attribute value pivot of non-confidential attributes
+
+        assertTrue( sql, sql.contains( "left join (select trackedentityinstanceid, " ) );
+        assertTrue( sql, sql.contains( "max(case when trackedentityattributeid=21 and value ~* '" ) );
+        assertTrue( sql, sql.contains( "from trackedentityattributevalue where trackedentityattributeid in (21) " ) );
+        assertTrue( sql, sql.contains( "group by trackedentityinstanceid) as tav on pi.trackedentityinstanceid=tav.trackedentityinstanceid" ) );
+        assertFalse( sql, sql.contains( atB.getUid() ) );
+
+        // Pivots are restricted to the events of the program and partition
+
+        assertTrue( sql, sql.contains( "where pi.programid=31 and psi.executiondate >= '2018-01-01' and psi.executiondate < '2019-01-01'" ) );
+
+        // No correlated sub query per data element or attribute
+
+        assertFalse( sql, sql.contains( "dv.programstageinstanceid=psi.programstageinstanceid" ) );
+        assertFalse( sql, sql.contains( "av.trackedentityinstanceid=pi.trackedentityinstanceid" ) );
+    }
+
+    @Test
+    public void testPopulateTableWithoutDataElementsAndAttributes()
+    {
+        Program programA = createProgram( 'A' );
+        programA.setId( 31 );
+
+        String sql = populateTable( programA );
+
+        assertFalse( sql, sql.contains( "trackedentitydatavalue" ) );
+        assertFalse( sql, sql.contains( "trackedentityattributevalue" ) );
+        assertTrue( sql, sql.contains( "and pr.programid=31 " ) );
+    }
+
+    private String populateTable( Program program )
+    {
+        AnalyticsTable table = new AnalyticsTable( "analytics_event", Lists.newArrayList(), Lists.newArrayList(), program );
+        table.addPartitionTable( 2018, getDate( 2018, 1, 1 ), getDate( 2019, 1, 1 ) );
+
+        AnalyticsTablePartition partition = table.getPartitionTables().get( 0 );
+
+        tableManager.populateTable( partition );
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass( String.class );
+
+        verify( jdbcTemplate ).execute( sql.capture() );
+
+        return sql.getValue();
+    }
+}
@@ -0,0 +1,112 @@
+package org.hisp.dhis.analytics.table;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.hisp.dhis.analytics.AnalyticsAggregationType;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.DataType;
+import org.hisp.dhis.common.BaseDimensionalObject;
+import org.hisp.dhis.common.DimensionType;
+import org.hisp.dhis.common.DimensionalObject;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.PeriodType;
+import org.hisp.dhis.period.QuarterlyPeriodType;
+import org.hisp.dhis.period.WeeklyPeriodType;
+import org.hisp.dhis.period.YearlyPeriodType;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author agent
+ */
+public class RollupUtilsTest
+{
+    private final List<Integer> levels = Lists.newArrayList( 1, 2 );
+
+    private final PeriodType monthly = new MonthlyPeriodType();
+
+    @Test
+    public void testGetRollupTableName()
+    {
+        assertEquals( "analytics_rollup_l2", RollupUtils.getRollupTableName( "analytics", 2 ) );
+        assertTrue( RollupUtils.isRollupTable( "analytics_rollup_l2" ) );
+        assertFalse( RollupUtils.isRollupTable( "analytics" ) );
+    }
+
+    @Test
+    public void testIsRollupPeriodType()
+    {
+        assertTrue( RollupUtils.isRollupPeriodType( new MonthlyPeriodType(), monthly ) );
+        assertTrue( RollupUtils.isRollupPeriodType( new QuarterlyPeriodType(), monthly ) );
+        assertTrue( RollupUtils.isRollupPeriodType( new YearlyPeriodType(), monthly ) );
+        assertFalse( RollupUtils.isRollupPeriodType( new WeeklyPeriodType(), monthly ) );
+    }
+
+    @Test
+    public void testGetRollupLevel()
+    {
+        assertEquals( Integer.valueOf( 1 ), RollupUtils.getRollupLevel( getParams( "uidlevel1", "quarterly" ).build(), levels, monthly ) );
+        assertEquals( Integer.valueOf( 2 ), RollupUtils.getRollupLevel( getParams( "uidlevel2", "monthly" ).build(), levels, monthly ) );
+    }
+
+    @Test
+    public void testGetRollupLevelNotRollup()
+    {
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel3", "monthly" ).build(), levels, monthly ) );
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel1", "weekly" ).build(), levels, monthly ) );
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel1", "monthly" ).build(), Lists.newArrayList(), monthly ) );
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel1", "monthly" )
+            .withAggregationType( AnalyticsAggregationType.AVERAGE ).build(), levels, monthly ) );
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel1", "monthly" )
+            .withDataType( DataType.TEXT ).build(), levels, monthly ) );
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel1", "monthly" )
+            .withStartDate( new Date() ).withEndDate( new Date() ).build(), levels, monthly ) );
+        assertNull( RollupUtils.getRollupLevel( getParams( "uidlevel1", "monthly" )
+            .addFilter( new BaseDimensionalObject( "ougsA", DimensionType.ORGANISATION_UNIT_GROUP_SET, Lists.newArrayList() ) ).build(), levels, monthly ) );
+    }
+
+    private DataQueryParams.Builder getParams( String orgUnitLevelColumn, String periodTypeColumn )
+    {
+        return DataQueryParams.newBuilder()
+            .addDimension( new BaseDimensionalObject( DimensionalObject.DATA_X_DIM_ID, DimensionType.DATA_X, Lists.newArrayList() ) )
+            .addDimension( new BaseDimensionalObject( DimensionalObject.ORGUNIT_DIM_ID, DimensionType.ORGANISATION_UNIT, orgUnitLevelColumn, null, Lists.newArrayList() ) )
+            .addDimension( new BaseDimensionalObject( DimensionalObject.PERIOD_DIM_ID, DimensionType.PERIOD, periodTypeColumn, null, Lists.newArrayList() ) )
+            .withAggregationType( AnalyticsAggregationType.SUM )
+            .withDataType( DataType.NUMERIC );
+    }
+}
@@ -0,0 +1,80 @@
+package org.hisp.dhis.benchmark;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.system.startup.StartupRoutineExecutor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Holder of the application context for benchmarks which need services. The
+ * context is started in test mode, which means that it is backed by an
+ * in-memory H2 database, once per benchmark JVM. The startup routines are
+ * run as for tests, which creates the default category model.
+ *
+ * @author agent
+ */
+public class BenchmarkContext
+{
+    private static final String[] CONFIG_LOCATIONS = {
+        "classpath*:/META-INF/dhis/beans.xml", "classpath*:/META-INF/dhis/security.xml" };
+
+    private static ApplicationContext context;
+
+    private BenchmarkContext()
+    {
+    }
+
+    /**
+     * Returns the application context, starting it if necessary.
+     */
+    public static synchronized ApplicationContext getContext()
+    {
+        if ( context == null )
+        {
+            System.setProperty( "org.hisp.dhis.test", "true" );
+
+            context = new ClassPathXmlApplicationContext( CONFIG_LOCATIONS );
+
+            context.getBean( StartupRoutineExecutor.class ).executeForTesting();
+        }
+
+        return context;
+    }
+
+    /**
+     * Returns the bean of the given type from the application context.
+     *
+     * @param type the bean type.
+     */
+    public static <T> T getBean( Class<T> type )
+    {
+        return getContext().getBean( type );
+    }
+}
@@ -0,0 +1,123 @@
+package org.hisp.dhis.benchmark;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementCategoryCombo;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+
+/**
+ * Synthetic metadata for benchmarks, based on the {@link DhisConvenienceTest}
+ * helpers. The helpers identify objects by a single character, so the
+ * objects get generated identifiers and numbered names to allow for larger
+ * fixtures.
+ *
+ * @author agent
+ */
+public class BenchmarkFixtures
+    extends DhisConvenienceTest
+{
+    private BenchmarkFixtures()
+    {
+    }
+
+    /**
+     * Creates data elements with alternating aggregation types.
+     *
+     * @param count the number of data elements.
+     * @param categoryCombo the category combo.
+     */
+    public static List<DataElement> createDataElements( int count, DataElementCategoryCombo categoryCombo )
+    {
+        List<DataElement> dataElements = new ArrayList<>();
+
+        for ( int i = 0; i < count; i++ )
+        {
+            AggregationType aggregationType = i % 2 == 0 ? AggregationType.SUM : AggregationType.AVERAGE_SUM_ORG_UNIT;
+
+            DataElement dataElement = createDataElement( 'A', categoryCombo );
+            dataElement.setAggregationType( aggregationType );
+            dataElement.setUid( CodeGenerator.generateUid() );
+            dataElement.setName( "DataElement" + i );
+            dataElement.setShortName( "DataElementShort" + i );
+            dataElement.setCode( "DataElementCode" + i );
+
+            dataElements.add( dataElement );
+        }
+
+        return dataElements;
+    }
+
+    /**
+     * Creates a hierarchy of organisation units with one root and the given
+     * number of children per parent on each level below the root.
+     *
+     * @param levels the number of levels.
+     * @param childrenPerParent the number of children per parent.
+     * @return all organisation units in the hierarchy, root first.
+     */
+    public static List<OrganisationUnit> createOrganisationUnits( int levels, int childrenPerParent )
+    {
+        List<OrganisationUnit> orgUnits = new ArrayList<>();
+        List<OrganisationUnit> parents = new ArrayList<>();
+
+        OrganisationUnit root = createOrganisationUnit( "OrganisationUnit0" );
+        root.setPath( root.getPath() );
+
+        orgUnits.add( root );
+        parents.add( root );
+
+        for ( int level = 2; level <= levels; level++ )
+        {
+            List<OrganisationUnit> children = new ArrayList<>();
+
+            for ( OrganisationUnit parent : parents )
+            {
+                for ( int i = 0; i < childrenPerParent; i++ )
+                {
+                    OrganisationUnit child = createOrganisationUnit( "OrganisationUnit" + orgUnits.size(), parent );
+                    child.setPath( child.getPath() );
+
+                    children.add( child );
+                    orgUnits.add( child );
+                }
+            }
+
+            parents = children;
+        }
+
+        return orgUnits;
+    }
+}
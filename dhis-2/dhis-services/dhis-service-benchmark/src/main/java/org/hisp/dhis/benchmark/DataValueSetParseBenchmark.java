@@ -0,0 +1,149 @@
+package org.hisp.dhis.benchmark;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.dxf2.datavalue.DataValue;
+import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
+import org.hisp.dhis.dxf2.datavalueset.StreamingXmlDataValueSet;
+import org.hisp.dhis.render.DefaultRenderService;
+import org.hisp.staxwax.factory.XMLFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of parsing of XML and JSON data value set payloads as done by
+ * the data value set import, reading all properties of each data value.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DataValueSetParseBenchmark
+{
+    private static final String XML_NAMESPACE = "http://dhis2.org/schema/dxf/2.0";
+
+    @Param( { "10000" } )
+    private int valueCount;
+
+    private byte[] xml;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp()
+    {
+        String[] dataElements = new String[50];
+        String[] orgUnits = new String[200];
+        String categoryOptionCombo = CodeGenerator.generateUid();
+
+        for ( int i = 0; i < dataElements.length; i++ )
+        {
+            dataElements[i] = CodeGenerator.generateUid();
+        }
+
+        for ( int i = 0; i < orgUnits.length; i++ )
+        {
+            orgUnits[i] = CodeGenerator.generateUid();
+        }
+
+        StringBuilder xmlBuilder = new StringBuilder( "<dataValueSet xmlns=\"" + XML_NAMESPACE + "\">" );
+        StringBuilder jsonBuilder = new StringBuilder( "{\"dataValues\":[" );
+
+        for ( int i = 0; i < valueCount; i++ )
+        {
+            String dataElement = dataElements[i % dataElements.length];
+            String orgUnit = orgUnits[( i / dataElements.length ) % orgUnits.length];
+            String period = String.format( "2017%02d", ( i % 12 ) + 1 );
+
+            xmlBuilder.append( String.format( "<dataValue dataElement=\"%s\" period=\"%s\" orgUnit=\"%s\" " +
+                "categoryOptionCombo=\"%s\" value=\"%d\" storedBy=\"admin\"/>", dataElement, period, orgUnit, categoryOptionCombo, i ) );
+
+            jsonBuilder.append( i == 0 ? "" : "," ).append( String.format( "{\"dataElement\":\"%s\",\"period\":\"%s\"," +
+                "\"orgUnit\":\"%s\",\"categoryOptionCombo\":\"%s\",\"value\":\"%d\",\"storedBy\":\"admin\"}",
+                dataElement, period, orgUnit, categoryOptionCombo, i ) );
+        }
+
+        xml = xmlBuilder.append( "</dataValueSet>" ).toString().getBytes( StandardCharsets.UTF_8 );
+        json = jsonBuilder.append( "]}" ).toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    @Benchmark
+    public void parseXml( Blackhole blackhole )
+    {
+        DataValueSet dataValueSet = new StreamingXmlDataValueSet( XMLFactory.getXMLReader( new ByteArrayInputStream( xml ) ) );
+
+        consume( dataValueSet, blackhole );
+    }
+
+    @Benchmark
+    public void parseJson( Blackhole blackhole )
+        throws IOException
+    {
+        DataValueSet dataValueSet = DefaultRenderService.getJsonMapper().readValue( new ByteArrayInputStream( json ), DataValueSet.class );
+
+        consume( dataValueSet, blackhole );
+    }
+
+    private void consume( DataValueSet dataValueSet, Blackhole blackhole )
+    {
+        blackhole.consume( dataValueSet.getDataSet() );
+
+        while ( dataValueSet.hasNextDataValue() )
+        {
+            DataValue dataValue = dataValueSet.getNextDataValue();
+
+            blackhole.consume( dataValue.getDataElement() );
+            blackhole.consume( dataValue.getPeriod() );
+            blackhole.consume( dataValue.getOrgUnit() );
+            blackhole.consume( dataValue.getCategoryOptionCombo() );
+            blackhole.consume( dataValue.getValue() );
+            blackhole.consume( dataValue.getStoredBy() );
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.hisp.dhis.benchmark;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.expression.CompiledExpression;
+import org.hisp.dhis.expression.MissingValueStrategy;
+import org.hisp.dhis.system.util.MathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of expression evaluation, comparing calculation of a generated
+ * expression string with evaluation of a compiled expression.
+ * <p>
+ * The values change on every invocation, like they do across org units and
+ * periods in practice, so that the generated expression strings are never
+ * served from the expression evaluation cache of {@link MathUtils}. Both
+ * benchmarks include the cost of putting the values in place, which is
+ * generating the expression string and filling the value map respectively.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ExpressionBenchmark
+{
+    @Param( { "5", "50" } )
+    private int itemCount;
+
+    private String[] uids;
+
+    private String[] operators;
+
+    private CompiledExpression compiledExpression;
+
+    private Map<String, Double> valueMap;
+
+    private long invocation;
+
+    @Setup
+    public void setUp()
+    {
+        StringBuilder expression = new StringBuilder();
+
+        uids = new String[itemCount];
+        operators = new String[itemCount];
+        valueMap = new HashMap<>();
+        invocation = 0;
+
+        for ( int i = 0; i < itemCount; i++ )
+        {
+            uids[i] = CodeGenerator.generateUid();
+            operators[i] = i == 0 ? "" : ( i % 2 == 0 ? " + " : " * " );
+
+            expression.append( operators[i] ).append( "#{" ).append( uids[i] ).append( "}" );
+        }
+
+        compiledExpression = CompiledExpression.compile( expression.toString() );
+    }
+
+    @Benchmark
+    public double calculateExpression()
+    {
+        long offset = invocation++;
+
+        StringBuilder generated = new StringBuilder();
+
+        for ( int i = 0; i < itemCount; i++ )
+        {
+            generated.append( operators[i] ).append( getValue( i, offset ) );
+        }
+
+        return MathUtils.calculateExpression( generated.toString() );
+    }
+
+    @Benchmark
+    public Double evaluateCompiledExpression()
+    {
+        long offset = invocation++;
+
+        for ( int i = 0; i < itemCount; i++ )
+        {
+            valueMap.put( uids[i], getValue( i, offset ) );
+        }
+
+        return compiledExpression.evaluate( valueMap, null, null, null, MissingValueStrategy.NEVER_SKIP );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private static double getValue( int item, long offset )
+    {
+        return item + offset + 0.5;
+    }
+}
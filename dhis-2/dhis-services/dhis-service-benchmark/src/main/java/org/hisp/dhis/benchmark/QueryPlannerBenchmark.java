@@ -0,0 +1,125 @@
+package org.hisp.dhis.benchmark;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hisp.dhis.analytics.AnalyticsTableType;
+import org.hisp.dhis.analytics.DataQueryGroups;
+import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.analytics.QueryPlanner;
+import org.hisp.dhis.analytics.QueryPlannerParams;
+import org.hisp.dhis.common.DimensionalItemObject;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementCategoryCombo;
+import org.hisp.dhis.dataelement.DataElementCategoryService;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.PeriodType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of analytics query planning for queries with monthly and
+ * quarterly periods and organisation units on several levels.
+ *
+ * @author agent
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class QueryPlannerBenchmark
+{
+    private static final String[] ISO_PERIODS = {
+        "201701", "201702", "201703", "201704", "201705", "201706", "2017Q3", "2017Q4", "2018Q1" };
+
+    @Param( { "10", "200" } )
+    private int dataElementCount;
+
+    private QueryPlanner queryPlanner;
+
+    private DataQueryParams params;
+
+    private QueryPlannerParams plannerParams;
+
+    @Setup
+    public void setUp()
+    {
+        queryPlanner = BenchmarkContext.getBean( QueryPlanner.class );
+
+        DataElementService dataElementService = BenchmarkContext.getBean( DataElementService.class );
+        OrganisationUnitService organisationUnitService = BenchmarkContext.getBean( OrganisationUnitService.class );
+
+        DataElementCategoryCombo categoryCombo = BenchmarkContext.getBean( DataElementCategoryService.class )
+            .getDefaultDataElementCategoryCombo();
+
+        List<DataElement> dataElements = BenchmarkFixtures.createDataElements( dataElementCount, categoryCombo );
+        List<OrganisationUnit> orgUnits = BenchmarkFixtures.createOrganisationUnits( 3, 7 );
+
+        dataElements.forEach( dataElementService::addDataElement );
+        orgUnits.forEach( organisationUnitService::addOrganisationUnit );
+
+        List<DimensionalItemObject> periods = new ArrayList<>();
+
+        for ( String isoPeriod : ISO_PERIODS )
+        {
+            periods.add( PeriodType.getPeriodFromIsoString( isoPeriod ) );
+        }
+
+        params = DataQueryParams.newBuilder()
+            .withDataElements( dataElements )
+            .withOrganisationUnits( orgUnits )
+            .withPeriods( periods ).build();
+
+        plannerParams = QueryPlannerParams.newBuilder()
+            .withOptimalQueries( 8 )
+            .withTableName( AnalyticsTableType.DATA_VALUE.getTableName() ).build();
+    }
+
+    @Benchmark
+    public DataQueryGroups planQuery()
+    {
+        return queryPlanner.planQuery( params, plannerParams );
+    }
+}
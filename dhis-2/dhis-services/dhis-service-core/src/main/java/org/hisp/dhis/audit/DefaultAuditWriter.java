@@ -0,0 +1,487 @@
+package org.hisp.dhis.audit;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueAuditStore;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.schema.audit.MetadataAudit;
+import org.hisp.dhis.schema.audit.MetadataAuditStore;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueAudit;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueAuditStore;
+import org.hisp.dhis.trackedentitydatavalue.TrackedEntityDataValueAudit;
+import org.hisp.dhis.trackedentitydatavalue.TrackedEntityDataValueAuditStore;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Audit writer which, if asynchronous audits are enabled, buffers audits in a
+ * bounded queue and writes them in batches from a background thread. Audits
+ * written within a transaction are buffered only when the transaction commits.
+ * Audits which do not fit in the queue are written immediately by the writing
+ * thread in batches. Buffered audits are written on shutdown.
+ * <p>
+ * Each batch is written through the Hibernate stores with JDBC batching in a
+ * new transaction, so that a batch is either written completely or not at
+ * all. If a batch fails, its audits are written one by one, each in a new
+ * transaction. Audits which can not be written that way either are logged
+ * with their content.
+ * <p>
+ * Audits of confidential attribute values must be encrypted and are always
+ * persisted immediately.
+ *
+ * @author agent
+ */
+public class DefaultAuditWriter
+    implements AuditWriter
+{
+    private static final Log log = LogFactory.getLog( DefaultAuditWriter.class );
+
+    /**
+     * Max number of audits to write per batch.
+     */
+    private static final int FLUSH_SIZE = 1000;
+
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // -------------------------------------------------------------------------
+    // Dependencies
+    // -------------------------------------------------------------------------
+
+    private DataValueAuditStore dataValueAuditStore;
+
+    public void setDataValueAuditStore( DataValueAuditStore dataValueAuditStore )
+    {
+        this.dataValueAuditStore = dataValueAuditStore;
+    }
+
+    private TrackedEntityDataValueAuditStore trackedEntityDataValueAuditStore;
+
+    public void setTrackedEntityDataValueAuditStore( TrackedEntityDataValueAuditStore trackedEntityDataValueAuditStore )
+    {
+        this.trackedEntityDataValueAuditStore = trackedEntityDataValueAuditStore;
+    }
+
+    private TrackedEntityAttributeValueAuditStore trackedEntityAttributeValueAuditStore;
+
+    public void setTrackedEntityAttributeValueAuditStore( TrackedEntityAttributeValueAuditStore trackedEntityAttributeValueAuditStore )
+    {
+        this.trackedEntityAttributeValueAuditStore = trackedEntityAttributeValueAuditStore;
+    }
+
+    private MetadataAuditStore metadataAuditStore;
+
+    public void setMetadataAuditStore( MetadataAuditStore metadataAuditStore )
+    {
+        this.metadataAuditStore = metadataAuditStore;
+    }
+
+    private SessionFactory sessionFactory;
+
+    public void setSessionFactory( SessionFactory sessionFactory )
+    {
+        this.sessionFactory = sessionFactory;
+    }
+
+    private DhisConfigurationProvider config;
+
+    public void setConfig( DhisConfigurationProvider config )
+    {
+        this.config = config;
+    }
+
+    private PlatformTransactionManager transactionManager;
+
+    public void setTransactionManager( PlatformTransactionManager transactionManager )
+    {
+        this.transactionManager = transactionManager;
+    }
+
+    // -------------------------------------------------------------------------
+    // State
+    // -------------------------------------------------------------------------
+
+    private boolean async;
+
+    private volatile boolean running;
+
+    private BlockingQueue<Object> queue;
+
+    private ExecutorService executor;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init()
+    {
+        async = config.isEnabled( ConfigurationKey.AUDIT_ASYNC );
+
+        transactionTemplate = new TransactionTemplate( transactionManager );
+        transactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+
+        if ( async )
+        {
+            int bufferSize = getBufferSize();
+
+            queue = new ArrayBlockingQueue<>( bufferSize );
+            executor = Executors.newSingleThreadExecutor( runnable -> {
+                Thread thread = new Thread( runnable, "audit-writer" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+
+            running = true;
+            executor.execute( this::writeBufferedAudits );
+
+            log.info( "Asynchronous audits enabled with buffer size: " + bufferSize );
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( !async || !running )
+        {
+            return;
+        }
+
+        running = false;
+        executor.shutdown();
+
+        try
+        {
+            if ( !executor.awaitTermination( SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                log.warn( "Audit writer did not terminate within timeout" );
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+
+        log.info( "Audit writer shut down" );
+    }
+
+    // -------------------------------------------------------------------------
+    // AuditWriter implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void write( DataValueAudit audit )
+    {
+        if ( async )
+        {
+            enqueue( audit );
+        }
+        else
+        {
+            dataValueAuditStore.addDataValueAudit( audit );
+        }
+    }
+
+    @Override
+    public void write( TrackedEntityDataValueAudit audit )
+    {
+        if ( async )
+        {
+            enqueue( audit );
+        }
+        else
+        {
+            trackedEntityDataValueAuditStore.addTrackedEntityDataValueAudit( audit );
+        }
+    }
+
+    @Override
+    public void write( TrackedEntityAttributeValueAudit audit )
+    {
+        if ( async && !audit.getAttribute().isConfidentialBool() )
+        {
+            enqueue( audit );
+        }
+        else
+        {
+            trackedEntityAttributeValueAuditStore.addTrackedEntityAttributeValueAudit( audit );
+        }
+    }
+
+    @Override
+    public void write( MetadataAudit audit )
+    {
+        if ( async )
+        {
+            enqueue( audit );
+        }
+        else
+        {
+            metadataAuditStore.save( audit );
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        if ( async )
+        {
+            List<Object> audits = new ArrayList<>();
+
+            while ( queue.drainTo( audits, FLUSH_SIZE ) > 0 )
+            {
+                writeAudits( audits );
+                audits.clear();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the configured size of the audit buffer, or the default size if
+     * the configured size is not a positive integer.
+     */
+    private int getBufferSize()
+    {
+        String value = config.getProperty( ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE );
+
+        try
+        {
+            int bufferSize = Integer.parseInt( value );
+
+            if ( bufferSize > 0 )
+            {
+                return bufferSize;
+            }
+        }
+        catch ( NumberFormatException ex )
+        {
+            // Fall through to the default size
+        }
+
+        log.warn( "Invalid audit buffer size: '" + value + "', using default: " + ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE.getDefaultValue() );
+
+        return Integer.parseInt( ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE.getDefaultValue() );
+    }
+
+    /**
+     * Buffers the given audit. If a transaction is active, the audit is held
+     * per transaction and buffered only if the transaction commits.
+     */
+    @SuppressWarnings( "unchecked" )
+    private void enqueue( Object audit )
+    {
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            offer( Collections.singletonList( audit ) );
+            return;
+        }
+
+        List<Object> pending = (List<Object>) TransactionSynchronizationManager.getResource( this );
+
+        if ( pending == null )
+        {
+            final List<Object> audits = new ArrayList<>();
+
+            TransactionSynchronizationManager.bindResource( this, audits );
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion( int status )
+                {
+                    TransactionSynchronizationManager.unbindResourceIfPossible( DefaultAuditWriter.this );
+
+                    if ( TransactionSynchronization.STATUS_COMMITTED == status )
+                    {
+                        offer( audits );
+                    }
+                }
+            } );
+
+            pending = audits;
+        }
+
+        pending.add( audit );
+    }
+
+    /**
+     * Adds the given audits to the queue without waiting for space to become
+     * available. The audits which do not fit in the queue, or all audits if
+     * the writer is shut down, are written immediately in one batch.
+     */
+    private void offer( List<Object> audits )
+    {
+        List<Object> remainder = new ArrayList<>();
+
+        for ( Object audit : audits )
+        {
+            if ( !running || !remainder.isEmpty() || !queue.offer( audit ) )
+            {
+                remainder.add( audit );
+            }
+        }
+
+        if ( !remainder.isEmpty() )
+        {
+            log.debug( "Audit buffer not available, writing audits immediately: " + remainder.size() );
+
+            writeAudits( remainder );
+        }
+    }
+
+    /**
+     * Writes buffered audits in batches until the writer is shut down.
+     */
+    private void writeBufferedAudits()
+    {
+        List<Object> audits = new ArrayList<>();
+
+        while ( running )
+        {
+            try
+            {
+                Object audit = queue.poll( POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+
+                if ( audit != null )
+                {
+                    audits.add( audit );
+                    queue.drainTo( audits, FLUSH_SIZE - 1 );
+
+                    writeAudits( audits );
+                    audits.clear();
+                }
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the given audits in batches per audit type.
+     */
+    private void writeAudits( List<Object> audits )
+    {
+        for ( List<Object> batch : Lists.partition( audits, FLUSH_SIZE ) )
+        {
+            writeAudits( batch, DataValueAudit.class,
+                audit -> dataValueAuditStore.addDataValueAudit( audit ) );
+            writeAudits( batch, TrackedEntityDataValueAudit.class,
+                audit -> trackedEntityDataValueAuditStore.addTrackedEntityDataValueAudit( audit ) );
+            writeAudits( batch, TrackedEntityAttributeValueAudit.class,
+                audit -> trackedEntityAttributeValueAuditStore.addTrackedEntityAttributeValueAudit( audit ) );
+            writeAudits( batch, MetadataAudit.class,
+                audit -> metadataAuditStore.save( audit ) );
+        }
+    }
+
+    /**
+     * Writes the audits of the given type through the given store in a batch
+     * in a new transaction. If the batch fails, the transaction is rolled back
+     * and the audits are written one by one.
+     */
+    private <T> void writeAudits( List<Object> audits, Class<T> auditClass, Consumer<T> store )
+    {
+        List<T> typedAudits = audits.stream()
+            .filter( auditClass::isInstance )
+            .map( auditClass::cast )
+            .collect( Collectors.toList() );
+
+        if ( typedAudits.isEmpty() )
+        {
+            return;
+        }
+
+        try
+        {
+            transactionTemplate.execute( status -> {
+                sessionFactory.getCurrentSession().setJdbcBatchSize( FLUSH_SIZE );
+
+                typedAudits.forEach( store );
+                return null;
+            } );
+        }
+        catch ( Exception ex )
+        {
+            log.warn( "Failed to write audits of type: " + auditClass.getSimpleName() + ", count: " + typedAudits.size() + ", writing audits individually", ex );
+
+            typedAudits.forEach( audit -> writeAudit( audit, store ) );
+        }
+    }
+
+    /**
+     * Writes the given audit through the given store in a new transaction.
+     * Audits which can not be written are logged, as they are lost otherwise.
+     */
+    private <T> void writeAudit( T audit, Consumer<T> store )
+    {
+        try
+        {
+            transactionTemplate.execute( status -> {
+                store.accept( audit );
+                return null;
+            } );
+        }
+        catch ( Exception ex )
+        {
+            log.error( "Failed to write audit: " + audit, ex );
+        }
+    }
+}
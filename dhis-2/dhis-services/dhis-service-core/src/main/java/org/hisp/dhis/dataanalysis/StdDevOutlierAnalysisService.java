@@ -31,19 +31,15 @@ package org.hisp.dhis.dataanalysis;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.dataelement.DataElement;
-import org.hisp.dhis.dataelement.DataElementCategoryOptionCombo;
 import org.hisp.dhis.datavalue.DeflatedDataValue;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
-import org.hisp.dhis.system.util.MathUtils;
 
 /**
  * @author Lars Helge Overland
@@ -72,50 +68,43 @@ public class StdDevOutlierAnalysisService
     public final List<DeflatedDataValue> analyse( Collection<OrganisationUnit> parents,
         Collection<DataElement> dataElements, Collection<Period> periods, Double stdDevFactor, Date from )
     {
-        log.info( "Starting std dev analysis, no of org units: " + parents.size() + ", factor: " + stdDevFactor + ", from: " + from );
+        return analyse( parents, dataElements, periods, stdDevFactor, from, null, MAX_OUTLIERS + 1 );
+    }
 
-        List<DeflatedDataValue> outlierCollection = new ArrayList<>();
+    /**
+     * Returns a page of outlier data values for the given numeric data elements,
+     * ordered by data element, category option combo, org unit, period and
+     * attribute option combo. The mean and standard deviation of each data
+     * element, category option combo and org unit are computed in a single
+     * query.
+     *
+     * @param parents the parent org units.
+     * @param dataElements the data elements, non-numeric data elements are ignored.
+     * @param periods the periods to find outliers for.
+     * @param stdDevFactor the standard deviation factor.
+     * @param from the start date for data values included in the statistics.
+     * @param after the last outlier of the previous page, or null for the
+     *        first page.
+     * @param limit the max number of outliers to return.
+     * @return a list of {@link DeflatedDataValue}.
+     */
+    public List<DeflatedDataValue> analyse( Collection<OrganisationUnit> parents,
+        Collection<DataElement> dataElements, Collection<Period> periods, Double stdDevFactor, Date from,
+        DeflatedDataValue after, int limit )
+    {
+        log.info( "Starting std dev analysis, no of org units: " + parents.size() + ", factor: " + stdDevFactor + ", from: " + from );
 
-        loop : for ( DataElement dataElement : dataElements )
+        if ( stdDevFactor == null )
         {
-            // TODO filter periods with data element period type
-
-            if ( dataElement.getValueType().isNumeric() )
-            {
-                Set<DataElementCategoryOptionCombo> categoryOptionCombos = dataElement.getCategoryOptionCombos();
-
-                for ( DataElementCategoryOptionCombo categoryOptionCombo : categoryOptionCombos )
-                {
-                    Map<Integer, Double> standardDeviations = dataAnalysisStore.getStandardDeviation( dataElement, categoryOptionCombo, parents, from );
-
-                    Map<Integer, Double> averages = dataAnalysisStore.getAverage( dataElement, categoryOptionCombo, parents, from );
-
-                    Map<Integer, Integer> lowBoundMap = new HashMap<>();
-                    Map<Integer, Integer> highBoundMap = new HashMap<>();
-
-                    for ( Integer unit : averages.keySet() )
-                    {
-                        Double stdDev = standardDeviations.get( unit );
-                        Double avg = averages.get( unit );
-
-                        if ( stdDev != null && stdDevFactor != null && avg != null )
-                        {
-                            lowBoundMap.put( unit, (int) MathUtils.getLowBound( stdDev, stdDevFactor, avg ) );
-                            highBoundMap.put( unit, (int) MathUtils.getHighBound( stdDev, stdDevFactor, avg ) );
-                        }
-                    }
+            return new ArrayList<>();
+        }
 
-                    outlierCollection.addAll( dataAnalysisStore.getDeflatedDataValues( dataElement, categoryOptionCombo, periods,
-                        lowBoundMap, highBoundMap ) );
+        // TODO filter periods with data element period type
 
-                    if ( outlierCollection.size() > MAX_OUTLIERS )
-                    {
-                        break loop;
-                    }
-                }
-            }
-        }
+        List<DataElement> numericDataElements = dataElements.stream()
+            .filter( de -> de.getValueType().isNumeric() )
+            .collect( Collectors.toList() );
 
-        return outlierCollection;
+        return dataAnalysisStore.getStdDevOutliers( numericDataElements, periods, parents, stdDevFactor, from, after, limit );
     }
 }
@@ -49,8 +49,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hisp.dhis.common.AggregatedValue.ZERO;
 import static org.hisp.dhis.common.IdentifiableObjectUtils.getIdentifiers;
@@ -65,6 +67,12 @@ public class JdbcDataAnalysisStore
     implements DataAnalysisStore
 {
     private static final Log log = LogFactory.getLog( JdbcDataAnalysisStore.class );
+
+    /**
+     * Standard deviations below this value are considered equal to zero, see
+     * {@link org.hisp.dhis.system.util.MathUtils#isEqual(double, double)}.
+     */
+    private static final double MIN_STD_DEV = 0.01;
     
     // -------------------------------------------------------------------------
     // Dependencies
@@ -282,6 +290,75 @@ public class JdbcDataAnalysisStore
         return jdbcTemplate.query( sql, new DeflatedDataValueNameMinMaxRowMapper( lowerBoundMap, upperBoundMap ) );
     }
 
+    @Override
+    public List<DeflatedDataValue> getStdDevOutliers( Collection<DataElement> dataElements, Collection<Period> periods,
+        Collection<OrganisationUnit> parents, double stdDevFactor, Date from, DeflatedDataValue after, int limit )
+    {
+        if ( dataElements.isEmpty() || periods.isEmpty() || parents.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+        
+        String doubleType = statementBuilder.getDoubleColumnType();
+        String periodIds = getCommaDelimitedString( getIdentifiers( periods ) );
+        String lowerBound = getTruncated( "stats.average - stats.deviation * " + stdDevFactor );
+        String upperBound = getTruncated( "stats.average + stats.deviation * " + stdDevFactor );
+        
+        // Statistics for all data element, category option combo and org unit
+        // combinations are computed in a derived table joined with the data
+        // values, so that outliers are found in a single query
+        
+        String statsSql = 
+            "select dv.dataelementid, dv.categoryoptioncomboid, dv.sourceid, " +
+            "avg( cast( dv.value as " + doubleType + " ) ) as average, " +
+            "stddev_pop( cast( dv.value as " + doubleType + " ) ) as deviation " +
+            "from datavalue dv " +
+            "inner join period pe on dv.periodid = pe.periodid " +
+            "inner join organisationunit ou on dv.sourceid = ou.organisationunitid " +
+            "where " + getDataElementCategoryOptionComboFilter( dataElements ) + " " +
+            "and pe.startdate >= '" + DateUtils.getMediumDateString( from ) + "' " +
+            "and dv.deleted is false " +
+            "and (";
+        
+        for ( OrganisationUnit parent : parents )
+        {
+            statsSql += "ou.path like '" + parent.getPath() + "%' or ";
+        }
+        
+        statsSql = TextUtils.removeLastOr( statsSql ) + ") ";
+        statsSql += "group by dv.dataelementid, dv.categoryoptioncomboid, dv.sourceid";
+        
+        String boundsSql = 
+            "select stats.dataelementid, stats.categoryoptioncomboid, stats.sourceid, " +
+            lowerBound + " as minimumvalue, " + upperBound + " as maximumvalue " +
+            "from (" + statsSql + ") as stats " +
+            "where stats.deviation >= " + MIN_STD_DEV;
+        
+        String sql = 
+            "select dv.dataelementid, dv.periodid, dv.sourceid, dv.categoryoptioncomboid, dv.attributeoptioncomboid, dv.value, dv.storedby, dv.lastupdated, " +
+            "dv.created, dv.comment, dv.followup, ou.name as sourcename, de.name as dataelementname, " +
+            "pt.name as periodtypename, pe.startdate, pe.enddate, coc.name as categoryoptioncomboname, bounds.minimumvalue, bounds.maximumvalue " +
+            "from datavalue dv " +
+            "join (" + boundsSql + ") as bounds on ( dv.dataelementid = bounds.dataelementid and dv.categoryoptioncomboid = bounds.categoryoptioncomboid and dv.sourceid = bounds.sourceid ) " +
+            "join dataelement de on dv.dataelementid = de.dataelementid " +
+            "join period pe on dv.periodid = pe.periodid " +
+            "join periodtype pt on pe.periodtypeid = pt.periodtypeid " +
+            "join organisationunit ou on dv.sourceid = ou.organisationunitid " +
+            "join categoryoptioncombo coc on dv.categoryoptioncomboid = coc.categoryoptioncomboid " +
+            "where dv.periodid in (" + periodIds + ") " +
+            "and ( " +
+                "cast( dv.value as " + doubleType + " ) < bounds.minimumvalue " +
+                "or cast( dv.value as " + doubleType + " ) > bounds.maximumvalue ) " +
+            "and dv.deleted is false " +
+            getAfterFilter( after ) +
+            "order by dv.dataelementid, dv.categoryoptioncomboid, dv.sourceid, dv.periodid, dv.attributeoptioncomboid" +
+            statementBuilder.limitRecord( 0, limit );
+        
+        log.debug( "Std dev outlier SQL: " + sql );
+        
+        return jdbcTemplate.query( sql, new DeflatedDataValueNameMinMaxRowMapper( null, null ) );
+    }
+    
     @Override
     public List<DeflatedDataValue> getFollowupDataValues( OrganisationUnit organisationUnit, DataSet dataSet, int limit )
     {
@@ -306,4 +383,73 @@ public class JdbcDataAnalysisStore
         
         return jdbcTemplate.query( sql, new DeflatedDataValueNameMinMaxRowMapper() );
     }
+    
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+    
+    /**
+     * Returns a filter on the data element and category option combo of data
+     * values, where data elements with the same category option combos are
+     * grouped together.
+     * 
+     * @param dataElements the data elements.
+     */
+    private String getDataElementCategoryOptionComboFilter( Collection<DataElement> dataElements )
+    {
+        Map<Set<Integer>, List<Integer>> categoryOptionComboDataElementMap = new HashMap<>();
+        
+        for ( DataElement dataElement : dataElements )
+        {
+            Set<Integer> categoryOptionComboIds = new HashSet<>( getIdentifiers( dataElement.getCategoryOptionCombos() ) );
+            
+            categoryOptionComboDataElementMap.computeIfAbsent( categoryOptionComboIds, ids -> new ArrayList<>() ).add( dataElement.getId() );
+        }
+        
+        String sql = "(";
+        
+        for ( Map.Entry<Set<Integer>, List<Integer>> entry : categoryOptionComboDataElementMap.entrySet() )
+        {
+            sql += "( dv.dataelementid in (" + getCommaDelimitedString( entry.getValue() ) + ") " +
+                "and dv.categoryoptioncomboid in (" + getCommaDelimitedString( entry.getKey() ) + ") ) or ";
+        }
+        
+        return TextUtils.removeLastOr( sql ) + ")";
+    }
+    
+    /**
+     * Returns a filter on data values which come after the given data value
+     * in the order of the outliers, or an empty string if the given data value
+     * is null. The row value comparison lists the columns in the same order as
+     * the order by clause of the outliers.
+     * 
+     * @param after the data value.
+     */
+    private String getAfterFilter( DeflatedDataValue after )
+    {
+        if ( after == null )
+        {
+            return "";
+        }
+        
+        int de = after.getDataElementId();
+        int coc = after.getCategoryOptionComboId();
+        int ou = after.getSourceId();
+        int pe = after.getPeriodId();
+        int aoc = after.getAttributeOptionComboId();
+        
+        return "and (dv.dataelementid, dv.categoryoptioncomboid, dv.sourceid, dv.periodid, dv.attributeoptioncomboid) " +
+            "> (" + de + ", " + coc + ", " + ou + ", " + pe + ", " + aoc + ") ";
+    }
+    
+    /**
+     * Returns the given numeric SQL expression truncated towards zero, which
+     * is equal to a cast of a double to integer in Java.
+     * 
+     * @param expression the SQL expression.
+     */
+    private String getTruncated( String expression )
+    {
+        return "case when " + expression + " >= 0 then floor( " + expression + " ) else ceiling( " + expression + " ) end";
+    }
 }
@@ -28,6 +28,7 @@ package org.hisp.dhis.datavalue;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.audit.AuditWriter;
 import org.hisp.dhis.common.AuditType;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementCategoryOptionCombo;
@@ -56,6 +57,13 @@ public class DefaultDataValueAuditService
         this.dataValueAuditStore = dataValueAuditStore;
     }
 
+    private AuditWriter auditWriter;
+
+    public void setAuditWriter( AuditWriter auditWriter )
+    {
+        this.auditWriter = auditWriter;
+    }
+
     // -------------------------------------------------------------------------
     // DataValueAuditService implementation
     // -------------------------------------------------------------------------
@@ -63,18 +71,20 @@ public class DefaultDataValueAuditService
     @Override
     public void addDataValueAudit( DataValueAudit dataValueAudit )
     {
-        dataValueAuditStore.addDataValueAudit( dataValueAudit );
+        auditWriter.write( dataValueAudit );
     }
     
     @Override
     public void deleteDataValueAudits( OrganisationUnit organisationUnit )
     {
+        auditWriter.flush();
         dataValueAuditStore.deleteDataValueAudits( organisationUnit );
     }
 
     @Override
     public void deleteDataValueAudits( DataElement dataElement )
     {
+        auditWriter.flush();
         dataValueAuditStore.deleteDataValueAudits( dataElement );
     }
 
@@ -52,6 +52,7 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hisp.dhis.system.util.ValidationUtils.dataValueIsValid;
@@ -351,4 +352,14 @@ public class DefaultDataValueService
         return dataValueStore.getDataValueMapByAttributeCombo( dataElementOperands, date, orgUnits,
             periodTypes, attributeCombo, cogDimensionConstraints, coDimensionConstraints );
     }
+
+    @Override
+    public Map<Date, MapMapMap<Integer, String, DimensionalItemObject, Double>> getDataValueMapsByAttributeCombo(
+        Set<DataElementOperand> dataElementOperands, Collection<Date> dates, List<OrganisationUnit> orgUnits,
+        Collection<PeriodType> periodTypes, DataElementCategoryOptionCombo attributeCombo,
+        Set<CategoryOptionGroup> cogDimensionConstraints, Set<DataElementCategoryOption> coDimensionConstraints )
+    {
+        return dataValueStore.getDataValueMapsByAttributeCombo( dataElementOperands, dates, orgUnits,
+            periodTypes, attributeCombo, cogDimensionConstraints, coDimensionConstraints );
+    }
 }
@@ -28,6 +28,7 @@ package org.hisp.dhis.datavalue.hibernate;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -66,10 +67,12 @@ import org.springframework.jdbc.support.rowset.SqlRowSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static org.hisp.dhis.common.IdentifiableObjectUtils.getIdentifiers;
@@ -508,16 +511,37 @@ public class HibernateDataValueStore
         Set<DataElementOperand> dataElementOperands, Date date,
         List<OrganisationUnit> orgUnits, Collection<PeriodType> periodTypes, DataElementCategoryOptionCombo attributeCombo,
         Set<CategoryOptionGroup> cogDimensionConstraints, Set<DataElementCategoryOption> coDimensionConstraints )
+    {
+        return getDataValueMapsByAttributeCombo( dataElementOperands, Sets.newHashSet( date ), orgUnits, periodTypes,
+            attributeCombo, cogDimensionConstraints, coDimensionConstraints ).get( date );
+    }
+
+    @Override
+    public Map<Date, MapMapMap<Integer, String, DimensionalItemObject, Double>> getDataValueMapsByAttributeCombo(
+        Set<DataElementOperand> dataElementOperands, Collection<Date> dates, List<OrganisationUnit> orgUnits,
+        Collection<PeriodType> periodTypes, DataElementCategoryOptionCombo attributeCombo,
+        Set<CategoryOptionGroup> cogDimensionConstraints, Set<DataElementCategoryOption> coDimensionConstraints )
     {
         SetMap<DataElement, DataElementOperand> deosByDataElement = getDeosByDataElement( dataElementOperands );
 
-        MapMapMap<Integer, String, DimensionalItemObject, Double> map = new MapMapMap<>();
+        Map<Date, MapMapMap<Integer, String, DimensionalItemObject, Double>> maps = new HashMap<>();
+
+        Map<Date, MapMapMap<Integer, String, DataElementOperand, Long>> checkForDuplicates = new HashMap<>();
+
+        TreeMap<String, List<Date>> datesByDay = new TreeMap<>(); // Periods are compared with dates by day
+
+        for ( Date date : dates )
+        {
+            maps.put( date, new MapMapMap<>() );
+            checkForDuplicates.put( date, new MapMapMap<>() );
+            datesByDay.computeIfAbsent( DateUtils.getMediumDateString( date ), d -> new ArrayList<>() ).add( date );
+        }
 
-        if ( dataElementOperands.isEmpty() || periodTypes.isEmpty()
+        if ( dataElementOperands.isEmpty() || periodTypes.isEmpty() || dates.isEmpty()
             || ( cogDimensionConstraints != null && cogDimensionConstraints.isEmpty() )
             || ( coDimensionConstraints != null && coDimensionConstraints.isEmpty() ) )
         {
-            return map;
+            return maps;
         }
 
         String joinCo = coDimensionConstraints == null && cogDimensionConstraints == null ? StringUtils.EMPTY :
@@ -542,16 +566,14 @@ public class HibernateDataValueStore
             "inner join period p on p.periodid = dv.periodid " + joinCo + joinCog +
             "where dv.dataelementid in (" + TextUtils.getCommaDelimitedString(getIdentifiers( deosByDataElement.keySet() ) ) + ") " +
             "and dv.sourceid in (" + TextUtils.getCommaDelimitedString(getIdentifiers( orgUnits ) ) + ") " +
-            "and p.startdate <= '" + DateUtils.getMediumDateString( date ) + "' " +
-            "and p.enddate >= '" + DateUtils.getMediumDateString( date ) + "' " +
+            "and p.startdate <= '" + datesByDay.lastKey() + "' " +
+            "and p.enddate >= '" + datesByDay.firstKey() + "' " +
             "and p.periodtypeid in (" + TextUtils.getCommaDelimitedString( getIds( periodTypes ) ) + ") " +
             "and dv.deleted is false " +
             whereCo + whereCog + whereCombo;
 
         SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
 
-        MapMapMap<Integer, String, DataElementOperand, Long> checkForDuplicates = new MapMapMap<>();
-
         int rowCount = 0;
 
         Map<Integer, DataElement> dataElementsById = IdentifiableObjectUtils.getIdentifierMap( deosByDataElement.keySet() );
@@ -569,43 +591,65 @@ public class HibernateDataValueStore
             long periodInterval = periodEndDate.getTime() - periodStartDate.getTime();
             DataElement dataElement = dataElementsById.get( dataElementId );
 
-            if ( value != null )
+            if ( value == null )
             {
-                Set<DataElementOperand> deos = deosByDataElement.get( dataElement );
+                continue;
+            }
 
-                for ( DataElementOperand deo : deos )
+            Collection<List<Date>> periodDates = datesByDay.subMap( DateUtils.getMediumDateString( periodStartDate ), true,
+                DateUtils.getMediumDateString( periodEndDate ), true ).values();
+
+            for ( DataElementOperand deo : deosByDataElement.get( dataElement ) )
+            {
+                if ( deo.getCategoryOptionCombo() == null || deo.getCategoryOptionCombo().getUid().equals( categoryOptionCombo ) )
                 {
-                    if ( deo.getCategoryOptionCombo() == null || deo.getCategoryOptionCombo().getUid().equals( categoryOptionCombo ) )
+                    for ( List<Date> dayDates : periodDates )
                     {
-                        double existingValue = ObjectUtils.firstNonNull( map.getValue(orgUnitId, attributeOptionCombo, deo), 0.0 );
-
-                        Long existingPeriodInterval = checkForDuplicates.getValue( orgUnitId, attributeOptionCombo, deo );
-
-                        if ( existingPeriodInterval != null )
+                        for ( Date date : dayDates )
                         {
-                            if ( existingPeriodInterval < periodInterval )
-                            {
-                                continue; // Do not overwrite the previous value if for a shorter interval
-                            }
-                            else if ( existingPeriodInterval > periodInterval )
-                            {
-                                existingValue = 0.0; // Overwrite previous value if for a longer interval
-                            }
+                            addValue( maps.get( date ), checkForDuplicates.get( date ), orgUnitId,
+                                attributeOptionCombo, deo, value, periodInterval );
                         }
-
-                        map.putEntry( orgUnitId, attributeOptionCombo, deo, value + existingValue);
-
-                        checkForDuplicates.putEntry( orgUnitId, attributeOptionCombo, deo, periodInterval );
                     }
                 }
             }
         }
 
-        log.trace( "getDataValueMapByAttributeCombo: " + rowCount + " rows into " + map.size() + " map entries from \"" + sql + "\"" );
+        log.trace( "getDataValueMapsByAttributeCombo: " + rowCount + " rows into " + maps.size() + " maps from \"" + sql + "\"" );
 
-        return map;
+        return maps;
     }
-    
+
+    /**
+     * Adds a value to the given map. Values for the same org unit, attribute
+     * option combo and operand are summed if from periods of equal duration,
+     * otherwise the value from the period with the shortest duration is kept.
+     */
+    private void addValue( MapMapMap<Integer, String, DimensionalItemObject, Double> map,
+        MapMapMap<Integer, String, DataElementOperand, Long> checkForDuplicates, int orgUnitId,
+        String attributeOptionCombo, DataElementOperand deo, double value, long periodInterval )
+    {
+        double existingValue = ObjectUtils.firstNonNull( map.getValue( orgUnitId, attributeOptionCombo, deo ), 0.0 );
+
+        Long existingPeriodInterval = checkForDuplicates.getValue( orgUnitId, attributeOptionCombo, deo );
+
+        if ( existingPeriodInterval != null )
+        {
+            if ( existingPeriodInterval < periodInterval )
+            {
+                return; // Do not overwrite the previous value if for a shorter interval
+            }
+            else if ( existingPeriodInterval > periodInterval )
+            {
+                existingValue = 0.0; // Overwrite previous value if for a longer interval
+            }
+        }
+
+        map.putEntry( orgUnitId, attributeOptionCombo, deo, value + existingValue );
+
+        checkForDuplicates.putEntry( orgUnitId, attributeOptionCombo, deo, periodInterval );
+    }
+
     private Set<Integer> getIds( Collection<PeriodType> periodTypes )
     {
         Set<Integer> ids = new HashSet<>();
@@ -0,0 +1,357 @@
+package org.hisp.dhis.expression;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.commons.util.TextUtils;
+import org.hisp.dhis.system.jep.CustomFunctions;
+import org.hisp.dhis.system.util.ExpressionUtils;
+import org.hisp.dhis.system.util.MathUtils;
+import org.nfunk.jep.JEP;
+
+import static org.hisp.dhis.expression.ExpressionService.*;
+import static org.hisp.dhis.expression.MissingValueStrategy.*;
+
+/**
+ * Expression which has been parsed once into a JEP node tree where each
+ * dimensional item, constant, organisation unit group and days reference is
+ * represented by a JEP variable. Evaluating the expression binds the
+ * variables to the values of the given maps and evaluates the node tree,
+ * which avoids building and parsing a new expression string for every
+ * evaluation.
+ * <p>
+ * Expressions with aggregate functions or the isNull function depend on the
+ * values in the input maps for their structure and cannot be compiled, see
+ * {@link #compile(String)}.
+ * <p>
+ * A negative value substituted as text in front of a power operator is
+ * negated after the power is applied, so that <code>-4.0^2</code> is -16,
+ * whereas a variable bound to -4 gives 16. To keep the results of the string
+ * substitution, the expression is evaluated as a string when a variable used
+ * as the base of a power is bound to a negative value.
+ * <p>
+ * Instances are thread-safe, as each thread evaluates with its own parser.
+ *
+ * @author agent
+ */
+public class CompiledExpression
+{
+    private static final Log log = LogFactory.getLog( CompiledExpression.class );
+
+    private static final String VARIABLE_PREFIX = "dhisVariable";
+
+    private static final Pattern JEP_VARIABLE_PATTERN = Pattern.compile( VARIABLE_PREFIX + "\\d+" );
+
+    private static final Pattern POWER_PATTERN = Pattern.compile( "^\\s*\\^" );
+
+    private enum VariableType
+    {
+        DIMENSION_ITEM, CONSTANT, ORG_UNIT_GROUP, DAYS
+    }
+
+    /**
+     * Reference in the expression which is bound to a JEP variable.
+     */
+    private static class Variable
+    {
+        private final String name;
+
+        private final VariableType type;
+
+        private final String id;
+
+        private int occurrences;
+
+        /**
+         * Whether any occurrence is the base of a power.
+         */
+        private boolean powerBase;
+
+        private Variable( String name, VariableType type, String id )
+        {
+            this.name = name;
+            this.type = type;
+            this.id = id;
+        }
+    }
+
+    /**
+     * The JEP variable-based expression.
+     */
+    private final String jepExpression;
+
+    /**
+     * Variables in the order of their first occurrence, including the number
+     * of occurrences of each variable.
+     */
+    private final List<Variable> variables;
+
+    /**
+     * Parsers with the parsed expression, one per thread as JEP parsers are
+     * not thread-safe.
+     */
+    private final ThreadLocal<JEP> parser = ThreadLocal.withInitial( this::parse );
+
+    private CompiledExpression( String jepExpression, List<Variable> variables )
+    {
+        this.jepExpression = jepExpression;
+        this.variables = Collections.unmodifiableList( variables );
+    }
+
+    // -------------------------------------------------------------------------
+    // Compile
+    // -------------------------------------------------------------------------
+
+    /**
+     * Compiles the given expression. Returns null if the expression is null or
+     * empty, contains aggregate functions or the isNull function or cannot be
+     * parsed, in which case the expression must be generated and calculated
+     * as a string.
+     *
+     * @param expression the expression.
+     * @return a {@link CompiledExpression} or null.
+     */
+    public static CompiledExpression compile( String expression )
+    {
+        if ( expression == null || expression.isEmpty() )
+        {
+            return null;
+        }
+
+        expression = ExpressionUtils.normalizeExpression( expression );
+
+        if ( CustomFunctions.AGGREGATE_PATTERN_PREFIX.matcher( expression ).find() ||
+            ISNULL_PATTERN.matcher( expression ).find() )
+        {
+            return null;
+        }
+
+        // ---------------------------------------------------------------------
+        // Scalar custom functions (make them case-insensitive)
+        // ---------------------------------------------------------------------
+
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = CustomFunctions.SCALAR_PATTERN_PREFIX.matcher( expression );
+
+        while ( matcher.find() )
+        {
+            matcher.appendReplacement( sb, expression.substring( matcher.start(), matcher.end() ).toUpperCase() );
+        }
+
+        expression = TextUtils.appendTail( matcher, sb );
+
+        // ---------------------------------------------------------------------
+        // Variables, in the same order as the string substitution
+        // ---------------------------------------------------------------------
+
+        Map<String, Variable> variableMap = new LinkedHashMap<>();
+
+        expression = substituteVariables( expression, VARIABLE_PATTERN, VariableType.DIMENSION_ITEM, variableMap );
+        expression = substituteVariables( expression, CONSTANT_PATTERN, VariableType.CONSTANT, variableMap );
+        expression = substituteVariables( expression, OU_GROUP_PATTERN, VariableType.ORG_UNIT_GROUP, variableMap );
+        expression = substituteVariables( expression, DAYS_PATTERN, VariableType.DAYS, variableMap );
+
+        CompiledExpression compiled = new CompiledExpression( expression, new ArrayList<>( variableMap.values() ) );
+
+        if ( compiled.parser.get() == null )
+        {
+            return null;
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Replaces all matches of the given pattern with a JEP variable name. Each
+     * distinct reference gets one variable.
+     */
+    private static String substituteVariables( String expression, Pattern pattern, VariableType type, Map<String, Variable> variableMap )
+    {
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = pattern.matcher( expression );
+
+        while ( matcher.find() )
+        {
+            String id = VariableType.DAYS == type ? null : matcher.group( GROUP_ID );
+            String key = type.name() + ":" + id;
+
+            Variable variable = variableMap.computeIfAbsent( key,
+                k -> new Variable( VARIABLE_PREFIX + variableMap.size(), type, id ) );
+
+            variable.occurrences++;
+            variable.powerBase |= POWER_PATTERN.matcher( expression.substring( matcher.end() ) ).find();
+
+            matcher.appendReplacement( sb, variable.name );
+        }
+
+        return TextUtils.appendTail( matcher, sb );
+    }
+
+    /**
+     * Creates a parser with all variables declared and the expression parsed.
+     * Returns null if the expression cannot be parsed.
+     */
+    private JEP parse()
+    {
+        JEP jep = MathUtils.getJep();
+
+        for ( Variable variable : variables )
+        {
+            jep.addVariable( variable.name, 0d );
+        }
+
+        jep.parseExpression( jepExpression );
+
+        if ( jep.hasError() )
+        {
+            log.debug( "Could not compile expression: " + jepExpression + ", " + jep.getErrorInfo() );
+            return null;
+        }
+
+        return jep;
+    }
+
+    // -------------------------------------------------------------------------
+    // Evaluate
+    // -------------------------------------------------------------------------
+
+    /**
+     * Evaluates this expression based on the given data maps. Missing values
+     * are replaced by zero, unless the missing value strategy says that the
+     * expression should be skipped.
+     *
+     * @param dimensionItemValueMap map of dimension item identifiers and values.
+     * @param constantMap the constant map.
+     * @param orgUnitCountMap the organisation unit count map.
+     * @param days the number of days.
+     * @param missingValueStrategy the missing value strategy.
+     * @return the value of the expression, or null if the expression should be
+     *         skipped according to the missing value strategy.
+     */
+    public Double evaluate( Map<String, Double> dimensionItemValueMap, Map<String, Double> constantMap,
+        Map<String, Integer> orgUnitCountMap, Integer days, MissingValueStrategy missingValueStrategy )
+    {
+        JEP jep = parser.get();
+
+        int matchCount = 0;
+        int valueCount = 0;
+        boolean negativePowerBase = false;
+
+        Map<String, Number> values = new HashMap<>();
+
+        for ( Variable variable : variables )
+        {
+            Number value = getValue( variable, dimensionItemValueMap, constantMap, orgUnitCountMap, days );
+
+            values.put( variable.name, value );
+            negativePowerBase |= variable.powerBase && value != null && value.doubleValue() < 0d;
+
+            if ( VariableType.DIMENSION_ITEM == variable.type )
+            {
+                matchCount += variable.occurrences;
+
+                if ( value == null && SKIP_IF_ANY_VALUE_MISSING == missingValueStrategy )
+                {
+                    return null;
+                }
+
+                if ( value != null )
+                {
+                    valueCount += variable.occurrences;
+                }
+            }
+
+            jep.addVariable( variable.name, value != null ? value.doubleValue() : 0d );
+        }
+
+        if ( SKIP_IF_ALL_VALUES_MISSING == missingValueStrategy && matchCount > 0 && valueCount == 0 )
+        {
+            return null;
+        }
+
+        if ( negativePowerBase )
+        {
+            return MathUtils.calculateExpression( getExpressionString( values ) );
+        }
+
+        return jep.getValue();
+    }
+
+    /**
+     * Returns the expression with each variable substituted by the string
+     * value of the given values, or by zero if no value exists, in the same
+     * way as string based expression generation.
+     */
+    private String getExpressionString( Map<String, Number> values )
+    {
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = JEP_VARIABLE_PATTERN.matcher( jepExpression );
+
+        while ( matcher.find() )
+        {
+            Number value = values.get( matcher.group() );
+
+            matcher.appendReplacement( sb, value != null ? String.valueOf( value ) : NULL_REPLACEMENT );
+        }
+
+        return TextUtils.appendTail( matcher, sb );
+    }
+
+    private Number getValue( Variable variable, Map<String, Double> dimensionItemValueMap, Map<String, Double> constantMap,
+        Map<String, Integer> orgUnitCountMap, Integer days )
+    {
+        switch ( variable.type )
+        {
+            case DIMENSION_ITEM:
+                return dimensionItemValueMap.get( variable.id );
+            case CONSTANT:
+                return constantMap != null ? constantMap.get( variable.id ) : null;
+            case ORG_UNIT_GROUP:
+                return orgUnitCountMap != null ? orgUnitCountMap.get( variable.id ) : null;
+            default:
+                return days;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return jepExpression;
+    }
+}
@@ -28,6 +28,8 @@ package org.hisp.dhis.expression;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.lang3.ObjectUtils;
@@ -67,7 +69,9 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -89,6 +93,16 @@ public class DefaultExpressionService
 {
     private static final Log log = LogFactory.getLog( DefaultExpressionService.class );
 
+    /**
+     * Cache for compiled expressions, empty if the expression cannot be
+     * compiled.
+     */
+    private static final Cache<String, Optional<CompiledExpression>> COMPILED_EXPRESSION_CACHE = Caffeine.newBuilder()
+        .expireAfterAccess( 1, TimeUnit.HOURS )
+        .initialCapacity( 200 )
+        .maximumSize( 5000 )
+        .build();
+
     // -------------------------------------------------------------------------
     // Dependencies
     // -------------------------------------------------------------------------
@@ -209,28 +223,26 @@ public class DefaultExpressionService
 
         Integer days = period != null ? period.getDaysInPeriod() : null;
 
-        final String denominatorExpression = generateExpression( indicator.getDenominator(), valueMap,
-            constantMap, orgUnitCountMap, days, NEVER_SKIP );
+        Map<String, Double> dimensionItemValueMap = getDimensionItemValueMap( valueMap );
 
-        if ( denominatorExpression == null )
+        final Double denominatorValue = calculateExpression( indicator.getDenominator(), dimensionItemValueMap,
+            constantMap, orgUnitCountMap, days, NEVER_SKIP, null );
+
+        if ( denominatorValue == null )
         {
             return null;
         }
 
-        final double denominatorValue = calculateExpression( denominatorExpression );
-
         if ( !isEqual( denominatorValue, 0d ) )
         {
-            final String numeratorExpression = generateExpression( indicator.getNumerator(), valueMap,
-                constantMap, orgUnitCountMap, days, NEVER_SKIP );
+            final Double numeratorValue = calculateExpression( indicator.getNumerator(), dimensionItemValueMap,
+                constantMap, orgUnitCountMap, days, NEVER_SKIP, null );
 
-            if ( numeratorExpression == null )
+            if ( numeratorValue == null )
             {
                 return null;
             }
 
-            final double numeratorValue = calculateExpression( numeratorExpression );
-
             final double annualizationFactor = period != null ?
                 DateUtils.getAnnualizationFactor( indicator, period.getStartDate(), period.getEndDate() ) : 1d;
             final int factor = indicator.getIndicatorType().getFactor();
@@ -258,11 +270,62 @@ public class DefaultExpressionService
         Map<String, Double> constantMap, Map<String, Integer> orgUnitCountMap, Integer days,
         ListMap<String, Double> aggregateMap )
     {
-        String expressionString = generateExpression( expression.getExpression(),
-            valueMap, constantMap, orgUnitCountMap, days, expression.getMissingValueStrategy(),
-            aggregateMap );
+        return calculateExpression( expression.getExpression(), getDimensionItemValueMap( valueMap ),
+            constantMap, orgUnitCountMap, days, expression.getMissingValueStrategy(), aggregateMap );
+    }
 
-        return expressionString != null ? calculateExpression( expressionString ) : null;
+    /**
+     * Calculates the value of the given expression based on the given data
+     * maps. The compiled expression is used when the expression can be
+     * compiled, otherwise the expression is generated and calculated as a
+     * string.
+     *
+     * @param expression the expression.
+     * @param dimensionItemValueMap map of dimension item identifiers and values.
+     * @param constantMap the constant map.
+     * @param orgUnitCountMap the organisation unit count map.
+     * @param days the number of days.
+     * @param missingValueStrategy the missing value strategy.
+     * @param aggregateMap the aggregate map.
+     * @return the value of the expression, or null if the expression is
+     *         empty or skipped according to the missing value strategy.
+     */
+    private Double calculateExpression( String expression, Map<String, Double> dimensionItemValueMap,
+        Map<String, Double> constantMap, Map<String, Integer> orgUnitCountMap, Integer days,
+        MissingValueStrategy missingValueStrategy, Map<String, List<Double>> aggregateMap )
+    {
+        if ( expression == null || expression.isEmpty() )
+        {
+            return null;
+        }
+
+        Optional<CompiledExpression> compiled = COMPILED_EXPRESSION_CACHE.get( expression,
+            e -> Optional.ofNullable( CompiledExpression.compile( e ) ) );
+
+        if ( compiled.isPresent() )
+        {
+            return compiled.get().evaluate( dimensionItemValueMap, constantMap, orgUnitCountMap, days,
+                ObjectUtils.firstNonNull( missingValueStrategy, NEVER_SKIP ) );
+        }
+
+        String expressionString = generateExpression( expression, dimensionItemValueMap, constantMap,
+            orgUnitCountMap, days, missingValueStrategy, aggregateMap );
+
+        return expressionString != null ? MathUtils.calculateExpression( expressionString ) : null;
+    }
+
+    /**
+     * Returns a map of dimension item identifiers and values for the non-null
+     * values in the given value map.
+     *
+     * @param valueMap the value map.
+     * @return a map of dimension item identifiers and values.
+     */
+    private Map<String, Double> getDimensionItemValueMap( Map<? extends DimensionalItemObject, Double> valueMap )
+    {
+        return valueMap.entrySet().stream().
+            filter( e -> e.getValue() != null ).
+            collect( Collectors.toMap( e -> e.getKey().getDimensionItem(), e -> e.getValue() ) );
     }
 
     @Override
@@ -766,14 +829,15 @@ public class DefaultExpressionService
         Map<String, Double> constantMap, Map<String, Integer> orgUnitCountMap, Integer days,
         MissingValueStrategy missingValueStrategy )
     {
-        return generateExpression( expression, valueMap, constantMap, orgUnitCountMap, days, missingValueStrategy, null );
+        return generateExpression( expression, getDimensionItemValueMap( valueMap ), constantMap, orgUnitCountMap,
+            days, missingValueStrategy, null );
     }
 
     /**
      * Generates an expression based on the given data maps.
      * 
      * @param expression the expression.
-     * @param valueMap the value map.
+     * @param dimensionItemValueMap map of dimension item identifiers and values.
      * @param constantMap the constant map.
      * @param orgUnitCountMap the organisation unit count map.
      * @param days the number of days.
@@ -781,7 +845,7 @@ public class DefaultExpressionService
      * @param aggregateMap the aggregate map.
      * @return an expression.
      */
-    private String generateExpression( String expression, Map<? extends DimensionalItemObject, Double> valueMap,
+    private String generateExpression( String expression, Map<String, Double> dimensionItemValueMap,
         Map<String, Double> constantMap, Map<String, Integer> orgUnitCountMap, Integer days,
         MissingValueStrategy missingValueStrategy, 
         Map<String, List<Double>> aggregateMap )
@@ -793,10 +857,6 @@ public class DefaultExpressionService
         
         expression = ExpressionUtils.normalizeExpression( expression );
 
-        Map<String, Double> dimensionItemValueMap = valueMap.entrySet().stream().
-            filter( e -> e.getValue() != null ).
-            collect( Collectors.toMap( e -> e.getKey().getDimensionItem(), e -> e.getValue() ) );
-
         missingValueStrategy = ObjectUtils.firstNonNull( missingValueStrategy, NEVER_SKIP );
 
         // ---------------------------------------------------------------------
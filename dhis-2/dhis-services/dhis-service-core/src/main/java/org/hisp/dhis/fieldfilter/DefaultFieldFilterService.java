@@ -37,6 +37,7 @@ import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.common.EmbeddedObject;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.node.AbstractNode;
+import org.hisp.dhis.node.LazyCollectionNode;
 import org.hisp.dhis.node.Node;
 import org.hisp.dhis.node.NodeTransformer;
 import org.hisp.dhis.node.Preset;
@@ -144,11 +145,51 @@ public class DefaultFieldFilterService implements FieldFilterService
             return collectionNode;
         }
 
+        final FieldMap fieldMap = getFieldMap( fields, objects.get( 0 ).getClass() );
+
+        objects.forEach( object -> {
+            AbstractNode node = buildNode( fieldMap, wrapper, object, params.getDefaults() );
+
+            if ( node != null )
+            {
+                collectionNode.addChild( node );
+            }
+        } );
+
+        return collectionNode;
+    }
+
+    @Override
+    public CollectionNode toLazyCollectionNode( Class<?> wrapper, FieldFilterParams params )
+    {
+        if ( params.getObjects().isEmpty() )
+        {
+            return toCollectionNode( wrapper, params );
+        }
+
+        String fields = params.getFields() == null ? "" : Joiner.on( "," ).join( params.getFields() );
+
+        Schema rootSchema = schemaService.getDynamicSchema( wrapper );
+
+        List<?> objects = params.getObjects();
+
+        final FieldMap fieldMap = getFieldMap( fields, objects.get( 0 ).getClass() );
+
+        CollectionNode collectionNode = new LazyCollectionNode( rootSchema.getCollectionName(), objects,
+            object -> buildNode( fieldMap, wrapper, object, params.getDefaults() ) );
+        collectionNode.setNamespace( rootSchema.getNamespace() );
+
+        return collectionNode;
+    }
+
+    private FieldMap getFieldMap( String fields, Class<?> klass )
+    {
         FieldMap fieldMap = new FieldMap();
-        Schema schema = schemaService.getDynamicSchema( objects.get( 0 ).getClass() );
 
         if ( StringUtils.isEmpty( fields ) )
         {
+            Schema schema = schemaService.getDynamicSchema( klass );
+
             for ( Property property : schema.getProperties() )
             {
                 fieldMap.put( property.getName(), new FieldMap() );
@@ -159,18 +200,7 @@ public class DefaultFieldFilterService implements FieldFilterService
             fieldMap = fieldParser.parse( fields );
         }
 
-        final FieldMap finalFieldMap = fieldMap;
-
-        objects.forEach( object -> {
-            AbstractNode node = buildNode( finalFieldMap, wrapper, object, params.getDefaults() );
-
-            if ( node != null )
-            {
-                collectionNode.addChild( node );
-            }
-        } );
-
-        return collectionNode;
+        return fieldMap;
     }
 
     private AbstractNode buildNode( FieldMap fieldMap, Class<?> klass, Object object, Defaults defaults )
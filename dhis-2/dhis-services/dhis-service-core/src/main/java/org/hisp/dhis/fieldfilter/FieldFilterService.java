@@ -45,4 +45,12 @@ public interface FieldFilterService
      * Perform inclusion/exclusion on a list of objects.
      */
     CollectionNode toCollectionNode( Class<?> wrapper, FieldFilterParams params );
+
+    /**
+     * Perform inclusion/exclusion on a list of objects. The node of each
+     * object is built when the node is serialized, so that only one object
+     * node is held in memory at a time. Intended for large lists which are
+     * serialized directly.
+     */
+    CollectionNode toLazyCollectionNode( Class<?> wrapper, FieldFilterParams params );
 }
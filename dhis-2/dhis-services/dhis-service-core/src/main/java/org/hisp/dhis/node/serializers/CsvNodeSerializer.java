@@ -82,7 +82,7 @@ public class CsvNodeSerializer extends AbstractNodeSerializer
         {
             if ( child.isCollection() )
             {
-                if ( !child.getChildren().isEmpty() )
+                if ( !((CollectionNode) child).isEmpty() )
                 {
                     Node node = child.getChildren().get( 0 );
 
@@ -170,7 +170,7 @@ public class StAXNodeSerializer extends AbstractNodeSerializer
     @Override
     protected void startWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
-        if ( collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty() )
+        if ( collectionNode.isWrapping() && !collectionNode.isEmpty() )
         {
             writeStartElement( collectionNode );
         }
@@ -179,7 +179,7 @@ public class StAXNodeSerializer extends AbstractNodeSerializer
     @Override
     protected void endWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
-        if ( collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty() )
+        if ( collectionNode.isWrapping() && !collectionNode.isEmpty() )
         {
             writer.writeEndElement();
         }
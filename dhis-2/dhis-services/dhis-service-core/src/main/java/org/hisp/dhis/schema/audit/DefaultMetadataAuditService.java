@@ -28,6 +28,7 @@ package org.hisp.dhis.schema.audit;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.audit.AuditWriter;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -40,15 +41,18 @@ public class DefaultMetadataAuditService implements MetadataAuditService
 {
     private final MetadataAuditStore auditStore;
 
-    public DefaultMetadataAuditService( MetadataAuditStore auditStore )
+    private final AuditWriter auditWriter;
+
+    public DefaultMetadataAuditService( MetadataAuditStore auditStore, AuditWriter auditWriter )
     {
         this.auditStore = auditStore;
+        this.auditWriter = auditWriter;
     }
 
     @Override
     public void addMetadataAudit( MetadataAudit audit )
     {
-        auditStore.save( audit );
+        auditWriter.write( audit );
     }
 
     @Override
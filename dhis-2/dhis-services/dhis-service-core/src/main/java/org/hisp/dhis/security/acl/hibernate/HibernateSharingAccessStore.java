@@ -0,0 +1,157 @@
+package org.hisp.dhis.security.acl.hibernate;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hisp.dhis.schema.Schema;
+import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.security.acl.SharingAccessStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * @author agent
+ */
+public class HibernateSharingAccessStore
+    implements SharingAccessStore
+{
+    private static final Log log = LogFactory.getLog( HibernateSharingAccessStore.class );
+
+    static final String INSERT_SQL = "insert into " + TABLE_NAME + " (tablename, objectid, userid, usergroupid, access) values (?, ?, ?, ?, ?)";
+
+    static final int[] INSERT_TYPES = { Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.VARCHAR };
+
+    static final String DELETE_SQL = "delete from " + TABLE_NAME + " where tablename = ? and objectid = ?";
+
+    static final String DELETE_USER_SQL = DELETE_SQL + " and userid is not null";
+
+    static final String DELETE_USER_GROUP_SQL = DELETE_SQL + " and usergroupid is not null";
+
+    // -------------------------------------------------------------------------
+    // Dependencies
+    // -------------------------------------------------------------------------
+
+    private SessionFactory sessionFactory;
+
+    public void setSessionFactory( SessionFactory sessionFactory )
+    {
+        this.sessionFactory = sessionFactory;
+    }
+
+    private JdbcTemplate jdbcTemplate;
+
+    public void setJdbcTemplate( JdbcTemplate jdbcTemplate )
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private SchemaService schemaService;
+
+    public void setSchemaService( SchemaService schemaService )
+    {
+        this.schemaService = schemaService;
+    }
+
+    // -------------------------------------------------------------------------
+    // SharingAccessStore implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    @Transactional
+    public int populateAccess()
+    {
+        jdbcTemplate.update( "delete from " + TABLE_NAME );
+
+        MetamodelImplementor metamodel = (MetamodelImplementor) sessionFactory.getMetamodel();
+
+        int count = 0;
+
+        for ( Schema schema : schemaService.getSchemas() )
+        {
+            if ( !schema.isShareable() || !schema.isPersisted() )
+            {
+                continue;
+            }
+
+            String tableName = SharingAccessEventListener.getTableName( metamodel.entityPersister( schema.getKlass() ) );
+
+            List<Object[]> batchArgs = new ArrayList<>();
+
+            if ( schema.havePersistedProperty( "userGroupAccesses" ) )
+            {
+                String hql = "select c.id, uga.userGroup.id, uga.access from " + schema.getKlass().getName() + " c " +
+                    "join c.userGroupAccesses uga";
+
+                for ( Object[] row : getRows( hql ) )
+                {
+                    batchArgs.add( new Object[] { tableName, row[0], null, row[1], row[2] } );
+                }
+            }
+
+            if ( schema.havePersistedProperty( "userAccesses" ) )
+            {
+                String hql = "select c.id, ua.user.id, ua.access from " + schema.getKlass().getName() + " c " +
+                    "join c.userAccesses ua";
+
+                for ( Object[] row : getRows( hql ) )
+                {
+                    batchArgs.add( new Object[] { tableName, row[0], row[1], null, row[2] } );
+                }
+            }
+
+            if ( !batchArgs.isEmpty() )
+            {
+                jdbcTemplate.batchUpdate( INSERT_SQL, batchArgs, INSERT_TYPES );
+            }
+
+            count += batchArgs.size();
+        }
+
+        log.info( "Indexed sharing accesses: " + count );
+
+        return count;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    @SuppressWarnings( "unchecked" )
+    private List<Object[]> getRows( String hql )
+    {
+        return sessionFactory.getCurrentSession().createQuery( hql ).list();
+    }
+}
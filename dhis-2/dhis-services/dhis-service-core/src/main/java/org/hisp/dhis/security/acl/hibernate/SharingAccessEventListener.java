@@ -0,0 +1,246 @@
+package org.hisp.dhis.security.acl.hibernate;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hisp.dhis.user.UserAccess;
+import org.hisp.dhis.user.UserGroupAccess;
+
+/**
+ * Keeps the sharing access index in line with the sharing of objects. The
+ * index entries of an object are keyed on the root table and identifier of
+ * the object. The user or user group entries of an object are replaced when
+ * the user or user group access collection of the object is created, updated
+ * or removed, and all entries are removed when the object is deleted. Only
+ * the collection being flushed is read, so that other lazy collections are
+ * not loaded during flush. Entries are written through the connection of the
+ * session so that they are part of the same transaction as the object.
+ *
+ * @author agent
+ */
+public class SharingAccessEventListener
+    implements PostDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+    PostCollectionRemoveEventListener
+{
+    private static final String USER_GROUP_ACCESSES = "userGroupAccesses";
+
+    private static final String USER_ACCESSES = "userAccesses";
+
+    @Override
+    public void onPostDelete( PostDeleteEvent event )
+    {
+        if ( isShareable( event.getPersister() ) )
+        {
+            String tableName = getTableName( event.getPersister() );
+            Serializable id = event.getId();
+
+            event.getSession().doWork( connection -> {
+                try ( PreparedStatement statement = connection.prepareStatement( HibernateSharingAccessStore.DELETE_SQL ) )
+                {
+                    statement.setString( 1, tableName );
+                    statement.setInt( 2, (Integer) id );
+                    statement.executeUpdate();
+                }
+            } );
+        }
+    }
+
+    @Override
+    public void onPostRecreateCollection( PostCollectionRecreateEvent event )
+    {
+        updateAccess( event, true );
+    }
+
+    @Override
+    public void onPostUpdateCollection( PostCollectionUpdateEvent event )
+    {
+        updateAccess( event, true );
+    }
+
+    @Override
+    public void onPostRemoveCollection( PostCollectionRemoveEvent event )
+    {
+        updateAccess( event, false );
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding( EntityPersister persister )
+    {
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Replaces the index entries of the owner of the given sharing collection
+     * with the accesses of the collection.
+     *
+     * @param event the collection event.
+     * @param insert whether to insert the accesses of the collection, false
+     *        if the collection is removed.
+     */
+    private void updateAccess( AbstractCollectionEvent event, boolean insert )
+    {
+        PersistentCollection collection = event.getCollection();
+        String role = collection != null ? collection.getRole() : null;
+
+        boolean userGroupAccesses = role != null && role.endsWith( "." + USER_GROUP_ACCESSES );
+        boolean userAccesses = role != null && role.endsWith( "." + USER_ACCESSES );
+
+        if ( !(userGroupAccesses || userAccesses) || event.getAffectedOwnerIdOrNull() == null )
+        {
+            return;
+        }
+
+        EventSource session = event.getSession();
+        MetamodelImplementor metamodel = (MetamodelImplementor) session.getFactory().getMetamodel();
+        String tableName = getTableName( metamodel.entityPersister( event.getAffectedOwnerEntityName() ) );
+        Integer id = (Integer) event.getAffectedOwnerIdOrNull();
+
+        List<Object[]> rows = new ArrayList<>();
+
+        if ( insert && collection instanceof Collection )
+        {
+            for ( Object element : (Collection<?>) collection )
+            {
+                if ( element instanceof UserGroupAccess )
+                {
+                    UserGroupAccess access = (UserGroupAccess) element;
+
+                    if ( access.getUserGroup() != null && access.getAccess() != null )
+                    {
+                        rows.add( new Object[] { null, access.getUserGroup().getId(), access.getAccess() } );
+                    }
+                }
+                else if ( element instanceof UserAccess )
+                {
+                    UserAccess access = (UserAccess) element;
+
+                    if ( access.getUser() != null && access.getAccess() != null )
+                    {
+                        rows.add( new Object[] { access.getUser().getId(), null, access.getAccess() } );
+                    }
+                }
+            }
+        }
+
+        final String deleteSql = userGroupAccesses ?
+            HibernateSharingAccessStore.DELETE_USER_GROUP_SQL : HibernateSharingAccessStore.DELETE_USER_SQL;
+
+        session.doWork( connection -> {
+            try ( PreparedStatement statement = connection.prepareStatement( deleteSql ) )
+            {
+                statement.setString( 1, tableName );
+                statement.setInt( 2, id );
+                statement.executeUpdate();
+            }
+
+            if ( rows.isEmpty() )
+            {
+                return;
+            }
+
+            try ( PreparedStatement statement = connection.prepareStatement( HibernateSharingAccessStore.INSERT_SQL ) )
+            {
+                for ( Object[] row : rows )
+                {
+                    statement.setString( 1, tableName );
+                    statement.setInt( 2, id );
+                    setInteger( statement, 3, (Integer) row[0] );
+                    setInteger( statement, 4, (Integer) row[1] );
+                    statement.setString( 5, (String) row[2] );
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+            }
+        } );
+    }
+
+    private void setInteger( PreparedStatement statement, int index, Integer value )
+        throws SQLException
+    {
+        if ( value != null )
+        {
+            statement.setInt( index, value );
+        }
+        else
+        {
+            statement.setNull( index, Types.INTEGER );
+        }
+    }
+
+    /**
+     * Indicates whether the given persister maps sharing for its entity.
+     */
+    private boolean isShareable( EntityPersister persister )
+    {
+        for ( String propertyName : persister.getPropertyNames() )
+        {
+            if ( USER_GROUP_ACCESSES.equals( propertyName ) || USER_ACCESSES.equals( propertyName ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the name of the root table of the given persister, which the
+     * index is keyed on together with the object identifier.
+     */
+    static String getTableName( EntityPersister persister )
+    {
+        return ((AbstractEntityPersister) persister).getRootTableName();
+    }
+}
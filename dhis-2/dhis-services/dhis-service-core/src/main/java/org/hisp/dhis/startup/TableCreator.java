@@ -61,7 +61,16 @@ public class TableCreator
     {        
         createSilently( "create unique index dataapproval_unique on dataapproval(datasetid,periodid,organisationunitid,attributeoptioncomboid,dataapprovallevelid)", "dataapproval_unique" );
         createSilently( "create index in_datavalueaudit on datavalueaudit(dataelementid,periodid,organisationunitid,categoryoptioncomboid,attributeoptioncomboid)", "in_datavalueaudit" );
+        createSilently( "create index in_datavalue_lastupdated_key on datavalue(lastupdated,dataelementid,periodid,sourceid,categoryoptioncomboid,attributeoptioncomboid)", "in_datavalue_lastupdated_key" );
         createSilently( "create index in_trackedentityattributevalue_attributeid on trackedentityattributevalue(trackedentityattributeid)", "in_trackedentityattributevalue_attributeid" );
+        createSilently( "create index in_organisationunit_path_pattern on organisationunit(path varchar_pattern_ops)", "in_organisationunit_path_pattern" );
+        createSilently( "create table trackedentityattributetoken (trackedentityinstanceid integer not null, trackedentityattributeid integer not null, token varchar(255) not null)", "trackedentityattributetoken" );
+        createSilently( "create index in_trackedentityattributetoken_token on trackedentityattributetoken(token,trackedentityattributeid)", "in_trackedentityattributetoken_token" );
+        createSilently( "create index in_trackedentityattributetoken_teiid on trackedentityattributetoken(trackedentityinstanceid,trackedentityattributeid)", "in_trackedentityattributetoken_teiid" );
+        createSilently( "create table sharingaccess (tablename varchar(255) not null, objectid integer not null, userid integer, usergroupid integer, access varchar(255) not null)", "sharingaccess" );
+        createSilently( "create index in_sharingaccess_object on sharingaccess(objectid,tablename)", "in_sharingaccess_object" );
+        createSilently( "create index in_sharingaccess_userid on sharingaccess(userid)", "in_sharingaccess_userid" );
+        createSilently( "create index in_sharingaccess_usergroupid on sharingaccess(usergroupid)", "in_sharingaccess_usergroupid" );
     }
     
     private void createSilently( final String sql, final String name )
@@ -0,0 +1,74 @@
+package org.hisp.dhis.startup;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.startup.AbstractStartupRoutine;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeTokenStore;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Populates the search index of tracked entity attribute values until a
+ * population has completed. Completion is recorded in a system setting after
+ * the last batch, so an interrupted population is repeated on the next startup.
+ * Searches use the index only once the setting is recorded.
+ *
+ * @author agent
+ */
+public class TrackedEntityAttributeTokenPopulator
+    extends AbstractStartupRoutine
+{
+    private static final Log log = LogFactory.getLog( TrackedEntityAttributeTokenPopulator.class );
+
+    @Autowired
+    private TrackedEntityAttributeTokenStore attributeTokenStore;
+
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
+    @Override
+    public void execute()
+    {
+        if ( (Boolean) systemSettingManager.getSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED ) )
+        {
+            return;
+        }
+
+        log.info( "Populating tracked entity attribute search index" );
+
+        int count = attributeTokenStore.populateTokens();
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.TRUE );
+
+        log.info( "Populated tracked entity attribute search index with values: " + count );
+    }
+}
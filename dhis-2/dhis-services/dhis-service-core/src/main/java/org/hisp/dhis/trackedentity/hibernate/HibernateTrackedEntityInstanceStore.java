@@ -42,19 +42,24 @@ import org.hisp.dhis.common.QueryItem;
 import org.hisp.dhis.common.QueryOperator;
 import org.hisp.dhis.common.hibernate.HibernateIdentifiableObjectStore;
 import org.hisp.dhis.commons.util.SqlHelper;
+import org.hisp.dhis.commons.util.TextUtils;
 import org.hisp.dhis.event.EventStatus;
 import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceQueryParams;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceStore;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeTokenStore;
 import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.hisp.dhis.common.IdentifiableObjectUtils.getIdentifiers;
 import static org.hisp.dhis.common.IdentifiableObjectUtils.getUids;
@@ -85,6 +90,13 @@ public class HibernateTrackedEntityInstanceStore
         this.statementBuilder = statementBuilder;
     }
 
+    private SystemSettingManager systemSettingManager;
+
+    public void setSystemSettingManager( SystemSettingManager systemSettingManager )
+    {
+        this.systemSettingManager = systemSettingManager;
+    }
+
     // -------------------------------------------------------------------------
     // Implementation methods
     // -------------------------------------------------------------------------
@@ -164,6 +176,8 @@ public class HibernateTrackedEntityInstanceStore
             }
         }
 
+        final boolean tokensPopulated = isTokensPopulated();
+
         if ( params.hasQuery() )
         {
             QueryFilter queryFilter = params.getQuery();
@@ -173,6 +187,13 @@ public class HibernateTrackedEntityInstanceStore
             hql += hlp.whereAnd() + " exists (from TrackedEntityAttributeValue teav where teav.entityInstance=tei";
 
             hql += " and teav.plainValue " + queryFilter.getSqlOperator() + filter + ")";
+
+            String token = tokensPopulated ? getIndexedToken( queryFilter ) : null;
+
+            if ( token != null )
+            {
+                hql += hlp.whereAnd() + getTokenHqlClause( token, null );
+            }
         }
 
         if ( params.hasFilters() )
@@ -194,6 +215,13 @@ public class HibernateTrackedEntityInstanceStore
                     else
                     {
                         hql += " and lower(teav.plainValue) " + queryFilter.getSqlOperator() + filter + ")";
+
+                        String token = tokensPopulated ? getIndexedToken( queryFilter ) : null;
+
+                        if ( token != null )
+                        {
+                            hql += hlp.whereAnd() + getTokenHqlClause( token, queryItem.getItem().getId() );
+                        }
                     }
                 }
             }
@@ -408,6 +436,27 @@ public class HibernateTrackedEntityInstanceStore
             sql += hlp.whereAnd() + " tei.trackedentitytypeid = " + params.getTrackedEntityType().getId() + " ";
         }
 
+        final boolean tokensPopulated = isTokensPopulated();
+
+        if ( !params.isOrQuery() && tokensPopulated )
+        {
+            for ( QueryItem item : params.getAttributesAndFilters() )
+            {
+                if ( item.hasFilter() && !item.isNumeric() )
+                {
+                    for ( QueryFilter filter : item.getFilters() )
+                    {
+                        String token = getIndexedToken( filter );
+
+                        if ( token != null )
+                        {
+                            sql += hlp.whereAnd() + getTokenClause( token, Collections.singletonList( item.getItem().getId() ) );
+                        }
+                    }
+                }
+            }
+        }
+
         params.handleOrganisationUnits();
 
         if ( params.isOrganisationUnitMode( OrganisationUnitSelectionMode.ALL ) )
@@ -490,7 +539,18 @@ public class HibernateTrackedEntityInstanceStore
             sql += ") ";
         }
 
-        if ( params.isOrQuery() && params.hasAttributesOrFilters() )
+        if ( params.isOrQuery() && params.hasAttributesOrFilters() && tokensPopulated && isIndexedQuery( params.getQuery() ) )
+        {
+            List<Integer> attributeIds = params.getAttributesAndFilters().stream()
+                .map( item -> item.getItem().getId() )
+                .collect( Collectors.toList() );
+
+            for ( String queryToken : getTokens( params.getQuery().getFilter() ) )
+            {
+                sql += hlp.whereAnd() + getTokenClause( StringUtils.lowerCase( queryToken ), attributeIds );
+            }
+        }
+        else if ( params.isOrQuery() && params.hasAttributesOrFilters() )
         {
             final String start = params.getQuery().isOperator( QueryOperator.LIKE ) ? anyChar : wordStart;
             final String end = params.getQuery().isOperator( QueryOperator.LIKE ) ? anyChar : wordEnd;
@@ -526,6 +586,70 @@ public class HibernateTrackedEntityInstanceStore
         return sql;
     }
 
+    /**
+     * Indicates whether the attribute search index has been populated for all
+     * existing attribute values. Until then searches use the attribute values
+     * only, as the index may be incomplete.
+     */
+    private boolean isTokensPopulated()
+    {
+        return (Boolean) systemSettingManager.getSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED );
+    }
+
+    /**
+     * Indicates whether the given free text query can be resolved through the
+     * attribute search index, which is the case for whole word queries where
+     * each query token is a single word of indexed length.
+     */
+    private boolean isIndexedQuery( QueryFilter query )
+    {
+        return query.isOperator( QueryOperator.EQ ) && getTokens( query.getFilter() ).stream()
+            .allMatch( token -> isWord( token ) && token.length() <= TrackedEntityAttributeTokenStore.MAX_TOKEN_LENGTH );
+    }
+
+    /**
+     * Returns the longest word of the given equality filter which can be looked
+     * up in the attribute search index, or null if the filter is not an equality
+     * filter or has no such word. An attribute value which is equal to the
+     * filter contains all words of the filter.
+     */
+    private String getIndexedToken( QueryFilter filter )
+    {
+        if ( !filter.isOperator( QueryOperator.EQ ) )
+        {
+            return null;
+        }
+
+        return getWords( filter.getFilter() ).stream()
+            .filter( token -> token.length() <= TrackedEntityAttributeTokenStore.MAX_TOKEN_LENGTH )
+            .max( Comparator.comparingInt( String::length ) )
+            .orElse( null );
+    }
+
+    /**
+     * Returns a clause restricting tracked entity instances to those with a value
+     * containing the given lower case word for any of the given attributes.
+     */
+    private String getTokenClause( String token, Collection<Integer> attributeIds )
+    {
+        return " tei.trackedentityinstanceid in (" +
+            "select teat.trackedentityinstanceid from " + TrackedEntityAttributeTokenStore.TABLE_NAME + " teat " +
+            "where teat.token = " + statementBuilder.encode( token ) + " " +
+            "and teat.trackedentityattributeid in (" + getCommaDelimitedString( attributeIds ) + ")) ";
+    }
+
+    /**
+     * Returns a HQL clause restricting tracked entity instances to those with a
+     * value containing the given lower case word, for the given attribute if
+     * not null or else for any attribute.
+     */
+    private String getTokenHqlClause( String token, Integer attributeId )
+    {
+        return " tei.id in (select teat.instanceId from TrackedEntityAttributeToken teat " +
+            "where teat.token = " + statementBuilder.encode( token ) +
+            ( attributeId != null ? " and teat.attributeId = " + attributeId : "" ) + ") ";
+    }
+
     private String getOrderClause( TrackedEntityInstanceQueryParams params )
     {
         List<String> cols = getStaticGridColumns();
@@ -28,6 +28,7 @@ package org.hisp.dhis.trackedentityattributevalue;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.audit.AuditWriter;
 import org.hisp.dhis.common.AuditType;
 import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
@@ -44,10 +45,13 @@ public class DefaultTrackedEntityAttributeValueAuditService
     @Autowired
     private TrackedEntityAttributeValueAuditStore trackedEntityAttributeValueAuditStore;
 
+    @Autowired
+    private AuditWriter auditWriter;
+
     @Override
     public void addTrackedEntityAttributeValueAudit( TrackedEntityAttributeValueAudit trackedEntityAttributeValueAudit )
     {
-        trackedEntityAttributeValueAuditStore.addTrackedEntityAttributeValueAudit( trackedEntityAttributeValueAudit );
+        auditWriter.write( trackedEntityAttributeValueAudit );
     }
 
     @Override
@@ -75,6 +79,7 @@ public class DefaultTrackedEntityAttributeValueAuditService
     @Override
     public void deleteTrackedEntityAttributeValueAudits( TrackedEntityInstance trackedEntityInstance )
     {
+        auditWriter.flush();
         trackedEntityAttributeValueAuditStore.deleteTrackedEntityAttributeValueAudits( trackedEntityInstance );
     }
 }
@@ -73,6 +73,9 @@ public class DefaultTrackedEntityAttributeValueService
     @Autowired
     private DhisConfigurationProvider dhisConfigurationProvider;
 
+    @Autowired
+    private TrackedEntityAttributeTokenStore attributeTokenStore;
+
     // -------------------------------------------------------------------------
     // Implementation methods
     // -------------------------------------------------------------------------
@@ -85,6 +88,7 @@ public class DefaultTrackedEntityAttributeValueService
 
         trackedEntityAttributeValueAuditService.addTrackedEntityAttributeValueAudit( trackedEntityAttributeValueAudit );
         attributeValueStore.delete( attributeValue );
+        attributeTokenStore.deleteTokens( attributeValue );
     }
 
     @Override
@@ -117,6 +121,13 @@ public class DefaultTrackedEntityAttributeValueService
         return null;
     }
 
+    @Override
+    public List<TrackedEntityAttributeValue> getTrackedEntityAttributeValues( Collection<TrackedEntityInstance> instances,
+        Collection<TrackedEntityAttribute> attributes )
+    {
+        return attributeValueStore.get( instances, attributes );
+    }
+
     @Override
     public void addTrackedEntityAttributeValue( TrackedEntityAttributeValue attributeValue )
     {
@@ -142,6 +153,7 @@ public class DefaultTrackedEntityAttributeValueService
         if ( attributeValue.getValue() != null )
         {
             attributeValueStore.saveVoid( attributeValue );
+            attributeTokenStore.updateTokens( attributeValue );
             trackedEntityAttributeReservedValueService.markTrackedEntityAttributeReservedValueAsUtilized( attributeValue.getAttribute(), attributeValue.getEntityInstance(), attributeValue.getAuditValue() );
         }
     }
@@ -152,6 +164,7 @@ public class DefaultTrackedEntityAttributeValueService
         if ( attributeValue != null && StringUtils.isEmpty( attributeValue.getValue() ) )
         {
             attributeValueStore.delete( attributeValue );
+            attributeTokenStore.deleteTokens( attributeValue );
         }
         else
         {
@@ -174,6 +187,7 @@ public class DefaultTrackedEntityAttributeValueService
 
             trackedEntityAttributeValueAuditService.addTrackedEntityAttributeValueAudit( trackedEntityAttributeValueAudit );
             attributeValueStore.update( attributeValue );
+            attributeTokenStore.updateTokens( attributeValue );
             trackedEntityAttributeReservedValueService.markTrackedEntityAttributeReservedValueAsUtilized( attributeValue.getAttribute(), attributeValue.getEntityInstance(), attributeValue.getAuditValue() );
         }
     }
@@ -189,6 +203,7 @@ public class DefaultTrackedEntityAttributeValueService
     public void copyTrackedEntityAttributeValues( TrackedEntityInstance source, TrackedEntityInstance destination )
     {
         attributeValueStore.deleteByTrackedEntityInstance( destination );
+        attributeTokenStore.deleteTokens( destination );
 
         for ( TrackedEntityAttributeValue attributeValue : getTrackedEntityAttributeValues( source ) )
         {
@@ -100,6 +100,20 @@ public class HibernateTrackedEntityAttributeValueStore
         return getCriteria( Restrictions.in( "entityInstance", entityInstances ) ).list();
     }
 
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public List<TrackedEntityAttributeValue> get( Collection<TrackedEntityInstance> entityInstances, Collection<TrackedEntityAttribute> attributes )
+    {
+        if ( entityInstances == null || entityInstances.isEmpty() || attributes == null || attributes.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        return getCriteria(
+            Restrictions.in( "entityInstance", entityInstances ),
+            Restrictions.in( "attribute", attributes ) ).list();
+    }
+
     @Override
     @SuppressWarnings( "unchecked" )
     public List<TrackedEntityAttributeValue> searchByValue( TrackedEntityAttribute attribute, String searchText )
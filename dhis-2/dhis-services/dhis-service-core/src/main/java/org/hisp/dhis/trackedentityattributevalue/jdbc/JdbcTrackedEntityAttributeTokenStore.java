@@ -0,0 +1,191 @@
+package org.hisp.dhis.trackedentityattributevalue.jdbc;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.commons.util.TextUtils;
+import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeTokenStore;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+/**
+ * @author agent
+ */
+public class JdbcTrackedEntityAttributeTokenStore
+    implements TrackedEntityAttributeTokenStore
+{
+    private static final Log log = LogFactory.getLog( JdbcTrackedEntityAttributeTokenStore.class );
+
+    /**
+     * Number of tracked entity instance identifiers to index per query when
+     * populating the search index.
+     */
+    private static final int POPULATE_PAGE_SIZE = 10000;
+
+    private static final String INSERT_SQL = "insert into " + TABLE_NAME +
+        " (trackedentityinstanceid, trackedentityattributeid, token) values (?, ?, ?)";
+
+    // -------------------------------------------------------------------------
+    // Dependencies
+    // -------------------------------------------------------------------------
+
+    private JdbcTemplate jdbcTemplate;
+
+    public void setJdbcTemplate( JdbcTemplate jdbcTemplate )
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // -------------------------------------------------------------------------
+    // TrackedEntityAttributeTokenStore implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void updateTokens( TrackedEntityAttributeValue attributeValue )
+    {
+        deleteTokens( attributeValue );
+
+        if ( attributeValue.getAttribute().isConfidentialBool() )
+        {
+            return;
+        }
+
+        int entityInstanceId = attributeValue.getEntityInstance().getId();
+        int attributeId = attributeValue.getAttribute().getId();
+
+        List<Object[]> batchArgs = getTokens( attributeValue.getPlainValue() ).stream()
+            .map( token -> new Object[] { entityInstanceId, attributeId, token } )
+            .collect( Collectors.toList() );
+
+        if ( !batchArgs.isEmpty() )
+        {
+            jdbcTemplate.batchUpdate( INSERT_SQL, batchArgs );
+        }
+    }
+
+    @Override
+    public void deleteTokens( TrackedEntityAttributeValue attributeValue )
+    {
+        final String sql = "delete from " + TABLE_NAME + " " +
+            "where trackedentityinstanceid = ? and trackedentityattributeid = ?";
+
+        jdbcTemplate.update( sql, attributeValue.getEntityInstance().getId(), attributeValue.getAttribute().getId() );
+    }
+
+    @Override
+    public void deleteTokens( TrackedEntityInstance instance )
+    {
+        jdbcTemplate.update( "delete from " + TABLE_NAME + " where trackedentityinstanceid = ?", instance.getId() );
+    }
+
+    @Override
+    public boolean hasTokens()
+    {
+        return !jdbcTemplate.queryForList( "select token from " + TABLE_NAME + " limit 1", String.class ).isEmpty();
+    }
+
+    @Override
+    public int populateTokens()
+    {
+        Integer maxId = jdbcTemplate.queryForObject( "select max(trackedentityinstanceid) from trackedentityattributevalue", Integer.class );
+
+        if ( maxId == null )
+        {
+            return 0;
+        }
+
+        final String sql =
+            "select teav.trackedentityinstanceid, teav.trackedentityattributeid, teav.value " +
+            "from trackedentityattributevalue teav " +
+            "inner join trackedentityattribute tea on teav.trackedentityattributeid = tea.trackedentityattributeid " +
+            "where coalesce(tea.confidential, false) = false " +
+            "and teav.value is not null " +
+            "and teav.trackedentityinstanceid >= ? " +
+            "and teav.trackedentityinstanceid < ?";
+
+        final String deleteSql = "delete from " + TABLE_NAME + " " +
+            "where trackedentityinstanceid >= ? " +
+            "and trackedentityinstanceid < ?";
+
+        int count = 0;
+
+        for ( int startId = 0; startId <= maxId; startId += POPULATE_PAGE_SIZE )
+        {
+            jdbcTemplate.update( deleteSql, startId, startId + POPULATE_PAGE_SIZE );
+
+            SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql, startId, startId + POPULATE_PAGE_SIZE );
+
+            List<Object[]> batchArgs = new ArrayList<>();
+
+            while ( rowSet.next() )
+            {
+                int entityInstanceId = rowSet.getInt( "trackedentityinstanceid" );
+                int attributeId = rowSet.getInt( "trackedentityattributeid" );
+
+                for ( String token : getTokens( rowSet.getString( "value" ) ) )
+                {
+                    batchArgs.add( new Object[] { entityInstanceId, attributeId, token } );
+                }
+
+                count++;
+            }
+
+            if ( !batchArgs.isEmpty() )
+            {
+                jdbcTemplate.batchUpdate( INSERT_SQL, batchArgs );
+            }
+        }
+
+        log.info( "Indexed tracked entity attribute values: " + count );
+
+        return count;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the words of the given value which fit in the search index.
+     */
+    private Set<String> getTokens( String value )
+    {
+        return TextUtils.getWords( value ).stream()
+            .filter( token -> token.length() <= MAX_TOKEN_LENGTH )
+            .collect( Collectors.toSet() );
+    }
+}
@@ -29,6 +29,7 @@ package org.hisp.dhis.trackedentitydatavalue;
  */
 
 import com.google.common.collect.Lists;
+import org.hisp.dhis.audit.AuditWriter;
 import org.hisp.dhis.common.AuditType;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.program.ProgramStageInstance;
@@ -51,6 +52,9 @@ public class DefaultTrackedEntityDataValueAuditService
     @Autowired
     private TrackedEntityDataValueAuditStore trackedEntityDataValueAuditStore;
 
+    @Autowired
+    private AuditWriter auditWriter;
+
     // -------------------------------------------------------------------------
     // Implementation methods
     // -------------------------------------------------------------------------
@@ -58,7 +62,7 @@ public class DefaultTrackedEntityDataValueAuditService
     @Override
     public void addTrackedEntityDataValueAudit( TrackedEntityDataValueAudit trackedEntityDataValueAudit )
     {
-        trackedEntityDataValueAuditStore.addTrackedEntityDataValueAudit( trackedEntityDataValueAudit );
+        auditWriter.write( trackedEntityDataValueAudit );
     }
 
     @Override
@@ -102,6 +106,7 @@ public class DefaultTrackedEntityDataValueAuditService
     @Override
     public void deleteTrackedEntityDataValueAudits( ProgramStageInstance programStageInstance )
     {
+        auditWriter.flush();
         trackedEntityDataValueAuditStore.deleteTrackedEntityDataValueAudits( programStageInstance );
     }
 }
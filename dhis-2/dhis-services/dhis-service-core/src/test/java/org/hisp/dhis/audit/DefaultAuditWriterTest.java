@@ -0,0 +1,219 @@
+package org.hisp.dhis.audit;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hibernate.SessionFactory;
+import org.hisp.dhis.common.AuditType;
+import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueAuditStore;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class DefaultAuditWriterTest
+{
+    @Mock
+    private DhisConfigurationProvider config;
+
+    @Mock
+    private DataValueAuditStore dataValueAuditStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock( answer = Answers.RETURNS_DEEP_STUBS )
+    private SessionFactory sessionFactory;
+
+    private DefaultAuditWriter auditWriter;
+
+    @Before
+    public void setUp()
+    {
+        auditWriter = new DefaultAuditWriter();
+        auditWriter.setDataValueAuditStore( dataValueAuditStore );
+        auditWriter.setSessionFactory( sessionFactory );
+        auditWriter.setConfig( config );
+        auditWriter.setTransactionManager( transactionManager );
+    }
+
+    @Test
+    public void testWriteSync()
+    {
+        when( config.isEnabled( ConfigurationKey.AUDIT_ASYNC ) ).thenReturn( false );
+
+        auditWriter.init();
+
+        DataValueAudit audit = new DataValueAudit();
+        audit.setAuditType( AuditType.UPDATE );
+
+        auditWriter.write( audit );
+
+        verify( dataValueAuditStore ).addDataValueAudit( audit );
+        verify( transactionManager, never() ).getTransaction( any() );
+    }
+
+    @Test
+    public void testWriteAsync()
+    {
+        when( config.isEnabled( ConfigurationKey.AUDIT_ASYNC ) ).thenReturn( true );
+        when( config.getProperty( ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE ) ).thenReturn( "100" );
+
+        auditWriter.init();
+
+        DataValueAudit auditA = new DataValueAudit();
+        auditA.setAuditType( AuditType.UPDATE );
+        DataValueAudit auditB = new DataValueAudit();
+        auditB.setAuditType( AuditType.DELETE );
+
+        auditWriter.write( auditA );
+        auditWriter.write( auditB );
+        auditWriter.shutdown();
+
+        verify( dataValueAuditStore ).addDataValueAudit( auditA );
+        verify( dataValueAuditStore ).addDataValueAudit( auditB );
+        verify( transactionManager, never() ).rollback( any() );
+    }
+
+    @Test
+    public void testWriteAsyncInvalidBufferSize()
+    {
+        when( config.isEnabled( ConfigurationKey.AUDIT_ASYNC ) ).thenReturn( true );
+        when( config.getProperty( ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE ) ).thenReturn( "large" );
+
+        auditWriter.init();
+
+        DataValueAudit audit = new DataValueAudit();
+        audit.setAuditType( AuditType.UPDATE );
+
+        auditWriter.write( audit );
+        auditWriter.shutdown();
+
+        verify( dataValueAuditStore ).addDataValueAudit( audit );
+    }
+
+    @Test
+    public void testWriteAsyncTransactionBufferFull()
+    {
+        when( config.isEnabled( ConfigurationKey.AUDIT_ASYNC ) ).thenReturn( true );
+        when( config.getProperty( ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE ) ).thenReturn( "2" );
+
+        auditWriter.init();
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        try
+        {
+            for ( int i = 0; i < 50; i++ )
+            {
+                DataValueAudit audit = new DataValueAudit();
+                audit.setAuditType( AuditType.UPDATE );
+
+                auditWriter.write( audit );
+            }
+
+            verify( dataValueAuditStore, never() ).addDataValueAudit( any() );
+
+            for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() )
+            {
+                synchronization.afterCompletion( TransactionSynchronization.STATUS_COMMITTED );
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        auditWriter.shutdown();
+
+        verify( dataValueAuditStore, times( 50 ) ).addDataValueAudit( any() );
+    }
+
+    @Test
+    public void testWriteAsyncBatchFailure()
+    {
+        when( config.isEnabled( ConfigurationKey.AUDIT_ASYNC ) ).thenReturn( true );
+        when( config.getProperty( ConfigurationKey.AUDIT_ASYNC_BUFFER_SIZE ) ).thenReturn( "100" );
+
+        auditWriter.init();
+        auditWriter.shutdown();
+
+        DataValueAudit auditA = new DataValueAudit();
+        auditA.setAuditType( AuditType.UPDATE );
+        DataValueAudit auditB = new DataValueAudit();
+        auditB.setAuditType( AuditType.DELETE );
+
+        doThrow( new IllegalStateException( "Batch failed" ) ).doNothing().when( dataValueAuditStore ).addDataValueAudit( auditB );
+
+        // Audits of a committed transaction are written in one batch on the
+        // calling thread after shutdown
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        try
+        {
+            auditWriter.write( auditA );
+            auditWriter.write( auditB );
+
+            for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() )
+            {
+                synchronization.afterCompletion( TransactionSynchronization.STATUS_COMMITTED );
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // The batch is rolled back and each audit is written again on its own
+
+        verify( transactionManager ).rollback( any() );
+        verify( transactionManager, times( 3 ) ).getTransaction( any() );
+        verify( dataValueAuditStore, times( 2 ) ).addDataValueAudit( auditA );
+        verify( dataValueAuditStore, times( 2 ) ).addDataValueAudit( auditB );
+    }
+}
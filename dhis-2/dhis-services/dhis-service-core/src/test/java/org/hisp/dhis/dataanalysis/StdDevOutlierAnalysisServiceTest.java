@@ -219,4 +219,58 @@ public class StdDevOutlierAnalysisServiceTest
         assertTrue( values.contains( valueA ) );
         assertFalse( values.contains( valueB ) );
     }
+
+    @Test
+    public void testGetFindOutliersPaged()
+    {
+        OrganisationUnit organisationUnitB = createOrganisationUnit( 'B' );
+
+        organisationUnitService.addOrganisationUnit( organisationUnitB );
+
+        List<Period> allPeriods = Lists.newArrayList( periodA, periodB, periodC, periodD, periodE, periodF, periodG, periodH, periodI );
+        String[] values = { "5", "-5", "5", "-5", "10", "-10", "13", "-13", "71" };
+
+        for ( DataElement dataElement : dataElementsA )
+        {
+            for ( OrganisationUnit organisationUnit : Lists.newArrayList( organisationUnitA, organisationUnitB ) )
+            {
+                for ( int i = 0; i < values.length; i++ )
+                {
+                    dataValueService.addDataValue( createDataValue( dataElement, allPeriods.get( i ), organisationUnit, values[i], categoryOptionCombo ) );
+                }
+            }
+        }
+
+        List<OrganisationUnit> parents = Lists.newArrayList( organisationUnitA, organisationUnitB );
+        List<Period> periods = Lists.newArrayList( periodA, periodI );
+
+        StdDevOutlierAnalysisService service = (StdDevOutlierAnalysisService) stdDevOutlierAnalysisService;
+
+        List<DeflatedDataValue> all = service.analyse( parents, dataElementsA, periods, 2.0, from );
+
+        assertEquals( 4, all.size() );
+
+        List<DeflatedDataValue> paged = new ArrayList<>();
+        List<DeflatedDataValue> page = service.analyse( parents, dataElementsA, periods, 2.0, from, null, 3 );
+
+        assertEquals( 3, page.size() );
+
+        paged.addAll( page );
+
+        page = service.analyse( parents, dataElementsA, periods, 2.0, from, page.get( page.size() - 1 ), 3 );
+
+        assertEquals( 1, page.size() );
+
+        paged.addAll( page );
+
+        page = service.analyse( parents, dataElementsA, periods, 2.0, from, page.get( page.size() - 1 ), 3 );
+
+        assertTrue( page.isEmpty() );
+        assertEquals( all, paged );
+
+        for ( DeflatedDataValue value : paged )
+        {
+            assertEquals( "71", value.getValue() );
+        }
+    }
 }
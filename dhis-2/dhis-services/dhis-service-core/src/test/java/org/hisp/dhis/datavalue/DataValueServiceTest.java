@@ -33,19 +33,34 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.common.DimensionalItemObject;
+import org.hisp.dhis.common.MapMapMap;
 import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementCategory;
+import org.hisp.dhis.dataelement.DataElementCategoryCombo;
+import org.hisp.dhis.dataelement.DataElementCategoryOption;
 import org.hisp.dhis.dataelement.DataElementCategoryOptionCombo;
 import org.hisp.dhis.dataelement.DataElementCategoryService;
+import org.hisp.dhis.dataelement.DataElementOperand;
 import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.MonthlyPeriodType;
 import org.hisp.dhis.period.Period;
+import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.period.PeriodType;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -65,6 +80,12 @@ public class DataValueServiceTest
 
     @Autowired
     private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private PeriodService periodService;
+
+    @Autowired
+    private DbmsManager dbmsManager;
     
     // -------------------------------------------------------------------------
     // Supporting data
@@ -460,4 +481,88 @@ public class DataValueServiceTest
         assertEquals( 3, dataValueService.getDataValueCountLastUpdatedBetween( getDate( 1970, 1, 1 ), null, true ) );
         assertEquals( 1, dataValueService.getDataValueCountLastUpdatedBetween( getDate( 1970, 1, 1 ), null, false ) );
     }
+
+    // -------------------------------------------------------------------------
+    // Data value maps by attribute option combo
+    // -------------------------------------------------------------------------
+
+    @Test
+    public void testGetDataValueMapsByAttributeCombo()
+    {
+        DataElementCategoryOption optionA = createCategoryOption( 'A' );
+        DataElementCategoryOption optionB = createCategoryOption( 'B' );
+        categoryService.addDataElementCategoryOption( optionA );
+        categoryService.addDataElementCategoryOption( optionB );
+
+        DataElementCategory categoryA = createDataElementCategory( 'A', optionA, optionB );
+        categoryService.addDataElementCategory( categoryA );
+
+        DataElementCategoryCombo categoryComboA = createCategoryCombo( 'A', categoryA );
+        categoryService.addDataElementCategoryCombo( categoryComboA );
+
+        DataElementCategoryOptionCombo attributeComboA = createCategoryOptionCombo( 'A', categoryComboA, optionA );
+        DataElementCategoryOptionCombo attributeComboB = createCategoryOptionCombo( 'B', categoryComboA, optionB );
+        categoryService.addDataElementCategoryOptionCombo( attributeComboA );
+        categoryService.addDataElementCategoryOptionCombo( attributeComboB );
+
+        Period jan = createPeriod( new MonthlyPeriodType(), getDate( 2017, 1, 1 ), getDate( 2017, 1, 31 ) );
+        Period feb = createPeriod( new MonthlyPeriodType(), getDate( 2017, 2, 1 ), getDate( 2017, 2, 28 ) );
+        Period mar = createPeriod( new MonthlyPeriodType(), getDate( 2017, 3, 1 ), getDate( 2017, 3, 31 ) );
+
+        DataValue deletedValue = new DataValue( dataElementB, mar, sourceA, optionCombo, attributeComboA, "5" );
+
+        dataValueService.addDataValue( new DataValue( dataElementA, jan, sourceA, optionCombo, attributeComboA, "1" ) );
+        dataValueService.addDataValue( new DataValue( dataElementA, jan, sourceA, optionCombo, attributeComboB, "2" ) );
+        dataValueService.addDataValue( new DataValue( dataElementA, feb, sourceB, optionCombo, attributeComboA, "3" ) );
+        dataValueService.addDataValue( new DataValue( dataElementB, jan, sourceB, optionCombo, attributeComboA, "4" ) );
+        dataValueService.addDataValue( deletedValue );
+        dataValueService.addDataValue( new DataValue( dataElementA, mar, sourceC, optionCombo, attributeComboA, "6" ) );
+
+        dataValueService.deleteDataValue( deletedValue );
+
+        dbmsManager.flushSession();
+
+        DataElementOperand operandA = new DataElementOperand( dataElementA );
+        DataElementOperand operandB = new DataElementOperand( dataElementB, optionCombo );
+
+        Set<DataElementOperand> operands = Sets.newHashSet( operandA, operandB );
+        List<OrganisationUnit> orgUnits = Lists.newArrayList( sourceA, sourceB );
+        Collection<PeriodType> periodTypes = Sets.newHashSet( periodService.reloadPeriodType( new MonthlyPeriodType() ) );
+
+        Date janDate = getDate( 2017, 1, 15 );
+        Date febDate = getDate( 2017, 2, 15 );
+        Date marDate = getDate( 2017, 3, 15 );
+
+        Map<Date, MapMapMap<Integer, String, DimensionalItemObject, Double>> maps = dataValueService.getDataValueMapsByAttributeCombo(
+            operands, Lists.newArrayList( janDate, febDate, marDate ), orgUnits, periodTypes, null, null, null );
+
+        assertEquals( 3, maps.size() );
+
+        MapMapMap<Integer, String, DimensionalItemObject, Double> janMap = maps.get( janDate );
+        assertEquals( 1.0, janMap.getValue( sourceA.getId(), attributeComboA.getUid(), operandA ), DELTA );
+        assertEquals( 2.0, janMap.getValue( sourceA.getId(), attributeComboB.getUid(), operandA ), DELTA );
+        assertEquals( 4.0, janMap.getValue( sourceB.getId(), attributeComboA.getUid(), operandB ), DELTA );
+        assertNull( janMap.getValue( sourceB.getId(), attributeComboA.getUid(), operandA ) );
+
+        MapMapMap<Integer, String, DimensionalItemObject, Double> febMap = maps.get( febDate );
+        assertEquals( 3.0, febMap.getValue( sourceB.getId(), attributeComboA.getUid(), operandA ), DELTA );
+        assertNull( febMap.getValue( sourceA.getId(), attributeComboA.getUid(), operandA ) );
+        assertNull( febMap.getValue( sourceB.getId(), attributeComboA.getUid(), operandB ) );
+
+        assertTrue( maps.get( marDate ).isEmpty() );
+
+        for ( Date date : maps.keySet() )
+        {
+            assertEquals( maps.get( date ), dataValueService.getDataValueMapByAttributeCombo(
+                operands, date, orgUnits, periodTypes, null, null, null ) );
+        }
+
+        maps = dataValueService.getDataValueMapsByAttributeCombo(
+            operands, Lists.newArrayList( janDate, febDate ), orgUnits, periodTypes, attributeComboA, null, null );
+
+        janMap = maps.get( janDate );
+        assertEquals( 1.0, janMap.getValue( sourceA.getId(), attributeComboA.getUid(), operandA ), DELTA );
+        assertNull( janMap.getValue( sourceA.getId(), attributeComboB.getUid(), operandA ) );
+        assertEquals( 3.0, maps.get( febDate ).getValue( sourceB.getId(), attributeComboA.getUid(), operandA ), DELTA );
+    }
 }
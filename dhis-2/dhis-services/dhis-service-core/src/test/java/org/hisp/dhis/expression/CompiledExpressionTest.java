@@ -0,0 +1,127 @@
+package org.hisp.dhis.expression;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.ImmutableMap;
+import org.hisp.dhis.system.util.MathUtils;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hisp.dhis.expression.MissingValueStrategy.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author agent
+ */
+public class CompiledExpressionTest
+{
+    private static final double DELTA = 0.01;
+
+    private Map<String, Double> valueMap = ImmutableMap.of(
+        "deabcdefghA.coabcdefghA", 12d,
+        "deabcdefghB", 3d,
+        "deabcdefghC", -4d );
+
+    private Map<String, Double> constantMap = ImmutableMap.of( "xxxxxxxxx05", 2d );
+
+    private Map<String, Integer> orgUnitCountMap = ImmutableMap.of( "ougabcdefgA", 5 );
+
+    @Test
+    public void testEvaluate()
+    {
+        CompiledExpression expression = CompiledExpression.compile(
+            "#{deabcdefghA.coabcdefghA} + #{deabcdefghB} * C{xxxxxxxxx05} - OUG{ougabcdefgA} + [days]" );
+
+        assertNotNull( expression );
+        assertEquals( 43d, expression.evaluate( valueMap, constantMap, orgUnitCountMap, 30, NEVER_SKIP ), DELTA );
+        assertEquals( 13d, expression.evaluate( valueMap, constantMap, orgUnitCountMap, null, NEVER_SKIP ), DELTA );
+        assertEquals( 10d, expression.evaluate( new HashMap<>(), constantMap, orgUnitCountMap, 15, NEVER_SKIP ), DELTA );
+    }
+
+    @Test
+    public void testEvaluateRepeatedItem()
+    {
+        CompiledExpression expression = CompiledExpression.compile( "#{deabcdefghB} * #{deabcdefghB} + #{deabcdefghC}^2" );
+
+        assertNotNull( expression );
+        assertEquals( -7d, expression.evaluate( valueMap, null, null, null, NEVER_SKIP ), DELTA );
+    }
+
+    @Test
+    public void testEvaluateNegativeValuesAsLegacy()
+    {
+        assertEvaluatesAsLegacy( "#{deabcdefghC}^2", "-4.0^2" );
+        assertEvaluatesAsLegacy( "#{deabcdefghC} ^ 2 + 1", "-4.0 ^ 2 + 1" );
+        assertEvaluatesAsLegacy( "2 - #{deabcdefghC}", "2 - -4.0" );
+        assertEvaluatesAsLegacy( "12 / #{deabcdefghC} * 3", "12 / -4.0 * 3" );
+        assertEvaluatesAsLegacy( "2^#{deabcdefghC}", "2^-4.0" );
+        assertEvaluatesAsLegacy( "#{deabcdefghB}^2 - #{deabcdefghC}", "3.0^2 - -4.0" );
+    }
+
+    @Test
+    public void testEvaluateScalarFunction()
+    {
+        CompiledExpression expression = CompiledExpression.compile( "if(#{deabcdefghB} > 1, #{deabcdefghA.coabcdefghA}, 0)" );
+
+        assertNotNull( expression );
+        assertEquals( 12d, expression.evaluate( valueMap, null, null, null, NEVER_SKIP ), DELTA );
+    }
+
+    @Test
+    public void testEvaluateMissingValueStrategy()
+    {
+        CompiledExpression expression = CompiledExpression.compile( "#{deabcdefghB} + #{deabcdefghD}" );
+
+        assertNotNull( expression );
+        assertEquals( 3d, expression.evaluate( valueMap, null, null, null, NEVER_SKIP ), DELTA );
+        assertEquals( 3d, expression.evaluate( valueMap, null, null, null, SKIP_IF_ALL_VALUES_MISSING ), DELTA );
+        assertNull( expression.evaluate( valueMap, null, null, null, SKIP_IF_ANY_VALUE_MISSING ) );
+        assertNull( expression.evaluate( new HashMap<>(), null, null, null, SKIP_IF_ALL_VALUES_MISSING ) );
+    }
+
+    private void assertEvaluatesAsLegacy( String expression, String legacyExpression )
+    {
+        CompiledExpression compiled = CompiledExpression.compile( expression );
+
+        assertNotNull( compiled );
+        assertEquals( MathUtils.calculateExpression( legacyExpression ),
+            compiled.evaluate( valueMap, null, null, null, NEVER_SKIP ), DELTA );
+    }
+
+    @Test
+    public void testCompileNotSupported()
+    {
+        assertNull( CompiledExpression.compile( null ) );
+        assertNull( CompiledExpression.compile( "" ) );
+        assertNull( CompiledExpression.compile( "AVG(#{deabcdefghB})" ) );
+        assertNull( CompiledExpression.compile( "isNull(#{deabcdefghB})" ) );
+    }
+}
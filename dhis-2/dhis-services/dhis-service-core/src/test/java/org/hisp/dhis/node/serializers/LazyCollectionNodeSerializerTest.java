@@ -0,0 +1,162 @@
+package org.hisp.dhis.node.serializers;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.common.DxfNamespaces;
+import org.hisp.dhis.node.LazyCollectionNode;
+import org.hisp.dhis.node.NodeSerializer;
+import org.hisp.dhis.node.NodeUtils;
+import org.hisp.dhis.node.config.InclusionStrategy;
+import org.hisp.dhis.node.types.ComplexNode;
+import org.hisp.dhis.node.types.RootNode;
+import org.hisp.dhis.node.types.SimpleNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that serializers build each child of a lazy collection node once.
+ *
+ * @author agent
+ */
+public class LazyCollectionNodeSerializerTest
+{
+    private static final List<String> IDS = Lists.newArrayList( "A", "B", "C" );
+
+    private Map<Object, Integer> builds;
+
+    @Before
+    public void before()
+    {
+        builds = new HashMap<>();
+    }
+
+    @Test
+    public void testSerializeXml()
+        throws Exception
+    {
+        String xml = serialize( new StAXNodeSerializer(), createRootNode( IDS ) );
+
+        assertTrue( xml.contains( "<values" ) );
+        assertTrue( xml.contains( ">C<" ) );
+        assertBuiltOnce();
+    }
+
+    @Test
+    public void testSerializeXmlExcludedChildren()
+        throws Exception
+    {
+        RootNode rootNode = NodeUtils.createMetadata();
+        rootNode.addChild( new LazyCollectionNode( "values", IDS, object -> null ) );
+
+        String xml = serialize( new StAXNodeSerializer(), rootNode );
+
+        assertFalse( xml.contains( "<values" ) );
+    }
+
+    @Test
+    public void testSerializeJsonNonEmpty()
+        throws Exception
+    {
+        RootNode rootNode = createRootNode( IDS );
+        rootNode.getConfig().setInclusionStrategy( InclusionStrategy.Include.NON_EMPTY );
+
+        String json = serialize( new Jackson2JsonNodeSerializer(), rootNode );
+
+        assertTrue( json.contains( "\"values\":[" ) );
+        assertTrue( json.contains( "{\"id\":\"C\"}" ) );
+        assertBuiltOnce();
+    }
+
+    @Test
+    public void testSerializeJsonNonEmptyNoChildren()
+        throws Exception
+    {
+        RootNode rootNode = createRootNode( Lists.newArrayList() );
+        rootNode.getConfig().setInclusionStrategy( InclusionStrategy.Include.NON_EMPTY );
+
+        String json = serialize( new Jackson2JsonNodeSerializer(), rootNode );
+
+        assertFalse( json.contains( "values" ) );
+    }
+
+    @Test
+    public void testSerializeCsv()
+        throws Exception
+    {
+        String csv = serialize( new CsvNodeSerializer(), createRootNode( IDS ) );
+
+        assertEquals( Lists.newArrayList( "id", "A", "B", "C" ), Lists.newArrayList( csv.trim().split( "\\s+" ) ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private RootNode createRootNode( List<String> ids )
+    {
+        LazyCollectionNode collectionNode = new LazyCollectionNode( "values", ids, object -> {
+            builds.merge( object, 1, Integer::sum );
+
+            ComplexNode complexNode = new ComplexNode( "value" );
+            complexNode.addChild( new SimpleNode( "id", object ) );
+            return complexNode;
+        } );
+
+        collectionNode.setNamespace( DxfNamespaces.DXF_2_0 );
+
+        RootNode rootNode = NodeUtils.createMetadata();
+        rootNode.addChild( collectionNode );
+
+        return rootNode;
+    }
+
+    private String serialize( NodeSerializer serializer, RootNode rootNode )
+        throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        serializer.serialize( rootNode, outputStream );
+        return outputStream.toString( "UTF-8" );
+    }
+
+    private void assertBuiltOnce()
+    {
+        assertEquals( IDS.size(), builds.size() );
+        builds.values().forEach( count -> assertEquals( Integer.valueOf( 1 ), count ) );
+    }
+}
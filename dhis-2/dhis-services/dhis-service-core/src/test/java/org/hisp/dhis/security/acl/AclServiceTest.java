@@ -31,25 +31,34 @@ package org.hisp.dhis.security.acl;
 import com.google.common.collect.Sets;
 import org.hisp.dhis.DhisSpringTest;
 import org.hisp.dhis.chart.Chart;
+import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.dashboard.Dashboard;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementCategoryOption;
 import org.hisp.dhis.eventchart.EventChart;
 import org.hisp.dhis.eventreport.EventReport;
 import org.hisp.dhis.feedback.ErrorReport;
+import org.hisp.dhis.indicator.Indicator;
+import org.hisp.dhis.indicator.IndicatorType;
 import org.hisp.dhis.legend.LegendSet;
 import org.hisp.dhis.mapping.Map;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.reporttable.ReportTable;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.startup.SharingAccessPopulator;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
+import org.hisp.dhis.user.UserAccess;
 import org.hisp.dhis.user.UserGroup;
 import org.hisp.dhis.user.UserGroupAccess;
 import org.hisp.dhis.user.UserService;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.HashSet;
 import java.util.List;
@@ -74,6 +83,18 @@ public class AclServiceTest
     @Autowired
     private CurrentUserService currentUserService;
 
+    @Autowired
+    private SharingAccessPopulator sharingAccessPopulator;
+
+    @Autowired
+    private DbmsManager dbmsManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
     @Override
     protected void setUpTest() throws Exception
     {
@@ -443,6 +464,190 @@ public class AclServiceTest
         assertTrue( aclService.canUpdate( user2, dataElement ) );
     }
 
+    @Test
+    public void testGetAllSharedWithUserGroup()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user3 = createUser( "user3", "F_DATAELEMENT_PRIVATE_ADD" );
+
+        DataElement dataElement = createDataElement( 'A' );
+        dataElement.setUser( user1 );
+        manager.save( dataElement );
+
+        UserGroup userGroup = createUserGroup( 'A', new HashSet<>() );
+        userGroup.getMembers().add( user2 );
+        manager.save( userGroup );
+
+        dataElement.getUserGroupAccesses().add( new UserGroupAccess( userGroup, "r-------" ) );
+        manager.update( dataElement );
+
+        injectSecurityContext( user2 );
+        assertTrue( manager.getAll( DataElement.class ).contains( dataElement ) );
+
+        injectSecurityContext( user3 );
+        assertFalse( manager.getAll( DataElement.class ).contains( dataElement ) );
+
+        clearSecurityContext();
+
+        userGroup.getMembers().remove( user2 );
+        userGroup.getMembers().add( user3 );
+        manager.update( userGroup );
+
+        injectSecurityContext( user3 );
+        assertTrue( manager.getAll( DataElement.class ).contains( dataElement ) );
+
+        injectSecurityContext( user2 );
+        assertFalse( manager.getAll( DataElement.class ).contains( dataElement ) );
+    }
+
+    @Test
+    public void testSharingNotAppliedToOtherTypeWithSameUid()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PRIVATE_ADD" );
+
+        UserGroup userGroup = createUserGroup( 'A', Sets.newHashSet( user2 ) );
+        manager.save( userGroup );
+
+        IndicatorType indicatorType = createIndicatorType( 'A' );
+        manager.save( indicatorType );
+
+        DataElement dataElement = createDataElement( 'A' );
+        dataElement.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElement.setUser( user1 );
+        manager.save( dataElement );
+
+        Indicator indicator = createIndicator( 'A', indicatorType );
+        indicator.setUid( dataElement.getUid() );
+        indicator.setPublicAccess( AccessStringHelper.DEFAULT );
+        indicator.setUser( user1 );
+        manager.save( indicator );
+
+        dataElement.getUserGroupAccesses().add( new UserGroupAccess( userGroup, AccessStringHelper.READ ) );
+        manager.update( dataElement );
+
+        dbmsManager.flushSession();
+
+        assertEquals( 1, getAccessCount( "dataelement", dataElement ) );
+        assertEquals( 0, getAccessCount( "indicator", indicator ) );
+
+        injectSecurityContext( user2 );
+        assertTrue( manager.getAll( DataElement.class ).contains( dataElement ) );
+        assertFalse( manager.getAll( Indicator.class ).contains( indicator ) );
+    }
+
+    @Test
+    public void testDeleteSharedObject()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PRIVATE_ADD" );
+
+        UserGroup userGroup = createUserGroup( 'A', Sets.newHashSet( user2 ) );
+        manager.save( userGroup );
+
+        DataElement dataElementA = createDataElement( 'A' );
+        dataElementA.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElementA.setUser( user1 );
+        dataElementA.getUserGroupAccesses().add( new UserGroupAccess( userGroup, AccessStringHelper.READ ) );
+        dataElementA.getUserAccesses().add( new UserAccess( user2, AccessStringHelper.READ ) );
+        manager.save( dataElementA );
+
+        DataElement dataElementB = createDataElement( 'B' );
+        dataElementB.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElementB.setUser( user1 );
+        dataElementB.getUserGroupAccesses().add( new UserGroupAccess( userGroup, AccessStringHelper.READ ) );
+        manager.save( dataElementB );
+
+        dbmsManager.flushSession();
+
+        assertEquals( 2, getAccessCount( "dataelement", dataElementA ) );
+        assertEquals( 1, getAccessCount( "dataelement", dataElementB ) );
+
+        manager.delete( dataElementA );
+
+        dbmsManager.flushSession();
+
+        assertEquals( 0, getAccessCount( "dataelement", dataElementA ) );
+        assertEquals( 1, getAccessCount( "dataelement", dataElementB ) );
+
+        injectSecurityContext( user2 );
+        assertTrue( manager.getAll( DataElement.class ).contains( dataElementB ) );
+    }
+
+    @Test
+    public void testPublicObjectNotIndexed()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PUBLIC_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PUBLIC_ADD" );
+
+        DataElement dataElementA = createDataElement( 'A' );
+        dataElementA.setPublicAccess( AccessStringHelper.READ );
+        dataElementA.setUser( user1 );
+        manager.save( dataElementA );
+
+        DataElement dataElementB = createDataElement( 'B' );
+        dataElementB.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElementB.setUser( user1 );
+        manager.save( dataElementB );
+
+        dbmsManager.flushSession();
+
+        assertEquals( 0, getAccessCount( "dataelement", dataElementA ) );
+        assertEquals( 0, getAccessCount( "dataelement", dataElementB ) );
+
+        injectSecurityContext( user2 );
+
+        List<DataElement> dataElements = manager.getAll( DataElement.class );
+        assertTrue( dataElements.contains( dataElementA ) );
+        assertFalse( dataElements.contains( dataElementB ) );
+    }
+
+    @Test
+    public void testPopulateSharingAccess()
+    {
+        User user1 = createUser( "user1", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user2 = createUser( "user2", "F_DATAELEMENT_PRIVATE_ADD" );
+        User user3 = createUser( "user3", "F_DATAELEMENT_PRIVATE_ADD" );
+
+        UserGroup userGroup = createUserGroup( 'A', Sets.newHashSet( user2 ) );
+        manager.save( userGroup );
+
+        DataElement dataElement = createDataElement( 'A' );
+        dataElement.setPublicAccess( AccessStringHelper.DEFAULT );
+        dataElement.setUser( user1 );
+        dataElement.getUserGroupAccesses().add( new UserGroupAccess( userGroup, AccessStringHelper.READ ) );
+        dataElement.getUserAccesses().add( new UserAccess( user3, AccessStringHelper.READ ) );
+        manager.save( dataElement );
+
+        dbmsManager.flushSession();
+
+        jdbcTemplate.update( "delete from " + SharingAccessStore.TABLE_NAME );
+
+        // Index is not populated again once population has completed
+
+        systemSettingManager.saveSystemSetting( SettingKey.SHARING_ACCESS_POPULATED, Boolean.TRUE );
+
+        sharingAccessPopulator.execute();
+
+        assertEquals( 0, getAccessCount( "dataelement", dataElement ) );
+
+        injectSecurityContext( user2 );
+        assertFalse( manager.getAll( DataElement.class ).contains( dataElement ) );
+
+        systemSettingManager.saveSystemSetting( SettingKey.SHARING_ACCESS_POPULATED, Boolean.FALSE );
+
+        sharingAccessPopulator.execute();
+
+        assertEquals( 2, getAccessCount( "dataelement", dataElement ) );
+        assertTrue( (Boolean) systemSettingManager.getSystemSetting( SettingKey.SHARING_ACCESS_POPULATED ) );
+
+        assertTrue( manager.getAll( DataElement.class ).contains( dataElement ) );
+
+        injectSecurityContext( user3 );
+        assertTrue( manager.getAll( DataElement.class ).contains( dataElement ) );
+    }
+
     @Test
     public void testCategoryOptionSharingPrivateRW()
     {
@@ -1007,4 +1212,14 @@ public class AclServiceTest
         List<ErrorReport> errorReports = aclService.verifySharing( dataElement, user2 );
         assertTrue( errorReports.isEmpty() );
     }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private int getAccessCount( String tableName, IdentifiableObject object )
+    {
+        return jdbcTemplate.queryForObject( "select count(*) from " + SharingAccessStore.TABLE_NAME +
+            " where tablename = ? and objectid = ?", Integer.class, tableName, object.getId() );
+    }
 }
@@ -32,13 +32,17 @@ import org.hisp.dhis.DhisSpringTest;
 import org.hisp.dhis.analytics.AggregationType;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.OrganisationUnitSelectionMode;
+import org.hisp.dhis.common.QueryFilter;
 import org.hisp.dhis.common.QueryItem;
 import org.hisp.dhis.common.QueryOperator;
 import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.program.ProgramInstanceService;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
 import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
 import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueService;
 import org.junit.Test;
@@ -46,6 +50,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import static org.junit.Assert.*;
 
@@ -70,6 +79,12 @@ public class TrackedEntityInstanceStoreTest
     @Autowired
     private ProgramInstanceService programInstanceService;
 
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
+    @Autowired
+    private DbmsManager dbmsManager;
+
     private TrackedEntityInstance teiA;
     private TrackedEntityInstance teiB;
     private TrackedEntityInstance teiC;
@@ -270,4 +285,137 @@ public class TrackedEntityInstanceStoreTest
         assertTrue( teis.contains( teiB ) );
         assertTrue( teis.contains( teiE ) );
     }
+
+    @Test
+    public void testQueryGridTokenIndex()
+    {
+        TrackedEntityType trackedEntityType = createTrackedEntityType( 'A' );
+        idObjectManager.save( trackedEntityType );
+
+        for ( TrackedEntityInstance tei : Sets.newHashSet( teiA, teiB, teiC, teiD, teiE ) )
+        {
+            tei.setTrackedEntityType( trackedEntityType );
+            teiStore.save( tei );
+        }
+
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiA, "john smith" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiB, "johnny walker" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiC, "mary smith" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiD, "john" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atB, teiE, "smith" ) );
+
+        dbmsManager.flushSession();
+
+        // Filter by attribute, without and with the search index
+
+        TrackedEntityInstanceQueryParams params = new TrackedEntityInstanceQueryParams()
+            .addFilter( new QueryItem( atA, QueryOperator.EQ, "john smith", ValueType.TEXT, AggregationType.NONE, null ) )
+            .setOrganisationUnitMode( OrganisationUnitSelectionMode.ALL );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.FALSE );
+
+        Set<String> unindexed = getGridUids( params );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.TRUE );
+
+        assertEquals( Sets.newHashSet( teiA.getUid() ), unindexed );
+        assertEquals( unindexed, getGridUids( params ) );
+
+        // Free text query, regular expression substring match and indexed
+        // word match, where substrings are whole words
+
+        params = new TrackedEntityInstanceQueryParams()
+            .addAttribute( new QueryItem( atA ) )
+            .addAttribute( new QueryItem( atB ) )
+            .setQuery( new QueryFilter( QueryOperator.LIKE, "smith" ) )
+            .setOrganisationUnitMode( OrganisationUnitSelectionMode.ALL );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.FALSE );
+
+        unindexed = getGridUids( params );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.TRUE );
+
+        params.setQuery( new QueryFilter( QueryOperator.EQ, "smith" ) );
+
+        assertEquals( Sets.newHashSet( teiA.getUid(), teiC.getUid(), teiE.getUid() ), unindexed );
+        assertEquals( unindexed, getGridUids( params ) );
+
+        // Indexed word match excludes values where the query is a substring
+
+        params.setQuery( new QueryFilter( QueryOperator.EQ, "john" ) );
+
+        assertEquals( Sets.newHashSet( teiA.getUid(), teiD.getUid() ), getGridUids( params ) );
+
+        params.setQuery( new QueryFilter( QueryOperator.EQ, "john smith" ) );
+
+        assertEquals( Sets.newHashSet( teiA.getUid() ), getGridUids( params ) );
+    }
+
+    @Test
+    public void testQueryTokenIndex()
+    {
+        for ( TrackedEntityInstance tei : Sets.newHashSet( teiA, teiB, teiC, teiD, teiE ) )
+        {
+            teiStore.save( tei );
+        }
+
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiA, "john smith" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiB, "johnny walker" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiC, "mary smith" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atA, teiD, "john" ) );
+        attributeValueService.addTrackedEntityAttributeValue( new TrackedEntityAttributeValue( atB, teiE, "smith" ) );
+
+        dbmsManager.flushSession();
+
+        // Filter by attribute, without and with the search index
+
+        TrackedEntityInstanceQueryParams params = new TrackedEntityInstanceQueryParams()
+            .addFilter( new QueryItem( atA, QueryOperator.EQ, "john smith", ValueType.TEXT, AggregationType.NONE, null ) )
+            .setOrganisationUnitMode( OrganisationUnitSelectionMode.ALL );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.FALSE );
+
+        List<TrackedEntityInstance> unindexed = teiStore.getTrackedEntityInstances( params );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.TRUE );
+
+        assertEquals( Lists.newArrayList( teiA ), unindexed );
+        assertEquals( unindexed, teiStore.getTrackedEntityInstances( params ) );
+        assertEquals( 1, teiStore.countTrackedEntityInstances( params ) );
+
+        params = new TrackedEntityInstanceQueryParams()
+            .addFilter( new QueryItem( atB, QueryOperator.EQ, "john", ValueType.TEXT, AggregationType.NONE, null ) )
+            .setOrganisationUnitMode( OrganisationUnitSelectionMode.ALL );
+
+        assertEquals( 0, teiStore.getTrackedEntityInstances( params ).size() );
+        assertEquals( 0, teiStore.countTrackedEntityInstances( params ) );
+
+        // Free text query on any attribute, without and with the search index
+
+        params = new TrackedEntityInstanceQueryParams()
+            .setQuery( new QueryFilter( QueryOperator.EQ, "smith" ) )
+            .setOrganisationUnitMode( OrganisationUnitSelectionMode.ALL );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.FALSE );
+
+        unindexed = teiStore.getTrackedEntityInstances( params );
+
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.TRUE );
+
+        assertEquals( Lists.newArrayList( teiE ), unindexed );
+        assertEquals( unindexed, teiStore.getTrackedEntityInstances( params ) );
+        assertEquals( 1, teiStore.countTrackedEntityInstances( params ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private Set<String> getGridUids( TrackedEntityInstanceQueryParams params )
+    {
+        return teiStore.getTrackedEntityInstancesGrid( params ).stream()
+            .map( row -> row.get( TrackedEntityInstanceQueryParams.TRACKED_ENTITY_INSTANCE_ID ) )
+            .collect( Collectors.toSet() );
+    }
 }
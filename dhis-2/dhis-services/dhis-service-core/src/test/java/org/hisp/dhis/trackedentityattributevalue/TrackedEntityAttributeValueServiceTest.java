@@ -37,14 +37,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.startup.TrackedEntityAttributeTokenPopulator;
 import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityAttributeService;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceService;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
  * @author Chau Thu Tran
@@ -65,6 +70,21 @@ public class TrackedEntityAttributeValueServiceTest
     @Autowired
     private TrackedEntityAttributeService attributeService;
 
+    @Autowired
+    private TrackedEntityAttributeTokenStore attributeTokenStore;
+
+    @Autowired
+    private TrackedEntityAttributeTokenPopulator attributeTokenPopulator;
+
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
+    @Autowired
+    private DbmsManager dbmsManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private TrackedEntityAttribute attributeA;
 
     private TrackedEntityAttribute attributeB;
@@ -138,6 +158,49 @@ public class TrackedEntityAttributeValueServiceTest
         assertEquals( "B", attributeValueService.getTrackedEntityAttributeValue( entityInstanceA, attributeA ).getValue() );
     }
 
+    @Test
+    public void testSaveTrackedEntityAttributeValueTokens()
+    {
+        attributeValueA.setValue( "John Smith" );
+        attributeValueService.addTrackedEntityAttributeValue( attributeValueA );
+
+        assertTrue( attributeTokenStore.hasTokens() );
+    }
+
+    @Test
+    public void testPopulateTokens()
+    {
+        attributeValueA.setValue( "John Smith" );
+        attributeValueC.setValue( "Mary Smith" );
+        attributeValueService.addTrackedEntityAttributeValue( attributeValueA );
+        attributeValueService.addTrackedEntityAttributeValue( attributeValueC );
+
+        dbmsManager.flushSession();
+
+        assertEquals( 4, getTokenCount() );
+
+        assertEquals( 2, attributeTokenStore.populateTokens() );
+        assertEquals( 4, getTokenCount() );
+
+        // Interrupted population is repeated until completion is recorded
+
+        jdbcTemplate.update( "delete from " + TrackedEntityAttributeTokenStore.TABLE_NAME + " where token = 'smith'" );
+        systemSettingManager.saveSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED, Boolean.FALSE );
+
+        attributeTokenPopulator.execute();
+
+        assertEquals( 4, getTokenCount() );
+        assertTrue( (Boolean) systemSettingManager.getSystemSetting( SettingKey.TRACKED_ENTITY_ATTRIBUTE_TOKENS_POPULATED ) );
+
+        // Completed population is not repeated
+
+        jdbcTemplate.update( "delete from " + TrackedEntityAttributeTokenStore.TABLE_NAME );
+
+        attributeTokenPopulator.execute();
+
+        assertEquals( 0, getTokenCount() );
+    }
+
     @Test
     public void testDeleteTrackedEntityAttributeValue()
     {
@@ -246,4 +309,13 @@ public class TrackedEntityAttributeValueServiceTest
         attributeValue = attributeValueService.getTrackedEntityAttributeValue( entityInstanceB, attributeA );
         assertNull( attributeValue );
     }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private int getTokenCount()
+    {
+        return jdbcTemplate.queryForObject( "select count(*) from " + TrackedEntityAttributeTokenStore.TABLE_NAME, Integer.class );
+    }
 }
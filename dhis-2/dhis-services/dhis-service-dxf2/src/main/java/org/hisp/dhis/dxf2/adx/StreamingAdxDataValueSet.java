@@ -0,0 +1,495 @@
+package org.hisp.dhis.dxf2.adx;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xerces.util.XMLChar;
+import org.hisp.dhis.common.IdScheme;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.IdentifiableProperty;
+import org.hisp.dhis.commons.collection.CachingMap;
+import org.hisp.dhis.dataelement.CategoryComboMap;
+import org.hisp.dhis.dataelement.CategoryComboMap.CategoryComboMapException;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementCategory;
+import org.hisp.dhis.dataelement.DataElementCategoryCombo;
+import org.hisp.dhis.dataelement.DataElementCategoryOptionCombo;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.dxf2.common.ImportOptions;
+import org.hisp.dhis.dxf2.datavalue.DataValue;
+import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
+import org.hisp.dhis.dxf2.importsummary.ImportConflict;
+import org.hisp.dhis.period.Period;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.system.callable.IdentifiableObjectCallable;
+import org.hisp.dhis.system.notification.Notifier;
+import org.hisp.staxwax.reader.XMLReader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.apache.commons.lang3.StringUtils.trimToNull;
+
+/**
+ * Data value set which decodes the data values of the groups of an ADX
+ * message directly from the given reader. Data sets, data elements and
+ * category option combos are resolved once per identifier, and data values
+ * are returned with the data element identified by UID, so that the data
+ * value import does not resolve the identifiers of the ADX message again.
+ * The category option combo lookup maps are built once per category combo.
+ * <p>
+ * Data values which cannot be decoded are skipped and recorded as conflicts.
+ * A group which cannot be decoded ends the data values of this set, and the
+ * cause is available through {@link #getGroupException()}.
+ * <p>
+ * Decoding resolves meta-data objects and must happen on the thread which
+ * holds the session, so this data value set does not support read-ahead.
+ *
+ * @author agent
+ */
+public class StreamingAdxDataValueSet
+    extends DataValueSet
+{
+    private static final Log log = LogFactory.getLog( StreamingAdxDataValueSet.class );
+
+    private final XMLReader reader;
+
+    private final Notifier notifier;
+
+    private final JobConfiguration id;
+
+    private final IdScheme categoryOptionComboIdScheme;
+
+    private final IdScheme categoryOptionIdScheme;
+
+    private final CachingMap<String, DataSet> dataSetMap = new CachingMap<>();
+
+    private final CachingMap<String, DataElement> dataElementMap = new CachingMap<>();
+
+    private final IdentifiableObjectCallable<DataSet> dataSetCallable;
+
+    private final IdentifiableObjectCallable<DataElement> dataElementCallable;
+
+    private final Map<String, CategoryComboMap> categoryComboMaps = new HashMap<>();
+
+    private final List<ImportConflict> conflicts = new ArrayList<>();
+
+    private Map<String, String> groupAttributes;
+
+    private int groupCount;
+
+    private AdxException groupException;
+
+    private DataValue next;
+
+    /**
+     * @param reader the reader, positioned at the ADX root element.
+     * @param importOptions the import options.
+     * @param identifiableObjectManager the {@link IdentifiableObjectManager}.
+     * @param notifier the {@link Notifier}.
+     * @param id the job identifier.
+     */
+    public StreamingAdxDataValueSet( XMLReader reader, ImportOptions importOptions,
+        IdentifiableObjectManager identifiableObjectManager, Notifier notifier, JobConfiguration id )
+    {
+        this.reader = reader;
+        this.notifier = notifier;
+        this.id = id;
+
+        IdScheme dataSetIdScheme = importOptions.getIdSchemes().getDataSetIdScheme();
+        IdScheme dataElementIdScheme = importOptions.getIdSchemes().getDataElementIdScheme();
+
+        this.categoryOptionComboIdScheme = importOptions.getIdSchemes().getCategoryOptionComboIdScheme();
+        this.categoryOptionIdScheme = importOptions.getIdSchemes().getCategoryOptionIdScheme();
+
+        this.dataSetCallable = new IdentifiableObjectCallable<>(
+            identifiableObjectManager, DataSet.class, dataSetIdScheme, null );
+        this.dataElementCallable = new IdentifiableObjectCallable<>(
+            identifiableObjectManager, DataElement.class, dataElementIdScheme, null );
+
+        if ( importOptions.isPreheatCacheDefaultFalse() )
+        {
+            dataSetMap.load( identifiableObjectManager.getAll( DataSet.class ), o -> o.getPropertyValue( dataSetIdScheme ) );
+            dataElementMap.load( identifiableObjectManager.getAll( DataElement.class ), o -> o.getPropertyValue( dataElementIdScheme ) );
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Getters
+    //--------------------------------------------------------------------------
+
+    /**
+     * Data elements are always passed on by UID.
+     */
+    @Override
+    public String getDataElementIdScheme()
+    {
+        return IdentifiableProperty.UID.name();
+    }
+
+    @Override
+    public boolean hasNextDataValue()
+    {
+        while ( next == null && groupException == null )
+        {
+            if ( groupAttributes == null && !nextGroup() )
+            {
+                return false;
+            }
+
+            if ( reader.moveToStartElement( AdxDataService.DATAVALUE, AdxDataService.GROUP ) )
+            {
+                try
+                {
+                    next = parseDataValue();
+                }
+                catch ( AdxException ex )
+                {
+                    conflicts.add( ex.getImportConflict() );
+
+                    log.info( "ADX data value conflict: " + ex.getImportConflict() );
+                }
+            }
+            else
+            {
+                groupAttributes = null;
+                groupCount++;
+            }
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public DataValue getNextDataValue()
+    {
+        if ( !hasNextDataValue() )
+        {
+            throw new NoSuchElementException();
+        }
+
+        DataValue dataValue = next;
+        next = null;
+        return dataValue;
+    }
+
+    @Override
+    public boolean supportsReadAhead()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the conflicts of the data values which could not be decoded.
+     */
+    public List<ImportConflict> getConflicts()
+    {
+        return conflicts;
+    }
+
+    /**
+     * Returns the number of groups which have been fully read.
+     */
+    public int getGroupCount()
+    {
+        return groupCount;
+    }
+
+    /**
+     * Returns the exception of the group which could not be decoded, or null.
+     */
+    public AdxException getGroupException()
+    {
+        return groupException;
+    }
+
+    //--------------------------------------------------------------------------
+    // Supportive methods
+    //--------------------------------------------------------------------------
+
+    /**
+     * Moves to the next group and decodes its attributes. Returns false if
+     * there are no more groups or the group could not be decoded.
+     */
+    private boolean nextGroup()
+    {
+        if ( !reader.moveToStartElement( AdxDataService.GROUP, AdxDataService.NAMESPACE ) )
+        {
+            return false;
+        }
+
+        notifier.update( id, "Importing ADX data group: " + groupCount );
+
+        try
+        {
+            groupAttributes = parseGroupAttributes();
+            return true;
+        }
+        catch ( AdxException ex )
+        {
+            groupException = ex;
+            return false;
+        }
+    }
+
+    private Map<String, String> parseGroupAttributes()
+        throws AdxException
+    {
+        Map<String, String> groupAttributes = reader.readAttributes();
+
+        if ( !groupAttributes.containsKey( AdxDataService.PERIOD ) )
+        {
+            throw new AdxException( AdxDataService.PERIOD + " attribute is required on 'group'" );
+        }
+
+        if ( !groupAttributes.containsKey( AdxDataService.ORGUNIT ) )
+        {
+            throw new AdxException( AdxDataService.ORGUNIT + " attribute is required on 'group'" );
+        }
+
+        // translate ADX period to DXF
+        Period period = AdxPeriod.parse( groupAttributes.get( AdxDataService.PERIOD ) );
+        groupAttributes.put( AdxDataService.PERIOD, period.getIsoDate() );
+
+        // process ADX group attributes
+        if ( !groupAttributes.containsKey( AdxDataService.ATTOPTCOMBO )
+            && groupAttributes.containsKey( AdxDataService.DATASET ) )
+        {
+            log.debug( "No attribute option combo present, check data set for attribute category combo" );
+
+            String dataSetStr = trimToNull( groupAttributes.get( AdxDataService.DATASET ) );
+            final DataSet dataSet = dataSetMap.get( dataSetStr, dataSetCallable.setId( dataSetStr ) );
+
+            if ( dataSet == null )
+            {
+                throw new AdxException( "No data set matching " + dataSetCallable.getIdScheme().name().toLowerCase()
+                    + " '" + groupAttributes.get( AdxDataService.DATASET ) + "'" );
+            }
+
+            groupAttributes.put( AdxDataService.DATASET, dataSet.getUid() );
+            DataElementCategoryCombo attributeCombo = dataSet.getCategoryCombo();
+            convertAttributesToDxf( groupAttributes, AdxDataService.ATTOPTCOMBO, attributeCombo );
+        }
+
+        return groupAttributes;
+    }
+
+    private DataValue parseDataValue()
+        throws AdxException
+    {
+        Map<String, String> dvAttributes = reader.readAttributes();
+
+        log.debug( "Processing data value: " + dvAttributes );
+
+        if ( !dvAttributes.containsKey( AdxDataService.DATAELEMENT ) )
+        {
+            throw new AdxException( AdxDataService.DATAELEMENT + " attribute is required on 'dataValue'" );
+        }
+
+        if ( !dvAttributes.containsKey( AdxDataService.VALUE ) )
+        {
+            throw new AdxException( AdxDataService.VALUE + " attribute is required on 'dataValue'" );
+        }
+
+        String dataElementStr = trimToNull( dvAttributes.get( AdxDataService.DATAELEMENT ) );
+        final DataElement dataElement = dataElementMap.get( dataElementStr, dataElementCallable.setId( dataElementStr ) );
+
+        if ( dataElement == null )
+        {
+            throw new AdxException( "No data element matching " + dataElementCallable.getIdScheme().name().toLowerCase()
+                + " '" + dataElementStr + "'" );
+        }
+
+        // process ADX data value attributes
+        if ( !dvAttributes.containsKey( AdxDataService.CATOPTCOMBO ) )
+        {
+            log.debug( "No category option combo present" );
+
+            //TODO expand to allow for category combos part of DataSetElements.
+
+            DataElementCategoryCombo categoryCombo = dataElement.getDataElementCategoryCombo();
+
+            convertAttributesToDxf( dvAttributes, AdxDataService.CATOPTCOMBO, categoryCombo );
+        }
+
+        // if data element type is not numeric we need to pick out the
+        // 'annotation' element
+        if ( !dataElement.getValueType().isNumeric() )
+        {
+            reader.moveToStartElement( AdxDataService.ANNOTATION, AdxDataService.DATAVALUE );
+
+            if ( reader.isStartElement( AdxDataService.ANNOTATION ) )
+            {
+                String textValue = reader.getElementValue();
+                dvAttributes.put( AdxDataService.VALUE, textValue );
+            }
+            else
+            {
+                throw new AdxException( dvAttributes.get( AdxDataService.DATAELEMENT ),
+                    "DataElement expects text annotation" );
+            }
+        }
+
+        Map<String, String> attributes = new HashMap<>( groupAttributes );
+        attributes.putAll( dvAttributes );
+
+        log.debug( "Processing data value as DXF: " + attributes );
+
+        DataValue dataValue = new DataValue();
+        dataValue.setDataElement( dataElement.getUid() );
+        dataValue.setPeriod( attributes.get( AdxDataService.PERIOD ) );
+        dataValue.setOrgUnit( attributes.get( AdxDataService.ORGUNIT ) );
+        dataValue.setCategoryOptionCombo( attributes.get( AdxDataService.CATOPTCOMBO ) );
+        dataValue.setAttributeOptionCombo( attributes.get( AdxDataService.ATTOPTCOMBO ) );
+        dataValue.setValue( attributes.get( AdxDataService.VALUE ) );
+        dataValue.setStoredBy( attributes.get( "storedBy" ) );
+        dataValue.setLastUpdated( attributes.get( "lastUpdated" ) );
+        dataValue.setComment( attributes.get( "comment" ) );
+        dataValue.setFollowup( attributes.containsKey( "followUp" ) ? Boolean.valueOf( attributes.get( "followUp" ) ) : null );
+        dataValue.setDeleted( attributes.containsKey( "deleted" ) ? Boolean.valueOf( attributes.get( "deleted" ) ) : null );
+        return dataValue;
+    }
+
+    private Map<String, DataElementCategory> getCodeCategoryMap( DataElementCategoryCombo categoryCombo )
+        throws AdxException
+    {
+        Map<String, DataElementCategory> categoryMap = new HashMap<>();
+
+        List<DataElementCategory> categories = categoryCombo.getCategories();
+
+        for ( DataElementCategory category : categories )
+        {
+            String categoryCode = category.getCode();
+
+            if ( categoryCode == null || !XMLChar.isValidName( categoryCode ) )
+            {
+                throw new AdxException(
+                    "Category code for " + category.getName() + " is missing or invalid: " + categoryCode );
+            }
+
+            categoryMap.put( category.getCode(), category );
+        }
+
+        return categoryMap;
+    }
+
+    private DataElementCategoryOptionCombo getCatOptComboFromAttributes( Map<String, String> attributes,
+        DataElementCategoryCombo catcombo, IdentifiableProperty scheme )
+        throws AdxException
+    {
+        CategoryComboMap catcomboMap = categoryComboMaps.get( catcombo.getUid() );
+
+        if ( catcomboMap == null )
+        {
+            try
+            {
+                catcomboMap = new CategoryComboMap( catcombo, scheme );
+            }
+            catch ( CategoryComboMapException ex )
+            {
+                log.info( "Failed to create category combo map from: " + catcombo );
+                throw new AdxException( ex.getMessage() );
+            }
+
+            categoryComboMaps.put( catcombo.getUid(), catcomboMap );
+        }
+
+        String compositeIdentifier = StringUtils.EMPTY;
+
+        for ( DataElementCategory category : catcomboMap.getCategories() )
+        {
+            String categoryCode = category.getCode();
+
+            if ( categoryCode == null )
+            {
+                throw new AdxException( "No category matching: " + categoryCode );
+            }
+
+            String catAttribute = attributes.get( categoryCode );
+
+            if ( catAttribute == null )
+            {
+                throw new AdxException( "Missing required attribute from category combo: " + categoryCode );
+            }
+
+            compositeIdentifier += "\"" + catAttribute + "\"";
+        }
+
+        DataElementCategoryOptionCombo catOptionCombo = catcomboMap.getCategoryOptionCombo( compositeIdentifier );
+
+        if ( catOptionCombo == null )
+        {
+            throw new AdxException( "Invalid attributes:" + attributes );
+        }
+
+        return catOptionCombo;
+    }
+
+    private void convertAttributesToDxf( Map<String, String> attributes, String optionComboName,
+        DataElementCategoryCombo catCombo )
+        throws AdxException
+    {
+        log.debug( "ADX attributes: " + attributes );
+
+        if ( catCombo.isDefault() )
+        {
+            return;
+        }
+
+        Map<String, DataElementCategory> categoryMap = getCodeCategoryMap( catCombo );
+
+        Map<String, String> attributeOptions = new HashMap<>();
+
+        for ( String category : categoryMap.keySet() )
+        {
+            if ( attributes.containsKey( category ) )
+            {
+                attributeOptions.put( category, attributes.get( category ) );
+                attributes.remove( category );
+            }
+            else
+            {
+                throw new AdxException(
+                    "Category combo " + catCombo.getName() + " must have " + categoryMap.get( category ).getName() );
+            }
+        }
+
+        DataElementCategoryOptionCombo catOptCombo = getCatOptComboFromAttributes( attributeOptions, catCombo,
+            categoryOptionIdScheme.getIdentifiableProperty() );
+
+        attributes.put( optionComboName, catOptCombo.getPropertyValue( categoryOptionComboIdScheme ) );
+
+        log.debug( "DXF attributes: " + attributes );
+    }
+}
@@ -0,0 +1,200 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Position in an export of data values ordered by last updated time and
+ * primary key. A cursor starts at a last updated time and is advanced to the
+ * last data value written by each chunk of the export, so that the next chunk
+ * continues right after it. Cursors can be persisted through
+ * {@link #toString()} and {@link #fromString(String)}.
+ *
+ * @author agent
+ */
+public class DataExportCursor
+{
+    private static final String SEPARATOR = ";";
+
+    /**
+     * Last updated time of the last written data value, or the time to start
+     * from if no data values have been written.
+     */
+    private Timestamp lastUpdated;
+
+    private Integer dataElementId;
+
+    private Integer periodId;
+
+    private Integer orgUnitId;
+
+    private Integer categoryOptionComboId;
+
+    private Integer attributeOptionComboId;
+
+    private DataExportCursor( Timestamp lastUpdated )
+    {
+        this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * Returns a cursor positioned before all data values last updated at or
+     * after the given time.
+     *
+     * @param lastUpdated the last updated time.
+     */
+    public static DataExportCursor startingAt( Date lastUpdated )
+    {
+        return new DataExportCursor( new Timestamp( lastUpdated.getTime() ) );
+    }
+
+    /**
+     * Parses a cursor from the given string produced by {@link #toString()}.
+     * Returns null if the string is null, empty or invalid.
+     *
+     * @param cursor the cursor string.
+     */
+    public static DataExportCursor fromString( String cursor )
+    {
+        if ( StringUtils.isEmpty( cursor ) )
+        {
+            return null;
+        }
+
+        String[] parts = cursor.split( SEPARATOR );
+
+        try
+        {
+            DataExportCursor exportCursor = new DataExportCursor( Timestamp.valueOf( parts[0] ) );
+
+            if ( parts.length == 6 )
+            {
+                exportCursor.advance( exportCursor.lastUpdated, Integer.valueOf( parts[1] ), Integer.valueOf( parts[2] ),
+                    Integer.valueOf( parts[3] ), Integer.valueOf( parts[4] ), Integer.valueOf( parts[5] ) );
+            }
+
+            return exportCursor;
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            return null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether this cursor is positioned at a written data value, as
+     * opposed to a start time.
+     */
+    public boolean hasDataValue()
+    {
+        return dataElementId != null;
+    }
+
+    /**
+     * Returns a copy of this cursor.
+     */
+    public DataExportCursor copy()
+    {
+        DataExportCursor cursor = new DataExportCursor( lastUpdated );
+        cursor.dataElementId = dataElementId;
+        cursor.periodId = periodId;
+        cursor.orgUnitId = orgUnitId;
+        cursor.categoryOptionComboId = categoryOptionComboId;
+        cursor.attributeOptionComboId = attributeOptionComboId;
+        return cursor;
+    }
+
+    /**
+     * Moves this cursor to the given data value.
+     */
+    public void advance( Timestamp lastUpdated, int dataElementId, int periodId, int orgUnitId,
+        int categoryOptionComboId, int attributeOptionComboId )
+    {
+        this.lastUpdated = lastUpdated;
+        this.dataElementId = dataElementId;
+        this.periodId = periodId;
+        this.orgUnitId = orgUnitId;
+        this.categoryOptionComboId = categoryOptionComboId;
+        this.attributeOptionComboId = attributeOptionComboId;
+    }
+
+    // -------------------------------------------------------------------------
+    // Getters
+    // -------------------------------------------------------------------------
+
+    public Timestamp getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    public Integer getDataElementId()
+    {
+        return dataElementId;
+    }
+
+    public Integer getPeriodId()
+    {
+        return periodId;
+    }
+
+    public Integer getOrgUnitId()
+    {
+        return orgUnitId;
+    }
+
+    public Integer getCategoryOptionComboId()
+    {
+        return categoryOptionComboId;
+    }
+
+    public Integer getAttributeOptionComboId()
+    {
+        return attributeOptionComboId;
+    }
+
+    @Override
+    public String toString()
+    {
+        if ( !hasDataValue() )
+        {
+            return lastUpdated.toString();
+        }
+
+        return StringUtils.join( new Object[] { lastUpdated, dataElementId, periodId, orgUnitId,
+            categoryOptionComboId, attributeOptionComboId }, SEPARATOR );
+    }
+}
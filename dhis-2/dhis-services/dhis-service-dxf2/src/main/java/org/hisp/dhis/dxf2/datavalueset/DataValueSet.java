@@ -321,6 +321,17 @@ public class DataValueSet
     {
     }
 
+    /**
+     * Indicates whether the data values of this data value set are parsed
+     * from a stream and can be read on a separate thread ahead of the import.
+     * Data values of this class are held in memory, like for JSON payloads
+     * which are deserialized in full before the import starts.
+     */
+    public boolean supportsReadAhead()
+    {
+        return false;
+    }
+
     /**
      * Returns the general identifier scheme. IdScheme.NULL is returned if
      * scheme has not been set.
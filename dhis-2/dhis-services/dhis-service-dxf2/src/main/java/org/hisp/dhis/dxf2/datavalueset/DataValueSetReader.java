@@ -0,0 +1,212 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.dxf2.datavalue.DataValue;
+
+/**
+ * Reader of the data values of a {@link DataValueSet}. With a positive
+ * read-ahead size the data values are parsed on a separate thread into a
+ * bounded buffer, so that parsing of the payload runs in parallel with
+ * validation of the data values. Otherwise the data values are read directly
+ * from the data value set on the calling thread.
+ * <p>
+ * Only streaming XML and CSV data value sets are read ahead. JSON payloads are
+ * deserialized in full before the import starts and are read on the calling
+ * thread.
+ * <p>
+ * The reader thread is started when the first data value is requested, so
+ * that the properties of the data value set can be read up front. Streaming
+ * data values read their properties lazily from the underlying reader, so
+ * each data value is copied with all properties resolved before it is put in
+ * the buffer.
+ * <p>
+ * This class is not thread-safe and must be consumed by a single thread.
+ *
+ * @author agent
+ */
+public class DataValueSetReader
+{
+    private static final Log log = LogFactory.getLog( DataValueSetReader.class );
+
+    /**
+     * Marker for the end of the data values.
+     */
+    private static final DataValue END = new DataValue();
+
+    private final DataValueSet dataValueSet;
+
+    private final BlockingQueue<DataValue> buffer;
+
+    private Thread readerThread;
+
+    private volatile RuntimeException readerException;
+
+    private DataValue next;
+
+    /**
+     * @param dataValueSet the data value set to read.
+     * @param readAheadSize the max number of data values to parse ahead, zero
+     *        to read on the calling thread.
+     */
+    public DataValueSetReader( DataValueSet dataValueSet, int readAheadSize )
+    {
+        this.dataValueSet = dataValueSet;
+        this.buffer = readAheadSize > 0 ? new ArrayBlockingQueue<>( readAheadSize ) : null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether there are more data values. Blocks until the next data
+     * value is parsed when reading ahead.
+     *
+     * @throws RuntimeException if parsing of the data value set failed.
+     */
+    public boolean hasNextDataValue()
+    {
+        if ( buffer == null )
+        {
+            return dataValueSet.hasNextDataValue();
+        }
+
+        if ( readerThread == null )
+        {
+            readerThread = new Thread( this::read, "data-value-set-reader" );
+            readerThread.setDaemon( true );
+            readerThread.start();
+        }
+
+        if ( next == null )
+        {
+            try
+            {
+                next = buffer.take();
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while reading data values", ex );
+            }
+        }
+
+        if ( next == END && readerException != null )
+        {
+            throw readerException;
+        }
+
+        return next != END;
+    }
+
+    /**
+     * Returns the next data value. Must be preceded by a call to
+     * {@link #hasNextDataValue()}.
+     */
+    public DataValue getNextDataValue()
+    {
+        if ( buffer == null )
+        {
+            return dataValueSet.getNextDataValue();
+        }
+
+        DataValue dataValue = next;
+        next = null;
+        return dataValue;
+    }
+
+    /**
+     * Stops the reader thread if still running.
+     */
+    public void close()
+    {
+        if ( readerThread != null && readerThread.isAlive() )
+        {
+            readerThread.interrupt();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private void read()
+    {
+        try
+        {
+            while ( dataValueSet.hasNextDataValue() )
+            {
+                buffer.put( copy( dataValueSet.getNextDataValue() ) );
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            log.debug( "Data value set reader interrupted" );
+            return;
+        }
+        catch ( RuntimeException ex )
+        {
+            log.error( "Failed to read data value set", ex );
+            readerException = ex;
+        }
+
+        try
+        {
+            buffer.put( END );
+        }
+        catch ( InterruptedException ex )
+        {
+            log.debug( "Data value set reader interrupted" );
+        }
+    }
+
+    private DataValue copy( DataValue source )
+    {
+        DataValue dataValue = new DataValue();
+        dataValue.setDataElement( source.getDataElement() );
+        dataValue.setPeriod( source.getPeriod() );
+        dataValue.setOrgUnit( source.getOrgUnit() );
+        dataValue.setCategoryOptionCombo( source.getCategoryOptionCombo() );
+        dataValue.setAttributeOptionCombo( source.getAttributeOptionCombo() );
+        dataValue.setValue( source.getValue() );
+        dataValue.setStoredBy( source.getStoredBy() );
+        dataValue.setCreated( source.getCreated() );
+        dataValue.setLastUpdated( source.getLastUpdated() );
+        dataValue.setComment( source.getComment() );
+        dataValue.setFollowup( source.getFollowup() );
+        dataValue.setDeleted( source.getDeleted() );
+        return dataValue;
+    }
+}
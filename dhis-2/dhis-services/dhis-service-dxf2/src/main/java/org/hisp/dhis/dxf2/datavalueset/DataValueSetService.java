@@ -82,6 +82,19 @@ public interface DataValueSetService
 
     void writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes );
 
+    /**
+     * Writes a chunk of data values ordered by last updated time as JSON,
+     * starting right after the given cursor, and advances the cursor to the
+     * last written data value.
+     *
+     * @param cursor the {@link DataExportCursor}.
+     * @param limit the max number of data values to write.
+     * @param outputStream the output stream.
+     * @param idSchemes the identifier schemes.
+     * @return the number of written data values.
+     */
+    int writeDataValueSetJson( DataExportCursor cursor, int limit, OutputStream outputStream, IdSchemes idSchemes );
+
     void writeDataValueSetCsv( DataExportParams params, Writer writer );
 
     RootNode getDataValueSetTemplate( DataSet dataSet, Period period, List<String> orgUnits, boolean writeComments, String ouScheme, String deScheme );
@@ -103,4 +116,15 @@ public interface DataValueSetService
     ImportSummary saveDataValueSetCsv( InputStream in, ImportOptions importOptions, JobConfiguration id );
 
     ImportSummary saveDataValueSetPdf( InputStream in, ImportOptions importOptions, JobConfiguration id );
+
+    /**
+     * Imports the data values of the given data value set, which may be a
+     * streaming data value set decoding the data values while importing.
+     *
+     * @param dataValueSet the {@link DataValueSet}.
+     * @param importOptions the {@link ImportOptions}.
+     * @param id the job identifier.
+     * @return an {@link ImportSummary}.
+     */
+    ImportSummary saveDataValueSet( DataValueSet dataValueSet, ImportOptions importOptions, JobConfiguration id );
 }
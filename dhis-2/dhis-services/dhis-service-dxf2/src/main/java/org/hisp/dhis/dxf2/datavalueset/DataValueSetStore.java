@@ -30,10 +30,13 @@ package org.hisp.dhis.dxf2.datavalueset;
 
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import org.hisp.dhis.common.IdSchemes;
 import org.hisp.dhis.datavalue.DataExportParams;
+import org.hisp.dhis.datavalue.DataValue;
 
 /**
  * @author Lars Helge Overland
@@ -47,4 +50,30 @@ public interface DataValueSetStore
     void writeDataValueSetCsv( DataExportParams params, Date completeDate, Writer writer );
 
     void writeDataValueSetJson( Date lastUpdated, OutputStream outputStream, IdSchemes idSchemes );
+
+    /**
+     * Writes a chunk of at most the given number of data values, including
+     * deleted data values, as JSON. The data values are ordered by last
+     * updated time and primary key, start right after the position of the
+     * given cursor, and the cursor is advanced to the last written data value.
+     *
+     * @param cursor the {@link DataExportCursor}.
+     * @param limit the max number of data values to write.
+     * @param outputStream the output stream.
+     * @param idSchemes the identifier schemes.
+     * @return the number of written data values.
+     */
+    int writeDataValueSetJson( DataExportCursor cursor, int limit, OutputStream outputStream, IdSchemes idSchemes );
+
+    /**
+     * Returns the persisted data values, including soft deleted data values,
+     * with the same data element, period, organisation unit, category option
+     * combo and attribute option combo as any of the given data values. The
+     * persisted data values are fetched with a single query. The returned data
+     * values reference the dimensional objects of the given data values.
+     *
+     * @param dataValues the data values.
+     * @return a list of persisted data values.
+     */
+    List<DataValue> getExistingDataValues( Collection<DataValue> dataValues );
 }
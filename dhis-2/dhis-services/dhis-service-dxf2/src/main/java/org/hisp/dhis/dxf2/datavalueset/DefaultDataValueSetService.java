@@ -58,6 +58,8 @@ import org.hisp.dhis.dxf2.importsummary.ImportStatus;
 import org.hisp.dhis.dxf2.importsummary.ImportSummary;
 import org.hisp.dhis.dxf2.pdfform.PdfDataEntryFormUtil;
 import org.hisp.dhis.dxf2.utils.InputUtils;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.fileresource.FileResource;
 import org.hisp.dhis.fileresource.FileResourceService;
 import org.hisp.dhis.i18n.I18n;
@@ -99,6 +101,13 @@ import java.io.OutputStream;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.lang3.StringUtils.trimToNull;
 import static org.hisp.dhis.system.notification.NotificationLevel.*;
@@ -116,6 +125,10 @@ public class DefaultDataValueSetService
 
     private static final String ERROR_OBJECT_NEEDED_TO_COMPLETE = "Must be provided to complete data set";
     private static final int CACHE_MISS_THRESHOLD = 250;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    private static final int IMPORT_READ_AHEAD_SIZE = 10000;
+    private static final int IMPORT_WRITE_QUEUE_SIZE = 4;
+    private static final List<DataValue> END_OF_CHUNKS = new ArrayList<>();
 
     @Autowired
     private IdentifiableObjectManager identifiableObjectManager;
@@ -165,6 +178,9 @@ public class DefaultDataValueSetService
     @Autowired
     private FileResourceService fileResourceService;
 
+    @Autowired
+    private DhisConfigurationProvider config;
+
     // Set methods for test purposes
 
     public void setBatchHandlerFactory( BatchHandlerFactory batchHandlerFactory )
@@ -177,6 +193,11 @@ public class DefaultDataValueSetService
         this.currentUserService = currentUserService;
     }
 
+    public void setConfig( DhisConfigurationProvider config )
+    {
+        this.config = config;
+    }
+
     // -------------------------------------------------------------------------
     // DataValueSet implementation
     // -------------------------------------------------------------------------
@@ -341,6 +362,12 @@ public class DefaultDataValueSetService
         dataValueSetStore.writeDataValueSetJson( lastUpdated, outputStream, idSchemes );
     }
 
+    @Override
+    public int writeDataValueSetJson( DataExportCursor cursor, int limit, OutputStream outputStream, IdSchemes idSchemes )
+    {
+        return dataValueSetStore.writeDataValueSetJson( cursor, limit, outputStream, idSchemes );
+    }
+
     @Override
     public void writeDataValueSetCsv( DataExportParams params, Writer writer )
     {
@@ -574,6 +601,21 @@ public class DefaultDataValueSetService
         }
     }
 
+    @Override
+    public ImportSummary saveDataValueSet( DataValueSet dataValueSet, ImportOptions importOptions, JobConfiguration id )
+    {
+        try
+        {
+            return saveDataValueSet( importOptions, id, dataValueSet );
+        }
+        catch ( RuntimeException ex )
+        {
+            log.error( DebugUtils.getStackTrace( ex ) );
+            notifier.notify( id, ERROR, "Process failed: " + ex.getMessage(), true );
+            return new ImportSummary( ImportStatus.ERROR, "The import process failed: " + ex.getMessage() );
+        }
+    }
+
     /**
      * There are specific id schemes for data elements and organisation units and
      * a generic id scheme for all objects. The specific id schemes will take
@@ -766,14 +808,27 @@ public class DefaultDataValueSetService
         final String currentUser = currentUserService.getCurrentUsername();
         final Set<OrganisationUnit> currentOrgUnits = currentUserService.getCurrentUserOrganisationUnits();
 
-        BatchHandler<DataValue> dataValueBatchHandler = batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ).init();
-        BatchHandler<DataValueAudit> auditBatchHandler = batchHandlerFactory.createBatchHandler( DataValueAuditBatchHandler.class ).init();
+        // ---------------------------------------------------------------------
+        // Pipelined import parses, validates and writes data values on
+        // separate threads when more than one writer worker is configured
+        // ---------------------------------------------------------------------
+
+        final int workers = Math.max( 1, Integer.parseInt( config.getProperty( ConfigurationKey.DATA_IMPORT_WORKERS ) ) );
+        final boolean pipelined = workers > 1;
+
+        log.info( String.format( "Pipelined import: %b, writer workers: %d", pipelined, workers ) );
 
-        int importCount = 0;
-        int updateCount = 0;
-        int deleteCount = 0;
+        DataValueSetReader reader = new DataValueSetReader( dataValueSet, pipelined && dataValueSet.supportsReadAhead() ? IMPORT_READ_AHEAD_SIZE : 0 );
+        ParallelDataValueWriter parallelWriter = pipelined ? new ParallelDataValueWriter( workers, strategy, dryRun, skipExistingCheck ) : null;
+
+        BatchHandler<DataValue> dataValueBatchHandler = !pipelined ? batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ).init() : null;
+        BatchHandler<DataValueAudit> auditBatchHandler = !pipelined ? batchHandlerFactory.createBatchHandler( DataValueAuditBatchHandler.class ).init() : null;
+
+        ImportCount importCount = new ImportCount();
         int totalCount = 0;
 
+        List<DataValue> dataValueChunk = new ArrayList<>( IMPORT_CHUNK_SIZE );
+
         // ---------------------------------------------------------------------
         // Data values
         // ---------------------------------------------------------------------
@@ -783,301 +838,391 @@ public class DefaultDataValueSetService
         clock.logTime( "Validated outer meta-data" );
         notifier.notify( id, notificationLevel, "Importing data values" );
 
-        while ( dataValueSet.hasNextDataValue() )
+        try
         {
-            org.hisp.dhis.dxf2.datavalue.DataValue dataValue = dataValueSet.getNextDataValue();
-
-            totalCount++;
+            while ( reader.hasNextDataValue() )
+            {
+                org.hisp.dhis.dxf2.datavalue.DataValue dataValue = reader.getNextDataValue();
+
+                totalCount++;
+
+                final DataElement dataElement =
+                    dataElementMap.get( trimToNull( dataValue.getDataElement() ), dataElementCallable.setId( trimToNull( dataValue.getDataElement() ) ) );
+                final Period period = outerPeriod != null ? outerPeriod :
+                    periodMap.get( trimToNull( dataValue.getPeriod() ), periodCallable.setId( trimToNull( dataValue.getPeriod() ) ) );
+                final OrganisationUnit orgUnit = outerOrgUnit != null ? outerOrgUnit :
+                    orgUnitMap.get( trimToNull( dataValue.getOrgUnit() ), orgUnitCallable.setId( trimToNull( dataValue.getOrgUnit() ) ) );
+                DataElementCategoryOptionCombo categoryOptionCombo =
+                    optionComboMap.get( trimToNull( dataValue.getCategoryOptionCombo() ), categoryOptionComboCallable.setId( trimToNull( dataValue.getCategoryOptionCombo() ) ) );
+                DataElementCategoryOptionCombo attrOptionCombo = outerAttrOptionCombo != null ? outerAttrOptionCombo :
+                    optionComboMap.get( trimToNull( dataValue.getAttributeOptionCombo() ), attributeOptionComboCallable.setId( trimToNull( dataValue.getAttributeOptionCombo() ) ) );
+
+                // -----------------------------------------------------------------
+                // Potentially heat caches
+                // -----------------------------------------------------------------
+
+                if ( !dataElementMap.isCacheLoaded() && dataElementMap.getCacheMissCount() > CACHE_MISS_THRESHOLD )
+                {
+                    dataElementMap.load( identifiableObjectManager.getAll( DataElement.class ), o -> o.getPropertyValue( dataElementIdScheme ) );
 
-            final DataElement dataElement =
-                dataElementMap.get( trimToNull( dataValue.getDataElement() ), dataElementCallable.setId( trimToNull( dataValue.getDataElement() ) ) );
-            final Period period = outerPeriod != null ? outerPeriod :
-                periodMap.get( trimToNull( dataValue.getPeriod() ), periodCallable.setId( trimToNull( dataValue.getPeriod() ) ) );
-            final OrganisationUnit orgUnit = outerOrgUnit != null ? outerOrgUnit :
-                orgUnitMap.get( trimToNull( dataValue.getOrgUnit() ), orgUnitCallable.setId( trimToNull( dataValue.getOrgUnit() ) ) );
-            DataElementCategoryOptionCombo categoryOptionCombo =
-                optionComboMap.get( trimToNull( dataValue.getCategoryOptionCombo() ), categoryOptionComboCallable.setId( trimToNull( dataValue.getCategoryOptionCombo() ) ) );
-            DataElementCategoryOptionCombo attrOptionCombo = outerAttrOptionCombo != null ? outerAttrOptionCombo :
-                optionComboMap.get( trimToNull( dataValue.getAttributeOptionCombo() ), attributeOptionComboCallable.setId( trimToNull( dataValue.getAttributeOptionCombo() ) ) );
+                    log.info( "Data element cache heated after cache miss threshold reached" );
+                }
 
-            // -----------------------------------------------------------------
-            // Potentially heat caches
-            // -----------------------------------------------------------------
+                if ( !orgUnitMap.isCacheLoaded() && orgUnitMap.getCacheMissCount() > CACHE_MISS_THRESHOLD )
+                {
+                    orgUnitMap.load( identifiableObjectManager.getAll( OrganisationUnit.class ), o -> o.getPropertyValue( orgUnitIdScheme ) );
 
-            if ( !dataElementMap.isCacheLoaded() && dataElementMap.getCacheMissCount() > CACHE_MISS_THRESHOLD )
-            {
-                dataElementMap.load( identifiableObjectManager.getAll( DataElement.class ), o -> o.getPropertyValue( dataElementIdScheme ) );
+                    log.info( "Org unit cache heated after cache miss threshold reached" );
+                }
 
-                log.info( "Data element cache heated after cache miss threshold reached" );
-            }
+                // -----------------------------------------------------------------
+                // Validation
+                // -----------------------------------------------------------------
 
-            if ( !orgUnitMap.isCacheLoaded() && orgUnitMap.getCacheMissCount() > CACHE_MISS_THRESHOLD )
-            {
-                orgUnitMap.load( identifiableObjectManager.getAll( OrganisationUnit.class ), o -> o.getPropertyValue( orgUnitIdScheme ) );
+                if ( dataElement == null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getDataElement(), "Data element not found or not accessible" ) );
+                    continue;
+                }
 
-                log.info( "Org unit cache heated after cache miss threshold reached" );
-            }
+                if ( period == null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getPeriod(), "Period not valid" ) );
+                    continue;
+                }
 
-            // -----------------------------------------------------------------
-            // Validation
-            // -----------------------------------------------------------------
+                if ( orgUnit == null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getOrgUnit(), "Organisation unit not found or not accessible" ) );
+                    continue;
+                }
 
-            if ( dataElement == null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getDataElement(), "Data element not found or not accessible" ) );
-                continue;
-            }
+                if ( categoryOptionCombo == null && trimToNull( dataValue.getCategoryOptionCombo() ) != null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getCategoryOptionCombo(), "Category option combo not found or not accessible" ) );
+                    continue;
+                }
 
-            if ( period == null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getPeriod(), "Period not valid" ) );
-                continue;
-            }
+                if ( attrOptionCombo == null && trimToNull( dataValue.getAttributeOptionCombo() ) != null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getAttributeOptionCombo(), "Attribute option combo not found or not accessible" ) );
+                    continue;
+                }
 
-            if ( orgUnit == null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getOrgUnit(), "Organisation unit not found or not accessible" ) );
-                continue;
-            }
+                boolean inUserHierarchy = orgUnitInHierarchyMap.get( orgUnit.getUid(), () -> orgUnit.isDescendant( currentOrgUnits ) );
 
-            if ( categoryOptionCombo == null && trimToNull( dataValue.getCategoryOptionCombo() ) != null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getCategoryOptionCombo(), "Category option combo not found or not accessible" ) );
-                continue;
-            }
+                if ( !inUserHierarchy )
+                {
+                    summary.getConflicts().add( new ImportConflict( orgUnit.getUid(), "Organisation unit not in hierarchy of current user: " + currentUser ) );
+                    continue;
+                }
 
-            if ( attrOptionCombo == null && trimToNull( dataValue.getAttributeOptionCombo() ) != null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getAttributeOptionCombo(), "Attribute option combo not found or not accessible" ) );
-                continue;
-            }
+                if ( dataValue.isNullValue() && !dataValue.isDeletedValue() )
+                {
+                    summary.getConflicts().add( new ImportConflict( "Value", "Data value or comment not specified for data element: " + dataElement.getUid() ) );
+                    continue;
+                }
 
-            boolean inUserHierarchy = orgUnitInHierarchyMap.get( orgUnit.getUid(), () -> orgUnit.isDescendant( currentOrgUnits ) );
+                dataValue.setValueForced(
+                    ValidationUtils.normalizeBoolean( dataValue.getValue(), dataElement.getValueType() ) );
 
-            if ( !inUserHierarchy )
-            {
-                summary.getConflicts().add( new ImportConflict( orgUnit.getUid(), "Organisation unit not in hierarchy of current user: " + currentUser ) );
-                continue;
-            }
+                String valueValid = ValidationUtils.dataValueIsValid( dataValue.getValue(), dataElement );
 
-            if ( dataValue.isNullValue() && !dataValue.isDeletedValue() )
-            {
-                summary.getConflicts().add( new ImportConflict( "Value", "Data value or comment not specified for data element: " + dataElement.getUid() ) );
-                continue;
-            }
+                if ( valueValid != null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getValue(), i18n.getString( valueValid ) + ", must match data element type: " + dataElement.getUid() ) );
+                    continue;
+                }
 
-            dataValue.setValueForced(
-                ValidationUtils.normalizeBoolean( dataValue.getValue(), dataElement.getValueType() ) );
+                String commentValid = ValidationUtils.commentIsValid( dataValue.getComment() );
 
-            String valueValid = ValidationUtils.dataValueIsValid( dataValue.getValue(), dataElement );
+                if ( commentValid != null )
+                {
+                    summary.getConflicts().add( new ImportConflict( "Comment", i18n.getString( commentValid ) ) );
+                    continue;
+                }
 
-            if ( valueValid != null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getValue(), i18n.getString( valueValid ) + ", must match data element type: " + dataElement.getUid() ) );
-                continue;
-            }
+                Optional<Set<String>> optionCodes = dataElementOptionsMap.get( dataElement.getUid(), () -> dataElement.hasOptionSet() ?
+                    Optional.of( dataElement.getOptionSet().getOptionCodesAsSet() ) : Optional.empty() );
 
-            String commentValid = ValidationUtils.commentIsValid( dataValue.getComment() );
+                if ( optionCodes.isPresent() && !optionCodes.get().contains( dataValue.getValue() ) )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Data value is not a valid option of the data element option set: " + dataElement.getUid() ) );
+                    continue;
+                }
 
-            if ( commentValid != null )
-            {
-                summary.getConflicts().add( new ImportConflict( "Comment", i18n.getString( commentValid ) ) );
-                continue;
-            }
+                // -----------------------------------------------------------------
+                // Constraints
+                // -----------------------------------------------------------------
 
-            Optional<Set<String>> optionCodes = dataElementOptionsMap.get( dataElement.getUid(), () -> dataElement.hasOptionSet() ?
-                Optional.of( dataElement.getOptionSet().getOptionCodesAsSet() ) : Optional.empty() );
+                if ( categoryOptionCombo == null )
+                {
+                    if ( requireCategoryOptionCombo )
+                    {
+                        summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Category option combo is required but is not specified" ) );
+                        continue;
+                    }
+                    else
+                    {
+                        categoryOptionCombo = fallbackCategoryOptionCombo;
+                    }
+                }
 
-            if ( optionCodes.isPresent() && !optionCodes.get().contains( dataValue.getValue() ) )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Data value is not a valid option of the data element option set: " + dataElement.getUid() ) );
-                continue;
-            }
+                if ( attrOptionCombo == null )
+                {
+                    if ( requireAttrOptionCombo )
+                    {
+                        summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Attribute option combo is required but is not specified" ) );
+                        continue;
+                    }
+                    else
+                    {
+                        attrOptionCombo = fallbackCategoryOptionCombo;
+                    }
+                }
 
-            // -----------------------------------------------------------------
-            // Constraints
-            // -----------------------------------------------------------------
+                if ( strictPeriods && !dataElementPeriodTypesMap.get( dataElement.getUid(),
+                    () -> dataElement.getPeriodTypes() ).contains( period.getPeriodType() ) )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getPeriod(),
+                        "Period type of period: " + period.getIsoDate() + " not valid for data element: " + dataElement.getUid() ) );
+                    continue;
+                }
 
-            if ( categoryOptionCombo == null )
-            {
-                if ( requireCategoryOptionCombo )
+                if ( strictCategoryOptionCombos && !dataElementCategoryOptionComboMap.get( dataElement.getUid(),
+                    () -> dataElement.getCategoryOptionCombos() ).contains( categoryOptionCombo ) )
                 {
-                    summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Category option combo is required but is not specified" ) );
+                    summary.getConflicts().add( new ImportConflict( categoryOptionCombo.getUid(),
+                        "Category option combo: " + categoryOptionCombo.getUid() + " must be part of category combo of data element: " + dataElement.getUid() ) );
                     continue;
                 }
-                else
+
+                if ( strictAttrOptionCombos && !dataElementAttrOptionComboMap.get( dataElement.getUid(),
+                    () -> dataElement.getDataSetCategoryOptionCombos() ).contains( attrOptionCombo ) )
                 {
-                    categoryOptionCombo = fallbackCategoryOptionCombo;
+                    summary.getConflicts().add( new ImportConflict( attrOptionCombo.getUid(),
+                        "Attribute option combo: " + attrOptionCombo.getUid() + " must be part of category combo of data sets of data element: " + dataElement.getUid() ) );
+                    continue;
                 }
-            }
 
-            if ( attrOptionCombo == null )
-            {
-                if ( requireAttrOptionCombo )
+                if ( strictOrgUnits && BooleanUtils.isFalse( dataElementOrgUnitMap.get( dataElement.getUid() + orgUnit.getUid(),
+                    () -> orgUnit.hasDataElement( dataElement ) ) ) )
                 {
-                    summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Attribute option combo is required but is not specified" ) );
+                    summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
+                        "Data element: " + dataElement.getUid() + " must be assigned through data sets to organisation unit: " + orgUnit.getUid() ) );
                     continue;
                 }
-                else
+
+                boolean zeroInsignificant = ValidationUtils.dataValueIsZeroAndInsignificant( dataValue.getValue(), dataElement );
+
+                if ( zeroInsignificant )
                 {
-                    attrOptionCombo = fallbackCategoryOptionCombo;
+                    summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Value is zero and not significant, must match data element: " + dataElement.getUid() ) );
+                    continue;
                 }
-            }
 
-            if ( strictPeriods && !dataElementPeriodTypesMap.get( dataElement.getUid(),
-                () -> dataElement.getPeriodTypes() ).contains( period.getPeriodType() ) )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getPeriod(),
-                    "Period type of period: " + period.getIsoDate() + " not valid for data element: " + dataElement.getUid() ) );
-                continue;
-            }
+                String storedByValid = ValidationUtils.storedByIsValid( dataValue.getStoredBy() );
 
-            if ( strictCategoryOptionCombos && !dataElementCategoryOptionComboMap.get( dataElement.getUid(),
-                () -> dataElement.getCategoryOptionCombos() ).contains( categoryOptionCombo ) )
-            {
-                summary.getConflicts().add( new ImportConflict( categoryOptionCombo.getUid(),
-                    "Category option combo: " + categoryOptionCombo.getUid() + " must be part of category combo of data element: " + dataElement.getUid() ) );
-                continue;
-            }
+                if ( storedByValid != null )
+                {
+                    summary.getConflicts().add( new ImportConflict( dataValue.getStoredBy(), i18n.getString( storedByValid ) ) );
+                    continue;
+                }
 
-            if ( strictAttrOptionCombos && !dataElementAttrOptionComboMap.get( dataElement.getUid(),
-                () -> dataElement.getDataSetCategoryOptionCombos() ).contains( attrOptionCombo ) )
-            {
-                summary.getConflicts().add( new ImportConflict( attrOptionCombo.getUid(),
-                    "Attribute option combo: " + attrOptionCombo.getUid() + " must be part of category combo of data sets of data element: " + dataElement.getUid() ) );
-                continue;
-            }
+                String storedBy = dataValue.getStoredBy() == null || dataValue.getStoredBy().trim().isEmpty() ? currentUser : dataValue.getStoredBy();
 
-            if ( strictOrgUnits && BooleanUtils.isFalse( dataElementOrgUnitMap.get( dataElement.getUid() + orgUnit.getUid(),
-                () -> orgUnit.hasDataElement( dataElement ) ) ) )
-            {
-                summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
-                    "Data element: " + dataElement.getUid() + " must be assigned through data sets to organisation unit: " + orgUnit.getUid() ) );
-                continue;
-            }
+                final DataElementCategoryOptionCombo aoc = attrOptionCombo;
 
-            boolean zeroInsignificant = ValidationUtils.dataValueIsZeroAndInsignificant( dataValue.getValue(), dataElement );
+                DateRange aocDateRange = attrOptionComboDateRangeMap.get( attrOptionCombo.getUid(), () -> aoc.getDateRange() );
 
-            if ( zeroInsignificant )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getValue(), "Value is zero and not significant, must match data element: " + dataElement.getUid() ) );
-                continue;
-            }
+                if ( (aocDateRange.getStartDate() != null && aocDateRange.getStartDate().compareTo( period.getStartDate() ) > 0)
+                    || (aocDateRange.getEndDate() != null && aocDateRange.getEndDate().compareTo( period.getEndDate() ) < 0) )
+                {
+                    summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
+                        "Period: " + period.getIsoDate() + " is not within date range of attribute option combo: " + attrOptionCombo.getUid() ) );
+                    continue;
+                }
+
+                if ( !attrOptionComboOrgUnitMap.get( attrOptionCombo.getUid() + orgUnit.getUid(), () ->
+                {
+                    Set<OrganisationUnit> aocOrgUnits = aoc.getOrganisationUnits();
+                    return aocOrgUnits == null || orgUnit.isDescendant( aocOrgUnits );
+                } ) )
+                {
+                    summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
+                        "Organisation unit: " + orgUnit.getUid() + " is not valid for attribute option combo: " + attrOptionCombo.getUid() ) );
+                    continue;
+                }
 
-            String storedByValid = ValidationUtils.storedByIsValid( dataValue.getStoredBy() );
+                final DataSet approvalDataSet = dataSet != null ? dataSet : dataElementDataSetMap.get( dataElement.getUid(),
+                    () -> dataElement.getApprovalDataSet() );
 
-            if ( storedByValid != null )
-            {
-                summary.getConflicts().add( new ImportConflict( dataValue.getStoredBy(), i18n.getString( storedByValid ) ) );
-                continue;
-            }
+                if ( approvalDataSet != null ) // Data element is assigned to at least one data set
+                {
+                    if ( dataSetLockedMap.get( approvalDataSet.getUid() + period.getUid() + orgUnit.getUid(),
+                        () -> isLocked( approvalDataSet, period, orgUnit, skipLockExceptionCheck ) ) )
+                    {
+                        summary.getConflicts().add( new ImportConflict( period.getIsoDate(), "Current date is past expiry days for period " +
+                            period.getIsoDate() + " and data set: " + approvalDataSet.getUid() ) );
+                        continue;
+                    }
 
-            String storedBy = dataValue.getStoredBy() == null || dataValue.getStoredBy().trim().isEmpty() ? currentUser : dataValue.getStoredBy();
+                    Period latestFuturePeriod = dataElementLatestFuturePeriodMap.get( dataElement.getUid(), () -> dataElement.getLatestOpenFuturePeriod() );
 
-            final DataElementCategoryOptionCombo aoc = attrOptionCombo;
+                    if ( period.isAfter( latestFuturePeriod ) && isIso8601 )
+                    {
+                        summary.getConflicts().add( new ImportConflict( period.getIsoDate(), "Period: " +
+                            period.getIsoDate() + " is after latest open future period: " + latestFuturePeriod.getIsoDate() + " for data element: " + dataElement.getUid() ) );
+                        continue;
+                    }
 
-            DateRange aocDateRange = attrOptionComboDateRangeMap.get( attrOptionCombo.getUid(), () -> aoc.getDateRange() );
+                    DataApprovalWorkflow workflow = approvalDataSet.getWorkflow();
 
-            if ( (aocDateRange.getStartDate() != null && aocDateRange.getStartDate().compareTo( period.getStartDate() ) > 0)
-                || (aocDateRange.getEndDate() != null && aocDateRange.getEndDate().compareTo( period.getEndDate() ) < 0) )
-            {
-                summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
-                    "Period: " + period.getIsoDate() + " is not within date range of attribute option combo: " + attrOptionCombo.getUid() ) );
-                continue;
-            }
+                    if ( workflow != null )
+                    {
+                        final String workflowPeriodAoc = workflow.getUid() + period.getUid() + attrOptionCombo.getUid();
 
-            if ( !attrOptionComboOrgUnitMap.get( attrOptionCombo.getUid() + orgUnit.getUid(), () ->
-            {
-                Set<OrganisationUnit> aocOrgUnits = aoc.getOrganisationUnits();
-                return aocOrgUnits == null || orgUnit.isDescendant( aocOrgUnits );
-            } ) )
-            {
-                summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
-                    "Organisation unit: " + orgUnit.getUid() + " is not valid for attribute option combo: " + attrOptionCombo.getUid() ) );
-                continue;
-            }
+                        if ( approvalMap.get( orgUnit.getUid() + workflowPeriodAoc, () ->
+                        {
+                            DataApproval lowestApproval = DataApproval.getLowestApproval( new DataApproval( null, workflow, period, orgUnit, aoc ) );
 
-            final DataSet approvalDataSet = dataSet != null ? dataSet : dataElementDataSetMap.get( dataElement.getUid(),
-                () -> dataElement.getApprovalDataSet() );
+                            return lowestApproval != null && lowestApprovalLevelMap.get( lowestApproval.getDataApprovalLevel().getUid() + lowestApproval.getOrganisationUnit().getUid() + workflowPeriodAoc,
+                                () -> approvalService.getDataApproval( lowestApproval ) != null );
+                        } ) )
+                        {
+                            summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
+                                "Data is already approved for data set: " + approvalDataSet.getUid() + " period: " + period.getIsoDate()
+                                    + " organisation unit: " + orgUnit.getUid() + " attribute option combo: " + attrOptionCombo.getUid() ) );
+                            continue;
+                        }
+                    }
+                }
 
-            if ( approvalDataSet != null ) // Data element is assigned to at least one data set
-            {
-                if ( dataSetLockedMap.get( approvalDataSet.getUid() + period.getUid() + orgUnit.getUid(),
-                    () -> isLocked( approvalDataSet, period, orgUnit, skipLockExceptionCheck ) ) )
+                if ( approvalDataSet != null && !approvalDataSet.isDataInputPeriodAndDateAllowed( period, new Date() ) )
                 {
-                    summary.getConflicts().add( new ImportConflict( period.getIsoDate(), "Current date is past expiry days for period " +
-                        period.getIsoDate() + " and data set: " + approvalDataSet.getUid() ) );
+                    summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
+                        "Period: " + period.getIsoDate() + " is not open for this data set at this time: " + approvalDataSet.getUid() ) );
                     continue;
                 }
 
-                Period latestFuturePeriod = dataElementLatestFuturePeriodMap.get( dataElement.getUid(), () -> dataElement.getLatestOpenFuturePeriod() );
+                if ( !periodOpenForDataElement.get( dataElement.getUid() + period.getIsoDate(), () -> dataElement.isDataInputAllowedForPeriodAndDate( period, new Date() ) ) )
+                {
+                    summary.getConflicts().add( new ImportConflict( orgUnit.getUid(), "Period " + period.getName() + " does not conform to the open periods of associated data sets" ) );
+                    continue;
+                }
 
-                if ( period.isAfter( latestFuturePeriod ) && isIso8601 )
+                // -----------------------------------------------------------------
+                // Create data value
+                // -----------------------------------------------------------------
+
+                DataValue internalValue = new DataValue();
+
+                internalValue.setDataElement( dataElement );
+                internalValue.setPeriod( period );
+                internalValue.setSource( orgUnit );
+                internalValue.setCategoryOptionCombo( categoryOptionCombo );
+                internalValue.setAttributeOptionCombo( attrOptionCombo );
+                internalValue.setValue( trimToNull( dataValue.getValue() ) );
+                internalValue.setStoredBy( storedBy );
+                internalValue.setCreated( dataValue.hasCreated() ? parseDate( dataValue.getCreated() ) : now );
+                internalValue.setLastUpdated( dataValue.hasLastUpdated() ? parseDate( dataValue.getLastUpdated() ) : now );
+                internalValue.setComment( trimToNull( dataValue.getComment() ) );
+                internalValue.setFollowup( dataValue.getFollowup() );
+                internalValue.setDeleted( BooleanUtils.isTrue( dataValue.getDeleted() ) );
+
+                // -----------------------------------------------------------------
+                // Save, update or delete data values in chunks
+                // -----------------------------------------------------------------
+
+                if ( pipelined )
                 {
-                    summary.getConflicts().add( new ImportConflict( period.getIsoDate(), "Period: " +
-                        period.getIsoDate() + " is after latest open future period: " + latestFuturePeriod.getIsoDate() + " for data element: " + dataElement.getUid() ) );
+                    parallelWriter.add( internalValue );
+
                     continue;
                 }
 
-                DataApprovalWorkflow workflow = approvalDataSet.getWorkflow();
+                dataValueChunk.add( internalValue );
 
-                if ( workflow != null )
+                if ( dataValueChunk.size() >= IMPORT_CHUNK_SIZE )
                 {
-                    final String workflowPeriodAoc = workflow.getUid() + period.getUid() + attrOptionCombo.getUid();
+                    saveDataValues( dataValueChunk, strategy, dryRun, skipExistingCheck, dataValueBatchHandler, auditBatchHandler, importCount );
 
-                    if ( approvalMap.get( orgUnit.getUid() + workflowPeriodAoc, () ->
-                    {
-                        DataApproval lowestApproval = DataApproval.getLowestApproval( new DataApproval( null, workflow, period, orgUnit, aoc ) );
-
-                        return lowestApproval != null && lowestApprovalLevelMap.get( lowestApproval.getDataApprovalLevel().getUid() + lowestApproval.getOrganisationUnit().getUid() + workflowPeriodAoc,
-                            () -> approvalService.getDataApproval( lowestApproval ) != null );
-                    } ) )
-                    {
-                        summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
-                            "Data is already approved for data set: " + approvalDataSet.getUid() + " period: " + period.getIsoDate()
-                                + " organisation unit: " + orgUnit.getUid() + " attribute option combo: " + attrOptionCombo.getUid() ) );
-                        continue;
-                    }
+                    dataValueChunk.clear();
                 }
             }
 
-            if ( approvalDataSet != null && !approvalDataSet.isDataInputPeriodAndDateAllowed( period, new Date() ) )
+            if ( pipelined )
             {
-                summary.getConflicts().add( new ImportConflict( orgUnit.getUid(),
-                    "Period: " + period.getIsoDate() + " is not open for this data set at this time: " + approvalDataSet.getUid() ) );
-                continue;
+                importCount = parallelWriter.finish();
             }
+            else
+            {
+                saveDataValues( dataValueChunk, strategy, dryRun, skipExistingCheck, dataValueBatchHandler, auditBatchHandler, importCount );
 
-            if ( !periodOpenForDataElement.get( dataElement.getUid() + period.getIsoDate(), () -> dataElement.isDataInputAllowedForPeriodAndDate( period, new Date() ) ) )
+                dataValueBatchHandler.flush();
+                auditBatchHandler.flush();
+            }
+        }
+        finally
+        {
+            reader.close();
+
+            if ( parallelWriter != null )
             {
-                summary.getConflicts().add( new ImportConflict( orgUnit.getUid(), "Period " + period.getName() + " does not conform to the open periods of associated data sets" ) );
-                continue;
+                parallelWriter.shutdown();
             }
+        }
 
-            // -----------------------------------------------------------------
-            // Create data value
-            // -----------------------------------------------------------------
+        importCount.setIgnored( totalCount - importCount.getImported() - importCount.getUpdated() - importCount.getDeleted() );
 
-            DataValue internalValue = new DataValue();
-
-            internalValue.setDataElement( dataElement );
-            internalValue.setPeriod( period );
-            internalValue.setSource( orgUnit );
-            internalValue.setCategoryOptionCombo( categoryOptionCombo );
-            internalValue.setAttributeOptionCombo( attrOptionCombo );
-            internalValue.setValue( trimToNull( dataValue.getValue() ) );
-            internalValue.setStoredBy( storedBy );
-            internalValue.setCreated( dataValue.hasCreated() ? parseDate( dataValue.getCreated() ) : now );
-            internalValue.setLastUpdated( dataValue.hasLastUpdated() ? parseDate( dataValue.getLastUpdated() ) : now );
-            internalValue.setComment( trimToNull( dataValue.getComment() ) );
-            internalValue.setFollowup( dataValue.getFollowup() );
-            internalValue.setDeleted( BooleanUtils.isTrue( dataValue.getDeleted() ) );
+        summary.setImportCount( importCount );
+        summary.setStatus( summary.getConflicts().isEmpty() ? ImportStatus.SUCCESS : ImportStatus.WARNING );
+        summary.setDescription( "Import process completed successfully" );
 
-            // -----------------------------------------------------------------
-            // Save, update or delete data value
-            // -----------------------------------------------------------------
+        clock.logTime( "Data value import done, total: " + totalCount + ", import: " + importCount.getImported() +
+            ", update: " + importCount.getUpdated() + ", delete: " + importCount.getDeleted() );
+        notifier.notify( id, notificationLevel, "Import done", true ).addJobSummary( id, notificationLevel, summary );
 
-            DataValue existingValue = !skipExistingCheck ? dataValueBatchHandler.findObject( internalValue ) : null;
+        dataValueSet.close();
+
+        return summary;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Saves, updates or deletes the given chunk of data values. The existing
+     * data values for the chunk are fetched with a single query, unless the
+     * existing check is skipped, to avoid one lookup per data value.
+     *
+     * @param dataValues the chunk of data values.
+     * @param strategy the import strategy.
+     * @param dryRun whether this is a dry run.
+     * @param skipExistingCheck whether to skip the check for existing data values.
+     * @param dataValueBatchHandler the data value batch handler.
+     * @param auditBatchHandler the data value audit batch handler.
+     * @param importCount the import count to update.
+     */
+    private void saveDataValues( List<DataValue> dataValues, ImportStrategy strategy, boolean dryRun, boolean skipExistingCheck,
+        BatchHandler<DataValue> dataValueBatchHandler, BatchHandler<DataValueAudit> auditBatchHandler, ImportCount importCount )
+    {
+        if ( dataValues.isEmpty() )
+        {
+            return;
+        }
+
+        Map<DataValue, DataValue> existingValueMap = new HashMap<>();
+
+        if ( !skipExistingCheck )
+        {
+            dataValueSetStore.getExistingDataValues( dataValues ).forEach( dv -> existingValueMap.put( dv, dv ) );
+        }
+
+        for ( DataValue internalValue : dataValues )
+        {
+            DataValue existingValue = existingValueMap.get( internalValue );
 
             // -----------------------------------------------------------------
             // Check soft deleted data values on update and import
@@ -1087,7 +1232,7 @@ public class DefaultDataValueSetService
             {
                 if ( strategy.isCreateAndUpdate() || strategy.isUpdate() )
                 {
-                    DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), storedBy, AuditType.UPDATE );
+                    DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), internalValue.getStoredBy(), AuditType.UPDATE );
 
                     if ( internalValue.isNullValue() || internalValue.isDeleted() )
                     {
@@ -1095,11 +1240,11 @@ public class DefaultDataValueSetService
 
                         auditValue.setAuditType( AuditType.DELETE );
 
-                        deleteCount++;
+                        importCount.incrementDeleted();
                     }
                     else
                     {
-                        updateCount++;
+                        importCount.incrementUpdated();
                     }
 
                     if ( !dryRun )
@@ -1108,7 +1253,7 @@ public class DefaultDataValueSetService
 
                         auditBatchHandler.addObject( auditValue );
 
-                        if ( dataElement.isFileType() )
+                        if ( internalValue.getDataElement().isFileType() )
                         {
                             FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
 
@@ -1121,11 +1266,11 @@ public class DefaultDataValueSetService
                 }
                 else if ( strategy.isDelete() )
                 {
-                    DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), storedBy, AuditType.DELETE );
+                    DataValueAudit auditValue = new DataValueAudit( internalValue, existingValue.getValue(), internalValue.getStoredBy(), AuditType.DELETE );
 
                     internalValue.setDeleted( true );
 
-                    deleteCount++;
+                    importCount.incrementDeleted();
 
                     if ( !dryRun )
                     {
@@ -1133,7 +1278,7 @@ public class DefaultDataValueSetService
 
                         auditBatchHandler.addObject( auditValue );
 
-                        if ( dataElement.isFileType() )
+                        if ( internalValue.getDataElement().isFileType() )
                         {
                             FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
 
@@ -1152,13 +1297,13 @@ public class DefaultDataValueSetService
                     {
                         if ( existingValue != null && existingValue.isDeleted() )
                         {
-                            importCount++;
+                            importCount.incrementImported();
 
                             if ( !dryRun )
                             {
                                 dataValueBatchHandler.updateObject( internalValue );
 
-                                if ( dataElement.isFileType() )
+                                if ( internalValue.getDataElement().isFileType() )
                                 {
                                     FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
 
@@ -1176,7 +1321,7 @@ public class DefaultDataValueSetService
                             {
                                 added = dataValueBatchHandler.addObject( internalValue );
 
-                                if ( added && dataElement.isFileType() )
+                                if ( added && internalValue.getDataElement().isFileType() )
                                 {
                                     FileResource fr = fileResourceService.getFileResource( internalValue.getValue() );
 
@@ -1188,34 +1333,170 @@ public class DefaultDataValueSetService
 
                             if ( dryRun || added )
                             {
-                                importCount++;
+                                importCount.incrementImported();
                             }
                         }
                     }
                 }
             }
         }
+    }
+
+    /**
+     * Writes chunks of data values from the given queue with a dedicated pair
+     * of batch handlers until the end of chunks marker is taken.
+     *
+     * @return the import count of the written data values.
+     */
+    private ImportCount writeDataValues( BlockingQueue<List<DataValue>> queue, ImportStrategy strategy, boolean dryRun, boolean skipExistingCheck )
+        throws InterruptedException
+    {
+        BatchHandler<DataValue> dataValueBatchHandler = batchHandlerFactory.createBatchHandler( DataValueBatchHandler.class ).init();
+        BatchHandler<DataValueAudit> auditBatchHandler = batchHandlerFactory.createBatchHandler( DataValueAuditBatchHandler.class ).init();
+
+        ImportCount importCount = new ImportCount();
+
+        List<DataValue> chunk;
+
+        while ( ( chunk = queue.take() ) != END_OF_CHUNKS )
+        {
+            saveDataValues( chunk, strategy, dryRun, skipExistingCheck, dataValueBatchHandler, auditBatchHandler, importCount );
+        }
 
         dataValueBatchHandler.flush();
         auditBatchHandler.flush();
 
-        int ignores = totalCount - importCount - updateCount - deleteCount;
+        return importCount;
+    }
 
-        summary.setImportCount( new ImportCount( importCount, updateCount, ignores, deleteCount ) );
-        summary.setStatus( summary.getConflicts().isEmpty() ? ImportStatus.SUCCESS : ImportStatus.WARNING );
-        summary.setDescription( "Import process completed successfully" );
+    /**
+     * Writer of data values for the pipelined import. Data values are collected
+     * in chunks which are written by a pool of workers. Each data value is
+     * routed to a worker based on its data element, period, org unit and option
+     * combos, so that all values for the same key are written in order by the
+     * same worker and workers never write the same row. The queue of chunks
+     * per worker is bounded, so that validation blocks when writing falls
+     * behind.
+     */
+    private class ParallelDataValueWriter
+    {
+        private final ExecutorService executor;
 
-        clock.logTime( "Data value import done, total: " + totalCount + ", import: " + importCount + ", update: " + updateCount + ", delete: " + deleteCount );
-        notifier.notify( id, notificationLevel, "Import done", true ).addJobSummary( id, notificationLevel, summary );
+        private final List<BlockingQueue<List<DataValue>>> queues = new ArrayList<>();
 
-        dataValueSet.close();
+        private final List<Future<ImportCount>> futures = new ArrayList<>();
 
-        return summary;
-    }
+        private final List<List<DataValue>> chunks = new ArrayList<>();
 
-    // -------------------------------------------------------------------------
-    // Supportive methods
-    // -------------------------------------------------------------------------
+        ParallelDataValueWriter( int workers, ImportStrategy strategy, boolean dryRun, boolean skipExistingCheck )
+        {
+            this.executor = Executors.newFixedThreadPool( workers );
+
+            for ( int i = 0; i < workers; i++ )
+            {
+                BlockingQueue<List<DataValue>> queue = new ArrayBlockingQueue<>( IMPORT_WRITE_QUEUE_SIZE );
+
+                queues.add( queue );
+                chunks.add( new ArrayList<>( IMPORT_CHUNK_SIZE ) );
+                futures.add( executor.submit( () -> writeDataValues( queue, strategy, dryRun, skipExistingCheck ) ) );
+            }
+        }
+
+        void add( DataValue dataValue )
+        {
+            int worker = Math.floorMod( dataValue.hashCode(), queues.size() );
+
+            List<DataValue> chunk = chunks.get( worker );
+
+            chunk.add( dataValue );
+
+            if ( chunk.size() >= IMPORT_CHUNK_SIZE )
+            {
+                submit( worker, chunk );
+
+                chunks.set( worker, new ArrayList<>( IMPORT_CHUNK_SIZE ) );
+            }
+        }
+
+        /**
+         * Submits the remaining data values, waits for all workers to finish
+         * and returns the total import count.
+         */
+        ImportCount finish()
+        {
+            for ( int i = 0; i < queues.size(); i++ )
+            {
+                if ( !chunks.get( i ).isEmpty() )
+                {
+                    submit( i, chunks.get( i ) );
+                }
+
+                submit( i, END_OF_CHUNKS );
+            }
+
+            ImportCount importCount = new ImportCount();
+
+            for ( Future<ImportCount> future : futures )
+            {
+                ImportCount workerCount = getResult( future );
+
+                importCount.incrementImported( workerCount.getImported() );
+                importCount.incrementUpdated( workerCount.getUpdated() );
+                importCount.incrementDeleted( workerCount.getDeleted() );
+            }
+
+            return importCount;
+        }
+
+        void shutdown()
+        {
+            executor.shutdownNow();
+        }
+
+        /**
+         * Puts the chunk on the queue of the given worker, and fails if the
+         * worker has terminated with an exception while the queue is full.
+         */
+        private void submit( int worker, List<DataValue> chunk )
+        {
+            try
+            {
+                while ( !queues.get( worker ).offer( chunk, 1, TimeUnit.SECONDS ) )
+                {
+                    if ( futures.get( worker ).isDone() )
+                    {
+                        getResult( futures.get( worker ) );
+
+                        throw new IllegalStateException( "Data value writer terminated before end of import" );
+                    }
+                }
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException( "Interrupted while writing data values", ex );
+            }
+        }
+
+        private ImportCount getResult( Future<ImportCount> future )
+        {
+            try
+            {
+                return future.get();
+            }
+            catch ( ExecutionException ex )
+            {
+                throw new RuntimeException( "Failed to write data values", ex.getCause() );
+            }
+            catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException( "Interrupted while writing data values", ex );
+            }
+        }
+    }
 
     private void handleComplete( DataSet dataSet, Date completeDate, Period period, OrganisationUnit orgUnit,
         DataElementCategoryOptionCombo attributeOptionCombo, ImportSummary summary )
@@ -29,6 +29,7 @@ package org.hisp.dhis.dxf2.datavalueset;
  */
 
 import com.csvreader.CsvWriter;
+import com.google.common.collect.Lists;
 import org.hisp.staxwax.factory.XMLFactory;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -45,12 +46,19 @@ import org.hisp.dhis.system.util.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
 
 import java.io.OutputStream;
 import java.io.Writer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hisp.dhis.common.IdentifiableObjectUtils.getIdentifiers;
 import static org.hisp.dhis.commons.util.TextUtils.getCommaDelimitedString;
@@ -67,6 +75,8 @@ public class SpringDataValueSetStore
 
     private static final char CSV_DELIM = ',';
 
+    private static final int EXISTING_VALUES_PAGE_SIZE = 1000;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
@@ -135,6 +145,70 @@ public class SpringDataValueSetStore
         writeDataValueSet( sql, new DataExportParams(), null, dataValueSet );
     }
 
+    @Override
+    public int writeDataValueSetJson( DataExportCursor cursor, int limit, OutputStream outputStream, IdSchemes idSchemes )
+    {
+        String deScheme = idSchemes.getDataElementIdScheme().getIdentifiableString().toLowerCase();
+        String ouScheme = idSchemes.getOrgUnitIdScheme().getIdentifiableString().toLowerCase();
+        String ocScheme = idSchemes.getCategoryOptionComboIdScheme().getIdentifiableString().toLowerCase();
+
+        DataValueSet dataValueSet = new StreamingJsonDataValueSet( outputStream );
+
+        String sql =
+            "select de." + deScheme + " as deid, pe.startdate as pestart, pt.name as ptname, ou." + ouScheme + " as ouid, " +
+            "coc." + ocScheme + " as cocid, aoc." + ocScheme + " as aocid, " +
+            "dv.value, dv.storedby, dv.created, dv.lastupdated, dv.comment, dv.followup, dv.deleted, " +
+            "dv.dataelementid, dv.periodid, dv.sourceid, dv.categoryoptioncomboid, dv.attributeoptioncomboid " +
+            "from datavalue dv " +
+            "join dataelement de on (dv.dataelementid=de.dataelementid) " +
+            "join period pe on (dv.periodid=pe.periodid) " +
+            "join periodtype pt on (pe.periodtypeid=pt.periodtypeid) " +
+            "join organisationunit ou on (dv.sourceid=ou.organisationunitid) " +
+            "join categoryoptioncombo coc on (dv.categoryoptioncomboid=coc.categoryoptioncomboid) " +
+            "join categoryoptioncombo aoc on (dv.attributeoptioncomboid=aoc.categoryoptioncomboid) " +
+            "where dv.lastupdated >= ? ";
+
+        List<Object> args = Lists.newArrayList( cursor.getLastUpdated() );
+
+        // ---------------------------------------------------------------------
+        // Continue after the last written data value with a row value
+        // comparison, which is served by the in_datavalue_lastupdated_key index
+        // in the order of the sort so that each chunk is a range scan
+        // ---------------------------------------------------------------------
+
+        if ( cursor.hasDataValue() )
+        {
+            sql +=
+                "and (dv.lastupdated, dv.dataelementid, dv.periodid, dv.sourceid, dv.categoryoptioncomboid, dv.attributeoptioncomboid) " +
+                "> (?, ?, ?, ?, ?, ?) ";
+
+            args.addAll( Lists.newArrayList( cursor.getLastUpdated(), cursor.getDataElementId(), cursor.getPeriodId(),
+                cursor.getOrgUnitId(), cursor.getCategoryOptionComboId(), cursor.getAttributeOptionComboId() ) );
+        }
+
+        sql +=
+            "order by dv.lastupdated, dv.dataelementid, dv.periodid, dv.sourceid, dv.categoryoptioncomboid, dv.attributeoptioncomboid " +
+            "limit " + limit;
+
+        final Calendar calendar = PeriodType.getCalendar();
+        final AtomicInteger count = new AtomicInteger();
+
+        RowCallbackHandler handler = rs -> {
+            writeDataValue( rs, dataValueSet, calendar );
+
+            cursor.advance( rs.getTimestamp( "lastupdated" ), rs.getInt( "dataelementid" ), rs.getInt( "periodid" ),
+                rs.getInt( "sourceid" ), rs.getInt( "categoryoptioncomboid" ), rs.getInt( "attributeoptioncomboid" ) );
+
+            count.incrementAndGet();
+        };
+
+        jdbcTemplate.query( sql, args.toArray(), handler );
+
+        dataValueSet.close();
+
+        return count.get();
+    }
+
     private void writeDataValueSet( String sql, DataExportParams params, Date completeDate, final DataValueSet dataValueSet )
     {
         if ( params.isSingleDataValueSet() )
@@ -156,38 +230,118 @@ public class SpringDataValueSetStore
             @Override
             public void processRow( ResultSet rs ) throws SQLException
             {
-                DataValue dataValue = dataValueSet.getDataValueInstance();
-                PeriodType pt = PeriodType.getPeriodTypeByName( rs.getString( "ptname" ) );
-                boolean deleted = rs.getBoolean( "deleted" );
-
-                dataValue.setDataElement( rs.getString( "deid" ) );
-                dataValue.setPeriod( pt.createPeriod( rs.getDate( "pestart" ), calendar ).getIsoDate() );
-                dataValue.setOrgUnit( rs.getString( "ouid" ) );
-                dataValue.setCategoryOptionCombo( rs.getString( "cocid" ) );
-                dataValue.setAttributeOptionCombo( rs.getString( "aocid" ) );
-                dataValue.setValue( rs.getString( "value" ) );
-                dataValue.setStoredBy( rs.getString( "storedby" ) );
-                dataValue.setCreated( getLongGmtDateString( rs.getTimestamp( "created" ) ) );
-                dataValue.setLastUpdated( getLongGmtDateString( rs.getTimestamp( "lastupdated" ) ) );
-                dataValue.setComment( rs.getString( "comment" ) );
-                dataValue.setFollowup( rs.getBoolean( "followup" ) );
-
-                if ( deleted )
-                {
-                    dataValue.setDeleted( deleted );
-                }
-                
-                dataValue.close();
+                writeDataValue( rs, dataValueSet, calendar );
             }
         } );
 
         dataValueSet.close();
     }
 
+    private void writeDataValue( ResultSet rs, DataValueSet dataValueSet, Calendar calendar )
+        throws SQLException
+    {
+        DataValue dataValue = dataValueSet.getDataValueInstance();
+        PeriodType pt = PeriodType.getPeriodTypeByName( rs.getString( "ptname" ) );
+        boolean deleted = rs.getBoolean( "deleted" );
+
+        dataValue.setDataElement( rs.getString( "deid" ) );
+        dataValue.setPeriod( pt.createPeriod( rs.getDate( "pestart" ), calendar ).getIsoDate() );
+        dataValue.setOrgUnit( rs.getString( "ouid" ) );
+        dataValue.setCategoryOptionCombo( rs.getString( "cocid" ) );
+        dataValue.setAttributeOptionCombo( rs.getString( "aocid" ) );
+        dataValue.setValue( rs.getString( "value" ) );
+        dataValue.setStoredBy( rs.getString( "storedby" ) );
+        dataValue.setCreated( getLongGmtDateString( rs.getTimestamp( "created" ) ) );
+        dataValue.setLastUpdated( getLongGmtDateString( rs.getTimestamp( "lastupdated" ) ) );
+        dataValue.setComment( rs.getString( "comment" ) );
+        dataValue.setFollowup( rs.getBoolean( "followup" ) );
+
+        if ( deleted )
+        {
+            dataValue.setDeleted( deleted );
+        }
+        
+        dataValue.close();
+    }
+
+    @Override
+    public List<org.hisp.dhis.datavalue.DataValue> getExistingDataValues( Collection<org.hisp.dhis.datavalue.DataValue> dataValues )
+    {
+        List<org.hisp.dhis.datavalue.DataValue> existingValues = new ArrayList<>();
+
+        if ( dataValues == null || dataValues.isEmpty() )
+        {
+            return existingValues;
+        }
+
+        Map<String, org.hisp.dhis.datavalue.DataValue> keyMap = new HashMap<>();
+
+        for ( org.hisp.dhis.datavalue.DataValue dv : dataValues )
+        {
+            keyMap.put( getDataValueKey( dv.getDataElement().getId(), dv.getPeriod().getId(), dv.getSource().getId(),
+                dv.getCategoryOptionCombo().getId(), dv.getAttributeOptionCombo().getId() ), dv );
+        }
+
+        // Each key is matched exactly on the primary key columns, in partitions to keep the statements bounded
+
+        for ( List<org.hisp.dhis.datavalue.DataValue> partition : Lists.partition( new ArrayList<>( keyMap.values() ), EXISTING_VALUES_PAGE_SIZE ) )
+        {
+            StringBuilder keys = new StringBuilder();
+
+            for ( org.hisp.dhis.datavalue.DataValue dv : partition )
+            {
+                keys.append( "(dataelementid=" ).append( dv.getDataElement().getId() )
+                    .append( " and periodid=" ).append( dv.getPeriod().getId() )
+                    .append( " and sourceid=" ).append( dv.getSource().getId() )
+                    .append( " and categoryoptioncomboid=" ).append( dv.getCategoryOptionCombo().getId() )
+                    .append( " and attributeoptioncomboid=" ).append( dv.getAttributeOptionCombo().getId() ).append( ") or " );
+            }
+
+            final String sql =
+                "select dataelementid, periodid, sourceid, categoryoptioncomboid, attributeoptioncomboid, " +
+                "value, storedby, created, comment, followup, deleted " +
+                "from datavalue " +
+                "where " + TextUtils.removeLastOr( keys.toString() );
+
+            log.debug( "Get existing data values SQL: " + sql );
+
+            SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+
+            while ( rowSet.next() )
+            {
+                org.hisp.dhis.datavalue.DataValue dv = keyMap.get( getDataValueKey( rowSet.getInt( "dataelementid" ),
+                    rowSet.getInt( "periodid" ), rowSet.getInt( "sourceid" ), rowSet.getInt( "categoryoptioncomboid" ),
+                    rowSet.getInt( "attributeoptioncomboid" ) ) );
+
+                if ( dv != null )
+                {
+                    org.hisp.dhis.datavalue.DataValue existingValue = new org.hisp.dhis.datavalue.DataValue( dv.getDataElement(),
+                        dv.getPeriod(), dv.getSource(), dv.getCategoryOptionCombo(), dv.getAttributeOptionCombo() );
+
+                    existingValue.setValue( rowSet.getString( "value" ) );
+                    existingValue.setStoredBy( rowSet.getString( "storedby" ) );
+                    existingValue.setCreated( rowSet.getTimestamp( "created" ) );
+                    existingValue.setComment( rowSet.getString( "comment" ) );
+                    existingValue.setFollowup( rowSet.getBoolean( "followup" ) );
+                    existingValue.setDeleted( rowSet.getBoolean( "deleted" ) );
+
+                    existingValues.add( existingValue );
+                }
+            }
+        }
+
+        return existingValues;
+    }
+
     //--------------------------------------------------------------------------
     // Supportive methods
     //--------------------------------------------------------------------------
 
+    private String getDataValueKey( int dataElementId, int periodId, int orgUnitId, int categoryOptionComboId, int attributeOptionComboId )
+    {
+        return dataElementId + "-" + periodId + "-" + orgUnitId + "-" + categoryOptionComboId + "-" + attributeOptionComboId;
+    }
+
     private String getDataValueSql( DataExportParams params )
     {
         IdSchemes idScheme = params.getOutputIdSchemes() != null ? params.getOutputIdSchemes() : new IdSchemes();
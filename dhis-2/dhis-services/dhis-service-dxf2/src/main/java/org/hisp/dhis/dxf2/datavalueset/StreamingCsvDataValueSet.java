@@ -91,6 +91,12 @@ public class StreamingCsvDataValueSet
         }
     }
 
+    @Override
+    public boolean supportsReadAhead()
+    {
+        return true;
+    }
+
     @Override
     public DataValue getDataValueInstance()
     {
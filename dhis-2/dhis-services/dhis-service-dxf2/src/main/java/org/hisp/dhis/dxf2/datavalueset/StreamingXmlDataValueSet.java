@@ -212,6 +212,12 @@ public class StreamingXmlDataValueSet
         writer.writeAttribute( FIELD_ORGUNIT, orgUnit );
     }
     
+    @Override
+    public boolean supportsReadAhead()
+    {
+        return true;
+    }
+
     @Override
     public DataValue getDataValueInstance()
     {
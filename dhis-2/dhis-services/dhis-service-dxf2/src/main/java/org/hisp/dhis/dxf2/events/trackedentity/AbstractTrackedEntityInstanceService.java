@@ -33,7 +33,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.common.CodeGenerator;
 import org.hisp.dhis.common.IdSchemes;
 import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.common.IllegalQueryException;
+import org.hisp.dhis.common.ListMap;
 import org.hisp.dhis.commons.collection.CachingMap;
 import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.dxf2.common.ImportOptions;
@@ -72,7 +74,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -128,6 +132,9 @@ public abstract class AbstractTrackedEntityInstanceService
     @Autowired
     protected TrackerAccessManager trackerAccessManager;
 
+    @Autowired
+    protected TrackedEntityInstanceExportStore trackedEntityInstanceExportStore;
+
     private final CachingMap<String, OrganisationUnit> organisationUnitCache = new CachingMap<>();
 
     private final CachingMap<String, TrackedEntityType> trackedEntityCache = new CachingMap<>();
@@ -142,15 +149,8 @@ public abstract class AbstractTrackedEntityInstanceService
     public List<TrackedEntityInstance> getTrackedEntityInstances( TrackedEntityInstanceQueryParams queryParams, TrackedEntityInstanceParams params )
     {
         List<org.hisp.dhis.trackedentity.TrackedEntityInstance> teis = entityInstanceService.getTrackedEntityInstances( queryParams );
-        List<TrackedEntityInstance> teiItems = new ArrayList<>();
-        User user = currentUserService.getCurrentUser();
 
-        for ( org.hisp.dhis.trackedentity.TrackedEntityInstance trackedEntityInstance : teis )
-        {
-            teiItems.add( getTrackedEntityInstance( trackedEntityInstance, params, user ) );
-        }
-
-        return teiItems;
+        return getTrackedEntityInstances( teis, params, currentUserService.getCurrentUser() );
     }
 
     @Override
@@ -193,24 +193,7 @@ public abstract class AbstractTrackedEntityInstanceService
             return null;
         }
 
-        List<String> errors = trackerAccessManager.canRead( user, entityInstance );
-
-        if ( !errors.isEmpty() )
-        {
-            throw new IllegalQueryException( errors.toString() );
-        }
-
-        TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance();
-        trackedEntityInstance.setTrackedEntityInstance( entityInstance.getUid() );
-        trackedEntityInstance.setOrgUnit( entityInstance.getOrganisationUnit().getUid() );
-        trackedEntityInstance.setTrackedEntityType( entityInstance.getTrackedEntityType().getUid() );
-        trackedEntityInstance.setCreated( DateUtils.getIso8601NoTz( entityInstance.getCreated() ) );
-        trackedEntityInstance.setCreatedAtClient( DateUtils.getIso8601NoTz( entityInstance.getLastUpdatedAtClient() ) );
-        trackedEntityInstance.setLastUpdated( DateUtils.getIso8601NoTz( entityInstance.getLastUpdated() ) );
-        trackedEntityInstance.setLastUpdatedAtClient( DateUtils.getIso8601NoTz( entityInstance.getLastUpdatedAtClient() ) );
-        trackedEntityInstance.setInactive( entityInstance.isInactive() );
-        trackedEntityInstance.setFeatureType( entityInstance.getFeatureType() );
-        trackedEntityInstance.setCoordinates( entityInstance.getCoordinates() );
+        TrackedEntityInstance trackedEntityInstance = getTrackedEntityInstanceBase( entityInstance, user );
 
         if ( params.isIncludeRelationships() )
         {
@@ -255,24 +238,261 @@ public abstract class AbstractTrackedEntityInstanceService
         {
             if ( readableAttributes.contains( attributeValue.getAttribute() ) )
             {
-                Attribute attribute = new Attribute();
-
-                attribute.setCreated( DateUtils.getIso8601NoTz( attributeValue.getCreated() ) );
-                attribute.setLastUpdated( DateUtils.getIso8601NoTz( attributeValue.getLastUpdated() ) );
-                attribute.setDisplayName( attributeValue.getAttribute().getDisplayName() );
-                attribute.setAttribute( attributeValue.getAttribute().getUid() );
-                attribute.setValueType( attributeValue.getAttribute().getValueType() );
-                attribute.setCode( attributeValue.getAttribute().getCode() );
-                attribute.setValue( attributeValue.getValue() );
-                attribute.setStoredBy( attributeValue.getStoredBy() );
-
-                trackedEntityInstance.getAttributes().add( attribute );
+                trackedEntityInstance.getAttributes().add( getAttribute( attributeValue ) );
             }
         }
 
         return trackedEntityInstance;
     }
 
+    /**
+     * Converts the given tracked entity instances. The attributes, relationships
+     * and enrollments of all tracked entity instances are fetched through a few
+     * set queries instead of being loaded for each tracked entity instance.
+     *
+     * @param entityInstances the list of tracked entity instances.
+     * @param params the {@link TrackedEntityInstanceParams}.
+     * @param user the current user.
+     * @return a list of {@link TrackedEntityInstance}.
+     */
+    private List<TrackedEntityInstance> getTrackedEntityInstances( List<org.hisp.dhis.trackedentity.TrackedEntityInstance> entityInstances,
+        TrackedEntityInstanceParams params, User user )
+    {
+        Map<Integer, org.hisp.dhis.trackedentity.TrackedEntityInstance> entityInstanceMap = new LinkedHashMap<>();
+        Map<Integer, TrackedEntityInstance> trackedEntityInstanceMap = new LinkedHashMap<>();
+
+        for ( org.hisp.dhis.trackedentity.TrackedEntityInstance entityInstance : entityInstances )
+        {
+            entityInstanceMap.put( entityInstance.getId(), entityInstance );
+            trackedEntityInstanceMap.put( entityInstance.getId(), getTrackedEntityInstanceBase( entityInstance, user ) );
+        }
+
+        if ( entityInstanceMap.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        if ( params.isIncludeRelationships() )
+        {
+            getRelationships( entityInstanceMap, user ).forEach( ( id, relationships ) ->
+                trackedEntityInstanceMap.get( id ).getRelationships().addAll( relationships ) );
+        }
+
+        if ( params.isIncludeEnrollments() )
+        {
+            getEnrollments( entityInstanceMap.keySet(), params ).forEach( ( id, enrollments ) ->
+                trackedEntityInstanceMap.get( id ).getEnrollments().addAll( enrollments ) );
+        }
+
+        getAttributes( entityInstanceMap ).forEach( ( id, attributes ) ->
+            trackedEntityInstanceMap.get( id ).getAttributes().addAll( attributes ) );
+
+        return new ArrayList<>( trackedEntityInstanceMap.values() );
+    }
+
+    /**
+     * Returns a tracked entity instance with the properties of the given
+     * tracked entity instance, without attributes, relationships and enrollments.
+     *
+     * @throws IllegalQueryException if the user has no read access to the
+     *         tracked entity instance.
+     */
+    private TrackedEntityInstance getTrackedEntityInstanceBase( org.hisp.dhis.trackedentity.TrackedEntityInstance entityInstance, User user )
+    {
+        List<String> errors = trackerAccessManager.canRead( user, entityInstance );
+
+        if ( !errors.isEmpty() )
+        {
+            throw new IllegalQueryException( errors.toString() );
+        }
+
+        TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance();
+        trackedEntityInstance.setTrackedEntityInstance( entityInstance.getUid() );
+        trackedEntityInstance.setOrgUnit( entityInstance.getOrganisationUnit().getUid() );
+        trackedEntityInstance.setTrackedEntityType( entityInstance.getTrackedEntityType().getUid() );
+        trackedEntityInstance.setCreated( DateUtils.getIso8601NoTz( entityInstance.getCreated() ) );
+        trackedEntityInstance.setCreatedAtClient( DateUtils.getIso8601NoTz( entityInstance.getLastUpdatedAtClient() ) );
+        trackedEntityInstance.setLastUpdated( DateUtils.getIso8601NoTz( entityInstance.getLastUpdated() ) );
+        trackedEntityInstance.setLastUpdatedAtClient( DateUtils.getIso8601NoTz( entityInstance.getLastUpdatedAtClient() ) );
+        trackedEntityInstance.setInactive( entityInstance.isInactive() );
+        trackedEntityInstance.setFeatureType( entityInstance.getFeatureType() );
+        trackedEntityInstance.setCoordinates( entityInstance.getCoordinates() );
+
+        return trackedEntityInstance;
+    }
+
+    private Attribute getAttribute( TrackedEntityAttributeValue attributeValue )
+    {
+        Attribute attribute = new Attribute();
+
+        attribute.setCreated( DateUtils.getIso8601NoTz( attributeValue.getCreated() ) );
+        attribute.setLastUpdated( DateUtils.getIso8601NoTz( attributeValue.getLastUpdated() ) );
+        attribute.setDisplayName( attributeValue.getAttribute().getDisplayName() );
+        attribute.setAttribute( attributeValue.getAttribute().getUid() );
+        attribute.setValueType( attributeValue.getAttribute().getValueType() );
+        attribute.setCode( attributeValue.getAttribute().getCode() );
+        attribute.setValue( attributeValue.getValue() );
+        attribute.setStoredBy( attributeValue.getStoredBy() );
+
+        return attribute;
+    }
+
+    /**
+     * Returns the user readable attributes of the given tracked entity instances
+     * mapped by tracked entity instance identifier. Values of confidential
+     * attributes are encrypted and are loaded through Hibernate, only for the
+     * confidential attributes which the user can read.
+     */
+    private ListMap<Integer, Attribute> getAttributes( Map<Integer, org.hisp.dhis.trackedentity.TrackedEntityInstance> entityInstanceMap )
+    {
+        Map<String, TrackedEntityAttribute> readableAttributes = IdentifiableObjectUtils.getUidObjectMap(
+            trackedEntityAttributeService.getAllUserReadableTrackedEntityAttributes() );
+
+        ListMap<Integer, Attribute> attributes = new ListMap<>();
+
+        trackedEntityInstanceExportStore.getAttributes( entityInstanceMap.keySet() ).forEach( ( id, values ) -> {
+            for ( Attribute attribute : values )
+            {
+                TrackedEntityAttribute trackedEntityAttribute = readableAttributes.get( attribute.getAttribute() );
+
+                if ( trackedEntityAttribute != null )
+                {
+                    attribute.setDisplayName( trackedEntityAttribute.getDisplayName() );
+                    attribute.setValueType( trackedEntityAttribute.getValueType() );
+                    attribute.setCode( trackedEntityAttribute.getCode() );
+
+                    attributes.putValue( id, attribute );
+                }
+            }
+        } );
+
+        List<TrackedEntityAttribute> readableConfidentialAttributes = readableAttributes.values().stream()
+            .filter( attribute -> Boolean.TRUE.equals( attribute.getConfidential() ) )
+            .collect( Collectors.toList() );
+
+        if ( !readableConfidentialAttributes.isEmpty() )
+        {
+            for ( TrackedEntityAttributeValue attributeValue : trackedEntityAttributeValueService.getTrackedEntityAttributeValues(
+                entityInstanceMap.values(), readableConfidentialAttributes ) )
+            {
+                attributes.putValue( attributeValue.getEntityInstance().getId(), getAttribute( attributeValue ) );
+            }
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Returns the relationships of the given tracked entity instances mapped by
+     * tracked entity instance identifier. Relatives are converted in bulk with
+     * their attributes only.
+     */
+    private ListMap<Integer, org.hisp.dhis.dxf2.events.trackedentity.Relationship> getRelationships(
+        Map<Integer, org.hisp.dhis.trackedentity.TrackedEntityInstance> entityInstanceMap, User user )
+    {
+        ListMap<Integer, org.hisp.dhis.dxf2.events.trackedentity.Relationship> relationships =
+            trackedEntityInstanceExportStore.getRelationships( entityInstanceMap.keySet() );
+
+        if ( relationships.isEmpty() )
+        {
+            return relationships;
+        }
+
+        Set<String> relationshipTypeUids = new HashSet<>();
+        Set<String> relativeUids = new HashSet<>();
+
+        relationships.forEach( ( id, values ) -> {
+            for ( org.hisp.dhis.dxf2.events.trackedentity.Relationship relationship : values )
+            {
+                relationshipTypeUids.add( relationship.getRelationship() );
+
+                String relativeUid = getRelativeUid( relationship, entityInstanceMap.get( id ).getUid() );
+
+                if ( relativeUid != null )
+                {
+                    relativeUids.add( relativeUid );
+                }
+            }
+        } );
+
+        Map<String, RelationshipType> relationshipTypes = IdentifiableObjectUtils.getUidObjectMap(
+            manager.getByUid( RelationshipType.class, relationshipTypeUids ) );
+
+        Map<String, TrackedEntityInstance> relatives = getTrackedEntityInstances( manager.getByUid(
+            org.hisp.dhis.trackedentity.TrackedEntityInstance.class, relativeUids ), TrackedEntityInstanceParams.FALSE, user ).stream()
+            .collect( Collectors.toMap( TrackedEntityInstance::getTrackedEntityInstance, relative -> relative ) );
+
+        relationships.forEach( ( id, values ) -> {
+            for ( org.hisp.dhis.dxf2.events.trackedentity.Relationship relationship : values )
+            {
+                RelationshipType relationshipType = relationshipTypes.get( relationship.getRelationship() );
+
+                if ( relationshipType != null )
+                {
+                    relationship.setDisplayName( relationshipType.getDisplayName() );
+                }
+
+                String relativeUid = getRelativeUid( relationship, entityInstanceMap.get( id ).getUid() );
+
+                if ( relativeUid != null )
+                {
+                    relationship.setRelative( relatives.get( relativeUid ) );
+                }
+            }
+        } );
+
+        return relationships;
+    }
+
+    /**
+     * Returns the uid of the relative of the given tracked entity instance in
+     * the given relationship, or null if the relationship is with itself.
+     */
+    private String getRelativeUid( org.hisp.dhis.dxf2.events.trackedentity.Relationship relationship, String uid )
+    {
+        // we might have cases where A <=> A, so we only include the relative if the UIDs do not match
+
+        if ( !relationship.getTrackedEntityInstanceA().equals( uid ) )
+        {
+            return relationship.getTrackedEntityInstanceA();
+        }
+        else if ( !relationship.getTrackedEntityInstanceB().equals( uid ) )
+        {
+            return relationship.getTrackedEntityInstanceB();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the enrollments of the given tracked entity instances mapped by
+     * tracked entity instance identifier. The program instances of all tracked
+     * entity instances are loaded in a single query.
+     */
+    private ListMap<Integer, Enrollment> getEnrollments( Collection<Integer> entityInstanceIds, TrackedEntityInstanceParams params )
+    {
+        ListMap<Integer, String> programInstanceUids = trackedEntityInstanceExportStore.getProgramInstanceUids( entityInstanceIds );
+
+        Map<String, ProgramInstance> programInstances = IdentifiableObjectUtils.getUidObjectMap(
+            manager.getByUid( ProgramInstance.class, programInstanceUids.allValues() ) );
+
+        ListMap<Integer, Enrollment> enrollments = new ListMap<>();
+
+        programInstanceUids.forEach( ( id, uids ) -> {
+            for ( String uid : uids )
+            {
+                ProgramInstance programInstance = programInstances.get( uid );
+
+                if ( programInstance != null )
+                {
+                    enrollments.putValue( id, enrollmentService.getEnrollment( programInstance, params ) );
+                }
+            }
+        } );
+
+        return enrollments;
+    }
+
     public org.hisp.dhis.trackedentity.TrackedEntityInstance getTrackedEntityInstance( TrackedEntityInstance trackedEntityInstance, ImportOptions importOptions, ImportSummary importSummary )
     {
         if ( StringUtils.isEmpty( trackedEntityInstance.getOrgUnit() ) )
@@ -0,0 +1,187 @@
+package org.hisp.dhis.dxf2.events.trackedentity;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.hisp.dhis.commons.util.TextUtils.getCommaDelimitedString;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.common.ListMap;
+import org.hisp.dhis.system.util.DateUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+/**
+ * @author agent
+ */
+public class JdbcTrackedEntityInstanceExportStore
+    implements TrackedEntityInstanceExportStore
+{
+    private static final Log log = LogFactory.getLog( JdbcTrackedEntityInstanceExportStore.class );
+
+    // -------------------------------------------------------------------------
+    // Dependencies
+    // -------------------------------------------------------------------------
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // -------------------------------------------------------------------------
+    // TrackedEntityInstanceExportStore implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public ListMap<Integer, Attribute> getAttributes( Collection<Integer> entityInstanceIds )
+    {
+        ListMap<Integer, Attribute> attributes = new ListMap<>();
+
+        if ( entityInstanceIds.isEmpty() )
+        {
+            return attributes;
+        }
+
+        final String sql =
+            "select teav.trackedentityinstanceid as tei_id, tea.uid as tea_uid, teav.value as teav_value, " +
+            "teav.storedby as teav_storedby, teav.created as teav_created, teav.lastupdated as teav_lastupdated " +
+            "from trackedentityattributevalue teav " +
+            "inner join trackedentityattribute tea on teav.trackedentityattributeid = tea.trackedentityattributeid " +
+            "where teav.trackedentityinstanceid in (" + getCommaDelimitedString( entityInstanceIds ) + ") " +
+            "and coalesce(tea.confidential, false) = false";
+
+        log.debug( "Tracked entity instance attribute SQL: " + sql );
+
+        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+
+        while ( rowSet.next() )
+        {
+            Attribute attribute = new Attribute();
+            attribute.setAttribute( rowSet.getString( "tea_uid" ) );
+            attribute.setValue( rowSet.getString( "teav_value" ) );
+            attribute.setStoredBy( rowSet.getString( "teav_storedby" ) );
+            attribute.setCreated( DateUtils.getIso8601NoTz( rowSet.getTimestamp( "teav_created" ) ) );
+            attribute.setLastUpdated( DateUtils.getIso8601NoTz( rowSet.getTimestamp( "teav_lastupdated" ) ) );
+
+            attributes.putValue( rowSet.getInt( "tei_id" ), attribute );
+        }
+
+        return attributes;
+    }
+
+    @Override
+    public ListMap<Integer, Relationship> getRelationships( Collection<Integer> entityInstanceIds )
+    {
+        ListMap<Integer, Relationship> relationships = new ListMap<>();
+
+        if ( entityInstanceIds.isEmpty() )
+        {
+            return relationships;
+        }
+
+        final Set<Integer> idSet = new HashSet<>( entityInstanceIds );
+        final String ids = getCommaDelimitedString( idSet );
+
+        final String sql =
+            "select r.trackedentityinstanceaid as tei_a_id, r.trackedentityinstancebid as tei_b_id, " +
+            "teia.uid as tei_a_uid, teib.uid as tei_b_uid, rt.uid as rt_uid " +
+            "from relationship r " +
+            "inner join relationshiptype rt on r.relationshiptypeid = rt.relationshiptypeid " +
+            "inner join trackedentityinstance teia on r.trackedentityinstanceaid = teia.trackedentityinstanceid " +
+            "inner join trackedentityinstance teib on r.trackedentityinstancebid = teib.trackedentityinstanceid " +
+            "where r.trackedentityinstanceaid in (" + ids + ") " +
+            "or r.trackedentityinstancebid in (" + ids + ")";
+
+        log.debug( "Tracked entity instance relationship SQL: " + sql );
+
+        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+
+        while ( rowSet.next() )
+        {
+            int idA = rowSet.getInt( "tei_a_id" );
+            int idB = rowSet.getInt( "tei_b_id" );
+
+            if ( idSet.contains( idA ) )
+            {
+                relationships.putValue( idA, getRelationship( rowSet ) );
+            }
+
+            if ( idA != idB && idSet.contains( idB ) )
+            {
+                relationships.putValue( idB, getRelationship( rowSet ) );
+            }
+        }
+
+        return relationships;
+    }
+
+    @Override
+    public ListMap<Integer, String> getProgramInstanceUids( Collection<Integer> entityInstanceIds )
+    {
+        ListMap<Integer, String> programInstances = new ListMap<>();
+
+        if ( entityInstanceIds.isEmpty() )
+        {
+            return programInstances;
+        }
+
+        final String sql =
+            "select pi.trackedentityinstanceid as tei_id, pi.uid as pi_uid " +
+            "from programinstance pi " +
+            "where pi.trackedentityinstanceid in (" + getCommaDelimitedString( entityInstanceIds ) + ")";
+
+        log.debug( "Tracked entity instance program instance SQL: " + sql );
+
+        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+
+        while ( rowSet.next() )
+        {
+            programInstances.putValue( rowSet.getInt( "tei_id" ), rowSet.getString( "pi_uid" ) );
+        }
+
+        return programInstances;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private Relationship getRelationship( SqlRowSet rowSet )
+    {
+        Relationship relationship = new Relationship();
+        relationship.setRelationship( rowSet.getString( "rt_uid" ) );
+        relationship.setTrackedEntityInstanceA( rowSet.getString( "tei_a_uid" ) );
+        relationship.setTrackedEntityInstanceB( rowSet.getString( "tei_b_uid" ) );
+
+        return relationship;
+    }
+}
@@ -0,0 +1,74 @@
+package org.hisp.dhis.dxf2.events.trackedentity;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.Collection;
+
+import org.hisp.dhis.common.ListMap;
+
+/**
+ * Store which fetches the associations of a set of tracked entity instances
+ * through set queries, to avoid loading them per tracked entity instance
+ * when exporting tracked entity instances in bulk.
+ *
+ * @author agent
+ */
+public interface TrackedEntityInstanceExportStore
+{
+    /**
+     * Returns the attributes of the given tracked entity instances, mapped by
+     * tracked entity instance identifier. The attribute uid, value, storedBy,
+     * created and lastUpdated properties are set. Values of confidential
+     * attributes are not included as they are stored encrypted.
+     *
+     * @param entityInstanceIds the tracked entity instance identifiers.
+     * @return a {@link ListMap} of tracked entity instance identifiers and attributes.
+     */
+    ListMap<Integer, Attribute> getAttributes( Collection<Integer> entityInstanceIds );
+
+    /**
+     * Returns the relationships of the given tracked entity instances, mapped
+     * by tracked entity instance identifier. A relationship between two of the
+     * given tracked entity instances is included for both. The relationship
+     * type uid and the uids of the related tracked entity instances are set.
+     *
+     * @param entityInstanceIds the tracked entity instance identifiers.
+     * @return a {@link ListMap} of tracked entity instance identifiers and relationships.
+     */
+    ListMap<Integer, Relationship> getRelationships( Collection<Integer> entityInstanceIds );
+
+    /**
+     * Returns the program instance uids of the given tracked entity instances,
+     * mapped by tracked entity instance identifier.
+     *
+     * @param entityInstanceIds the tracked entity instance identifiers.
+     * @return a {@link ListMap} of tracked entity instance identifiers and program instance uids.
+     */
+    ListMap<Integer, String> getProgramInstanceUids( Collection<Integer> entityInstanceIds );
+}
@@ -28,6 +28,7 @@ package org.hisp.dhis.dxf2.synch;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.common.IdSchemes;
@@ -36,6 +37,7 @@ import org.hisp.dhis.configuration.ConfigurationService;
 import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.dxf2.common.ImportSummariesResponseExtractor;
 import org.hisp.dhis.dxf2.common.ImportSummaryResponseExtractor;
+import org.hisp.dhis.dxf2.datavalueset.DataExportCursor;
 import org.hisp.dhis.dxf2.datavalueset.DataValueSetService;
 import org.hisp.dhis.dxf2.events.event.EventService;
 import org.hisp.dhis.dxf2.events.event.Events;
@@ -49,6 +51,8 @@ import org.hisp.dhis.dxf2.metadata.MetadataImportService;
 import org.hisp.dhis.dxf2.metadata.feedback.ImportReport;
 import org.hisp.dhis.dxf2.webmessage.utils.WebMessageParseUtils;
 import org.hisp.dhis.dxf2.webmessage.WebMessageParseException;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.render.DefaultRenderService;
 import org.hisp.dhis.render.RenderService;
 import org.hisp.dhis.schema.SchemaService;
@@ -75,6 +79,7 @@ import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.zip.GZIPOutputStream;
 
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
@@ -90,6 +95,8 @@ public class DefaultSynchronizationManager
 
     private static final String HEADER_AUTHORIZATION = "Authorization";
 
+    private static final String CHECKPOINT_SEPARATOR = "|";
+
     @Autowired
     private DataValueSetService dataValueSetService;
 
@@ -120,6 +127,9 @@ public class DefaultSynchronizationManager
     @Autowired
     private RenderService renderService;
 
+    @Autowired
+    private DhisConfigurationProvider config;
+
     // -------------------------------------------------------------------------
     // SynchronizatonManager implementation
     // -------------------------------------------------------------------------
@@ -216,7 +226,10 @@ public class DefaultSynchronizationManager
     }
 
     /**
-     * Executes a push of data values to the given remote instance.
+     * Executes a push of data values to the given remote instance. The data
+     * values are pushed in gzip compressed chunks ordered by last updated
+     * time. A checkpoint is persisted after each successful chunk, so that a
+     * failed push resumes after the last successful chunk in the next run.
      *
      * @param instance the remote system instance.
      * @return an ImportSummary.
@@ -228,7 +241,6 @@ public class DefaultSynchronizationManager
         // subsequently part of next synch process without being ignored
         // ---------------------------------------------------------------------
 
-        final Date startTime = new Date();
         final Date lastSuccessTime = getLastDataSynchSuccessFallback();
 
         final int lastUpdatedCount = dataValueService.getDataValueCountLastUpdatedAfter( lastSuccessTime, true );
@@ -241,18 +253,121 @@ public class DefaultSynchronizationManager
             return null;
         }
 
-        log.info( "Values: " + lastUpdatedCount + " since last synch success: " + lastSuccessTime );
-
         log.info( "Remote server POST URL: " + instance.getUrl() );
 
-        final RequestCallback requestCallback = request ->
+        // ---------------------------------------------------------------------
+        // Resume from checkpoint of previous failed synch if present, keeping
+        // the start time of the process which started the synch
+        // ---------------------------------------------------------------------
+
+        Date startTime = new Date();
+        DataExportCursor cursor = DataExportCursor.startingAt( lastSuccessTime );
+
+        String[] checkpoint = StringUtils.split( (String) systemSettingManager.getSystemSetting( SettingKey.DATA_SYNC_CHECKPOINT ), CHECKPOINT_SEPARATOR );
+        DataExportCursor checkpointCursor = checkpoint != null && checkpoint.length == 2 ? DataExportCursor.fromString( checkpoint[1] ) : null;
+
+        if ( checkpointCursor != null && !checkpointCursor.getLastUpdated().before( lastSuccessTime ) )
         {
-            request.getHeaders().setContentType( MediaType.APPLICATION_JSON );
-            request.getHeaders().add( HEADER_AUTHORIZATION, CodecUtils.getBasicAuthString( instance.getUsername(), instance.getPassword() ) );
+            startTime = new Date( Long.parseLong( checkpoint[0] ) );
+            cursor = checkpointCursor;
 
-            dataValueSetService.writeDataValueSetJson( lastSuccessTime, request.getBody(), new IdSchemes() );
-        };
+            log.info( "Resuming synch from checkpoint: " + cursor + ", started: " + startTime );
+        }
+
+        final int chunkSize = getChunkSize();
+
+        ImportSummary summary = new ImportSummary( ImportStatus.SUCCESS );
+
+        int chunkNo = 0;
+        int valueCount;
+
+        do
+        {
+            final DataExportCursor chunkCursor = cursor.copy();
+            final int[] chunkValueCount = { 0 };
+
+            final RequestCallback requestCallback = request ->
+            {
+                request.getHeaders().setContentType( MediaType.APPLICATION_JSON );
+                request.getHeaders().add( HttpHeaders.CONTENT_ENCODING, "gzip" );
+                request.getHeaders().add( HEADER_AUTHORIZATION, CodecUtils.getBasicAuthString( instance.getUsername(), instance.getPassword() ) );
+
+                try ( GZIPOutputStream out = new GZIPOutputStream( request.getBody() ) )
+                {
+                    chunkValueCount[0] = dataValueSetService.writeDataValueSetJson( chunkCursor, chunkSize, out, new IdSchemes() );
+                }
+            };
+
+            ImportSummary chunkSummary = executeDataPushChunk( instance, requestCallback );
+
+            valueCount = chunkValueCount[0];
+            chunkNo++;
+
+            log.info( String.format( "Synch chunk: %d, values: %d, summary: %s", chunkNo, valueCount, chunkSummary ) );
+
+            if ( chunkSummary == null || !ImportStatus.SUCCESS.equals( chunkSummary.getStatus() ) )
+            {
+                log.warn( "Sync failed in chunk: " + chunkNo + ", resuming from checkpoint: " + cursor + " in next synch" );
+                return mergeImportSummary( chunkSummary, summary );
+            }
+
+            mergeImportSummary( summary, chunkSummary );
+
+            cursor = chunkCursor;
+
+            systemSettingManager.saveSystemSetting( SettingKey.DATA_SYNC_CHECKPOINT, startTime.getTime() + CHECKPOINT_SEPARATOR + cursor );
+        }
+        while ( valueCount >= chunkSize );
+
+        setLastDataSynchSuccess( startTime );
+        systemSettingManager.deleteSystemSetting( SettingKey.DATA_SYNC_CHECKPOINT );
+
+        log.info( "Synch successful, setting last success time: " + startTime );
+
+        return summary;
+    }
 
+    /**
+     * Returns the configured number of data values per chunk. Falls back to
+     * the default chunk size if the configured value is not a positive
+     * number, as the push would otherwise never finish.
+     */
+    private int getChunkSize()
+    {
+        String value = StringUtils.trimToEmpty( config.getProperty( ConfigurationKey.DATA_SYNC_CHUNK_SIZE ) );
+
+        int chunkSize;
+
+        try
+        {
+            chunkSize = Integer.parseInt( value );
+        }
+        catch ( NumberFormatException ex )
+        {
+            chunkSize = 0;
+        }
+
+        if ( chunkSize <= 0 )
+        {
+            chunkSize = Integer.parseInt( ConfigurationKey.DATA_SYNC_CHUNK_SIZE.getDefaultValue() );
+
+            log.warn( String.format( "Invalid synch chunk size for %s: '%s', using: %d",
+                ConfigurationKey.DATA_SYNC_CHUNK_SIZE.getKey(), value, chunkSize ) );
+        }
+
+        return chunkSize;
+    }
+
+    /**
+     * Posts a chunk of data values with the given request callback to the
+     * given remote instance.
+     *
+     * @param instance the remote system instance.
+     * @param requestCallback the callback writing the chunk.
+     * @return an ImportSummary.
+     */
+    private ImportSummary executeDataPushChunk( SystemInstance instance, RequestCallback requestCallback ) throws WebMessageParseException
+    {
         ResponseExtractor<ImportSummary> responseExtractor = new ImportSummaryResponseExtractor();
         ImportSummary summary = null;
         try
@@ -278,18 +393,6 @@ public class DefaultSynchronizationManager
             throw ex;
         }
 
-        log.info( "Synch summary: " + summary );
-
-        if ( summary != null && ImportStatus.SUCCESS.equals( summary.getStatus() ) )
-        {
-            setLastDataSynchSuccess( startTime );
-            log.info( "Synch successful, setting last success time: " + startTime );
-        }
-        else
-        {
-            log.warn( "Sync failed: " + summary );
-        }
-
         return summary;
     }
 
@@ -476,6 +579,25 @@ public class DefaultSynchronizationManager
         systemSettingManager.saveSystemSetting( SettingKey.LAST_SUCCESSFUL_EVENT_DATA_SYNC, time );
     }
 
+    /**
+     * Adds the import counts and conflicts of the given source summary to
+     * the given target summary. Returns the target summary, which may be
+     * null.
+     */
+    private ImportSummary mergeImportSummary( ImportSummary target, ImportSummary source )
+    {
+        if ( target != null && source != null )
+        {
+            target.getImportCount().incrementImported( source.getImportCount().getImported() );
+            target.getImportCount().incrementUpdated( source.getImportCount().getUpdated() );
+            target.getImportCount().incrementIgnored( source.getImportCount().getIgnored() );
+            target.getImportCount().incrementDeleted( source.getImportCount().getDeleted() );
+            target.getConflicts().addAll( source.getConflicts() );
+        }
+
+        return target;
+    }
+
     /**
      * Indicates whether a remote server has been properly configured.
      */
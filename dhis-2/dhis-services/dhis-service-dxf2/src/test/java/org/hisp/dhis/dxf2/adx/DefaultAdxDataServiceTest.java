@@ -0,0 +1,145 @@
+package org.hisp.dhis.dxf2.adx;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.common.IdScheme;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dxf2.common.ImportOptions;
+import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
+import org.hisp.dhis.dxf2.datavalueset.DataValueSetService;
+import org.hisp.dhis.dxf2.importsummary.ImportCount;
+import org.hisp.dhis.dxf2.importsummary.ImportStatus;
+import org.hisp.dhis.dxf2.importsummary.ImportSummary;
+import org.hisp.dhis.system.notification.Notifier;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class DefaultAdxDataServiceTest
+    extends DhisConvenienceTest
+{
+    @Mock
+    private DataValueSetService dataValueSetService;
+
+    @Mock
+    private IdentifiableObjectManager identifiableObjectManager;
+
+    @Mock( answer = Answers.RETURNS_DEEP_STUBS )
+    private Notifier notifier;
+
+    @InjectMocks
+    private DefaultAdxDataService adxDataService;
+
+    @Before
+    public void before()
+    {
+        DataElement deA = createDataElement( 'A' );
+        deA.setUid( "deabcdefghA" );
+        deA.setValueType( ValueType.NUMBER );
+
+        when( identifiableObjectManager.getObject( DataElement.class, IdScheme.UID, deA.getUid() ) ).thenReturn( deA );
+
+        when( dataValueSetService.saveDataValueSet( any( DataValueSet.class ), any( ImportOptions.class ), any() ) ).thenAnswer( invocation -> {
+            DataValueSet dataValueSet = (DataValueSet) invocation.getArguments()[0];
+
+            int imported = 0;
+
+            while ( dataValueSet.hasNextDataValue() )
+            {
+                dataValueSet.getNextDataValue();
+                imported++;
+            }
+
+            return new ImportSummary( ImportStatus.SUCCESS, null, new ImportCount( imported, 0, 0, 0 ) );
+        } );
+    }
+
+    @Test
+    public void testSaveDataValueSetWithConflicts()
+    {
+        ImportSummary summary = adxDataService.saveDataValueSet( getInputStream(
+            "<group orgUnit=\"ouabcdefghA\" period=\"2015-01-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"32\" />" +
+                "<dataValue dataElement=\"deabcdefghX\" categoryOptionCombo=\"cocabcdefgA\" value=\"5\" />" +
+            "</group>" ), new ImportOptions(), null );
+
+        assertEquals( ImportStatus.SUCCESS, summary.getStatus() );
+        assertEquals( 1, summary.getConflicts().size() );
+        assertEquals( 1, summary.getImportCount().getImported() );
+        assertEquals( 1, summary.getImportCount().getIgnored() );
+    }
+
+    @Test
+    public void testSaveDataValueSetWithConflictsAndGroupException()
+    {
+        ImportSummary summary = adxDataService.saveDataValueSet( getInputStream(
+            "<group orgUnit=\"ouabcdefghA\" period=\"2015-01-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"32\" />" +
+                "<dataValue dataElement=\"deabcdefghX\" categoryOptionCombo=\"cocabcdefgA\" value=\"5\" />" +
+            "</group>" +
+            "<group period=\"2015-02-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"12\" />" +
+            "</group>" ), new ImportOptions(), null );
+
+        assertEquals( ImportStatus.ERROR, summary.getStatus() );
+        assertEquals( 2, summary.getConflicts().size() );
+        assertEquals( 1, summary.getImportCount().getImported() );
+        assertEquals( 1, summary.getImportCount().getIgnored() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private ByteArrayInputStream getInputStream( String groups )
+    {
+        String adx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<adx xmlns=\"" + AdxDataService.NAMESPACE + "\" exported=\"2015-02-08T19:30:00Z\">" + groups + "</adx>";
+
+        return new ByteArrayInputStream( adx.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
@@ -0,0 +1,194 @@
+package org.hisp.dhis.dxf2.adx;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.common.IdScheme;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dxf2.common.ImportOptions;
+import org.hisp.dhis.dxf2.datavalue.DataValue;
+import org.hisp.dhis.system.notification.Notifier;
+import org.hisp.staxwax.factory.XMLFactory;
+import org.hisp.staxwax.reader.XMLReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+public class StreamingAdxDataValueSetTest
+    extends DhisConvenienceTest
+{
+    private IdentifiableObjectManager manager;
+
+    private Notifier notifier;
+
+    private DataElement deA;
+
+    private DataElement deB;
+
+    @Before
+    public void before()
+    {
+        deA = createDataElement( 'A' );
+        deA.setUid( "deabcdefghA" );
+        deA.setValueType( ValueType.NUMBER );
+
+        deB = createDataElement( 'B' );
+        deB.setUid( "deabcdefghB" );
+        deB.setValueType( ValueType.TEXT );
+
+        manager = mock( IdentifiableObjectManager.class );
+        when( manager.getObject( DataElement.class, IdScheme.UID, deA.getUid() ) ).thenReturn( deA );
+        when( manager.getObject( DataElement.class, IdScheme.UID, deB.getUid() ) ).thenReturn( deB );
+
+        notifier = mock( Notifier.class );
+    }
+
+    @Test
+    public void testReadGroups()
+    {
+        StreamingAdxDataValueSet dataValueSet = getDataValueSet(
+            "<group orgUnit=\"ouabcdefghA\" period=\"2015-01-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"32\" />" +
+                "<dataValue dataElement=\"deabcdefghB\" categoryOptionCombo=\"cocabcdefgA\" value=\"0\">" +
+                    "<annotation>Text value</annotation>" +
+                "</dataValue>" +
+            "</group>" +
+            "<group orgUnit=\"ouabcdefghB\" period=\"2015-02-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgB\" value=\"12\" comment=\"Note\" />" +
+            "</group>" );
+
+        List<DataValue> dataValues = readAll( dataValueSet );
+
+        assertEquals( 3, dataValues.size() );
+
+        assertDataValue( dataValues.get( 0 ), "deabcdefghA", "201501", "ouabcdefghA", "cocabcdefgA", "32" );
+        assertDataValue( dataValues.get( 1 ), "deabcdefghB", "201501", "ouabcdefghA", "cocabcdefgA", "Text value" );
+        assertDataValue( dataValues.get( 2 ), "deabcdefghA", "201502", "ouabcdefghB", "cocabcdefgB", "12" );
+        assertEquals( "aocabcdefgA", dataValues.get( 2 ).getAttributeOptionCombo() );
+        assertEquals( "Note", dataValues.get( 2 ).getComment() );
+
+        assertEquals( 2, dataValueSet.getGroupCount() );
+        assertEquals( 0, dataValueSet.getConflicts().size() );
+        assertNull( dataValueSet.getGroupException() );
+    }
+
+    @Test
+    public void testSkipInvalidDataValue()
+    {
+        StreamingAdxDataValueSet dataValueSet = getDataValueSet(
+            "<group orgUnit=\"ouabcdefghA\" period=\"2015-01-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" />" +
+                "<dataValue dataElement=\"deabcdefghX\" categoryOptionCombo=\"cocabcdefgA\" value=\"5\" />" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"7\" />" +
+            "</group>" );
+
+        List<DataValue> dataValues = readAll( dataValueSet );
+
+        assertEquals( 1, dataValues.size() );
+        assertEquals( "7", dataValues.get( 0 ).getValue() );
+        assertEquals( 2, dataValueSet.getConflicts().size() );
+        assertNull( dataValueSet.getGroupException() );
+    }
+
+    @Test
+    public void testMalformedGroup()
+    {
+        StreamingAdxDataValueSet dataValueSet = getDataValueSet(
+            "<group orgUnit=\"ouabcdefghA\" period=\"2015-01-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"32\" />" +
+            "</group>" +
+            "<group period=\"2015-02-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"12\" />" +
+            "</group>" +
+            "<group orgUnit=\"ouabcdefghA\" period=\"2015-03-01/P1M\" attributeOptionCombo=\"aocabcdefgA\">" +
+                "<dataValue dataElement=\"deabcdefghA\" categoryOptionCombo=\"cocabcdefgA\" value=\"8\" />" +
+            "</group>" );
+
+        List<DataValue> dataValues = readAll( dataValueSet );
+
+        assertEquals( 1, dataValues.size() );
+        assertEquals( "32", dataValues.get( 0 ).getValue() );
+        assertEquals( 1, dataValueSet.getGroupCount() );
+        assertNotNull( dataValueSet.getGroupException() );
+        assertFalse( dataValueSet.hasNextDataValue() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private StreamingAdxDataValueSet getDataValueSet( String groups )
+    {
+        String adx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<adx xmlns=\"" + AdxDataService.NAMESPACE + "\" exported=\"2015-02-08T19:30:00Z\">" + groups + "</adx>";
+
+        XMLReader reader = XMLFactory.getXMLReader( new ByteArrayInputStream( adx.getBytes( StandardCharsets.UTF_8 ) ) );
+        reader.moveToStartElement( AdxDataService.ROOT, AdxDataService.NAMESPACE );
+
+        return new StreamingAdxDataValueSet( reader, new ImportOptions(), manager, notifier, null );
+    }
+
+    private List<DataValue> readAll( StreamingAdxDataValueSet dataValueSet )
+    {
+        List<DataValue> dataValues = new ArrayList<>();
+
+        while ( dataValueSet.hasNextDataValue() )
+        {
+            dataValues.add( dataValueSet.getNextDataValue() );
+        }
+
+        return dataValues;
+    }
+
+    private void assertDataValue( DataValue dataValue, String dataElement, String period, String orgUnit,
+        String categoryOptionCombo, String value )
+    {
+        assertEquals( dataElement, dataValue.getDataElement() );
+        assertEquals( period, dataValue.getPeriod() );
+        assertEquals( orgUnit, dataValue.getOrgUnit() );
+        assertEquals( categoryOptionCombo, dataValue.getCategoryOptionCombo() );
+        assertEquals( value, dataValue.getValue() );
+    }
+}
@@ -0,0 +1,117 @@
+package org.hisp.dhis.dxf2.datavalueset;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.dxf2.datavalue.DataValue;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class DataValueSetReaderTest
+{
+    @Test
+    public void testReadAhead()
+    {
+        DataValueSet dataValueSet = getDataValueSet( 25 );
+
+        DataValueSetReader reader = new DataValueSetReader( dataValueSet, 4 );
+
+        for ( int i = 0; i < 25; i++ )
+        {
+            assertTrue( reader.hasNextDataValue() );
+
+            DataValue dataValue = reader.getNextDataValue();
+
+            assertEquals( String.valueOf( i ), dataValue.getValue() );
+            assertEquals( "deA", dataValue.getDataElement() );
+            assertNotSame( dataValueSet.getDataValues().get( i ), dataValue );
+        }
+
+        assertFalse( reader.hasNextDataValue() );
+
+        reader.close();
+    }
+
+    @Test
+    public void testReadOnCallingThread()
+    {
+        DataValueSet dataValueSet = getDataValueSet( 3 );
+
+        DataValueSetReader reader = new DataValueSetReader( dataValueSet, 0 );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            assertTrue( reader.hasNextDataValue() );
+            assertEquals( dataValueSet.getDataValues().get( i ), reader.getNextDataValue() );
+        }
+
+        assertFalse( reader.hasNextDataValue() );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void testReadAheadFailure()
+    {
+        DataValueSet dataValueSet = new DataValueSet()
+        {
+            @Override
+            public boolean hasNextDataValue()
+            {
+                throw new IllegalStateException( "Malformed payload" );
+            }
+        };
+
+        DataValueSetReader reader = new DataValueSetReader( dataValueSet, 4 );
+
+        reader.hasNextDataValue();
+    }
+
+    private DataValueSet getDataValueSet( int size )
+    {
+        DataValueSet dataValueSet = new DataValueSet();
+
+        for ( int i = 0; i < size; i++ )
+        {
+            DataValue dataValue = new DataValue();
+            dataValue.setDataElement( "deA" );
+            dataValue.setPeriod( "201801" );
+            dataValue.setOrgUnit( "ouA" );
+            dataValue.setValue( String.valueOf( i ) );
+
+            dataValueSet.getDataValues().add( dataValue );
+        }
+
+        return dataValueSet;
+    }
+}
@@ -28,6 +28,7 @@ package org.hisp.dhis.dxf2.datavalueset;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.hisp.dhis.DhisSpringTest;
 import org.hisp.dhis.attribute.Attribute;
@@ -57,7 +58,11 @@ import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -386,6 +391,44 @@ public class DataValueSetServiceExportTest
         }
     }
 
+    @Test
+    public void testExportLastUpdatedInChunks()
+    {
+        DataExportCursor cursor = DataExportCursor.startingAt( getDate( 1970, 1, 1 ) );
+        Set<String> keys = new HashSet<>();
+        List<Integer> chunkSizes = new ArrayList<>();
+        int count;
+
+        do
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            count = dataValueSetService.writeDataValueSetJson( cursor, 5, out, new IdSchemes() );
+
+            DataValueSet dvs = JacksonUtils.fromJson( out.toByteArray(), DataValueSet.class );
+
+            assertNotNull( dvs );
+            assertEquals( count, dvs.getDataValues().size() );
+
+            for ( org.hisp.dhis.dxf2.datavalue.DataValue dv : dvs.getDataValues() )
+            {
+                keys.add( dv.getDataElement() + dv.getPeriod() + dv.getOrgUnit() + dv.getCategoryOptionCombo() + dv.getAttributeOptionCombo() );
+            }
+
+            chunkSizes.add( count );
+        }
+        while ( count == 5 );
+
+        assertEquals( Lists.newArrayList( 5, 5, 2 ), chunkSizes );
+        assertEquals( 12, keys.size() );
+
+        DataExportCursor resumed = DataExportCursor.fromString( cursor.toString() );
+
+        assertNotNull( resumed );
+        assertEquals( cursor.toString(), resumed.toString() );
+        assertEquals( 0, dataValueSetService.writeDataValueSetJson( resumed, 5, new ByteArrayOutputStream(), new IdSchemes() ) );
+    }
+
     @Test
     public void testExportLastUpdatedWithDeletedValues()
     {
@@ -45,9 +45,13 @@ import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetService;
 import org.hisp.dhis.datavalue.DataValue;
 import org.hisp.dhis.datavalue.DataValueAudit;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.dxf2.common.ImportOptions;
 import org.hisp.dhis.dxf2.importsummary.ImportStatus;
 import org.hisp.dhis.dxf2.importsummary.ImportSummary;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.importexport.ImportStrategy;
 import org.hisp.dhis.jdbc.batchhandler.DataValueAuditBatchHandler;
 import org.hisp.dhis.jdbc.batchhandler.DataValueBatchHandler;
@@ -77,6 +81,9 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Lars Helge Overland
@@ -113,6 +120,15 @@ public class DataValueSetServiceTest
     @Autowired
     private AttributeService attributeService;
 
+    @Autowired
+    private DataValueService dataValueService;
+
+    @Autowired
+    private DbmsManager dbmsManager;
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
     private Attribute attribute;
 
     private DataElementCategoryOptionCombo ocDef;
@@ -271,6 +287,12 @@ public class DataValueSetServiceTest
         setDependency( dataValueSetService, "currentUserService", currentUserService );
     }
 
+    @Override
+    public void tearDownTest()
+    {
+        setDependency( dataValueSetService, "config", config, DhisConfigurationProvider.class );
+    }
+
     // -------------------------------------------------------------------------
     // Tests
     // -------------------------------------------------------------------------
@@ -528,6 +550,67 @@ public class DataValueSetServiceTest
         assertImportDataValues( summary );
     }
 
+    @Test
+    public void testImportDataValuesXmlWithWorkers()
+        throws Exception
+    {
+        setImportWorkers( 4 );
+
+        in = new ClassPathResource( "datavalueset/dataValueSetB.xml" ).getInputStream();
+
+        ImportSummary summary = dataValueSetService.saveDataValueSet( in );
+
+        assertEquals( summary.getConflicts().toString(), 0, summary.getConflicts().size() );
+        assertEquals( 12, summary.getImportCount().getImported() );
+        assertEquals( 0, summary.getImportCount().getUpdated() );
+        assertEquals( 0, summary.getImportCount().getDeleted() );
+        assertEquals( 0, summary.getImportCount().getIgnored() );
+        assertEquals( ImportStatus.SUCCESS, summary.getStatus() );
+
+        assertImportDataValues( summary );
+    }
+
+    @Test
+    public void testImportDataValuesCsvWithWorkers()
+        throws Exception
+    {
+        setImportWorkers( 4 );
+
+        in = new ClassPathResource( "datavalueset/dataValueSetB.csv" ).getInputStream();
+
+        ImportSummary summary = dataValueSetService.saveDataValueSetCsv( in, null, null );
+
+        assertEquals( summary.getConflicts().toString(), 1, summary.getConflicts().size() ); // Header row
+        assertEquals( 12, summary.getImportCount().getImported() );
+        assertEquals( 0, summary.getImportCount().getUpdated() );
+        assertEquals( 0, summary.getImportCount().getDeleted() );
+        assertEquals( 1, summary.getImportCount().getIgnored() ); // Header row
+        assertEquals( ImportStatus.WARNING, summary.getStatus() );
+
+        assertImportDataValues( summary );
+    }
+
+    @Test
+    public void testImportDataValuesWithOrgUnitOutsideHierarchyWithWorkers()
+        throws Exception
+    {
+        setImportWorkers( 2 );
+
+        in = new ClassPathResource( "datavalueset/dataValueSetE.xml" ).getInputStream();
+
+        ImportSummary summary = dataValueSetService.saveDataValueSet( in );
+
+        assertEquals( ImportStatus.WARNING, summary.getStatus() );
+        assertEquals( summary.getConflicts().toString(), 2, summary.getConflicts().size() );
+        assertEquals( 1, summary.getImportCount().getImported() );
+
+        Collection<DataValue> dataValues = mockDataValueBatchHandler.getInserts();
+
+        assertNotNull( dataValues );
+        assertEquals( 1, dataValues.size() );
+        assertTrue( dataValues.contains( new DataValue( deA, peA, ouA, ocDef, ocA ) ) );
+    }
+
     @Test
     public void testImportDataValuesBooleanCsv()
         throws Exception
@@ -894,8 +977,12 @@ public class DataValueSetServiceTest
     public void testImportDataValuesUpdatedAudit()
         throws Exception
     {
-        mockDataValueBatchHandler.withFindSelf( true );
-        
+        dataValueService.addDataValue( new DataValue( deA, peA, ouA, ocDef, ocDef, "1" ) );
+        dataValueService.addDataValue( new DataValue( deB, peA, ouA, ocDef, ocDef, "2" ) );
+        dataValueService.addDataValue( new DataValue( deC, peA, ouA, ocDef, ocDef, "3" ) );
+
+        dbmsManager.flushSession();
+
         in = new ClassPathResource( "datavalueset/dataValueSetA.xml" ).getInputStream();
 
         ImportSummary summary = dataValueSetService.saveDataValueSet( in );
@@ -1013,6 +1100,15 @@ public class DataValueSetServiceTest
         assertTrue( dataValues.contains( new DataValue( deC, peB, ouB, ocDef, ocDef ) ) );
     }
 
+    private void setImportWorkers( int workers )
+    {
+        DhisConfigurationProvider workerConfig = mock( DhisConfigurationProvider.class );
+        when( workerConfig.getProperty( any( ConfigurationKey.class ) ) ).thenAnswer( invocation -> ( (ConfigurationKey) invocation.getArguments()[0] ).getDefaultValue() );
+        when( workerConfig.getProperty( ConfigurationKey.DATA_IMPORT_WORKERS ) ).thenReturn( String.valueOf( workers ) );
+
+        setDependency( dataValueSetService, "config", workerConfig, DhisConfigurationProvider.class );
+    }
+
     private Period createMonthlyPeriod( Date monthStart )
     {
         Date monthEnd = DateUtils.addDays( DateUtils.addMonths( monthStart, 1 ), -1 );
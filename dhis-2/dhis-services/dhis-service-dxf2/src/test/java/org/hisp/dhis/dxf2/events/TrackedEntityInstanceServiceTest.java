@@ -29,8 +29,13 @@ package org.hisp.dhis.dxf2.events;
  */
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.hisp.dhis.DhisSpringTest;
 import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.OrganisationUnitSelectionMode;
+import org.hisp.dhis.dbms.DbmsManager;
+import org.hisp.dhis.dxf2.events.enrollment.Enrollment;
+import org.hisp.dhis.dxf2.events.trackedentity.Attribute;
 import org.hisp.dhis.dxf2.events.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.dxf2.events.trackedentity.TrackedEntityInstanceService;
 import org.hisp.dhis.dxf2.importsummary.ImportStatus;
@@ -38,14 +43,26 @@ import org.hisp.dhis.dxf2.importsummary.ImportSummary;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.program.ProgramInstanceService;
+import org.hisp.dhis.relationship.Relationship;
+import org.hisp.dhis.relationship.RelationshipService;
+import org.hisp.dhis.relationship.RelationshipType;
+import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.trackedentity.TrackedEntityInstanceQueryParams;
 import org.hisp.dhis.trackedentity.TrackedEntityType;
+import org.hisp.dhis.trackedentity.TrackedEntityTypeAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityTypeService;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValue;
+import org.hisp.dhis.trackedentityattributevalue.TrackedEntityAttributeValueService;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -64,9 +81,20 @@ public class TrackedEntityInstanceServiceTest
     @Autowired
     private ProgramInstanceService programInstanceService;
 
+    @Autowired
+    private TrackedEntityAttributeValueService trackedEntityAttributeValueService;
+
+    @Autowired
+    private RelationshipService relationshipService;
+
     @Autowired
     private IdentifiableObjectManager manager;
 
+    @Autowired
+    private DbmsManager dbmsManager;
+
+    private TrackedEntityType trackedEntityType;
+
     private org.hisp.dhis.trackedentity.TrackedEntityInstance maleA;
     private org.hisp.dhis.trackedentity.TrackedEntityInstance maleB;
     private org.hisp.dhis.trackedentity.TrackedEntityInstance femaleA;
@@ -85,7 +113,7 @@ public class TrackedEntityInstanceServiceTest
 
         organisationUnitB.setParent( organisationUnitA );
 
-        TrackedEntityType trackedEntityType = createTrackedEntityType( 'A' );
+        trackedEntityType = createTrackedEntityType( 'A' );
         trackedEntityTypeService.addTrackedEntityType( trackedEntityType );
 
         maleA = createTrackedEntityInstance( 'A', organisationUnitA );
@@ -174,4 +202,80 @@ public class TrackedEntityInstanceServiceTest
         assertNull( trackedEntityInstanceService.getTrackedEntityInstance( maleA.getUid() ) );
         assertNull( trackedEntityInstanceService.getTrackedEntityInstance( maleB.getUid() ) );
     }
+
+    @Test
+    public void testGetTrackedEntityInstancesConsistentWithSingle()
+    {
+        createUserAndInjectSecurityContext( Sets.newHashSet( organisationUnitA ), true );
+
+        TrackedEntityAttribute attributeA = createTrackedEntityAttribute( 'A' );
+        manager.save( attributeA );
+
+        trackedEntityType.getTrackedEntityTypeAttributes().add( new TrackedEntityTypeAttribute( trackedEntityType, attributeA ) );
+        trackedEntityTypeService.updateTrackedEntityType( trackedEntityType );
+
+        TrackedEntityAttributeValue attributeValueA = createTrackedEntityAttributeValue( 'A', maleA, attributeA );
+        TrackedEntityAttributeValue attributeValueB = createTrackedEntityAttributeValue( 'B', femaleA, attributeA );
+        trackedEntityAttributeValueService.addTrackedEntityAttributeValue( attributeValueA );
+        trackedEntityAttributeValueService.addTrackedEntityAttributeValue( attributeValueB );
+        maleA.getTrackedEntityAttributeValues().add( attributeValueA );
+        femaleA.getTrackedEntityAttributeValues().add( attributeValueB );
+
+        RelationshipType relationshipType = createRelationshipType( 'A' );
+        manager.save( relationshipType );
+        relationshipService.addRelationship( new Relationship( maleA, relationshipType, femaleA ) );
+
+        dbmsManager.flushSession();
+
+        TrackedEntityInstanceQueryParams queryParams = new TrackedEntityInstanceQueryParams();
+        queryParams.addOrganisationUnit( organisationUnitA );
+        queryParams.setOrganisationUnitMode( OrganisationUnitSelectionMode.DESCENDANTS );
+        queryParams.setTrackedEntityType( trackedEntityType );
+
+        List<TrackedEntityInstance> trackedEntityInstances = trackedEntityInstanceService.getTrackedEntityInstances( queryParams, TrackedEntityInstanceParams.TRUE );
+
+        Set<String> uids = trackedEntityInstances.stream().map( TrackedEntityInstance::getTrackedEntityInstance ).collect( Collectors.toSet() );
+        assertTrue( uids.contains( maleA.getUid() ) );
+        assertTrue( uids.contains( femaleA.getUid() ) );
+
+        for ( TrackedEntityInstance bulk : trackedEntityInstances )
+        {
+            TrackedEntityInstance single = trackedEntityInstanceService.getTrackedEntityInstance( bulk.getTrackedEntityInstance(), TrackedEntityInstanceParams.TRUE );
+
+            assertEquals( single.getOrgUnit(), bulk.getOrgUnit() );
+            assertEquals( single.getTrackedEntityType(), bulk.getTrackedEntityType() );
+            assertEquals( getAttributeValues( single ), getAttributeValues( bulk ) );
+            assertEquals( single.getRelationships().size(), bulk.getRelationships().size() );
+            assertEquals( getEnrollments( single ), getEnrollments( bulk ) );
+        }
+
+        assertEquals( "AttributeA", getAttributeValues( getTrackedEntityInstance( trackedEntityInstances, maleA.getUid() ) ).get( attributeA.getUid() ) );
+        assertEquals( 1, getTrackedEntityInstance( trackedEntityInstances, maleA.getUid() ).getRelationships().size() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private TrackedEntityInstance getTrackedEntityInstance( List<TrackedEntityInstance> trackedEntityInstances, String uid )
+    {
+        return trackedEntityInstances.stream().filter( tei -> uid.equals( tei.getTrackedEntityInstance() ) ).findFirst().orElse( null );
+    }
+
+    private Map<String, String> getAttributeValues( TrackedEntityInstance trackedEntityInstance )
+    {
+        Map<String, String> values = new HashMap<>();
+
+        for ( Attribute attribute : trackedEntityInstance.getAttributes() )
+        {
+            values.put( attribute.getAttribute(), attribute.getValue() );
+        }
+
+        return values;
+    }
+
+    private Set<String> getEnrollments( TrackedEntityInstance trackedEntityInstance )
+    {
+        return trackedEntityInstance.getEnrollments().stream().map( Enrollment::getEnrollment ).collect( Collectors.toSet() );
+    }
 }
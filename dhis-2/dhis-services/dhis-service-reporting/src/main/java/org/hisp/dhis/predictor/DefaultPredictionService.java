@@ -35,6 +35,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.analytics.AnalyticsService;
 import org.hisp.dhis.analytics.DataQueryParams;
+import org.hisp.dhis.common.AuditType;
 import org.hisp.dhis.common.DimensionItemType;
 import org.hisp.dhis.common.DimensionalItemObject;
 import org.hisp.dhis.common.DimensionalObject;
@@ -50,10 +51,15 @@ import org.hisp.dhis.dataelement.DataElementCategoryOptionCombo;
 import org.hisp.dhis.dataelement.DataElementCategoryService;
 import org.hisp.dhis.dataelement.DataElementOperand;
 import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAudit;
 import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.dxf2.datavalueset.DataValueSetStore;
 import org.hisp.dhis.expression.Expression;
 import org.hisp.dhis.expression.ExpressionService;
 import org.hisp.dhis.expression.MissingValueStrategy;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
@@ -66,7 +72,11 @@ import org.hisp.dhis.system.util.MathUtils;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -76,6 +86,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
@@ -128,6 +143,26 @@ public class DefaultPredictionService
         this.currentUserService = currentUserService;
     }
 
+    @Autowired
+    private DataValueSetStore dataValueSetStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatementBuilder statementBuilder;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    public void setConfig( DhisConfigurationProvider config )
+    {
+        this.config = config;
+    }
+
     // -------------------------------------------------------------------------
     // Prediction business logic
     // -------------------------------------------------------------------------
@@ -168,7 +203,7 @@ public class DefaultPredictionService
         Set<String> nonAggregates = new HashSet<>();
         expressionService.getAggregatesAndNonAggregatesInExpression( generator.getExpression(), aggregates, nonAggregates );
         Map<String, Double> constantMap = constantService.getConstantMap();
-        List<Period> outputPeriods = getPeriodsBetweenDates( predictor.getPeriodType(), startDate, endDate );
+        List<Period> outputPeriods = getStoredPeriods( getPeriodsBetweenDates( predictor.getPeriodType(), startDate, endDate ) );
         Set<Period> existingOutputPeriods = getExistingPeriods( outputPeriods );
         ListMap<Period, Period> samplePeriodsMap = getSamplePeriodsMap( outputPeriods, predictor );
         Set<Period> allSamplePeriods = samplePeriodsMap.uniqueValues();
@@ -194,87 +229,130 @@ public class DefaultPredictionService
             currentUsername = currentUser.getUsername();
         }
 
-        for ( OrganisationUnitLevel orgUnitLevel : predictor.getOrganisationUnitLevels() )
-        {
-            List<OrganisationUnit> orgUnitsAtLevel = organisationUnitService.getOrganisationUnitsAtOrgUnitLevels(
-                Lists.newArrayList( orgUnitLevel ), currentUserOrgUnits );
+        // ---------------------------------------------------------------------
+        // Predictions are evaluated for blocks of org units, in parallel when
+        // more than one worker is configured, and written in bulk
+        // ---------------------------------------------------------------------
 
-            if ( orgUnitsAtLevel.size() == 0 )
-            {
-                continue;
-            }
+        final int workers = getPositiveIntProperty( ConfigurationKey.PREDICTOR_WORKERS );
+        final int flushSize = getPositiveIntProperty( ConfigurationKey.PREDICTOR_FLUSH_SIZE );
+        final boolean integerOutput = outputDataElement.getValueType().isInteger();
 
-            List<List<OrganisationUnit>> orgUnitLists = Lists.partition(orgUnitsAtLevel, 500);
+        ExecutorService executor = workers > 1 ? Executors.newFixedThreadPool( workers ) : null;
+        Map<String, DataElementCategoryOptionCombo> attributeOptionComboMap = new HashMap<>();
+        List<DataValue> predictedValues = new ArrayList<>( flushSize );
 
-            for ( List<OrganisationUnit> orgUnits : orgUnitLists )
+        try
+        {
+            for ( OrganisationUnitLevel orgUnitLevel : predictor.getOrganisationUnitLevels() )
             {
-                Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> aggregateDataMap4 =
-                    aggregateDimensionItems.isEmpty() ? emptyMap4 :
-                        getDataValues( aggregateDimensionItems, allSamplePeriods, orgUnits );
+                List<OrganisationUnit> orgUnitsAtLevel = organisationUnitService.getOrganisationUnitsAtOrgUnitLevels(
+                    Lists.newArrayList( orgUnitLevel ), currentUserOrgUnits );
 
-                Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> nonAggregateDataMap4 =
-                    nonAggregateDimensionItems.isEmpty() ? emptyMap4 :
-                        getDataValues( nonAggregateDimensionItems, existingOutputPeriods, orgUnits );
-
-                for ( OrganisationUnit orgUnit : orgUnits )
+                if ( orgUnitsAtLevel.size() == 0 )
                 {
-                    MapMapMap<Period, String, DimensionalItemObject, Double> aggregateDataMap = aggregateDataMap4.get( orgUnit );
+                    continue;
+                }
 
-                    MapMapMap<Period, String, DimensionalItemObject, Double> nonAggregateDataMap =
-                        firstNonNull( nonAggregateDataMap4.get( orgUnit ), emptyMapMapMap );
+                List<List<OrganisationUnit>> orgUnitLists = Lists.partition(orgUnitsAtLevel, 500);
 
-                    applySkipTest( aggregateDataMap, skipTest, constantMap );
+                for ( List<OrganisationUnit> orgUnits : orgUnitLists )
+                {
+                    Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> aggregateDataMap4 =
+                        aggregateDimensionItems.isEmpty() ? emptyMap4 :
+                            getDataValues( aggregateDimensionItems, allSamplePeriods, orgUnits );
 
-                    for ( Period period : outputPeriods )
+                    Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> nonAggregateDataMap4 =
+                        nonAggregateDimensionItems.isEmpty() ? emptyMap4 :
+                            getDataValues( nonAggregateDimensionItems, existingOutputPeriods, orgUnits );
+
+                    Function<OrganisationUnit, List<Prediction>> orgUnitPredictor = orgUnit ->
                     {
-                        ListMapMap<String, String, Double> aggregateSampleMap = getAggregateSamples( aggregateDataMap,
-                            aggregates, samplePeriodsMap.get( period ), constantMap );
+                        List<Prediction> predictions = new ArrayList<>();
+
+                        MapMapMap<Period, String, DimensionalItemObject, Double> aggregateDataMap = aggregateDataMap4.get( orgUnit );
 
-                        MapMap<String, DimensionalItemObject, Double> nonAggregateSampleMap = firstNonNull(
-                            nonAggregateDataMap.get( period ), new MapMap<>() );
+                        MapMapMap<Period, String, DimensionalItemObject, Double> nonAggregateDataMap =
+                            firstNonNull( nonAggregateDataMap4.get( orgUnit ), emptyMapMapMap );
 
-                        Set<String> attributeOptionCombos = usingAttributeOptions ?
-                            Sets.union( aggregateSampleMap.keySet(), nonAggregateSampleMap.keySet() ) : defaultOptionComboAsSet;
+                        applySkipTest( aggregateDataMap, skipTest, constantMap );
 
-                        if ( attributeOptionCombos.isEmpty() && generator.getMissingValueStrategy() == MissingValueStrategy.NEVER_SKIP )
+                        for ( Period period : outputPeriods )
                         {
-                            attributeOptionCombos = defaultOptionComboAsSet;
-                        }
+                            ListMapMap<String, String, Double> aggregateSampleMap = getAggregateSamples( aggregateDataMap,
+                                aggregates, samplePeriodsMap.get( period ), constantMap );
 
-                        ListMap<String, Double> aggregateSampleMapNonAoc = aggregateSampleMap.get( NON_AOC );
+                            MapMap<String, DimensionalItemObject, Double> nonAggregateSampleMap = firstNonNull(
+                                nonAggregateDataMap.get( period ), new MapMap<>() );
 
-                        Map<DimensionalItemObject, Double> nonAggregateSampleMapNonAoc = nonAggregateSampleMap.get( NON_AOC );
+                            Set<String> attributeOptionCombos = usingAttributeOptions ?
+                                Sets.union( aggregateSampleMap.keySet(), nonAggregateSampleMap.keySet() ) : defaultOptionComboAsSet;
 
-                        for ( String aoc : attributeOptionCombos )
-                        {
-                            if ( NON_AOC.compareTo( aoc ) == 0 )
+                            if ( attributeOptionCombos.isEmpty() && generator.getMissingValueStrategy() == MissingValueStrategy.NEVER_SKIP )
                             {
-                                continue;
+                                attributeOptionCombos = defaultOptionComboAsSet;
                             }
 
-                            ListMap<String, Double> aggregateValueMap = ListMap.union( aggregateSampleMap.get( aoc ), aggregateSampleMapNonAoc );
+                            ListMap<String, Double> aggregateSampleMapNonAoc = aggregateSampleMap.get( NON_AOC );
 
-                            Map<DimensionalItemObject, Double> nonAggregateValueMap = combine( nonAggregateSampleMap.get( aoc ), nonAggregateSampleMapNonAoc );
+                            Map<DimensionalItemObject, Double> nonAggregateSampleMapNonAoc = nonAggregateSampleMap.get( NON_AOC );
 
-                            Double value = expressionService.getExpressionValue( generator, nonAggregateValueMap,
-                                constantMap, null, period.getDaysInPeriod(), aggregateValueMap );
-
-                            if ( value != null && !value.isNaN() && !value.isInfinite() )
+                            for ( String aoc : attributeOptionCombos )
                             {
-                                String valueString = outputDataElement.getValueType().isInteger() ?
-                                    Long.toString( Math.round( value ) ) :
-                                    Double.toString( MathUtils.roundFraction( value, 4 ) );
+                                if ( NON_AOC.compareTo( aoc ) == 0 )
+                                {
+                                    continue;
+                                }
+
+                                ListMap<String, Double> aggregateValueMap = ListMap.union( aggregateSampleMap.get( aoc ), aggregateSampleMapNonAoc );
 
-                                writeDataValue( outputDataElement, period, orgUnit, outputOptionCombo,
-                                    categoryService.getDataElementCategoryOptionCombo( aoc ),
-                                    valueString, currentUsername );
+                                Map<DimensionalItemObject, Double> nonAggregateValueMap = combine( nonAggregateSampleMap.get( aoc ), nonAggregateSampleMapNonAoc );
 
-                                predictionCount++;
+                                Double value = expressionService.getExpressionValue( generator, nonAggregateValueMap,
+                                    constantMap, null, period.getDaysInPeriod(), aggregateValueMap );
+
+                                if ( value != null && !value.isNaN() && !value.isInfinite() )
+                                {
+                                    String valueString = integerOutput ?
+                                        Long.toString( Math.round( value ) ) :
+                                        Double.toString( MathUtils.roundFraction( value, 4 ) );
+
+                                    predictions.add( new Prediction( orgUnit, period, aoc, valueString ) );
+                                }
                             }
                         }
+
+                        return predictions;
+                    };
+
+                    for ( Prediction prediction : getPredictions( orgUnits, orgUnitPredictor, executor, workers ) )
+                    {
+                        DataElementCategoryOptionCombo attributeOptionCombo = attributeOptionComboMap.computeIfAbsent(
+                            prediction.attributeOptionCombo, categoryService::getDataElementCategoryOptionCombo );
+
+                        predictedValues.add( new DataValue( outputDataElement, prediction.period, prediction.orgUnit,
+                            outputOptionCombo, attributeOptionCombo, prediction.value, currentUsername, new Date(), null ) );
+
+                        predictionCount++;
+
+                        if ( predictedValues.size() >= flushSize )
+                        {
+                            writeDataValues( predictedValues );
+
+                            predictedValues.clear();
+                        }
                     }
                 }
             }
+
+            writeDataValues( predictedValues );
+        }
+        finally
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow();
+            }
         }
 
         log.info("Generated " + predictionCount + " predictions for " + predictor.getName()
@@ -702,36 +780,236 @@ public class DefaultPredictionService
     }
 
     /**
-     * Writes (adds or updates) a predicted data value to the database.
+     * Evaluates the predictions for the given org units. When an executor is
+     * given, the org units are split into one block per worker and the blocks
+     * are evaluated in parallel. The predictions are returned in the order of
+     * the org units.
+     *
+     * @param orgUnits the org units.
+     * @param orgUnitPredictor function which evaluates the predictions for an
+     *        org unit.
+     * @param executor the executor service, or null to evaluate on the
+     *        current thread.
+     * @param workers the number of workers of the executor service.
+     * @return a list of predictions.
+     */
+    private List<Prediction> getPredictions( List<OrganisationUnit> orgUnits,
+        Function<OrganisationUnit, List<Prediction>> orgUnitPredictor, ExecutorService executor, int workers )
+    {
+        if ( executor == null )
+        {
+            return evaluate( orgUnits, orgUnitPredictor );
+        }
+
+        int blockSize = Math.max( 1, ( orgUnits.size() + workers - 1 ) / workers );
+
+        List<Future<List<Prediction>>> futures = new ArrayList<>();
+
+        for ( List<OrganisationUnit> block : Lists.partition( orgUnits, blockSize ) )
+        {
+            futures.add( executor.submit( () -> evaluate( block, orgUnitPredictor ) ) );
+        }
+
+        List<Prediction> predictions = new ArrayList<>();
+
+        try
+        {
+            for ( Future<List<Prediction>> future : futures )
+            {
+                predictions.addAll( future.get() );
+            }
+        }
+        catch ( ExecutionException ex )
+        {
+            throw new RuntimeException( "Failed to evaluate predictions", ex.getCause() );
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException( "Interrupted while evaluating predictions", ex );
+        }
+
+        return predictions;
+    }
+
+    private List<Prediction> evaluate( List<OrganisationUnit> orgUnits, Function<OrganisationUnit, List<Prediction>> orgUnitPredictor )
+    {
+        return orgUnits.stream()
+            .map( orgUnitPredictor )
+            .flatMap( List::stream )
+            .collect( Collectors.toList() );
+    }
+
+    /**
+     * Returns the given periods as stored in the database. Periods which are
+     * not stored are added in a separate transaction, so that they are in the
+     * database before predicted values are written through JDBC.
+     *
+     * @param periods the periods.
+     * @return the stored periods, with ids.
+     */
+    private List<Period> getStoredPeriods( List<Period> periods )
+    {
+        List<Period> storedPeriods = new ArrayList<>();
+        List<Period> newPeriods = new ArrayList<>();
+
+        for ( Period period : periods )
+        {
+            Period storedPeriod = period.getId() != 0 ? period :
+                periodService.getPeriod( period.getStartDate(), period.getEndDate(), period.getPeriodType() );
+
+            if ( storedPeriod == null )
+            {
+                newPeriods.add( period );
+
+                storedPeriod = period;
+            }
+
+            storedPeriods.add( storedPeriod );
+        }
+
+        if ( !newPeriods.isEmpty() )
+        {
+            TransactionTemplate transactionTemplate = new TransactionTemplate( transactionManager );
+            transactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+
+            transactionTemplate.execute( status -> {
+                newPeriods.forEach( periodService::addPeriod );
+                return null;
+            } );
+        }
+
+        return storedPeriods;
+    }
+
+    /**
+     * Returns the value of the given configuration property, or the default
+     * value if the property is not a positive integer.
+     *
+     * @param key the configuration key.
+     */
+    private int getPositiveIntProperty( ConfigurationKey key )
+    {
+        String value = config.getProperty( key );
+
+        try
+        {
+            int intValue = Integer.parseInt( value );
+
+            if ( intValue > 0 )
+            {
+                return intValue;
+            }
+        }
+        catch ( NumberFormatException ex )
+        {
+            // Fall through to the default value
+        }
+
+        log.warn( "Invalid value of " + key.getKey() + ": '" + value + "', using default: " + key.getDefaultValue() );
+
+        return Integer.parseInt( key.getDefaultValue() );
+    }
+
+    /**
+     * Writes (adds or updates) predicted data values to the database. The
+     * existing values are fetched in bulk, and values are added, updated and
+     * audited through batch statements. The statements run in the transaction
+     * of the prediction, so that a failed prediction writes no values.
+     * Existing values which are equal to the predicted value are not written.
+     * Updates of existing and soft deleted values keep the created date,
+     * comment and follow-up flag of the existing value.
      *
-     * @param dataElement the data element.
-     * @param period the period.
-     * @param orgUnit the organisation unit.
-     * @param categoryOptionCombo the category option combo.
-     * @param attributeOptionCombo the attribute option combo.
-     * @param value the value.
-     * @param storedBy the user that will store this data value.
+     * @param dataValues the predicted data values.
      */
-    private void writeDataValue( DataElement dataElement, Period period,
-        OrganisationUnit orgUnit, DataElementCategoryOptionCombo categoryOptionCombo,
-        DataElementCategoryOptionCombo attributeOptionCombo, String value, String storedBy )
+    private void writeDataValues( List<DataValue> dataValues )
     {
-        DataValue existingValue = dataValueService.getDataValue( dataElement, period,
-            orgUnit, categoryOptionCombo, attributeOptionCombo );
+        if ( dataValues.isEmpty() )
+        {
+            return;
+        }
+
+        Map<DataValue, DataValue> existingValueMap = new HashMap<>();
+
+        dataValueSetStore.getExistingDataValues( dataValues ).forEach( dv -> existingValueMap.put( dv, dv ) );
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> audits = new ArrayList<>();
+
+        for ( DataValue dataValue : dataValues )
+        {
+            DataValue existingValue = existingValueMap.get( dataValue );
+
+            if ( existingValue == null )
+            {
+                inserts.add( new Object[] { dataValue.getDataElement().getId(), dataValue.getPeriod().getId(),
+                    dataValue.getSource().getId(), dataValue.getCategoryOptionCombo().getId(),
+                    dataValue.getAttributeOptionCombo().getId(), dataValue.getValue(), dataValue.getStoredBy(),
+                    dataValue.getCreated(), dataValue.getLastUpdated(), dataValue.getComment(), dataValue.isFollowup() } );
+            }
+            else if ( existingValue.isDeleted() || !dataValue.getValue().equals( existingValue.getValue() ) )
+            {
+                dataValue.setCreated( existingValue.getCreated() );
+                dataValue.setComment( existingValue.getComment() );
+                dataValue.setFollowup( existingValue.isFollowup() );
+
+                updates.add( new Object[] { dataValue.getValue(), dataValue.getStoredBy(), dataValue.getCreated(),
+                    dataValue.getLastUpdated(), dataValue.getComment(), dataValue.isFollowup(),
+                    dataValue.getDataElement().getId(), dataValue.getPeriod().getId(), dataValue.getSource().getId(),
+                    dataValue.getCategoryOptionCombo().getId(), dataValue.getAttributeOptionCombo().getId() } );
 
-        if ( existingValue != null )
+                DataValueAudit audit = new DataValueAudit( dataValue, existingValue.getValue(), dataValue.getStoredBy(), AuditType.UPDATE );
+
+                audits.add( new Object[] { dataValue.getDataElement().getId(), dataValue.getPeriod().getId(),
+                    dataValue.getSource().getId(), dataValue.getCategoryOptionCombo().getId(),
+                    dataValue.getAttributeOptionCombo().getId(), audit.getValue(), audit.getModifiedBy(),
+                    audit.getCreated(), audit.getAuditType().toString() } );
+            }
+        }
+
+        if ( !inserts.isEmpty() )
         {
-            existingValue.setValue( value );
-            existingValue.setStoredBy( storedBy );
+            jdbcTemplate.batchUpdate( "insert into datavalue (dataelementid, periodid, sourceid, categoryoptioncomboid, " +
+                "attributeoptioncomboid, value, storedby, created, lastupdated, comment, followup, deleted) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false)", inserts );
+        }
 
-            dataValueService.updateDataValue( existingValue );
+        if ( !updates.isEmpty() )
+        {
+            jdbcTemplate.batchUpdate( "update datavalue set value = ?, storedby = ?, created = ?, lastupdated = ?, " +
+                "comment = ?, followup = ?, deleted = false " +
+                "where dataelementid = ? and periodid = ? and sourceid = ? and categoryoptioncomboid = ? and attributeoptioncomboid = ?", updates );
         }
-        else
+
+        if ( !audits.isEmpty() )
         {
-            DataValue dv = new DataValue( dataElement, period, orgUnit,
-                categoryOptionCombo, attributeOptionCombo, value, storedBy, null, null );
+            jdbcTemplate.batchUpdate( "insert into datavalueaudit (datavalueauditid, dataelementid, periodid, organisationunitid, " +
+                "categoryoptioncomboid, attributeoptioncomboid, value, modifiedby, created, audittype) " +
+                "values (" + statementBuilder.getAutoIncrementValue() + ", ?, ?, ?, ?, ?, ?, ?, ?, ?)", audits );
+        }
+    }
 
-            dataValueService.addDataValue( dv );
+    /**
+     * Predicted value for an org unit, period and attribute option combo.
+     */
+    private static class Prediction
+    {
+        private final OrganisationUnit orgUnit;
+
+        private final Period period;
+
+        private final String attributeOptionCombo;
+
+        private final String value;
+
+        Prediction( OrganisationUnit orgUnit, Period period, String attributeOptionCombo, String value )
+        {
+            this.orgUnit = orgUnit;
+            this.period = period;
+            this.attributeOptionCombo = attributeOptionCombo;
+            this.value = value;
         }
     }
 }
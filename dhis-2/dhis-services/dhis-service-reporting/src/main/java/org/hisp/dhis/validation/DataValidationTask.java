@@ -99,6 +99,9 @@ public class DataValidationTask
     private int orgUnitId;                  // Current organisation unit id.
     private ValidationRuleExtended ruleX;   // Current rule extended.
 
+    // Data values for all periods of the current period type, by period start date:
+    private Map<Date, MapMapMap<Integer, String, DimensionalItemObject, Double>> periodTypeDataMaps;
+
     // Data for current period and all rules being evaluated:
     private MapMapMap<Integer, String, DimensionalItemObject, Double> dataMap;
     private MapMapMap<Integer, String, DimensionalItemObject, Double> eventMap;
@@ -133,7 +136,9 @@ public class DataValidationTask
 
     /**
      * Get the data needed for this task, then evaluate each combination
-     * of organisation unit / period / validation rule.
+     * of organisation unit / period / validation rule. The data values for
+     * all organisation units and periods of a period type are fetched in
+     * one query before the periods are evaluated.
      */
     private void runInternal()
     {
@@ -148,6 +153,8 @@ public class DataValidationTask
         {
             periodTypeX = ptx;
 
+            getPeriodTypeDataMaps();
+
             for ( Period p : periodTypeX.getPeriods() )
             {
                 period = p;
@@ -391,17 +398,35 @@ public class DataValidationTask
     }
 
     /**
-     * Gets data values for this task.
+     * Gets data values for this task for all periods of the current period
+     * type.
      */
-    private void getDataMap()
+    private void getPeriodTypeDataMaps()
     {
-        dataMap = dataValueService.getDataValueMapByAttributeCombo(
-            periodTypeX.getDataItems(), period.getStartDate(), orgUnits,
+        Set<Date> dates = periodTypeX.getPeriods().stream().map( Period::getStartDate ).collect( Collectors.toSet() );
+
+        periodTypeDataMaps = dataValueService.getDataValueMapsByAttributeCombo(
+            periodTypeX.getDataItems(), dates, orgUnits,
             periodTypeX.getAllowedPeriodTypes(),
             context.getAttributeCombo(), context.getCogDimensionConstraints(),
             context.getCoDimensionConstraints() );
     }
 
+    /**
+     * Gets data values for this task for the current period. The map is
+     * removed from the period type data maps as it is modified while
+     * evaluating the period.
+     */
+    private void getDataMap()
+    {
+        dataMap = periodTypeDataMaps.remove( period.getStartDate() );
+
+        if ( dataMap == null )
+        {
+            dataMap = new MapMapMap<>();
+        }
+    }
+
     /**
      * Gets aggregated event data for the given parameters.
      *
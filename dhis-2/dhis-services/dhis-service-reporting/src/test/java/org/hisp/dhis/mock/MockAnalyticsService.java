@@ -42,6 +42,7 @@ import org.hisp.dhis.common.DimensionalObject;
 import org.hisp.dhis.common.Grid;
 import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
 import org.hisp.dhis.period.Period;
+import org.hisp.dhis.system.grid.GridWriter;
 
 /**
  * Configurable mock implementation of AnalyticsService for testing purposes.
@@ -102,6 +103,12 @@ public class MockAnalyticsService
         throw new NotImplementedException( "" );
     }
 
+    @Override
+    public void writeRawDataValues( DataQueryParams params, GridWriter writer )
+    {
+        throw new NotImplementedException( "" );
+    }
+
     @Override
     public DataValueSet getAggregatedDataValueSet( DataQueryParams params )
     {
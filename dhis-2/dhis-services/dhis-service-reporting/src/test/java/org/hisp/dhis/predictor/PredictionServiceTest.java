@@ -30,7 +30,9 @@ package org.hisp.dhis.predictor;
 
 import org.hisp.dhis.DhisTest;
 import org.hisp.dhis.IntegrationTest;
+import com.google.common.collect.Lists;
 import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.common.AuditType;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementCategory;
@@ -42,10 +44,13 @@ import org.hisp.dhis.dataelement.DataElementService;
 import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetService;
 import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataValueAuditService;
 import org.hisp.dhis.datavalue.DataValueService;
 import org.hisp.dhis.expression.Expression;
 import org.hisp.dhis.expression.ExpressionService;
 import org.hisp.dhis.expression.MissingValueStrategy;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.mock.MockCurrentUserService;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitLevel;
@@ -65,6 +70,9 @@ import java.util.Set;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.hisp.dhis.expression.ExpressionService.SYMBOL_DAYS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Lars Helge Overland
@@ -95,9 +103,15 @@ public class PredictionServiceTest
     @Autowired
     private DataSetService dataSetService;
 
+    @Autowired
+    private DataValueAuditService dataValueAuditService;
+
     @Autowired
     private CurrentUserService currentUserService;
 
+    @Autowired
+    private DhisConfigurationProvider config;
+
     private OrganisationUnitLevel orgUnitLevel1;
 
     private DataElement dataElementA;
@@ -254,6 +268,7 @@ public class PredictionServiceTest
     public void tearDownTest()
     {
         setDependency( predictionService, "currentUserService", currentUserService, CurrentUserService.class );
+        setDependency( predictionService, "config", config, DhisConfigurationProvider.class );
     }
 
     // -------------------------------------------------------------------------
@@ -310,6 +325,36 @@ public class PredictionServiceTest
         return null;
     }
 
+    private void setPredictorConfig( String workers, String flushSize )
+    {
+        DhisConfigurationProvider mockConfig = mock( DhisConfigurationProvider.class );
+        when( mockConfig.getProperty( ConfigurationKey.PREDICTOR_WORKERS ) ).thenReturn( workers );
+        when( mockConfig.getProperty( ConfigurationKey.PREDICTOR_FLUSH_SIZE ) ).thenReturn( flushSize );
+
+        setDependency( predictionService, "config", mockConfig, DhisConfigurationProvider.class );
+    }
+
+    private int countUpdateAudits( DataElement dataElement, OrganisationUnit source, Period period )
+    {
+        return dataValueAuditService.countDataValueAudits( Lists.newArrayList( dataElement ), Lists.newArrayList( period ),
+            Lists.newArrayList( source ), defaultCombo, defaultCombo, AuditType.UPDATE );
+    }
+
+    private void assertPredictSequential( Predictor p )
+    {
+        assertEquals( 8, predictionService.predict( p, monthStart( 2001, 7 ), monthStart( 2001, 12 ) ) );
+
+        assertEquals( "5.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 8 ) ) );
+        assertEquals( "5.5", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 9 ) ) );
+        assertEquals( "9.25", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 10 ) ) );
+        assertEquals( "9.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 11 ) ) );
+
+        assertEquals( "11.0", getDataValue( dataElementX, defaultCombo, sourceB, makeMonth( 2001, 8 ) ) );
+        assertEquals( "12.0", getDataValue( dataElementX, defaultCombo, sourceB, makeMonth( 2001, 9 ) ) );
+        assertEquals( "15.75", getDataValue( dataElementX, defaultCombo, sourceB, makeMonth( 2001, 10 ) ) );
+        assertEquals( "15.25", getDataValue( dataElementX, defaultCombo, sourceB, makeMonth( 2001, 11 ) ) );
+    }
+
     private void setupTestData()
     {
         useDataValue( dataElementA, makeMonth( 2001, 6 ), sourceA, 5 );
@@ -478,6 +523,112 @@ public class PredictionServiceTest
         assertEquals( 8, predictionService.predict( p, monthStart( 2001, 7 ), monthStart( 2001, 12 ) ) );
     }
 
+    @Test
+    @Category( IntegrationTest.class )
+    public void testPredictMultipleFlushes()
+    {
+        setupTestData();
+        setPredictorConfig( "1", "3" );
+
+        Predictor p = createPredictor( dataElementX, defaultCombo, "PredictMultipleFlushes",
+            expressionA, null, periodTypeMonthly, orgUnitLevel1, 3, 1, 0 );
+
+        assertPredictSequential( p );
+    }
+
+    @Test
+    @Category( IntegrationTest.class )
+    public void testPredictMultipleWorkers()
+    {
+        setupTestData();
+        setPredictorConfig( "2", "10000" );
+
+        Predictor p = createPredictor( dataElementX, defaultCombo, "PredictMultipleWorkers",
+            expressionA, null, periodTypeMonthly, orgUnitLevel1, 3, 1, 0 );
+
+        assertPredictSequential( p );
+    }
+
+    @Test
+    @Category( IntegrationTest.class )
+    public void testPredictInvalidConfig()
+    {
+        setupTestData();
+        setPredictorConfig( "many", "-1" );
+
+        Predictor p = createPredictor( dataElementX, defaultCombo, "PredictInvalidConfig",
+            expressionA, null, periodTypeMonthly, orgUnitLevel1, 3, 1, 0 );
+
+        assertPredictSequential( p );
+    }
+
+    @Test
+    @Category( IntegrationTest.class )
+    public void testPredictUnchangedValues()
+    {
+        setupTestData();
+
+        Predictor p = createPredictor( dataElementX, defaultCombo, "PredictUnchangedValues",
+            expressionA, null, periodTypeMonthly, orgUnitLevel1, 3, 1, 0 );
+
+        assertPredictSequential( p );
+        assertPredictSequential( p );
+
+        assertEquals( 0, countUpdateAudits( dataElementX, sourceA, makeMonth( 2001, 8 ) ) );
+        assertEquals( 0, countUpdateAudits( dataElementX, sourceB, makeMonth( 2001, 8 ) ) );
+    }
+
+    @Test
+    @Category( IntegrationTest.class )
+    public void testPredictChangedValue()
+    {
+        useDataValue( dataElementB, makeMonth( 2001, 6 ), sourceA, 5 );
+
+        Predictor p = createPredictor( dataElementX, defaultCombo, "PredictChangedValue", expressionB, null,
+            periodTypeMonthly, orgUnitLevel1, 1, 0, 0 );
+
+        assertEquals( 1, predictionService.predict( p, monthStart( 2001, 7 ), monthStart( 2001, 8 ) ) );
+
+        DataValue dataValue = dataValueService.getDataValue( dataElementB, makeMonth( 2001, 6 ), sourceA, defaultCombo, defaultCombo );
+        dataValue.setValue( "7" );
+        dataValueService.updateDataValue( dataValue );
+
+        assertEquals( 1, predictionService.predict( p, monthStart( 2001, 7 ), monthStart( 2001, 8 ) ) );
+
+        assertEquals( "7.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 7 ) ) );
+        assertEquals( 1, countUpdateAudits( dataElementX, sourceA, makeMonth( 2001, 7 ) ) );
+    }
+
+    @Test
+    @Category( IntegrationTest.class )
+    public void testPredictDeletedValue()
+    {
+        useDataValue( dataElementB, makeMonth( 2001, 6 ), sourceA, 5 );
+
+        Predictor p = createPredictor( dataElementX, defaultCombo, "PredictDeletedValue", expressionB, null,
+            periodTypeMonthly, orgUnitLevel1, 1, 0, 0 );
+
+        assertEquals( 1, predictionService.predict( p, monthStart( 2001, 7 ), monthStart( 2001, 8 ) ) );
+
+        DataValue predicted = dataValueService.getDataValue( dataElementX, makeMonth( 2001, 7 ), sourceA, defaultCombo, defaultCombo );
+        Date created = predicted.getCreated();
+        predicted.setComment( "Comment" );
+        dataValueService.updateDataValue( predicted );
+        dataValueService.deleteDataValue( predicted );
+
+        assertNull( getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 7 ) ) );
+        assertEquals( 1, countUpdateAudits( dataElementX, sourceA, makeMonth( 2001, 7 ) ) );
+
+        assertEquals( 1, predictionService.predict( p, monthStart( 2001, 7 ), monthStart( 2001, 8 ) ) );
+
+        DataValue restored = dataValueService.getDataValue( dataElementX, makeMonth( 2001, 7 ), sourceA, defaultCombo, defaultCombo );
+
+        assertEquals( "5.0", restored.getValue() );
+        assertEquals( "Comment", restored.getComment() );
+        assertEquals( created.getTime(), restored.getCreated().getTime() );
+        assertEquals( 2, countUpdateAudits( dataElementX, sourceA, makeMonth( 2001, 7 ) ) );
+    }
+
     @Test
     @Category( IntegrationTest.class )
     public void testPredictSeasonal()
@@ -1076,4 +1076,69 @@ public class ValidationServiceTest
 
         assertResultsEmpty( results );
     }
+
+    @Test
+    public void testValidateMultiplePeriodsEqualsSinglePeriods()
+    {
+        DataElementCategoryOption optionA = new DataElementCategoryOption( "CategoryOptionA" );
+        DataElementCategoryOption optionB = new DataElementCategoryOption( "CategoryOptionB" );
+
+        categoryService.addDataElementCategoryOption( optionA );
+        categoryService.addDataElementCategoryOption( optionB );
+
+        DataElementCategory categoryA = createDataElementCategory( 'A', optionA, optionB );
+        categoryA.setDataDimension( true );
+
+        categoryService.addDataElementCategory( categoryA );
+
+        DataElementCategoryCombo categoryComboA = createCategoryCombo( 'A', categoryA );
+
+        categoryService.addDataElementCategoryCombo( categoryComboA );
+
+        DataElementCategoryOptionCombo optionComboA = createCategoryOptionCombo( 'A', categoryComboA, optionA );
+        DataElementCategoryOptionCombo optionComboB = createCategoryOptionCombo( 'B', categoryComboA, optionB );
+
+        categoryService.addDataElementCategoryOptionCombo( optionComboA );
+        categoryService.addDataElementCategoryOptionCombo( optionComboB );
+
+        useDataValue( dataElementA, periodA, sourceB, "4", optionCombo, optionComboA );
+        useDataValue( dataElementB, periodA, sourceB, "3", optionCombo, optionComboA );
+        useDataValue( dataElementA, periodA, sourceB, "2", optionCombo, optionComboB );
+        useDataValue( dataElementB, periodA, sourceB, "1", optionCombo, optionComboB );
+
+        useDataValue( dataElementA, periodB, sourceB, "1", optionCombo, optionComboA );
+        useDataValue( dataElementB, periodB, sourceB, "2", optionCombo, optionComboA );
+
+        useDataValue( dataElementA, periodA, sourceC, "5", optionCombo, optionComboA );
+        useDataValue( dataElementB, periodA, sourceC, "1", optionCombo, optionComboA );
+        useDataValue( dataElementB, periodB, sourceC, "3", optionCombo, optionComboA );
+
+        DataValue deletedValue = createDataValue( dataElementA, periodB, sourceC, "9", optionCombo, optionComboA );
+        dataValueService.addDataValue( deletedValue );
+        dataValueService.deleteDataValue( deletedValue );
+
+        validationRuleService.saveValidationRule( validationRuleD ); // deA + deB < deB * 2
+        validationRuleService.saveValidationRule( validationRuleX ); // deA + deB = deB * 2
+
+        List<ValidationRule> validationRules = Lists.newArrayList( validationRuleD, validationRuleX );
+
+        // Data values for all periods are fetched in one query per period type
+
+        Collection<ValidationResult> results = validationService.validationAnalysis( validationService
+            .newParamsBuilder( validationRules, null, Lists.newArrayList( periodA, periodB ) )
+            .withIncludeOrgUnitDescendants( true ).build() );
+
+        Collection<ValidationResult> reference = new HashSet<>();
+
+        for ( Period period : Lists.newArrayList( periodA, periodB ) )
+        {
+            reference.addAll( validationService.validationAnalysis( validationService
+                .newParamsBuilder( validationRules, null, Lists.newArrayList( period ) )
+                .withIncludeOrgUnitDescendants( true ).build() ) );
+        }
+
+        assertFalse( reference.isEmpty() );
+
+        assertResultsEquals( reference, results );
+    }
 }
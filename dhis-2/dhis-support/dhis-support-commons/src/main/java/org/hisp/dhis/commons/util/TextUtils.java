@@ -55,6 +55,7 @@ public class TextUtils
     public static final String SEMICOLON = ";";
     
     private static final Pattern LINK_PATTERN = Pattern.compile( "((http://|https://|www\\.).+?)($|\\n|\\r|\\r\\n| )" );
+    private static final Pattern WORD_PATTERN = Pattern.compile( "[\\p{L}\\p{N}_]+" );
     private static final String DELIMITER = ", ";
     
     /**
@@ -138,6 +139,44 @@ public class TextUtils
         return new ArrayList<>( Arrays.asList( string.split( "\\s" ) ) );
     }
     
+    /**
+     * Returns the distinct lower case words of the given string, where a word
+     * is a sequence of letters, digits and underscores.
+     * 
+     * @param string the string.
+     * @return the set of words.
+     */
+    public static Set<String> getWords( String string )
+    {
+        Set<String> words = new HashSet<>();
+        
+        if ( string == null )
+        {
+            return words;
+        }
+        
+        Matcher matcher = WORD_PATTERN.matcher( StringUtils.lowerCase( string ) );
+        
+        while ( matcher.find() )
+        {
+            words.add( matcher.group() );
+        }
+        
+        return words;
+    }
+    
+    /**
+     * Indicates whether the given string is a single word, meaning a sequence
+     * of letters, digits and underscores.
+     * 
+     * @param string the string.
+     * @return true if the given string is a word.
+     */
+    public static boolean isWord( String string )
+    {
+        return string != null && WORD_PATTERN.matcher( string ).matches();
+    }
+    
     /**
      * Gets the sub string of the given string. If the beginIndex is larger than
      * the length of the string, the empty string is returned. If the beginIndex +
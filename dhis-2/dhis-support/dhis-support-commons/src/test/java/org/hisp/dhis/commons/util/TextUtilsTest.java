@@ -29,12 +29,15 @@ package org.hisp.dhis.commons.util;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.hisp.dhis.commons.util.TextUtils.*;
 
 import java.util.AbstractSequentialList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 
 import org.hisp.dhis.commons.util.TextUtils;
 import org.junit.Test;
@@ -161,4 +164,23 @@ public class TextUtilsTest
         
         assertEquals( "Hi Frank and welcome to Oslo", actual );
     }
+    
+    @Test
+    public void testGetWords()
+    {
+        assertEquals( new HashSet<>( Arrays.asList( "john", "smith" ) ), TextUtils.getWords( "John Smith, john" ) );
+        assertEquals( new HashSet<>( Arrays.asList( "555", "1234" ) ), TextUtils.getWords( "555-1234" ) );
+        assertEquals( new HashSet<>( Arrays.asList( "josé", "ana_maria" ) ), TextUtils.getWords( "José (Ana_Maria)" ) );
+        assertEquals( new HashSet<>(), TextUtils.getWords( null ) );
+    }
+    
+    @Test
+    public void testIsWord()
+    {
+        assertTrue( TextUtils.isWord( "john" ) );
+        assertTrue( TextUtils.isWord( "José" ) );
+        assertFalse( TextUtils.isWord( "555-1234" ) );
+        assertFalse( TextUtils.isWord( "" ) );
+        assertFalse( TextUtils.isWord( null ) );
+    }
 }
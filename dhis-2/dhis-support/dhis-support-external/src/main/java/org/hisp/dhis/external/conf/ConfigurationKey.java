@@ -36,6 +36,7 @@ public enum ConfigurationKey
     SYSTEM_READ_ONLY_MODE( "system.read_only_mode", "off", false ),
     SYSTEM_SESSION_TIMEOUT( "system.session.timeout", "3600", false ),
     SYSTEM_INTERNAL_SERVICE_API( "system.internal_service_api", "off", false ),
+    SYSTEM_STARTUP_PARALLEL( "system.startup.parallel", "off", false ),
     SYSTEM_MONITORING_URL( "system.monitoring.url" ),
     SYSTEM_MONITORING_USERNAME( "system.monitoring.username" ),
     SYSTEM_MONITORING_PASSWORD( "system.monitoring.password" ),
@@ -48,6 +49,8 @@ public enum ConfigurationKey
     CONNECTION_PASSWORD( "connection.password", "", true ),
     CONNECTION_SCHEMA( "connection.schema", "", false ),
     CONNECTION_POOL_MAX_SIZE( "connection.pool.max_size", "", false ),
+    READ_REPLICA_MAX_LAG( "read.replica.max_lag", "300", false ),
+    READ_REPLICA_PROBE_INTERVAL( "read.replica.probe_interval", "30", false ),
     LDAP_URL( "ldap.url", "ldaps://0:1", false ),
     LDAP_MANAGER_DN( "ldap.manager.dn", "", false ),
     LDAP_MANAGER_PASSWORD( "ldap.manager.password", "", true ),
@@ -66,8 +69,22 @@ public enum ConfigurationKey
     CACHE_PROVIDER( "cache.provider", "ehcache", false ),
     CACHE_SERVERS( "cache.servers", "localhost:11211", false ),
     CACHE_TIME( "cache.time", "600", false ),
+    ANALYTICS_CACHE_MAX_SIZE( "analytics.cache.max_size", "5000000", false ),
+    ANALYTICS_CACHE_EXPIRATION( "analytics.cache.expiration", "86400", false ),
+    ANALYTICS_QUERY_FETCH_SIZE( "analytics.query.fetch_size", "10000", false ),
+    ANALYTICS_TABLE_POPULATE_WORKERS( "analytics.table.populate.workers", "0", false ),
+    ANALYTICS_TABLE_INDEX_WORKERS( "analytics.table.index.workers", "0", false ),
+    ANALYTICS_TABLE_ANALYZE_WORKERS( "analytics.table.analyze.workers", "0", false ),
+    ANALYTICS_ROLLUP_LEVELS( "analytics.rollup.levels", "", false ),
+    ANALYTICS_ROLLUP_PERIOD_TYPE( "analytics.rollup.period_type", "Monthly", false ),
+    DATA_IMPORT_WORKERS( "data.import.workers", "1", false ),
+    DATA_SYNC_CHUNK_SIZE( "data.sync.chunk_size", "50000", false ),
+    PREDICTOR_WORKERS( "predictor.workers", "1", false ),
+    PREDICTOR_FLUSH_SIZE( "predictor.flush_size", "10000", false ),
     METADATA_AUDIT_PERSIST( "metadata.audit.persist", "off", false ),
     METADATA_AUDIT_LOG( "metadata.audit.log", "off", false ),
+    AUDIT_ASYNC( "audit.async", "off", false ),
+    AUDIT_ASYNC_BUFFER_SIZE( "audit.async.buffer_size", "100000", false ),
     RABBITMQ_HOST( "rabbitmq.host" ),
     RABBITMQ_ADDRESSES( "rabbitmq.addresses" ),
     RABBITMQ_VIRTUAL_HOST( "rabbitmq.virtual-host", "/", false ),
@@ -33,8 +33,14 @@ import static org.hisp.dhis.external.conf.ConfigurationKey.CONNECTION_PASSWORD;
 import static org.hisp.dhis.external.conf.ConfigurationKey.CONNECTION_POOL_MAX_SIZE;
 import static org.hisp.dhis.external.conf.ConfigurationKey.CONNECTION_URL;
 import static org.hisp.dhis.external.conf.ConfigurationKey.CONNECTION_USERNAME;
+import static org.hisp.dhis.external.conf.ConfigurationKey.READ_REPLICA_MAX_LAG;
+import static org.hisp.dhis.external.conf.ConfigurationKey.READ_REPLICA_PROBE_INTERVAL;
 
 import java.beans.PropertyVetoException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -47,6 +53,7 @@ import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.external.conf.ConfigurationKey;
 import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.util.ObjectUtils;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
@@ -55,7 +62,7 @@ import com.mchange.v2.c3p0.ComboPooledDataSource;
  * @author Lars Helge Overland
  */
 public class DefaultDataSourceManager
-    implements DataSourceManager, InitializingBean
+    implements DataSourceManager, InitializingBean, DisposableBean
 {
     private static final Log log = LogFactory.getLog( DefaultDataSourceManager.class );
     
@@ -68,6 +75,14 @@ public class DefaultDataSourceManager
     private static final int VAL_MAX_IDLE_TIME = 21600;    
     private static final int MAX_READ_REPLICAS = 5;    
     private static final String DEFAULT_POOL_SIZE = "40";    
+    private static final String POSTGRES_DRIVER_CLASS = "org.postgresql.Driver";
+    private static final int POSTGRES_WAL_VERSION_NUM = 100000;
+    private static final String POSTGRES_LAG_QUERY =
+        "select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 " +
+        "else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
+    private static final String POSTGRES_9_LAG_QUERY =
+        "select case when pg_last_xlog_receive_location() = pg_last_xlog_replay_location() then 0 " +
+        "else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
 
     /**
      * State holder for the resolved read only data source.
@@ -86,7 +101,16 @@ public class DefaultDataSourceManager
         List<DataSource> ds = getReadOnlyDataSources();
         
         this.internalReadOnlyInstanceList = ds;        
-        this.internalReadOnlyDataSource = !ds.isEmpty() ? new CircularRoutingDataSource( ds ) : mainDataSource;
+        this.internalReadOnlyDataSource = !ds.isEmpty() ? getRoutingDataSource( ds ) : mainDataSource;
+    }
+
+    @Override
+    public void destroy()
+    {
+        if ( internalReadOnlyDataSource instanceof ReplicaRoutingDataSource )
+        {
+            ((ReplicaRoutingDataSource) internalReadOnlyDataSource).close();
+        }
     }
     
     // -------------------------------------------------------------------------
@@ -126,6 +150,57 @@ public class DefaultDataSourceManager
     // Supportive methods
     // -------------------------------------------------------------------------
     
+    private DataSource getRoutingDataSource( List<DataSource> dataSources )
+    {
+        String driverClass = config.getProperty( CONNECTION_DRIVER_CLASS );
+        String lagQuery = POSTGRES_DRIVER_CLASS.equals( driverClass ) ? getPostgresLagQuery() : null;
+        long maxLag = getLongProperty( READ_REPLICA_MAX_LAG );
+        long probeInterval = getLongProperty( READ_REPLICA_PROBE_INTERVAL );
+
+        log.info( "Read replica max lag: " + maxLag + " seconds, probe interval: " + probeInterval + " seconds" );
+
+        return new ReplicaRoutingDataSource( dataSources, mainDataSource, lagQuery, maxLag, probeInterval );
+    }
+
+    /**
+     * Returns the lag query for the PostgreSQL version of the main database.
+     * Streaming replicas run the same major version as the main database. The
+     * WAL functions were named xlog before version 10.
+     */
+    private String getPostgresLagQuery()
+    {
+        try ( Connection connection = mainDataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery( "select current_setting('server_version_num')" ) )
+        {
+            int versionNum = rs.next() ? Integer.parseInt( rs.getString( 1 ) ) : POSTGRES_WAL_VERSION_NUM;
+
+            return versionNum < POSTGRES_WAL_VERSION_NUM ? POSTGRES_9_LAG_QUERY : POSTGRES_LAG_QUERY;
+        }
+        catch ( SQLException | NumberFormatException ex )
+        {
+            log.warn( "Could not determine PostgreSQL version, assuming version 10 or later: " + ex.getMessage() );
+
+            return POSTGRES_LAG_QUERY;
+        }
+    }
+
+    private long getLongProperty( ConfigurationKey key )
+    {
+        String value = config.getProperty( key );
+
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch ( NumberFormatException ex )
+        {
+            log.warn( "Invalid value of " + key.getKey() + ": '" + value + "', using default: " + key.getDefaultValue() );
+
+            return Long.parseLong( key.getDefaultValue() );
+        }
+    }
+
     private List<DataSource> getReadOnlyDataSources()
     {
         String mainUser = config.getProperty( ConfigurationKey.CONNECTION_USERNAME );
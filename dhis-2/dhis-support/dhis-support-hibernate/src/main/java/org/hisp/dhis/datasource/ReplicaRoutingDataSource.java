@@ -0,0 +1,440 @@
+package org.hisp.dhis.datasource;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * Data source implementation which routes to the least loaded healthy read
+ * replica among the configured target data sources.
+ * <p>
+ * For each replica the number of connections in use and a moving average of
+ * the time connections are held, from being obtained until being closed, is
+ * tracked. The hold time includes any time the caller spends between queries,
+ * so it is a proxy for the load a connection puts on the replica rather than a
+ * measure of query latency. A connection is obtained from the replica with the
+ * lowest expected wait, which is the number of connections in use times the
+ * average hold time. Selection reads atomic counters only and does not acquire
+ * any lock.
+ * <p>
+ * A replica is taken out of rotation for a back-off period when obtaining a
+ * connection fails. A probe runs at a fixed interval which checks that each
+ * replica is reachable and, if a lag query is given, that the replication lag
+ * is within the max lag. Replicas failing the probe are taken out of rotation
+ * until a later probe succeeds. If no replica is available, connections are
+ * obtained from the fallback data source.
+ *
+ * @author agent
+ */
+public class ReplicaRoutingDataSource
+    extends AbstractDataSource
+{
+    private static final Log log = LogFactory.getLog( ReplicaRoutingDataSource.class );
+
+    /**
+     * Milliseconds a replica is out of rotation after a connection failure.
+     */
+    private static final long FAILURE_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * Weight of the most recent hold time sample in the moving average.
+     */
+    private static final double HOLD_TIME_WEIGHT = 0.2;
+
+    private static final int PROBE_TIMEOUT_SECONDS = 5;
+
+    private final Replica[] replicas;
+
+    private final DataSource fallbackDataSource;
+
+    private final String lagQuery;
+
+    private final long maxLagSeconds;
+
+    private final ScheduledExecutorService probeExecutor;
+
+    /**
+     * @param targetDataSources the replica data sources.
+     * @param fallbackDataSource the data source to use if no replica is
+     *        available.
+     * @param lagQuery query returning the replication lag in seconds as the
+     *        single column of a single row, or null to only probe whether
+     *        replicas are reachable.
+     * @param maxLagSeconds the max replication lag in seconds.
+     * @param probeIntervalSeconds the interval between probes in seconds,
+     *        zero to disable probing.
+     */
+    public ReplicaRoutingDataSource( List<DataSource> targetDataSources, DataSource fallbackDataSource,
+        String lagQuery, long maxLagSeconds, long probeIntervalSeconds )
+    {
+        this.replicas = new Replica[targetDataSources.size()];
+
+        for ( int i = 0; i < replicas.length; i++ )
+        {
+            replicas[i] = new Replica( i + 1, targetDataSources.get( i ) );
+        }
+
+        this.fallbackDataSource = fallbackDataSource;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+
+        if ( probeIntervalSeconds > 0 )
+        {
+            this.probeExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+                Thread thread = new Thread( r, "read-replica-probe" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+
+            this.probeExecutor.scheduleWithFixedDelay( this::probe, probeIntervalSeconds, probeIntervalSeconds, TimeUnit.SECONDS );
+        }
+        else
+        {
+            this.probeExecutor = null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // AbstractDataSource implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Connection getConnection()
+        throws SQLException
+    {
+        return getConnection( null, null, false );
+    }
+
+    @Override
+    public Connection getConnection( String username, String password )
+        throws SQLException
+    {
+        return getConnection( username, password, true );
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Stops the replica probe.
+     */
+    public void close()
+    {
+        if ( probeExecutor != null )
+        {
+            probeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of replicas currently in rotation.
+     */
+    public int getAvailableReplicaCount()
+    {
+        long now = System.currentTimeMillis();
+
+        int count = 0;
+
+        for ( Replica replica : replicas )
+        {
+            if ( replica.isAvailable( now ) )
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private Connection getConnection( String username, String password, boolean withCredentials )
+        throws SQLException
+    {
+        Replica replica;
+
+        while ( ( replica = selectReplica() ) != null )
+        {
+            replica.inFlight.incrementAndGet();
+
+            long start = System.nanoTime();
+
+            try
+            {
+                Connection connection = withCredentials ?
+                    replica.dataSource.getConnection( username, password ) : replica.dataSource.getConnection();
+
+                return trackConnection( connection, replica, start );
+            }
+            catch ( SQLException | RuntimeException ex )
+            {
+                replica.inFlight.decrementAndGet();
+                replica.markFailed( "connection failed: " + ex.getMessage() );
+            }
+        }
+
+        log.debug( "No read replica available, using fallback data source" );
+
+        return withCredentials ? fallbackDataSource.getConnection( username, password ) : fallbackDataSource.getConnection();
+    }
+
+    /**
+     * Selects the available replica with the lowest expected wait. The scan
+     * starts at a random replica so that ties are spread over the replicas.
+     */
+    private Replica selectReplica()
+    {
+        long now = System.currentTimeMillis();
+        int offset = ThreadLocalRandom.current().nextInt( replicas.length );
+
+        Replica selected = null;
+        double selectedCost = Double.MAX_VALUE;
+
+        for ( int i = 0; i < replicas.length; i++ )
+        {
+            Replica replica = replicas[( offset + i ) % replicas.length];
+
+            if ( replica.isAvailable( now ) )
+            {
+                double cost = ( replica.inFlight.get() + 1 ) * Math.max( 1d, replica.getAverageHoldTimeMillis() );
+
+                if ( cost < selectedCost )
+                {
+                    selected = replica;
+                    selectedCost = cost;
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Wraps the given connection so that the replica statistics are updated
+     * when the connection is closed.
+     */
+    private Connection trackConnection( Connection connection, Replica replica, long start )
+    {
+        AtomicBoolean closed = new AtomicBoolean();
+
+        InvocationHandler handler = ( proxy, method, args ) -> {
+            if ( "close".equals( method.getName() ) && closed.compareAndSet( false, true ) )
+            {
+                replica.inFlight.decrementAndGet();
+                replica.addHoldTimeSample( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+            }
+
+            return invoke( connection, method, args );
+        };
+
+        return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler );
+    }
+
+    private Object invoke( Connection connection, Method method, Object[] args )
+        throws Throwable
+    {
+        try
+        {
+            return method.invoke( connection, args );
+        }
+        catch ( InvocationTargetException ex )
+        {
+            throw ex.getTargetException();
+        }
+    }
+
+    /**
+     * Checks the health and replication lag of all replicas. A failing lag
+     * query leaves the lag unknown and does not take the replica out of
+     * rotation, as the connection itself was found valid.
+     */
+    void probe()
+    {
+        for ( Replica replica : replicas )
+        {
+            try ( Connection connection = replica.dataSource.getConnection() )
+            {
+                if ( !connection.isValid( PROBE_TIMEOUT_SECONDS ) )
+                {
+                    replica.markFailed( "connection not valid" );
+                    continue;
+                }
+
+                Long lag = getLag( replica, connection );
+
+                if ( lag != null && lag > maxLagSeconds )
+                {
+                    replica.markUnavailable( "replication lag of " + lag + " seconds" );
+                    continue;
+                }
+
+                replica.markAvailable();
+            }
+            catch ( SQLException | RuntimeException ex )
+            {
+                replica.markFailed( "probe failed: " + ex.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Returns the replication lag in seconds of the given replica, or null if
+     * no lag query is given or the lag query failed.
+     */
+    private Long getLag( Replica replica, Connection connection )
+    {
+        if ( lagQuery == null )
+        {
+            return null;
+        }
+
+        try ( Statement statement = connection.createStatement() )
+        {
+            statement.setQueryTimeout( PROBE_TIMEOUT_SECONDS );
+
+            try ( ResultSet rs = statement.executeQuery( lagQuery ) )
+            {
+                return rs.next() ? rs.getLong( 1 ) : 0L;
+            }
+        }
+        catch ( SQLException ex )
+        {
+            log.warn( "Replication lag of read replica " + replica.number + " unknown, lag query failed: " + ex.getMessage() );
+
+            return null;
+        }
+    }
+
+    /**
+     * Read replica with routing statistics.
+     */
+    private static class Replica
+    {
+        private final int number;
+
+        private final DataSource dataSource;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * Bits of the double moving average connection hold time in
+         * milliseconds.
+         */
+        private final AtomicLong averageHoldTime = new AtomicLong( Double.doubleToLongBits( 0d ) );
+
+        /**
+         * Time in milliseconds until which the replica is out of rotation
+         * because of a failure.
+         */
+        private volatile long failedUntil = 0;
+
+        /**
+         * Whether the replica is out of rotation until the next successful
+         * probe.
+         */
+        private volatile boolean unavailable = false;
+
+        private Replica( int number, DataSource dataSource )
+        {
+            this.number = number;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable( long now )
+        {
+            return !unavailable && failedUntil <= now;
+        }
+
+        private double getAverageHoldTimeMillis()
+        {
+            return Double.longBitsToDouble( averageHoldTime.get() );
+        }
+
+        private void addHoldTimeSample( long millis )
+        {
+            averageHoldTime.updateAndGet( bits -> {
+                double average = Double.longBitsToDouble( bits );
+                double updated = average == 0d ? millis : average + HOLD_TIME_WEIGHT * ( millis - average );
+                return Double.doubleToLongBits( updated );
+            } );
+        }
+
+        private void markFailed( String reason )
+        {
+            failedUntil = System.currentTimeMillis() + FAILURE_BACKOFF_MILLIS;
+
+            log.warn( "Read replica " + number + " out of rotation, " + reason );
+        }
+
+        private void markUnavailable( String reason )
+        {
+            if ( !unavailable )
+            {
+                log.warn( "Read replica " + number + " out of rotation, " + reason );
+            }
+
+            unavailable = true;
+        }
+
+        private void markAvailable()
+        {
+            if ( unavailable || failedUntil > System.currentTimeMillis() )
+            {
+                log.info( "Read replica " + number + " back in rotation" );
+            }
+
+            unavailable = false;
+            failedUntil = 0;
+        }
+    }
+}
@@ -255,6 +255,7 @@ public class HibernateDbmsManager
         emptyTable( "programindicator" );
         emptyTable( "program" );
 
+        emptyTable( "trackedentityattributetoken" );
         emptyTable( "trackedentityattributevalue" );
         emptyTable( "trackedentityattributevalueaudit" );
         emptyTable( "trackedentityattribute" );
@@ -335,6 +336,7 @@ public class HibernateDbmsManager
         emptyTable( "messageconversation" );
         emptyTable( "message" );
 
+        emptyTable( "sharingaccess" );
         emptyTable( "usergroupusergroupaccesses" );
         emptyTable( "usergroupaccess" );
         emptyTable( "usergroupmembers" );
@@ -37,11 +37,14 @@ import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Projections;
-import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
-import org.hibernate.criterion.Subqueries;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.StringType;
+import org.hibernate.type.Type;
 import org.hisp.dhis.attribute.Attribute;
 import org.hisp.dhis.attribute.AttributeValue;
 import org.hisp.dhis.common.AuditLogUtil;
@@ -59,6 +62,7 @@ import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
 import org.hisp.dhis.security.acl.AccessStringHelper;
 import org.hisp.dhis.security.acl.AclService;
+import org.hisp.dhis.security.acl.SharingAccessStore;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.user.UserInfo;
@@ -297,31 +301,7 @@ public class HibernateGenericStore<T>
         disjunction.add( Restrictions.isNull( "c.publicAccess" ) );
         disjunction.add( Restrictions.isNull( "c.user.id" ) );
         disjunction.add( Restrictions.eq( "c.user.id", user.getId() ) );
-
-        DetachedCriteria userGroupDetachedCriteria = DetachedCriteria.forClass( getClazz(), "ugdc" );
-        userGroupDetachedCriteria.createCriteria( "ugdc.userGroupAccesses", "uga" );
-        userGroupDetachedCriteria.createCriteria( "uga.userGroup", "ug" );
-        userGroupDetachedCriteria.createCriteria( "ug.members", "ugm" );
-
-        userGroupDetachedCriteria.add( Restrictions.eqProperty( "ugdc.id", "c.id" ) );
-        userGroupDetachedCriteria.add( Restrictions.eq( "ugm.id", user.getId() ) );
-        userGroupDetachedCriteria.add( Restrictions.like( "uga.access", access ) );
-
-        userGroupDetachedCriteria.setProjection( Property.forName( "uga.id" ) );
-
-        disjunction.add( Subqueries.exists( userGroupDetachedCriteria ) );
-
-        DetachedCriteria userDetachedCriteria = DetachedCriteria.forClass( getClazz(), "udc" );
-        userDetachedCriteria.createCriteria( "udc.userAccesses", "ua" );
-        userDetachedCriteria.createCriteria( "ua.user", "u" );
-
-        userDetachedCriteria.add( Restrictions.eqProperty( "udc.id", "c.id" ) );
-        userDetachedCriteria.add( Restrictions.eq( "u.id", user.getId() ) );
-        userDetachedCriteria.add( Restrictions.like( "ua.access", access ) );
-
-        userDetachedCriteria.setProjection( Property.forName( "ua.id" ) );
-
-        disjunction.add( Subqueries.exists( userDetachedCriteria ) );
+        disjunction.add( getSharingAccessRestriction( user, access ) );
 
         criteria.add( disjunction );
 
@@ -342,35 +322,38 @@ public class HibernateGenericStore<T>
         Disjunction disjunction = Restrictions.disjunction();
 
         disjunction.add( Restrictions.like( "c.publicAccess", access ) );
+        disjunction.add( getSharingAccessRestriction( user, access ) );
 
-        DetachedCriteria userGroupDetachedCriteria = DetachedCriteria.forClass( getClazz(), "ugdc" );
-        userGroupDetachedCriteria.createCriteria( "ugdc.userGroupAccesses", "uga" );
-        userGroupDetachedCriteria.createCriteria( "uga.userGroup", "ug" );
-        userGroupDetachedCriteria.createCriteria( "ug.members", "ugm" );
-
-        userGroupDetachedCriteria.add( Restrictions.eqProperty( "ugdc.id", "c.id" ) );
-        userGroupDetachedCriteria.add( Restrictions.eq( "ugm.id", user.getId() ) );
-        userGroupDetachedCriteria.add( Restrictions.like( "uga.access", access ) );
-
-        userGroupDetachedCriteria.setProjection( Property.forName( "uga.id" ) );
-
-        disjunction.add( Subqueries.exists( userGroupDetachedCriteria ) );
-
-        DetachedCriteria userDetachedCriteria = DetachedCriteria.forClass( getClazz(), "udc" );
-        userDetachedCriteria.createCriteria( "udc.userAccesses", "ua" );
-        userDetachedCriteria.createCriteria( "ua.user", "u" );
-
-        userDetachedCriteria.add( Restrictions.eqProperty( "udc.id", "c.id" ) );
-        userDetachedCriteria.add( Restrictions.eq( "u.id", user.getId() ) );
-        userDetachedCriteria.add( Restrictions.like( "ua.access", access ) );
+        criteria.add( disjunction );
 
-        userDetachedCriteria.setProjection( Property.forName( "ua.id" ) );
+        return criteria;
+    }
 
-        disjunction.add( Subqueries.exists( userDetachedCriteria ) );
+    /**
+     * Returns a restriction which matches objects shared with the given user,
+     * either directly or through any user group the user is a member of, with
+     * the given access. The restriction looks up the sharing access index on
+     * the root table and identifier of the object, as identifiers are only
+     * unique within a table.
+     *
+     * @param user the user.
+     * @param access the access string pattern.
+     * @return a Criterion.
+     */
+    private Criterion getSharingAccessRestriction( UserInfo user, String access )
+    {
+        AbstractEntityPersister persister = (AbstractEntityPersister)
+            ((MetamodelImplementor) sessionFactory.getMetamodel()).entityPersister( getClazz() );
 
-        criteria.add( disjunction );
+        final String sql = "exists (select 1 from " + SharingAccessStore.TABLE_NAME + " sa " +
+            "where sa.tablename = ? and sa.objectid = {alias}." + persister.getIdentifierColumnNames()[0] + " " +
+            "and sa.access like ? " +
+            "and (sa.userid = ? or sa.usergroupid in (" +
+                "select ugm.usergroupid from usergroupmembers ugm where ugm.userid = ?)))";
 
-        return criteria;
+        return Restrictions.sqlRestriction( sql,
+            new Object[] { persister.getRootTableName(), access, user.getId(), user.getId() },
+            new Type[] { StringType.INSTANCE, StringType.INSTANCE, IntegerType.INSTANCE, IntegerType.INSTANCE } );
     }
 
     /**
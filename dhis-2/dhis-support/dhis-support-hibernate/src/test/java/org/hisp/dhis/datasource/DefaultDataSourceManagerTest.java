@@ -0,0 +1,136 @@
+package org.hisp.dhis.datasource;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+public class DefaultDataSourceManagerTest
+{
+    private DataSource mainDataSource;
+
+    private Properties properties;
+
+    private DhisConfigurationProvider config;
+
+    private DefaultDataSourceManager dataSourceManager;
+
+    @Before
+    public void before()
+    {
+        mainDataSource = mock( DataSource.class );
+        properties = new Properties();
+
+        config = mock( DhisConfigurationProvider.class );
+        when( config.getProperty( any( ConfigurationKey.class ) ) ).thenAnswer( invocation -> ( (ConfigurationKey) invocation.getArguments()[0] ).getDefaultValue() );
+        when( config.getPropertyOrDefault( any( ConfigurationKey.class ), anyString() ) ).thenAnswer( invocation -> invocation.getArguments()[1] );
+        when( config.getProperty( ConfigurationKey.CONNECTION_DRIVER_CLASS ) ).thenReturn( "org.h2.Driver" );
+        when( config.getProperty( ConfigurationKey.CONNECTION_USERNAME ) ).thenReturn( "dhis" );
+        when( config.getProperty( ConfigurationKey.CONNECTION_PASSWORD ) ).thenReturn( "dhis" );
+        when( config.getProperty( ConfigurationKey.READ_REPLICA_PROBE_INTERVAL ) ).thenReturn( "0" );
+        when( config.getProperties() ).thenReturn( properties );
+
+        dataSourceManager = new DefaultDataSourceManager();
+        dataSourceManager.setConfig( config );
+        dataSourceManager.setMainDataSource( mainDataSource );
+    }
+
+    @After
+    public void after()
+    {
+        dataSourceManager.destroy();
+    }
+
+    @Test
+    public void testWithoutReadReplicas()
+        throws Exception
+    {
+        dataSourceManager.afterPropertiesSet();
+
+        assertSame( mainDataSource, dataSourceManager.getReadOnlyDataSource() );
+        assertEquals( 0, dataSourceManager.getReadReplicaCount() );
+    }
+
+    @Test
+    public void testWithReadReplicas()
+        throws Exception
+    {
+        properties.setProperty( "read1.connection.url", "jdbc:h2:mem:read1" );
+        properties.setProperty( "read2.connection.url", "jdbc:h2:mem:read2" );
+        properties.setProperty( "read2.connection.username", "replica" );
+
+        dataSourceManager.afterPropertiesSet();
+
+        assertTrue( dataSourceManager.getReadOnlyDataSource() instanceof ReplicaRoutingDataSource );
+        assertEquals( 2, dataSourceManager.getReadReplicaCount() );
+        assertEquals( 2, ( (ReplicaRoutingDataSource) dataSourceManager.getReadOnlyDataSource() ).getAvailableReplicaCount() );
+    }
+
+    @Test
+    public void testReadReplicaWithoutUrlIgnored()
+        throws Exception
+    {
+        properties.setProperty( "read1.connection.url", "jdbc:h2:mem:read1" );
+        properties.setProperty( "read2.connection.username", "replica" );
+
+        dataSourceManager.afterPropertiesSet();
+
+        assertEquals( 1, dataSourceManager.getReadReplicaCount() );
+    }
+
+    @Test
+    public void testInvalidReplicaSettingsUseDefault()
+        throws Exception
+    {
+        properties.setProperty( "read1.connection.url", "jdbc:h2:mem:read1" );
+        when( config.getProperty( ConfigurationKey.READ_REPLICA_MAX_LAG ) ).thenReturn( "5 minutes" );
+        when( config.getProperty( ConfigurationKey.READ_REPLICA_PROBE_INTERVAL ) ).thenReturn( "" );
+
+        dataSourceManager.afterPropertiesSet();
+
+        assertEquals( 1, dataSourceManager.getReadReplicaCount() );
+    }
+}
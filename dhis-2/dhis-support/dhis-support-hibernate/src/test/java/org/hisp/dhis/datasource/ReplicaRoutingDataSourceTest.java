@@ -0,0 +1,209 @@
+package org.hisp.dhis.datasource;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+public class ReplicaRoutingDataSourceTest
+{
+    private DataSource replicaA;
+
+    private DataSource replicaB;
+
+    private DataSource fallback;
+
+    private ReplicaRoutingDataSource dataSource;
+
+    @Before
+    public void before()
+        throws SQLException
+    {
+        replicaA = mockDataSource();
+        replicaB = mockDataSource();
+        fallback = mockDataSource();
+
+        dataSource = new ReplicaRoutingDataSource( Arrays.asList( replicaA, replicaB ), fallback, null, 300, 0 );
+    }
+
+    @After
+    public void after()
+    {
+        dataSource.close();
+    }
+
+    @Test
+    public void testRoutesToLeastLoadedReplica()
+        throws SQLException
+    {
+        Connection connectionA = dataSource.getConnection();
+        Connection connectionB = dataSource.getConnection();
+
+        verify( replicaA, times( 1 ) ).getConnection();
+        verify( replicaB, times( 1 ) ).getConnection();
+        verify( fallback, never() ).getConnection();
+
+        connectionA.close();
+        connectionB.close();
+    }
+
+    @Test
+    public void testClosesUnderlyingConnection()
+        throws SQLException
+    {
+        Connection underlying = mock( Connection.class );
+        when( replicaA.getConnection() ).thenReturn( underlying );
+        when( replicaB.getConnection() ).thenReturn( underlying );
+
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        connection.close();
+
+        verify( underlying, times( 2 ) ).close();
+    }
+
+    @Test
+    public void testFailedReplicaOutOfRotation()
+        throws SQLException
+    {
+        when( replicaA.getConnection() ).thenThrow( new SQLException( "Connection refused" ) );
+
+        // Holding the first connection makes the replica not yet tried the least loaded
+
+        Connection connection = dataSource.getConnection();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            dataSource.getConnection().close();
+        }
+
+        connection.close();
+
+        verify( replicaA, times( 1 ) ).getConnection();
+        verify( replicaB, times( 5 ) ).getConnection();
+        verify( fallback, never() ).getConnection();
+        assertEquals( 1, dataSource.getAvailableReplicaCount() );
+    }
+
+    @Test
+    public void testFallbackWhenNoReplicaAvailable()
+        throws SQLException
+    {
+        Connection fallbackConnection = mock( Connection.class );
+        when( fallback.getConnection() ).thenReturn( fallbackConnection );
+        when( replicaA.getConnection() ).thenThrow( new SQLException( "Connection refused" ) );
+        when( replicaB.getConnection() ).thenThrow( new SQLException( "Connection refused" ) );
+
+        assertSame( fallbackConnection, dataSource.getConnection() );
+        assertEquals( 0, dataSource.getAvailableReplicaCount() );
+    }
+
+    @Test
+    public void testLagAboveMaxOutOfRotation()
+        throws SQLException
+    {
+        mockLag( replicaA, 600L );
+        mockLag( replicaB, 10L );
+
+        dataSource.close();
+        dataSource = new ReplicaRoutingDataSource( Arrays.asList( replicaA, replicaB ), fallback, "select lag", 300, 0 );
+        dataSource.probe();
+
+        assertEquals( 1, dataSource.getAvailableReplicaCount() );
+    }
+
+    @Test
+    public void testLagQueryFailureKeepsReplicaInRotation()
+        throws SQLException
+    {
+        mockLag( replicaA, null );
+        mockLag( replicaB, null );
+
+        dataSource.close();
+        dataSource = new ReplicaRoutingDataSource( Arrays.asList( replicaA, replicaB ), fallback, "select lag", 300, 0 );
+        dataSource.probe();
+
+        assertEquals( 2, dataSource.getAvailableReplicaCount() );
+    }
+
+    private DataSource mockDataSource()
+        throws SQLException
+    {
+        DataSource dataSource = mock( DataSource.class );
+        when( dataSource.getConnection() ).thenAnswer( invocation -> mock( Connection.class ) );
+        return dataSource;
+    }
+
+    /**
+     * Mocks the lag query of the given replica, a null lag makes the lag
+     * query fail.
+     */
+    private void mockLag( DataSource replica, Long lag )
+        throws SQLException
+    {
+        Connection connection = mock( Connection.class );
+        Statement statement = mock( Statement.class );
+        when( replica.getConnection() ).thenReturn( connection );
+        when( connection.isValid( anyInt() ) ).thenReturn( true );
+        when( connection.createStatement() ).thenReturn( statement );
+
+        if ( lag != null )
+        {
+            ResultSet rs = mock( ResultSet.class );
+            when( rs.next() ).thenReturn( true );
+            when( rs.getLong( 1 ) ).thenReturn( lag );
+            when( statement.executeQuery( anyString() ) ).thenReturn( rs );
+        }
+        else
+        {
+            when( statement.executeQuery( anyString() ) ).thenThrow( new SQLException( "function pg_last_wal_receive_lsn() does not exist" ) );
+        }
+    }
+}
@@ -0,0 +1,729 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.apache.commons.math3.util.Precision;
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.GridHeader;
+import org.hisp.dhis.system.util.MathUtils;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.support.rowset.SqlRowSetMetaData;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for grids which holds the headers and meta data of the grid, and
+ * implements the operations of {@link Grid} which are expressed through the
+ * rows and columns of the grid, independent of how the values are stored.
+ *
+ * @author agent
+ */
+public abstract class AbstractGrid
+    implements Grid
+{
+    private static final String REGRESSION_SUFFIX = "_regression";
+    private static final String CUMULATIVE_SUFFIX = "_cumulative";
+
+    /**
+     * The title of the grid.
+     */
+    protected String title;
+
+    /**
+     * The subtitle of the grid.
+     */
+    protected String subtitle;
+
+    /**
+     * The name of a potential corresponding table.
+     */
+    protected String table;
+
+    /**
+     * A List which represents the column headers of the grid.
+     */
+    protected List<GridHeader> headers;
+
+    /**
+     * A Map which can hold arbitrary meta-data.
+     */
+    protected Map<String, Object> metaData;
+
+    /**
+     * A Map which can hold internal arbitrary meta data. Will not be
+     * serialized.
+     */
+    protected Map<String, Object> internalMetaData;
+
+    /**
+     * Indicating the current row in the grid for reading data.
+     */
+    protected int currentRowReadIndex = -1;
+
+    /**
+     * Represents a mapping between column names and the index of the column in the grid.
+     */
+    protected Map<String, Integer> columnIndexMap = new HashMap<>();
+
+    /**
+     * Default constructor.
+     */
+    protected AbstractGrid()
+    {
+        this.headers = new ArrayList<>();
+        this.metaData = new HashMap<>();
+        this.internalMetaData = new HashMap<>();
+    }
+
+    /**
+     * @param metaData meta data.
+     * @param internalMetaData internal meta data.
+     */
+    protected AbstractGrid( Map<String, Object> metaData, Map<String, Object> internalMetaData )
+    {
+        this.headers = new ArrayList<>();
+        this.metaData = metaData;
+        this.internalMetaData = internalMetaData;
+    }
+
+    // ---------------------------------------------------------------------
+    // Public methods
+    // ---------------------------------------------------------------------
+
+    @Override
+    @JsonProperty
+    public String getTitle()
+    {
+        return title;
+    }
+
+    @Override
+    public Grid setTitle( String title )
+    {
+        this.title = title;
+
+        return this;
+    }
+
+    @Override
+    @JsonProperty
+    public String getSubtitle()
+    {
+        return subtitle;
+    }
+
+    @Override
+    public Grid setSubtitle( String subtitle )
+    {
+        this.subtitle = subtitle;
+
+        return this;
+    }
+
+    @Override
+    @JsonProperty
+    public String getTable()
+    {
+        return table;
+    }
+
+    @Override
+    public Grid setTable( String table )
+    {
+        this.table = table;
+
+        return this;
+    }
+
+    @Override
+    public Grid addHeader( GridHeader header )
+    {
+        headers.add( header );
+
+        updateColumnIndexMap();
+
+        return this;
+    }
+
+    @Override
+    public Grid addHeader( int headerIndex, GridHeader header )
+    {
+        headers.add( headerIndex, header );
+
+        updateColumnIndexMap();
+
+        return this;
+    }
+
+    @Override
+    public Grid addHeaders( int headerIndex, List<GridHeader> gridHeaders )
+    {
+        if ( gridHeaders == null || gridHeaders.isEmpty() )
+        {
+            return this;
+        }
+
+        headers.addAll( headerIndex, gridHeaders );
+
+        updateColumnIndexMap();
+
+        return this;
+    }
+
+    @Override
+    public Grid addEmptyHeaders( int number )
+    {
+        for ( int i = 0; i < number; i++ )
+        {
+            headers.add( new GridHeader( "", false, false ) );
+        }
+
+        updateColumnIndexMap();
+
+        return this;
+    }
+
+    @Override
+    @JsonProperty
+    public List<GridHeader> getHeaders()
+    {
+        return headers;
+    }
+
+    @Override
+    public List<GridHeader> getVisibleHeaders()
+    {
+        List<GridHeader> tempHeaders = new ArrayList<>();
+
+        for ( GridHeader header : headers )
+        {
+            if ( !header.isHidden() )
+            {
+                tempHeaders.add( header );
+            }
+        }
+
+        return tempHeaders;
+    }
+
+    @Override
+    public int getIndexOfHeader( String name )
+    {
+        return headers.indexOf( new GridHeader( name, null ) );
+    }
+
+    @Override
+    @JsonProperty
+    public Map<String, Object> getMetaData()
+    {
+        return metaData;
+    }
+
+    @Override
+    public Grid setMetaData( Map<String, Object> metaData )
+    {
+        this.metaData = metaData;
+        return this;
+    }
+
+    @Override
+    public Grid addMetaData( String key, Object value )
+    {
+        this.metaData.put( key, value );
+        return this;
+    }
+
+    @Override
+    @JsonIgnore
+    public Map<String, Object> getInternalMetaData()
+    {
+        return internalMetaData;
+    }
+
+    @Override
+    public Grid setInternalMetaData( Map<String, Object> internalMetaData )
+    {
+        this.internalMetaData = internalMetaData;
+        return this;
+    }
+
+    @Override
+    public Grid addValuesVar( Object... values )
+    {
+        return addValues( values );
+    }
+
+    @Override
+    public Grid addValuesAsList( List<Object> values )
+    {
+        return addValues( values.toArray() );
+    }
+
+    @Override
+    public Grid addEmptyValue()
+    {
+        addValue( StringUtils.EMPTY );
+
+        return this;
+    }
+
+    @Override
+    public Grid addEmptyValues( int number )
+    {
+        for ( int i = 0; i < number; i++ )
+        {
+            addEmptyValue();
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addNullValues( int number )
+    {
+        for ( int i = 0; i < number; i++ )
+        {
+            addValue( null );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid removeEmptyColumns()
+    {
+        if ( getWidth() == 0 )
+        {
+            return this;
+        }
+
+        int lastCol = getWidth() - 1;
+
+        for ( int i = lastCol; i >= 0; i-- )
+        {
+            if ( columnIsEmpty( i ) )
+            {
+                removeColumn( i );
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid removeColumn( GridHeader header )
+    {
+        int index = headers.indexOf( header );
+
+        if ( index != -1 )
+        {
+            removeColumn( index );
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean hasMetaDataKey( String key )
+    {
+        return metaData != null && metaData.containsKey( key );
+    }
+
+    @Override
+    public boolean hasInternalMetaDataKey( String key )
+    {
+        return internalMetaData != null && internalMetaData.containsKey( key );
+    }
+
+    @Override
+    public Grid addRegressionColumn( int columnIndex, boolean addHeader )
+    {
+        verifyGridState();
+
+        SimpleRegression regression = new SimpleRegression();
+
+        List<Object> column = getColumn( columnIndex );
+
+        int index = 0;
+
+        for ( Object value : column )
+        {
+            // 0 omitted from regression
+
+            if ( value != null && !MathUtils.isEqual( Double.parseDouble( String.valueOf( value ) ), 0d ) )
+            {
+                regression.addData( index++, Double.parseDouble( String.valueOf( value ) ) );
+            }
+        }
+
+        List<Object> regressionColumn = new ArrayList<>();
+
+        for ( int i = 0; i < column.size(); i++ )
+        {
+            final double predicted = regression.predict( i );
+
+            // Enough values must exist for regression
+
+            if ( !Double.isNaN( predicted ) )
+            {
+                regressionColumn.add( Precision.round( predicted, 1 ) );
+            }
+            else
+            {
+                regressionColumn.add( null );
+            }
+        }
+
+        addColumn( regressionColumn );
+
+        if ( addHeader && columnIndex < headers.size() )
+        {
+            GridHeader header = headers.get( columnIndex );
+
+            if ( header != null )
+            {
+                GridHeader regressionHeader = new GridHeader( header.getName() + REGRESSION_SUFFIX,
+                    header.getColumn() + REGRESSION_SUFFIX, header.getValueType(), header.getType(), header.isHidden(), header.isMeta() );
+
+                addHeader( regressionHeader );
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addRegressionToGrid( int startColumnIndex, int numberOfColumns )
+    {
+        for ( int i = 0; i < numberOfColumns; i++ )
+        {
+            int columnIndex = i + startColumnIndex;
+
+            this.addRegressionColumn( columnIndex, true );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addCumulativeColumn( int columnIndex, boolean addHeader )
+    {
+        verifyGridState();
+
+        List<Object> column = getColumn( columnIndex );
+
+        List<Object> cumulativeColumn = new ArrayList<>();
+
+        double sum = 0d;
+
+        for ( Object value : column )
+        {
+            double number = value != null ? Double.parseDouble( String.valueOf( value ) ) : 0d;
+
+            sum += number;
+
+            cumulativeColumn.add( sum );
+        }
+
+        addColumn( cumulativeColumn );
+
+        if ( addHeader && columnIndex < headers.size() )
+        {
+            GridHeader header = headers.get( columnIndex );
+
+            if ( header != null )
+            {
+                GridHeader cumulativeHeader = new GridHeader( header.getName() + CUMULATIVE_SUFFIX,
+                    header.getColumn() + CUMULATIVE_SUFFIX, header.getValueType(), header.getType(), header.isHidden(), header.isMeta() );
+
+                addHeader( cumulativeHeader );
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addCumulativesToGrid( int startColumnIndex, int numberOfColumns )
+    {
+        for ( int i = 0; i < numberOfColumns; i++ )
+        {
+            int columnIndex = i + startColumnIndex;
+
+            this.addCumulativeColumn( columnIndex, true );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid substituteMetaData( Map<? extends Object, ? extends Object> metaDataMap )
+    {
+        if ( metaDataMap == null || headers == null || headers.isEmpty() )
+        {
+            return this;
+        }
+
+        for ( int colIndex = 0; colIndex < headers.size(); colIndex++ )
+        {
+            GridHeader header = headers.get( colIndex );
+
+            // Header
+
+            Object headerMetaName = metaDataMap.get( header.getName() );
+
+            if ( headerMetaName != null )
+            {
+                header.setName( String.valueOf( headerMetaName ) );
+            }
+
+            if ( header.isMeta() )
+            {
+                // Column cells
+
+                substituteMetaData( colIndex, colIndex, metaDataMap );
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public List<Integer> getMetaColumnIndexes()
+    {
+        List<Integer> indexes = new ArrayList<>();
+
+        for ( int i = 0; i < headers.size(); i++ )
+        {
+            GridHeader header = headers.get( i );
+
+            if ( header != null && header.isMeta() )
+            {
+                indexes.add( i );
+            }
+        }
+
+        return indexes;
+    }
+
+    @Override
+    public Set<Object> getUniqueValues( String columnName )
+    {
+        int columnIndex = getIndexOfHeader( columnName );
+
+        Set<Object> values = new HashSet<>();
+
+        if ( columnIndex != -1 )
+        {
+            values.addAll( getColumn( columnIndex ) );
+        }
+
+        return values;
+    }
+
+    // -------------------------------------------------------------------------
+    // JRDataSource implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public boolean next()
+        throws JRException
+    {
+        boolean next = ++currentRowReadIndex < getHeight();
+
+        if ( !next )
+        {
+            currentRowReadIndex = -1; // Reset and return false
+        }
+
+        return next;
+    }
+
+    @Override
+    public Object getFieldValue( JRField field )
+        throws JRException
+    {
+        Integer index = columnIndexMap.get( field.getName() );
+
+        return index != null ? getRow( currentRowReadIndex ).get( index ) : null;
+    }
+
+    // -------------------------------------------------------------------------
+    // SQL utility methods
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Grid addHeaders( ResultSet rs )
+    {
+        try
+        {
+            ResultSetMetaData rsmd = rs.getMetaData();
+
+            int columnNo = rsmd.getColumnCount();
+
+            for ( int i = 1; i <= columnNo; i++ )
+            {
+                addHeader( new GridHeader( rsmd.getColumnLabel( i ), false, false ) );
+            }
+        }
+        catch ( SQLException ex )
+        {
+            throw new RuntimeException( ex );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addHeaders( SqlRowSet rs )
+    {
+        SqlRowSetMetaData rsmd = rs.getMetaData();
+
+        int columnNo = rsmd.getColumnCount();
+
+        for ( int i = 1; i <= columnNo; i++ )
+        {
+            addHeader( new GridHeader( rsmd.getColumnLabel( i ), false, false ) );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addRows( ResultSet rs )
+    {
+        try
+        {
+            int cols = rs.getMetaData().getColumnCount();
+
+            while ( rs.next() )
+            {
+                addRow();
+
+                for ( int i = 1; i <= cols; i++ )
+                {
+                    addValue( rs.getObject( i ) );
+                }
+            }
+        }
+        catch ( SQLException ex )
+        {
+            throw new RuntimeException( ex );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addRows( SqlRowSet rs )
+    {
+        int cols = rs.getMetaData().getColumnCount();
+
+        while ( rs.next() )
+        {
+            addRow();
+
+            for ( int i = 1; i <= cols; i++ )
+            {
+                addValue( rs.getObject( i ) );
+            }
+        }
+
+        return this;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Verifies that the grid is in a consistent state before operating on its
+     * columns. Does nothing by default.
+     */
+    protected void verifyGridState()
+    {
+    }
+
+    /**
+     * Updates the mapping between header columns and grid indexes. This method
+     * should be invoked whenever the columns are manipulated.
+     */
+    protected void updateColumnIndexMap()
+    {
+        columnIndexMap.clear();
+
+        for ( int i = 0; i < headers.size(); i++ )
+        {
+            columnIndexMap.put( headers.get( i ).getColumn(), i );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // toString
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder( "[\n" );
+
+        if ( headers != null && headers.size() > 0 )
+        {
+            List<String> headerNames = new ArrayList<>();
+
+            for ( GridHeader header : headers )
+            {
+                headerNames.add( header.getName() );
+            }
+
+            builder.append( headerNames ).append( "\n" );
+        }
+
+        for ( List<Object> row : getRows() )
+        {
+            builder.append( row ).append( "\n" );
+        }
+
+        return builder.append( "]" ).toString();
+    }
+}
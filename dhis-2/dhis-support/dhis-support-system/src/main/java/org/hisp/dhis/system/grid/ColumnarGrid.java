@@ -0,0 +1,1097 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.collect.Iterables;
+import org.apache.commons.lang3.Validate;
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.adapter.JacksonRowDataSerializer;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Grid implementation which stores values in typed columns instead of lists
+ * of boxed row values. Columns holding only doubles are backed by a primitive
+ * array with a bitmap of null values, and columns holding only strings are
+ * dictionary encoded, so that repeated dimension item identifiers are stored
+ * once per column. A column holding values of other or mixed types falls back
+ * to a list of objects. The type of a column is decided by the values written
+ * to it, and a column is converted to an object column the first time a value
+ * of another type is written to it.
+ * <p>
+ * Rows are exposed as list views over the columns, which means that consumers
+ * of {@link Grid} like the JSON serializer and the grid utils work unchanged,
+ * and that values are boxed only as they are read. Setting a value on a row
+ * view writes the value to the underlying column.
+ * <p>
+ * This grid is intended for large analytics responses. Rows with fewer values
+ * than the width of the grid are read as having null values for the remaining
+ * columns.
+ *
+ * @author agent
+ */
+public class ColumnarGrid
+    extends AbstractGrid
+{
+    /**
+     * The columns of the grid.
+     */
+    private List<GridColumn> columns;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int height = 0;
+
+    /**
+     * Indicating the current column in the current row for writing data.
+     */
+    private int currentColumnWriteIndex = 0;
+
+    /**
+     * Default constructor.
+     */
+    public ColumnarGrid()
+    {
+        this.columns = new ArrayList<>();
+    }
+
+    /**
+     * @param metaData meta data.
+     * @param internalMetaData internal meta data.
+     */
+    public ColumnarGrid( Map<String, Object> metaData, Map<String, Object> internalMetaData )
+    {
+        super( metaData, internalMetaData );
+        this.columns = new ArrayList<>();
+    }
+
+    // ---------------------------------------------------------------------
+    // Public methods
+    // ---------------------------------------------------------------------
+
+    @Override
+    @JsonProperty
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    @JsonProperty
+    public int getWidth()
+    {
+        return height > 0 ? columns.size() : 0;
+    }
+
+    @Override
+    public int getVisibleWidth()
+    {
+        return height > 0 ? getVisibleColumnIndexes().length : 0;
+    }
+
+    @Override
+    public Grid addRow()
+    {
+        height++;
+
+        currentColumnWriteIndex = 0;
+
+        return this;
+    }
+
+    @Override
+    public Grid addRows( Grid grid )
+    {
+        List<List<Object>> rows = grid.getRows();
+
+        for ( List<Object> row : rows )
+        {
+            addRow();
+
+            for ( Object value : row )
+            {
+                addValue( value );
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addValue( Object value )
+    {
+        int rowIndex = height - 1;
+        int columnIndex = currentColumnWriteIndex++;
+
+        while ( columns.size() <= columnIndex )
+        {
+            columns.add( new NullColumn() );
+        }
+
+        GridColumn column = getColumnFor( columnIndex, value );
+
+        column.fill( rowIndex );
+
+        if ( column.size() == rowIndex )
+        {
+            column.add( value );
+        }
+        else
+        {
+            column.set( rowIndex, value );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid addValues( Object[] values )
+    {
+        for ( Object value : values )
+        {
+            addValue( value );
+        }
+
+        return this;
+    }
+
+    @Override
+    public List<Object> getRow( int rowIndex )
+    {
+        if ( rowIndex < 0 || rowIndex >= height )
+        {
+            throw new IndexOutOfBoundsException( "Index: " + rowIndex + ", Size: " + height );
+        }
+
+        return new RowView( rowIndex, null );
+    }
+
+    @Override
+    @JsonProperty
+    @JsonSerialize( using = JacksonRowDataSerializer.class )
+    public List<List<Object>> getRows()
+    {
+        return new RowsView( null );
+    }
+
+    @Override
+    public List<List<Object>> getVisibleRows()
+    {
+        if ( headers == null || headers.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        return new RowsView( getVisibleColumnIndexes() );
+    }
+
+    @Override
+    public List<Object> getColumn( int columnIndex )
+    {
+        List<Object> column = new ArrayList<>( height );
+
+        for ( int rowIndex = 0; rowIndex < height; rowIndex++ )
+        {
+            column.add( getCell( rowIndex, columnIndex ) );
+        }
+
+        return column;
+    }
+
+    @Override
+    public Object getValue( int rowIndex, int columnIndex )
+    {
+        if ( height < rowIndex || columns.size() < columnIndex )
+        {
+            throw new IllegalArgumentException( "Grid does not contain the requested row / column" );
+        }
+
+        return getCell( rowIndex, columnIndex );
+    }
+
+    @Override
+    public Grid addColumn( List<Object> columnValues )
+    {
+        return addColumn( columns.size(), columnValues );
+    }
+
+    @Override
+    public Grid addColumn( int columnIndex, List<Object> columnValues )
+    {
+        if ( height != columnValues.size() )
+        {
+            throw new IllegalStateException( "Number of column values (" + columnValues.size() + ") is not equal to number of rows (" + height + ")" );
+        }
+
+        columns.add( columnIndex, toColumn( columnValues ) );
+
+        return this;
+    }
+
+    @Override
+    public Grid addAndPopulateColumnsBefore( int referenceColumnIndex, Map<Object, List<?>> valueMap, int newColumns )
+    {
+        Validate.inclusiveBetween( 0, getWidth() - 1, referenceColumnIndex );
+        Validate.notNull( valueMap );
+
+        List<List<Object>> newColumnValues = new ArrayList<>();
+
+        for ( int i = 0; i < newColumns; i++ )
+        {
+            newColumnValues.add( new ArrayList<>( height ) );
+        }
+
+        for ( int rowIndex = 0; rowIndex < height; rowIndex++ )
+        {
+            List<?> list = valueMap.get( getCell( rowIndex, referenceColumnIndex ) );
+
+            for ( int i = 0; i < newColumns; i++ )
+            {
+                newColumnValues.get( i ).add( list == null ? null : Iterables.get( list, i, null ) );
+            }
+        }
+
+        for ( int i = 0; i < newColumns; i++ )
+        {
+            columns.add( referenceColumnIndex + i, toColumn( newColumnValues.get( i ) ) );
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean columnIsEmpty( int columnIndex )
+    {
+        GridColumn column = columns.get( columnIndex );
+
+        for ( int rowIndex = 0; rowIndex < column.size() && rowIndex < height; rowIndex++ )
+        {
+            if ( !column.isNull( rowIndex ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public Grid removeColumn( int columnIndex )
+    {
+        if ( headers.size() > 0 )
+        {
+            headers.remove( columnIndex );
+        }
+
+        if ( columnIndex < columns.size() )
+        {
+            columns.remove( columnIndex );
+        }
+
+        updateColumnIndexMap();
+
+        return this;
+    }
+
+    @Override
+    public Grid removeCurrentWriteRow()
+    {
+        for ( GridColumn column : columns )
+        {
+            if ( column.size() == height )
+            {
+                column.removeLast();
+            }
+        }
+
+        height--;
+
+        return this;
+    }
+
+    @Override
+    public Grid limitGrid( int limit )
+    {
+        if ( limit < 0 )
+        {
+            throw new IllegalStateException( "Illegal limit: " + limit );
+        }
+
+        if ( limit > 0 && limit <= getHeight() )
+        {
+            selectRows( IntStream.range( 0, limit ).toArray() );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Grid limitGrid( int startPos, int endPos )
+    {
+        if ( startPos < 0 || endPos < startPos || endPos > getHeight() )
+        {
+            throw new IllegalStateException( "Illegal start / end pos: " + startPos + ", " + endPos + ", " + getHeight() );
+        }
+
+        selectRows( IntStream.range( startPos, endPos ).toArray() );
+
+        return this;
+    }
+
+    @Override
+    public Grid sortGrid( int columnIndex, int order )
+    {
+        if ( order == 0 )
+        {
+            return this; // No sorting
+        }
+
+        columnIndex--;
+
+        if ( columnIndex < 0 || columnIndex >= getWidth() )
+        {
+            throw new IllegalArgumentException( "Column index out of bounds: " + columnIndex );
+        }
+
+        GridColumn column = columns.get( columnIndex );
+
+        column.fill( height );
+
+        int[] rowIndexes = IntStream.range( 0, height ).toArray();
+
+        // Invalid values are placed last for descending and first for
+        // ascending order, consistent with ListGrid
+
+        sortRowIndexes( rowIndexes, ( r1, r2 ) -> {
+            boolean r1Invalid = !column.isComparable( r1 );
+            boolean r2Invalid = !column.isComparable( r2 );
+
+            if ( r1Invalid && r2Invalid )
+            {
+                return 0;
+            }
+            else if ( r1Invalid )
+            {
+                return order > 0 ? 1 : -1;
+            }
+            else if ( r2Invalid )
+            {
+                return order > 0 ? -1 : 1;
+            }
+
+            return order > 0 ? column.compare( r2, r1 ) : column.compare( r1, r2 );
+        } );
+
+        selectRows( rowIndexes );
+
+        return this;
+    }
+
+    @Override
+    public Grid substituteMetaData( int sourceColumnIndex, int targetColumnIndex, Map<? extends Object, ? extends Object> metaDataMap )
+    {
+        if ( metaDataMap == null || sourceColumnIndex >= columns.size() )
+        {
+            return this;
+        }
+
+        GridColumn sourceColumn = columns.get( sourceColumnIndex );
+
+        // Substitute the dictionary instead of each cell when possible
+
+        if ( sourceColumnIndex == targetColumnIndex && sourceColumn instanceof StringColumn &&
+            ((StringColumn) sourceColumn).substitute( metaDataMap ) )
+        {
+            return this;
+        }
+
+        List<Object> sourceValues = getColumn( sourceColumnIndex );
+
+        for ( int rowIndex = 0; rowIndex < sourceValues.size(); rowIndex++ )
+        {
+            Object metaValue = metaDataMap.get( sourceValues.get( rowIndex ) );
+
+            if ( metaValue != null )
+            {
+                setCell( rowIndex, targetColumnIndex, metaValue );
+            }
+        }
+
+        return this;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private Object getCell( int rowIndex, int columnIndex )
+    {
+        GridColumn column = columns.get( columnIndex );
+
+        return rowIndex < column.size() ? column.get( rowIndex ) : null;
+    }
+
+    private void setCell( int rowIndex, int columnIndex, Object value )
+    {
+        GridColumn column = getColumnFor( columnIndex, value );
+
+        column.fill( rowIndex + 1 );
+        column.set( rowIndex, value );
+    }
+
+    /**
+     * Returns the column at the given index, converted to a column which can
+     * hold the given value if necessary.
+     */
+    private GridColumn getColumnFor( int columnIndex, Object value )
+    {
+        GridColumn column = columns.get( columnIndex );
+
+        if ( !column.accepts( value ) )
+        {
+            column = column.convertFor( value );
+
+            columns.set( columnIndex, column );
+        }
+
+        return column;
+    }
+
+    /**
+     * Replaces the rows of the grid with the rows at the given indexes, in
+     * the given order.
+     */
+    private void selectRows( int[] rowIndexes )
+    {
+        for ( GridColumn column : columns )
+        {
+            column.fill( height );
+            column.select( rowIndexes );
+        }
+
+        height = rowIndexes.length;
+    }
+
+    /**
+     * Sorts the given row indexes with the given comparator of row indexes.
+     * The sort is a stable merge sort on the primitive indexes, consistent
+     * with the sort of rows in ListGrid.
+     */
+    private static void sortRowIndexes( int[] rowIndexes, IntBinaryOperator comparator )
+    {
+        int[] buffer = new int[rowIndexes.length];
+
+        for ( int width = 1; width < rowIndexes.length; width *= 2 )
+        {
+            for ( int start = 0; start < rowIndexes.length - width; start += width * 2 )
+            {
+                int middle = start + width;
+                int end = Math.min( start + width * 2, rowIndexes.length );
+
+                if ( comparator.applyAsInt( rowIndexes[middle - 1], rowIndexes[middle] ) <= 0 )
+                {
+                    continue; // Already in order
+                }
+
+                int left = start;
+                int right = middle;
+
+                for ( int i = start; i < end; i++ )
+                {
+                    if ( right >= end || ( left < middle && comparator.applyAsInt( rowIndexes[left], rowIndexes[right] ) <= 0 ) )
+                    {
+                        buffer[i] = rowIndexes[left++];
+                    }
+                    else
+                    {
+                        buffer[i] = rowIndexes[right++];
+                    }
+                }
+
+                System.arraycopy( buffer, start, rowIndexes, start, end - start );
+            }
+        }
+    }
+
+    private int[] getVisibleColumnIndexes()
+    {
+        return IntStream.range( 0, columns.size() ).filter( i -> !headers.get( i ).isHidden() ).toArray();
+    }
+
+    private static GridColumn toColumn( List<Object> values )
+    {
+        GridColumn column = new NullColumn();
+
+        for ( Object value : values )
+        {
+            if ( !column.accepts( value ) )
+            {
+                column = column.convertFor( value );
+            }
+
+            column.add( value );
+        }
+
+        return column;
+    }
+
+    // -------------------------------------------------------------------------
+    // Row views
+    // -------------------------------------------------------------------------
+
+    /**
+     * List of rows of the grid. Includes the columns at the given indexes
+     * only, or all columns if the indexes are null.
+     */
+    private class RowsView
+        extends AbstractList<List<Object>>
+        implements RandomAccess
+    {
+        private final int[] columnIndexes;
+
+        RowsView( int[] columnIndexes )
+        {
+            this.columnIndexes = columnIndexes;
+        }
+
+        @Override
+        public List<Object> get( int rowIndex )
+        {
+            return new RowView( rowIndex, columnIndexes );
+        }
+
+        @Override
+        public int size()
+        {
+            return height;
+        }
+    }
+
+    /**
+     * Row of the grid which reads and writes the values of the underlying
+     * columns.
+     */
+    private class RowView
+        extends AbstractList<Object>
+        implements RandomAccess
+    {
+        private final int rowIndex;
+
+        private final int[] columnIndexes;
+
+        RowView( int rowIndex, int[] columnIndexes )
+        {
+            this.rowIndex = rowIndex;
+            this.columnIndexes = columnIndexes;
+        }
+
+        @Override
+        public Object get( int index )
+        {
+            return getCell( rowIndex, getColumnIndex( index ) );
+        }
+
+        @Override
+        public Object set( int index, Object value )
+        {
+            int columnIndex = getColumnIndex( index );
+
+            Object previous = getCell( rowIndex, columnIndex );
+
+            setCell( rowIndex, columnIndex, value );
+
+            return previous;
+        }
+
+        @Override
+        public int size()
+        {
+            return columnIndexes != null ? columnIndexes.length : columns.size();
+        }
+
+        private int getColumnIndex( int index )
+        {
+            return columnIndexes != null ? columnIndexes[index] : index;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Columns
+    // -------------------------------------------------------------------------
+
+    /**
+     * Column of values. Values are appended to the end of the column, and a
+     * column may be shorter than the grid, in which case the remaining values
+     * are null.
+     */
+    private abstract static class GridColumn
+    {
+        /**
+         * Returns the number of values in this column.
+         */
+        abstract int size();
+
+        abstract Object get( int rowIndex );
+
+        abstract boolean isNull( int rowIndex );
+
+        /**
+         * Indicates whether this column can hold the given value.
+         */
+        abstract boolean accepts( Object value );
+
+        abstract void add( Object value );
+
+        abstract void set( int rowIndex, Object value );
+
+        abstract void removeLast();
+
+        /**
+         * Replaces the values of this column with the values at the given
+         * indexes, in the given order.
+         */
+        abstract void select( int[] rowIndexes );
+
+        /**
+         * Compares the values at the given indexes, which must be comparable.
+         */
+        abstract int compare( int rowIndex1, int rowIndex2 );
+
+        boolean isComparable( int rowIndex )
+        {
+            return !isNull( rowIndex );
+        }
+
+        /**
+         * Appends null values until this column has the given size.
+         */
+        void fill( int size )
+        {
+            while ( size() < size )
+            {
+                add( null );
+            }
+        }
+
+        /**
+         * Returns a copy of this column which can hold the given value.
+         */
+        GridColumn convertFor( Object value )
+        {
+            GridColumn column = new ObjectColumn();
+
+            for ( int i = 0; i < size(); i++ )
+            {
+                column.add( get( i ) );
+            }
+
+            return column;
+        }
+    }
+
+    /**
+     * Column holding null values only.
+     */
+    private static class NullColumn
+        extends GridColumn
+    {
+        private int size = 0;
+
+        @Override
+        int size()
+        {
+            return size;
+        }
+
+        @Override
+        Object get( int rowIndex )
+        {
+            return null;
+        }
+
+        @Override
+        boolean isNull( int rowIndex )
+        {
+            return true;
+        }
+
+        @Override
+        boolean accepts( Object value )
+        {
+            return value == null;
+        }
+
+        @Override
+        void add( Object value )
+        {
+            size++;
+        }
+
+        @Override
+        void set( int rowIndex, Object value )
+        {
+        }
+
+        @Override
+        void removeLast()
+        {
+            size--;
+        }
+
+        @Override
+        void select( int[] rowIndexes )
+        {
+            size = rowIndexes.length;
+        }
+
+        @Override
+        int compare( int rowIndex1, int rowIndex2 )
+        {
+            return 0;
+        }
+
+        @Override
+        GridColumn convertFor( Object value )
+        {
+            GridColumn column = value instanceof Double ? new DoubleColumn() :
+                value instanceof String ? new StringColumn() : new ObjectColumn();
+
+            column.fill( size );
+
+            return column;
+        }
+    }
+
+    /**
+     * Column holding double values in a primitive array, with null values
+     * recorded in a bitmap.
+     */
+    private static class DoubleColumn
+        extends GridColumn
+    {
+        private double[] values = new double[16];
+
+        private BitSet nulls = new BitSet();
+
+        private int size = 0;
+
+        @Override
+        int size()
+        {
+            return size;
+        }
+
+        @Override
+        Object get( int rowIndex )
+        {
+            return nulls.get( rowIndex ) ? null : values[rowIndex];
+        }
+
+        @Override
+        boolean isNull( int rowIndex )
+        {
+            return nulls.get( rowIndex );
+        }
+
+        @Override
+        boolean accepts( Object value )
+        {
+            return value == null || value instanceof Double;
+        }
+
+        @Override
+        void add( Object value )
+        {
+            if ( size == values.length )
+            {
+                values = Arrays.copyOf( values, size * 2 );
+            }
+
+            set( size++, value );
+        }
+
+        @Override
+        void set( int rowIndex, Object value )
+        {
+            nulls.set( rowIndex, value == null );
+            values[rowIndex] = value != null ? (Double) value : 0d;
+        }
+
+        @Override
+        void removeLast()
+        {
+            nulls.clear( --size );
+        }
+
+        @Override
+        void select( int[] rowIndexes )
+        {
+            double[] selectedValues = new double[Math.max( 16, rowIndexes.length )];
+            BitSet selectedNulls = new BitSet();
+
+            for ( int i = 0; i < rowIndexes.length; i++ )
+            {
+                selectedValues[i] = values[rowIndexes[i]];
+                selectedNulls.set( i, nulls.get( rowIndexes[i] ) );
+            }
+
+            values = selectedValues;
+            nulls = selectedNulls;
+            size = rowIndexes.length;
+        }
+
+        @Override
+        int compare( int rowIndex1, int rowIndex2 )
+        {
+            return Double.compare( values[rowIndex1], values[rowIndex2] );
+        }
+    }
+
+    /**
+     * Column holding string values as codes referring to a dictionary of the
+     * distinct values of the column.
+     */
+    private static class StringColumn
+        extends GridColumn
+    {
+        private static final int NULL_CODE = -1;
+
+        private int[] codes = new int[16];
+
+        private List<String> dictionary = new ArrayList<>();
+
+        private Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+        private int size = 0;
+
+        @Override
+        int size()
+        {
+            return size;
+        }
+
+        @Override
+        Object get( int rowIndex )
+        {
+            int code = codes[rowIndex];
+
+            return code == NULL_CODE ? null : dictionary.get( code );
+        }
+
+        @Override
+        boolean isNull( int rowIndex )
+        {
+            return codes[rowIndex] == NULL_CODE;
+        }
+
+        @Override
+        boolean accepts( Object value )
+        {
+            return value == null || value instanceof String;
+        }
+
+        @Override
+        void add( Object value )
+        {
+            if ( size == codes.length )
+            {
+                codes = Arrays.copyOf( codes, size * 2 );
+            }
+
+            set( size++, value );
+        }
+
+        @Override
+        void set( int rowIndex, Object value )
+        {
+            codes[rowIndex] = value != null ? getCode( (String) value ) : NULL_CODE;
+        }
+
+        @Override
+        void removeLast()
+        {
+            size--;
+        }
+
+        @Override
+        void select( int[] rowIndexes )
+        {
+            int[] selectedCodes = new int[Math.max( 16, rowIndexes.length )];
+
+            for ( int i = 0; i < rowIndexes.length; i++ )
+            {
+                selectedCodes[i] = codes[rowIndexes[i]];
+            }
+
+            codes = selectedCodes;
+            size = rowIndexes.length;
+        }
+
+        @Override
+        int compare( int rowIndex1, int rowIndex2 )
+        {
+            return dictionary.get( codes[rowIndex1] ).compareTo( dictionary.get( codes[rowIndex2] ) );
+        }
+
+        /**
+         * Substitutes the values of the dictionary with the values of the
+         * given map. Returns false without substituting if any of the
+         * substitute values are not strings.
+         */
+        boolean substitute( Map<? extends Object, ? extends Object> map )
+        {
+            List<String> substituted = new ArrayList<>( dictionary.size() );
+
+            for ( String value : dictionary )
+            {
+                Object metaValue = map.get( value );
+
+                if ( metaValue != null && !(metaValue instanceof String) )
+                {
+                    return false;
+                }
+
+                substituted.add( metaValue != null ? (String) metaValue : value );
+            }
+
+            dictionary = substituted;
+            dictionaryIndex.clear();
+
+            for ( int code = 0; code < dictionary.size(); code++ )
+            {
+                dictionaryIndex.putIfAbsent( dictionary.get( code ), code );
+            }
+
+            return true;
+        }
+
+        private int getCode( String value )
+        {
+            Integer code = dictionaryIndex.get( value );
+
+            if ( code == null )
+            {
+                code = dictionary.size();
+                dictionary.add( value );
+                dictionaryIndex.put( value, code );
+            }
+
+            return code;
+        }
+    }
+
+    /**
+     * Column holding values of any type.
+     */
+    private static class ObjectColumn
+        extends GridColumn
+    {
+        private List<Object> values = new ArrayList<>();
+
+        @Override
+        int size()
+        {
+            return values.size();
+        }
+
+        @Override
+        Object get( int rowIndex )
+        {
+            return values.get( rowIndex );
+        }
+
+        @Override
+        boolean isNull( int rowIndex )
+        {
+            return values.get( rowIndex ) == null;
+        }
+
+        @Override
+        boolean accepts( Object value )
+        {
+            return true;
+        }
+
+        @Override
+        void add( Object value )
+        {
+            values.add( value );
+        }
+
+        @Override
+        void set( int rowIndex, Object value )
+        {
+            values.set( rowIndex, value );
+        }
+
+        @Override
+        void removeLast()
+        {
+            values.remove( values.size() - 1 );
+        }
+
+        @Override
+        void select( int[] rowIndexes )
+        {
+            List<Object> selectedValues = new ArrayList<>( rowIndexes.length );
+
+            for ( int rowIndex : rowIndexes )
+            {
+                selectedValues.add( values.get( rowIndex ) );
+            }
+
+            values = selectedValues;
+        }
+
+        @Override
+        boolean isComparable( int rowIndex )
+        {
+            return values.get( rowIndex ) instanceof Comparable<?>;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        int compare( int rowIndex1, int rowIndex2 )
+        {
+            return ((Comparable<Object>) values.get( rowIndex1 )).compareTo( values.get( rowIndex2 ) );
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.common.GridHeader;
+
+/**
+ * Writer of grid content to an output, row by row, so that grids which are too
+ * large to be held in memory can be written without building a {@link
+ * org.hisp.dhis.common.Grid}. Headers and meta data must be written before the
+ * rows, and the writer must be closed after the last row to complete the
+ * output. Nothing is written to the underlying output before the first write
+ * method is invoked, and the underlying output is flushed but not closed.
+ * <p>
+ * Write errors are thrown as {@link java.io.UncheckedIOException}.
+ *
+ * @author agent
+ */
+public interface GridWriter
+{
+    /**
+     * Writes the given headers.
+     *
+     * @param headers the grid headers.
+     */
+    void writeHeaders( List<GridHeader> headers );
+
+    /**
+     * Writes the given meta data. Ignored by formats which do not support
+     * meta data.
+     *
+     * @param metaData the grid meta data.
+     */
+    void writeMetaData( Map<String, Object> metaData );
+
+    /**
+     * Writes the given row.
+     *
+     * @param row the row values.
+     */
+    void writeRow( List<Object> row );
+
+    /**
+     * Completes the output and flushes the underlying output.
+     */
+    void close();
+}
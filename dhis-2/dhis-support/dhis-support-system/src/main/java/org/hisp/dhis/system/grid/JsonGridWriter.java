@@ -0,0 +1,176 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.common.GridHeader;
+import org.hisp.dhis.system.util.JacksonUtils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * {@link GridWriter} which writes JSON in the same format as a serialized
+ * {@link ListGrid}, with row values written as strings. The height and width
+ * of the grid are written after the rows.
+ *
+ * @author agent
+ */
+public class JsonGridWriter
+    implements GridWriter
+{
+    private static final String EMPTY = "";
+
+    private final JsonGenerator generator;
+
+    private boolean started = false;
+
+    private boolean rowsStarted = false;
+
+    private int height = 0;
+
+    private int width = 0;
+
+    public JsonGridWriter( OutputStream out )
+    {
+        try
+        {
+            this.generator = JacksonUtils.getJsonMapper().getFactory().createGenerator( out, JsonEncoding.UTF8 );
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    @Override
+    public void writeHeaders( List<GridHeader> headers )
+    {
+        try
+        {
+            start();
+
+            generator.writeFieldName( "headers" );
+            generator.writeObject( headers );
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    @Override
+    public void writeMetaData( Map<String, Object> metaData )
+    {
+        try
+        {
+            start();
+
+            generator.writeFieldName( "metaData" );
+            generator.writeObject( metaData );
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    @Override
+    public void writeRow( List<Object> row )
+    {
+        try
+        {
+            startRows();
+
+            generator.writeStartArray();
+
+            for ( Object value : row )
+            {
+                generator.writeString( value != null ? String.valueOf( value ) : EMPTY );
+            }
+
+            generator.writeEndArray();
+
+            height++;
+            width = row.size();
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            startRows();
+
+            generator.writeEndArray();
+            generator.writeNumberField( "height", height );
+            generator.writeNumberField( "width", width );
+            generator.writeEndObject();
+            generator.flush();
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    private void start()
+        throws IOException
+    {
+        if ( !started )
+        {
+            generator.writeStartObject();
+
+            started = true;
+        }
+    }
+
+    private void startRows()
+        throws IOException
+    {
+        start();
+
+        if ( !rowsStarted )
+        {
+            generator.writeArrayFieldStart( "rows" );
+
+            rowsStarted = true;
+        }
+    }
+}
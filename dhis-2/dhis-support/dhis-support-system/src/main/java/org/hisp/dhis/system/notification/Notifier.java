@@ -72,4 +72,12 @@ public interface Notifier
     Object getJobSummary( JobType jobType );
 
     Object getJobSummaryByJobId( JobType jobType, String jobId );
+
+    /**
+     * Returns the number of notifications published per job type since
+     * startup, including notifications which have since been evicted.
+     *
+     * @return a map of job types and notification counts.
+     */
+    Map<JobType, Long> getNotificationCounts();
 }
@@ -0,0 +1,454 @@
+package org.hisp.dhis.system.notification;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Notifier} which keeps the notifications of each job in a ring buffer
+ * of fixed capacity, so that memory use is bounded regardless of the number
+ * of notifications published by long-running jobs. Notifications are
+ * published without locking, and reads never block publication.
+ * <p>
+ * A bounded number of jobs is kept per job type. Finished jobs, which are
+ * jobs for which the most recent notification is a completed notification,
+ * are evicted after a retention period, and before unfinished jobs when the
+ * max number of jobs is exceeded. A job which is run again is unfinished
+ * until it publishes a completed notification again.
+ *
+ * @author agent
+ */
+public class RingBufferNotifier
+    implements Notifier
+{
+    private static final Log log = LogFactory.getLog( RingBufferNotifier.class );
+
+    private static final int DEFAULT_JOB_CAPACITY = 1000;
+
+    private static final int DEFAULT_MAX_JOBS_PER_TYPE = 100;
+
+    private static final long DEFAULT_FINISHED_JOB_RETENTION = TimeUnit.HOURS.toMillis( 24 );
+
+    private final int jobCapacity;
+
+    private final int maxJobsPerType;
+
+    private final long finishedJobRetention;
+
+    private final AtomicLong jobSequence = new AtomicLong();
+
+    private final Map<JobType, ConcurrentMap<String, JobNotifications>> jobs = new EnumMap<>( JobType.class );
+
+    private final Map<JobType, LongAdder> notificationCounts = new EnumMap<>( JobType.class );
+
+    public RingBufferNotifier()
+    {
+        this( DEFAULT_JOB_CAPACITY, DEFAULT_MAX_JOBS_PER_TYPE, DEFAULT_FINISHED_JOB_RETENTION );
+    }
+
+    /**
+     * @param jobCapacity the max number of notifications kept per job.
+     * @param maxJobsPerType the max number of jobs kept per job type.
+     * @param finishedJobRetention the time in milliseconds for which finished
+     *        jobs are kept.
+     */
+    public RingBufferNotifier( int jobCapacity, int maxJobsPerType, long finishedJobRetention )
+    {
+        this.jobCapacity = jobCapacity;
+        this.maxJobsPerType = maxJobsPerType;
+        this.finishedJobRetention = finishedJobRetention;
+
+        for ( JobType jobType : JobType.values() )
+        {
+            jobs.put( jobType, new ConcurrentHashMap<>() );
+            notificationCounts.put( jobType, new LongAdder() );
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Notifier implementation
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Notifier notify( JobConfiguration id, String message )
+    {
+        return notify( id, NotificationLevel.INFO, message, false );
+    }
+
+    @Override
+    public Notifier notify( JobConfiguration id, NotificationLevel level, String message )
+    {
+        return notify( id, level, message, false );
+    }
+
+    @Override
+    public Notifier notify( JobConfiguration id, NotificationLevel level, String message, boolean completed )
+    {
+        if ( id != null && !( level != null && level.isOff() ) )
+        {
+            Notification notification = new Notification( level, id.getJobType(), new Date(), message, completed );
+
+            getOrCreateJob( id ).add( notification );
+
+            notificationCounts.get( id.getJobType() ).increment();
+
+            log.info( notification );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Notifier update( JobConfiguration id, String message )
+    {
+        return update( id, NotificationLevel.INFO, message, false );
+    }
+
+    @Override
+    public Notifier update( JobConfiguration id, NotificationLevel level, String message )
+    {
+        return update( id, level, message, false );
+    }
+
+    @Override
+    public Notifier update( JobConfiguration id, NotificationLevel level, String message, boolean completed )
+    {
+        return notify( id, level, message, completed );
+    }
+
+    @Override
+    public Map<JobType, LinkedHashMap<String, LinkedList<Notification>>> getNotifications()
+    {
+        Map<JobType, LinkedHashMap<String, LinkedList<Notification>>> notifications = new EnumMap<>( JobType.class );
+
+        for ( JobType jobType : JobType.values() )
+        {
+            notifications.put( jobType, getNotificationsByJobType( jobType ) );
+        }
+
+        return notifications;
+    }
+
+    @Override
+    public List<Notification> getLastNotificationsByJobType( JobType jobType, String lastId )
+    {
+        List<Notification> list = new ArrayList<>();
+
+        Optional<JobNotifications> lastJob = getLastJob( jobType, false );
+
+        if ( lastJob.isPresent() )
+        {
+            for ( Notification notification : lastJob.get().getNotifications() )
+            {
+                if ( lastId != null && lastId.equals( notification.getUid() ) )
+                {
+                    break;
+                }
+
+                list.add( notification );
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public List<Notification> getNotificationsByJobId( JobType jobType, String jobId )
+    {
+        JobNotifications job = jobs.get( jobType ).get( jobId );
+
+        return job != null ? job.getNotifications() : new LinkedList<>();
+    }
+
+    @Override
+    public LinkedHashMap<String, LinkedList<Notification>> getNotificationsByJobType( JobType jobType )
+    {
+        LinkedHashMap<String, LinkedList<Notification>> notifications = new LinkedHashMap<>();
+
+        jobs.get( jobType ).values().stream()
+            .sorted( Comparator.comparingLong( JobNotifications::getSequence ) )
+            .filter( JobNotifications::hasNotifications )
+            .forEach( job -> notifications.put( job.getJobId(), job.getNotifications() ) );
+
+        return notifications;
+    }
+
+    @Override
+    public Notifier clear( JobConfiguration id )
+    {
+        if ( id != null )
+        {
+            jobs.get( id.getJobType() ).remove( id.getUid() );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Notifier addJobSummary( JobConfiguration id, Object jobSummary )
+    {
+        return addJobSummary( id, NotificationLevel.INFO, jobSummary );
+    }
+
+    @Override
+    public Notifier addJobSummary( JobConfiguration id, NotificationLevel level, Object jobSummary )
+    {
+        if ( id != null && !( level != null && level.isOff() ) )
+        {
+            getOrCreateJob( id ).setSummary( jobSummary );
+        }
+
+        return this;
+    }
+
+    @Override
+    public Object getJobSummariesForJobType( JobType jobType )
+    {
+        LinkedHashMap<String, Object> summaries = new LinkedHashMap<>();
+
+        jobs.get( jobType ).values().stream()
+            .sorted( Comparator.comparingLong( JobNotifications::getSequence ) )
+            .filter( job -> job.getSummary() != null )
+            .forEach( job -> summaries.put( job.getJobId(), job.getSummary() ) );
+
+        return summaries;
+    }
+
+    @Override
+    public Object getJobSummary( JobType jobType )
+    {
+        return getLastJob( jobType, true ).map( JobNotifications::getSummary ).orElse( null );
+    }
+
+    @Override
+    public Object getJobSummaryByJobId( JobType jobType, String jobId )
+    {
+        JobNotifications job = jobs.get( jobType ).get( jobId );
+
+        return job != null ? job.getSummary() : null;
+    }
+
+    @Override
+    public Map<JobType, Long> getNotificationCounts()
+    {
+        Map<JobType, Long> counts = new EnumMap<>( JobType.class );
+
+        notificationCounts.forEach( ( jobType, count ) -> counts.put( jobType, count.sum() ) );
+
+        return counts;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the notifications of the given job, and creates them if they do
+     * not exist. Evicts jobs of the same job type when a job is created.
+     */
+    private JobNotifications getOrCreateJob( JobConfiguration id )
+    {
+        ConcurrentMap<String, JobNotifications> jobTypeJobs = jobs.get( id.getJobType() );
+
+        JobNotifications job = jobTypeJobs.get( id.getUid() );
+
+        if ( job == null )
+        {
+            evict( jobTypeJobs );
+
+            job = jobTypeJobs.computeIfAbsent( id.getUid(),
+                jobId -> new JobNotifications( jobId, jobSequence.incrementAndGet(), jobCapacity ) );
+        }
+
+        return job;
+    }
+
+    /**
+     * Returns the most recently created job of the given job type.
+     *
+     * @param jobType the job type.
+     * @param withSummary whether to only consider jobs with a summary.
+     */
+    private Optional<JobNotifications> getLastJob( JobType jobType, boolean withSummary )
+    {
+        return jobs.get( jobType ).values().stream()
+            .filter( job -> withSummary ? job.getSummary() != null : job.hasNotifications() )
+            .max( Comparator.comparingLong( JobNotifications::getSequence ) );
+    }
+
+    /**
+     * Removes finished jobs older than the retention period, and removes jobs
+     * until there is room for a new job, finished jobs first and then the
+     * oldest jobs.
+     */
+    private void evict( ConcurrentMap<String, JobNotifications> jobTypeJobs )
+    {
+        long finishedBefore = System.currentTimeMillis() - finishedJobRetention;
+
+        jobTypeJobs.values().removeIf( job -> job.isFinished() && job.getFinished() < finishedBefore );
+
+        int excess = jobTypeJobs.size() - maxJobsPerType + 1;
+
+        if ( excess > 0 )
+        {
+            jobTypeJobs.values().stream()
+                .sorted( Comparator.comparing( JobNotifications::isFinished ).reversed()
+                    .thenComparingLong( JobNotifications::getSequence ) )
+                .limit( excess )
+                .forEach( job -> jobTypeJobs.remove( job.getJobId(), job ) );
+        }
+    }
+
+    /**
+     * Notifications of a job in a ring buffer. Publishers claim a sequence
+     * number and write the notification to the slot of the sequence number.
+     * Readers only include entries whose sequence number matches the slot
+     * being read, which skips slots which are claimed but not yet written.
+     */
+    private static class JobNotifications
+    {
+        private final String jobId;
+
+        private final long sequence;
+
+        private final AtomicReferenceArray<Entry> buffer;
+
+        private final AtomicLong head = new AtomicLong();
+
+        private volatile Object summary;
+
+        private volatile long finished;
+
+        JobNotifications( String jobId, long sequence, int capacity )
+        {
+            this.jobId = jobId;
+            this.sequence = sequence;
+            this.buffer = new AtomicReferenceArray<>( capacity );
+        }
+
+        void add( Notification notification )
+        {
+            long index = head.getAndIncrement();
+
+            buffer.set( (int) ( index % buffer.length() ), new Entry( index, notification ) );
+
+            finished = notification.isCompleted() ? System.currentTimeMillis() : 0;
+        }
+
+        /**
+         * Returns the notifications in the buffer, most recent first.
+         */
+        LinkedList<Notification> getNotifications()
+        {
+            LinkedList<Notification> notifications = new LinkedList<>();
+
+            long last = head.get() - 1;
+            long first = Math.max( 0, last - buffer.length() + 1 );
+
+            for ( long index = last; index >= first; index-- )
+            {
+                Entry entry = buffer.get( (int) ( index % buffer.length() ) );
+
+                if ( entry != null && entry.index == index )
+                {
+                    notifications.add( entry.notification );
+                }
+            }
+
+            return notifications;
+        }
+
+        boolean hasNotifications()
+        {
+            return head.get() > 0;
+        }
+
+        String getJobId()
+        {
+            return jobId;
+        }
+
+        long getSequence()
+        {
+            return sequence;
+        }
+
+        Object getSummary()
+        {
+            return summary;
+        }
+
+        void setSummary( Object summary )
+        {
+            this.summary = summary;
+        }
+
+        boolean isFinished()
+        {
+            return finished > 0;
+        }
+
+        long getFinished()
+        {
+            return finished;
+        }
+    }
+
+    private static class Entry
+    {
+        private final long index;
+
+        private final Notification notification;
+
+        Entry( long index, Notification notification )
+        {
+            this.index = index;
+            this.notification = notification;
+        }
+    }
+}
@@ -51,6 +51,20 @@ public abstract class AbstractStartupRoutine
         this.runlevel = runlevel;
     }
     
+    private String version;
+
+    public void setVersion( String version )
+    {
+        this.version = version;
+    }
+
+    private boolean parallel = false;
+
+    public void setParallel( boolean parallel )
+    {
+        this.parallel = parallel;
+    }
+
     private boolean skipInTests = false;
 
     public void setSkipInTests( boolean skipInTests )
@@ -74,6 +88,18 @@ public abstract class AbstractStartupRoutine
         return name;
     }
 
+    @Override
+    public String getVersion()
+    {
+        return version;
+    }
+
+    @Override
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
     @Override
     public boolean skipInTests()
     {
@@ -28,13 +28,33 @@ package org.hisp.dhis.system.startup;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.external.conf.ConfigurationKey;
 import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Default implementation of StartupRoutineExecutor. The execute method will
@@ -42,6 +62,15 @@ import java.util.List;
  * can be ignored from the command line by appending the below.
  * 
  * <code>-Ddhis.skip.startup=true</code>
+ * <p>
+ * StartupRoutines with a version are executed once per version and build. The
+ * executed versions are recorded in a ledger table, and StartupRoutines which
+ * are recorded with the current version and build are skipped. When the build
+ * is not known, StartupRoutines are executed on every startup. Adjacent
+ * StartupRoutines with the same runlevel which are marked as parallel are
+ * executed concurrently if enabled in the configuration. Other StartupRoutines
+ * are executed one at a time. The ledger and parallel execution are not used
+ * in tests.
  * 
  * @author <a href="mailto:torgeilo@gmail.com">Torgeir Lorange Ostby</a>
  */
@@ -52,10 +81,16 @@ public class DefaultStartupRoutineExecutor
 
     private static final String TRUE = "true";
     private static final String SKIP_PROP = "dhis.skip.startup";
+    private static final String LEDGER_TABLE = "startuproutineversion";
+    private static final String BUILD_PROPERTIES = "build.properties";
+    private static final String BUILD_REVISION = "build.revision";
     
     @Autowired
     private DhisConfigurationProvider config;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     @Autowired( required = false )
     private List<StartupRoutine> startupRoutines;
 
@@ -100,22 +135,212 @@ public class DefaultStartupRoutineExecutor
         
         Collections.sort( startupRoutines, new StartupRoutineComparator() );
 
-        int total = startupRoutines.size();
-        int index = 1;
+        String revision = testing ? null : getBuildRevision();
+        Map<String, String> ledger = revision != null ? getLedger() : new HashMap<>();
+        boolean parallel = !testing && config.isEnabled( ConfigurationKey.SYSTEM_STARTUP_PARALLEL );
+
+        Map<Integer, List<StartupRoutine>> runlevels = new TreeMap<>();
 
         for ( StartupRoutine routine : startupRoutines )
         {
-            if ( !( testing && routine.skipInTests() ) )
+            if ( testing && routine.skipInTests() )
+            {
+                continue;
+            }
+
+            String version = getVersion( routine, revision );
+
+            if ( version != null && version.equals( ledger.get( routine.getName() ) ) )
+            {
+                log.info( "Skipping startup routine, version " + version + " already executed: " + routine.getName() );
+                continue;
+            }
+
+            runlevels.computeIfAbsent( routine.getRunlevel(), runlevel -> new ArrayList<>() ).add( routine );
+        }
+
+        int total = runlevels.values().stream().mapToInt( List::size ).sum();
+        int index = 1;
+
+        for ( List<StartupRoutine> routines : runlevels.values() )
+        {
+            for ( List<StartupRoutine> step : getSteps( routines, parallel ) )
             {
-                log.info( "Executing startup routine [" + index + " of " + total + ", runlevel " + routine.getRunlevel()
-                    + "]: " + routine.getName() );
+                if ( step.size() > 1 )
+                {
+                    executeInParallel( step, revision, index, total );
+                }
+                else
+                {
+                    execute( step.get( 0 ), revision, index, total );
+                }
 
-                routine.execute();
-                
-                ++index;
+                index += step.size();
             }
         }
 
         log.info( "All startup routines done" );
     }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Splits the given StartupRoutines of a runlevel into steps which are
+     * executed one after the other. Adjacent parallel StartupRoutines share a
+     * step if parallel execution is enabled, any other StartupRoutine is a
+     * step of its own.
+     */
+    private List<List<StartupRoutine>> getSteps( List<StartupRoutine> routines, boolean parallel )
+    {
+        List<List<StartupRoutine>> steps = new ArrayList<>();
+        List<StartupRoutine> step = null;
+
+        for ( StartupRoutine routine : routines )
+        {
+            if ( parallel && routine.isParallel() && step != null && step.get( 0 ).isParallel() )
+            {
+                step.add( routine );
+            }
+            else
+            {
+                step = new ArrayList<>();
+                step.add( routine );
+                steps.add( step );
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * Executes the given StartupRoutine, and records its version in the
+     * ledger if the StartupRoutine is versioned. Recording the version may fail
+     * when several instances start at the same time, in which case the
+     * StartupRoutine is executed again on the next startup.
+     */
+    private void execute( StartupRoutine routine, String revision, int index, int total )
+        throws Exception
+    {
+        log.info( "Executing startup routine [" + index + " of " + total + ", runlevel " + routine.getRunlevel()
+            + "]: " + routine.getName() );
+
+        routine.execute();
+
+        String version = getVersion( routine, revision );
+
+        if ( version != null )
+        {
+            try
+            {
+                jdbcTemplate.update( "delete from " + LEDGER_TABLE + " where name = ?", routine.getName() );
+                jdbcTemplate.update( "insert into " + LEDGER_TABLE + " (name, version, executed) values (?, ?, ?)",
+                    routine.getName(), version, new Date() );
+            }
+            catch ( DataAccessException ex )
+            {
+                log.warn( "Could not record version " + version + " of startup routine: " + routine.getName(), ex );
+            }
+        }
+    }
+
+    /**
+     * Executes the given StartupRoutines concurrently and waits for all of
+     * them to complete. Rethrows the first failure. Each StartupRoutine gets a
+     * thread of its own, as StartupRoutines mostly wait on the database.
+     */
+    private void executeInParallel( List<StartupRoutine> routines, String revision, int index, int total )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( routines.size() );
+
+        try
+        {
+            List<Callable<Void>> tasks = IntStream.range( 0, routines.size() )
+                .mapToObj( i -> (Callable<Void>) () -> {
+                    execute( routines.get( i ), revision, index + i, total );
+                    return null;
+                } )
+                .collect( Collectors.toList() );
+
+            for ( Future<Void> future : executor.invokeAll( tasks ) )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( ExecutionException ex )
+                {
+                    throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the version to record in the ledger for the given StartupRoutine,
+     * which is the version of the StartupRoutine combined with the build
+     * revision, or null if the StartupRoutine is not versioned or the build
+     * revision is not known.
+     */
+    private String getVersion( StartupRoutine routine, String revision )
+    {
+        return routine.getVersion() != null && revision != null ? routine.getVersion() + "-" + revision : null;
+    }
+
+    /**
+     * Returns the executed versions of StartupRoutines by name. Creates the
+     * ledger table if it does not exist.
+     */
+    private Map<String, String> getLedger()
+    {
+        jdbcTemplate.execute( "create table if not exists " + LEDGER_TABLE + " (" +
+            "name varchar(255) not null primary key, version varchar(255) not null, executed timestamp not null)" );
+
+        Map<String, String> ledger = new HashMap<>();
+
+        jdbcTemplate.query( "select name, version from " + LEDGER_TABLE, rs -> {
+            ledger.put( rs.getString( "name" ), rs.getString( "version" ) );
+        } );
+
+        return ledger;
+    }
+
+    /**
+     * Returns the revision of the build, or null if not known.
+     */
+    private String getBuildRevision()
+    {
+        ClassPathResource resource = new ClassPathResource( BUILD_PROPERTIES );
+
+        if ( !resource.isReadable() )
+        {
+            return null;
+        }
+
+        InputStream in = null;
+
+        try
+        {
+            in = resource.getInputStream();
+
+            Properties properties = new Properties();
+            properties.load( in );
+
+            return properties.getProperty( BUILD_REVISION );
+        }
+        catch ( IOException ex )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
 }
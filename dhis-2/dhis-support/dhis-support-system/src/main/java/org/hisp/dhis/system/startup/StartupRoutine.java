@@ -61,6 +61,26 @@ public interface StartupRoutine
      * @return the runlevel for the StartupRoutine.
      */
     int getRunlevel();
+
+    /**
+     * Returns the version of the StartupRoutine. A StartupRoutine with a
+     * version is executed once per version and build, and is skipped on later
+     * startups once recorded as executed. A StartupRoutine without a version
+     * is executed on every startup.
+     * 
+     * @return the version, or null if the StartupRoutine is not versioned.
+     */
+    String getVersion();
+
+    /**
+     * Returns whether this StartupRoutine is independent of the other parallel
+     * StartupRoutines with the same runlevel, and can be executed concurrently
+     * with them when parallel startup is enabled. StartupRoutines are not
+     * parallel unless they declare so.
+     * 
+     * @return true if this StartupRoutine can be executed in parallel.
+     */
+    boolean isParallel();
     
     /**
      * Returns whether this StartupRoutine is to be skipped in tests or not.
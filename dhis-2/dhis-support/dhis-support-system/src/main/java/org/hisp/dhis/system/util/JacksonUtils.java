@@ -56,6 +56,11 @@ public class JacksonUtils
         jsonMapper.setSerializationInclusion( JsonInclude.Include.NON_NULL );
     }
 
+    public static ObjectMapper getJsonMapper()
+    {
+        return jsonMapper;
+    }
+
     public static <T> T fromJson( byte[] src, Class<T> clazz )
     {
         try
@@ -184,9 +184,10 @@ public class MathUtils
     }
 
     /**
-     * Returns an JEP parser instance.
+     * Returns an JEP parser instance with the standard and custom functions
+     * added.
      */
-    private static JEP getJep()
+    public static JEP getJep()
     {
         final JEP parser = new JEP();
         parser.addStandardFunctions();
@@ -0,0 +1,234 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.GridHeader;
+import org.hisp.dhis.common.ValueType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * @author agent
+ */
+public class ColumnarGridTest
+{
+    private Grid grid;
+
+    @Before
+    public void setUp()
+    {
+        grid = new ColumnarGrid()
+            .addHeader( new GridHeader( "dx", "Data", ValueType.TEXT, String.class.getName(), false, true ) )
+            .addHeader( new GridHeader( "pe", "Period", ValueType.TEXT, String.class.getName(), false, true ) )
+            .addHeader( new GridHeader( "value", "Value", ValueType.NUMBER, Double.class.getName(), false, false ) )
+            .addRow().addValuesVar( "deA", "201801", 3d )
+            .addRow().addValuesVar( "deB", "201801", null )
+            .addRow().addValuesVar( "deA", "201802", 1d )
+            .addRow().addValuesVar( "deB", "201802", 2d );
+    }
+
+    @Test
+    public void testGetValues()
+    {
+        assertEquals( 4, grid.getHeight() );
+        assertEquals( 3, grid.getWidth() );
+
+        assertEquals( Lists.newArrayList( "deA", "201801", 3d ), grid.getRow( 0 ) );
+        assertEquals( Lists.newArrayList( "deB", "201801", null ), grid.getRow( 1 ) );
+        assertEquals( "deA", grid.getValue( 2, 0 ) );
+        assertEquals( 2d, grid.getValue( 3, 2 ) );
+        assertNull( grid.getValue( 1, 2 ) );
+
+        assertEquals( Lists.newArrayList( "deA", "deB", "deA", "deB" ), grid.getColumn( 0 ) );
+    }
+
+    @Test
+    public void testMixedValueTypes()
+    {
+        grid.getRow( 0 ).set( 2, 3 );
+        grid.addRow().addValuesVar( "deC", 201803, "4" );
+
+        assertEquals( 3, grid.getValue( 0, 2 ) );
+        assertEquals( 1d, grid.getValue( 2, 2 ) );
+        assertEquals( 201803, grid.getValue( 4, 1 ) );
+        assertEquals( "201802", grid.getValue( 3, 1 ) );
+        assertEquals( "4", grid.getValue( 4, 2 ) );
+    }
+
+    @Test
+    public void testRaggedRows()
+    {
+        Grid grid = new ColumnarGrid()
+            .addRow().addValuesVar( "A1", null )
+            .addRow().addValuesVar( "B1", null, "B3" )
+            .addRow().addValuesVar( "C1" );
+
+        assertEquals( 3, grid.getWidth() );
+        assertEquals( Lists.newArrayList( "A1", null, null ), grid.getRow( 0 ) );
+        assertEquals( Lists.newArrayList( "C1", null, null ), grid.getRow( 2 ) );
+        assertTrue( grid.columnIsEmpty( 1 ) );
+        assertFalse( grid.columnIsEmpty( 2 ) );
+    }
+
+    @Test
+    public void testSortGrid()
+    {
+        grid.sortGrid( 3, -1 );
+
+        List<Object> column = grid.getColumn( 2 );
+
+        assertEquals( Lists.newArrayList( null, 1d, 2d, 3d ), column );
+        assertEquals( "deB", grid.getValue( 0, 0 ) );
+        assertEquals( "201802", grid.getValue( 1, 1 ) );
+
+        grid.sortGrid( 3, 1 );
+
+        column = grid.getColumn( 2 );
+
+        assertEquals( Lists.newArrayList( 3d, 2d, 1d, null ), column );
+        assertEquals( "201801", grid.getValue( 0, 1 ) );
+    }
+
+    @Test
+    public void testSortGridConsistentWithListGrid()
+    {
+        Grid columnarGrid = new ColumnarGrid();
+        Grid listGrid = new ListGrid();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            Double value = i % 7 == 0 ? null : Double.valueOf( ( i * 31 ) % 10 );
+
+            columnarGrid.addRow().addValuesVar( "row" + i, value );
+            listGrid.addRow().addValuesVar( "row" + i, value );
+        }
+
+        columnarGrid.sortGrid( 2, -1 );
+        listGrid.sortGrid( 2, -1 );
+
+        assertEquals( listGrid.getColumn( 0 ), columnarGrid.getColumn( 0 ) );
+
+        columnarGrid.sortGrid( 2, 1 );
+        listGrid.sortGrid( 2, 1 );
+
+        assertEquals( listGrid.getColumn( 0 ), columnarGrid.getColumn( 0 ) );
+    }
+
+    @Test
+    public void testLimitGrid()
+    {
+        grid.limitGrid( 1, 3 );
+
+        assertEquals( 2, grid.getHeight() );
+        assertEquals( Lists.newArrayList( "deB", "201801", null ), grid.getRow( 0 ) );
+        assertEquals( Lists.newArrayList( "deA", "201802", 1d ), grid.getRow( 1 ) );
+
+        grid.limitGrid( 1 );
+
+        assertEquals( 1, grid.getHeight() );
+        assertEquals( "deB", grid.getValue( 0, 0 ) );
+    }
+
+    @Test
+    public void testSubstituteMetaData()
+    {
+        Map<String, String> metaData = ImmutableMap.of( "deA", "Data element A", "201801", "January 2018", "dx", "Data item" );
+
+        grid.substituteMetaData( metaData );
+
+        assertEquals( "Data item", grid.getHeaders().get( 0 ).getName() );
+        assertEquals( Lists.newArrayList( "Data element A", "deB", "Data element A", "deB" ), grid.getColumn( 0 ) );
+        assertEquals( Lists.newArrayList( "January 2018", "January 2018", "201802", "201802" ), grid.getColumn( 1 ) );
+
+        grid.addRow().addValuesVar( "deA", "201803", 5d );
+
+        assertEquals( "deA", grid.getValue( 4, 0 ) );
+    }
+
+    @Test
+    public void testAddAndRemoveColumns()
+    {
+        grid.addColumn( 2, Lists.newArrayList( "coA", "coA", "coB", null ) );
+
+        assertEquals( 4, grid.getWidth() );
+        assertEquals( Lists.newArrayList( "deA", "201801", "coA", 3d ), grid.getRow( 0 ) );
+
+        grid.removeColumn( 1 );
+
+        assertEquals( 3, grid.getWidth() );
+        assertEquals( Lists.newArrayList( "deB", "coB", 2d ), grid.getRow( 3 ) );
+        assertEquals( 2, grid.getHeaders().size() );
+    }
+
+    @Test
+    public void testGetVisibleRows()
+    {
+        grid.getHeaders().get( 1 ).setHidden( true );
+
+        assertEquals( 2, grid.getVisibleWidth() );
+        assertEquals( Lists.newArrayList( "deA", 3d ), grid.getVisibleRows().get( 0 ) );
+    }
+
+    @Test
+    public void testRemoveCurrentWriteRow()
+    {
+        grid.addRow().addValuesVar( "deC", "201803" );
+        grid.removeCurrentWriteRow();
+
+        assertEquals( 4, grid.getHeight() );
+
+        grid.addRow().addValuesVar( "deD", "201804", 4d );
+
+        assertEquals( Lists.newArrayList( "deD", "201804", 4d ), grid.getRow( 4 ) );
+    }
+
+    @Test
+    public void testAddRows()
+    {
+        Grid other = new ListGrid()
+            .addRow().addValuesVar( "deC", "201803", 5d );
+
+        grid.addRows( other );
+
+        assertEquals( 5, grid.getHeight() );
+        assertEquals( Lists.newArrayList( "deC", "201803", 5d ), grid.getRow( 4 ) );
+    }
+}
@@ -0,0 +1,126 @@
+package org.hisp.dhis.system.grid;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.hisp.dhis.common.Grid;
+import org.hisp.dhis.common.GridHeader;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.system.util.JacksonUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * @author agent
+ */
+public class GridWriterTest
+{
+    private Grid grid;
+
+    @Before
+    public void setUp()
+    {
+        grid = new ListGrid()
+            .addHeader( new GridHeader( "dx", "Data", ValueType.TEXT, String.class.getName(), false, true ) )
+            .addHeader( new GridHeader( "value", "Value", ValueType.NUMBER, Double.class.getName(), false, false ) )
+            .addRow().addValuesVar( "deA", 3d )
+            .addRow().addValuesVar( "deB", null );
+
+        grid.setMetaData( ImmutableMap.of( "items", ImmutableMap.of( "deA", "Data element A" ) ) );
+    }
+
+    @Test
+    public void testWriteCsv()
+        throws Exception
+    {
+        StringWriter expected = new StringWriter();
+        StringWriter actual = new StringWriter();
+
+        GridUtils.toCsv( grid, expected );
+
+        write( grid, new CsvGridWriter( actual ) );
+
+        assertEquals( expected.toString(), actual.toString() );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void testWriteJson()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        write( grid, new JsonGridWriter( out ) );
+
+        Map<String, Object> json = JacksonUtils.fromJson( out.toByteArray(), Map.class );
+
+        assertEquals( 2, json.get( "height" ) );
+        assertEquals( 2, json.get( "width" ) );
+        assertEquals( 2, ((List<Object>) json.get( "headers" )).size() );
+        assertEquals( ImmutableMap.of( "items", ImmutableMap.of( "deA", "Data element A" ) ), json.get( "metaData" ) );
+        assertEquals( Lists.newArrayList( Lists.newArrayList( "deA", "3.0" ), Lists.newArrayList( "deB", "" ) ), json.get( "rows" ) );
+    }
+
+    @Test
+    public void testWriteJsonWithoutRows()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        GridWriter writer = new JsonGridWriter( out );
+        writer.writeHeaders( grid.getHeaders() );
+        writer.close();
+
+        Map<?, ?> json = JacksonUtils.fromJson( new String( out.toByteArray(), StandardCharsets.UTF_8 ), Map.class );
+
+        assertEquals( 0, json.get( "height" ) );
+        assertEquals( Lists.newArrayList(), json.get( "rows" ) );
+    }
+
+    private void write( Grid grid, GridWriter writer )
+    {
+        writer.writeHeaders( grid.getHeaders() );
+        writer.writeMetaData( grid.getMetaData() );
+
+        for ( List<Object> row : grid.getRows() )
+        {
+            writer.writeRow( row );
+        }
+
+        writer.close();
+    }
+}
@@ -0,0 +1,188 @@
+package org.hisp.dhis.system.notification;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobType;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hisp.dhis.scheduling.JobType.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class RingBufferNotifierTest
+{
+    private JobConfiguration id1 = new JobConfiguration( null, DATAVALUE_IMPORT, "userA", true );
+    private JobConfiguration id2 = new JobConfiguration( null, DATAVALUE_IMPORT, "userA", true );
+    private JobConfiguration id3 = new JobConfiguration( null, DATAVALUE_IMPORT, "userA", true );
+
+    @Test
+    public void testBoundedNotifications()
+    {
+        Notifier notifier = new RingBufferNotifier( 3, 10, TimeUnit.HOURS.toMillis( 1 ) );
+
+        notifier.notify( id1, "Import started" );
+        notifier.notify( id1, "Import working" );
+        notifier.notify( id1, "Import validated" );
+        notifier.notify( id1, "Import done" );
+
+        List<Notification> notifications = notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() );
+
+        assertEquals( 3, notifications.size() );
+        assertEquals( "Import done", notifications.get( 0 ).getMessage() );
+        assertEquals( "Import working", notifications.get( 2 ).getMessage() );
+        assertEquals( Long.valueOf( 4 ), notifier.getNotificationCounts().get( DATAVALUE_IMPORT ) );
+        assertEquals( Long.valueOf( 0 ), notifier.getNotificationCounts().get( ANALYTICS_TABLE ) );
+    }
+
+    @Test
+    public void testGetLastNotificationsByJobType()
+    {
+        Notifier notifier = new RingBufferNotifier();
+
+        notifier.notify( id1, "Import A started" );
+        notifier.notify( id2, "Import B started" );
+        notifier.notify( id2, "Import B working" );
+        notifier.notify( id2, "Import B done" );
+
+        List<Notification> notifications = notifier.getLastNotificationsByJobType( DATAVALUE_IMPORT, null );
+
+        assertEquals( 3, notifications.size() );
+
+        String lastId = notifications.get( 1 ).getUid();
+
+        notifications = notifier.getLastNotificationsByJobType( DATAVALUE_IMPORT, lastId );
+
+        assertEquals( 1, notifications.size() );
+        assertEquals( "Import B done", notifications.get( 0 ).getMessage() );
+    }
+
+    @Test
+    public void testEvictFinishedJobsFirst()
+    {
+        Notifier notifier = new RingBufferNotifier( 10, 2, TimeUnit.HOURS.toMillis( 1 ) );
+
+        notifier.notify( id1, "Import A started" );
+        notifier.notify( id2, "Import B started" );
+        notifier.notify( id2, NotificationLevel.INFO, "Import B done", true );
+        notifier.notify( id3, "Import C started" );
+
+        assertEquals( 1, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() ).size() );
+        assertEquals( 0, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id2.getUid() ).size() );
+        assertEquals( 1, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id3.getUid() ).size() );
+        assertEquals( 2, notifier.getNotificationsByJobType( DATAVALUE_IMPORT ).size() );
+    }
+
+    @Test
+    public void testEvictFinishedJobsAfterRetention()
+        throws Exception
+    {
+        Notifier notifier = new RingBufferNotifier( 10, 10, 0 );
+
+        notifier.notify( id1, NotificationLevel.INFO, "Import A done", true );
+        notifier.addJobSummary( id1, new Object() );
+
+        assertNotNull( notifier.getJobSummary( DATAVALUE_IMPORT ) );
+
+        Thread.sleep( 5 );
+
+        notifier.notify( id2, "Import B started" );
+
+        assertEquals( 0, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() ).size() );
+        assertNull( notifier.getJobSummaryByJobId( DATAVALUE_IMPORT, id1.getUid() ) );
+    }
+
+    @Test
+    public void testRerunJobIsNotFinished()
+        throws Exception
+    {
+        Notifier notifier = new RingBufferNotifier( 10, 2, 0 );
+
+        notifier.notify( id1, NotificationLevel.INFO, "Import A done", true );
+        notifier.notify( id1, "Import A started again" );
+
+        Thread.sleep( 5 );
+
+        notifier.notify( id2, "Import B started" );
+
+        assertEquals( 2, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() ).size() );
+
+        notifier.notify( id2, NotificationLevel.INFO, "Import B done", true );
+        notifier.notify( id3, "Import C started" );
+
+        assertEquals( 2, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() ).size() );
+        assertEquals( 0, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id2.getUid() ).size() );
+        assertEquals( 1, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id3.getUid() ).size() );
+    }
+
+    @Test
+    public void testConcurrentNotify()
+        throws Exception
+    {
+        Notifier notifier = new RingBufferNotifier( 100, 10, TimeUnit.HOURS.toMillis( 1 ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            final int n = i;
+
+            executor.submit( () -> notifier.notify( id1, "Notification " + n ) );
+            executor.submit( () -> notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() ) );
+        }
+
+        executor.shutdown();
+
+        assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+        assertEquals( 100, notifier.getNotificationsByJobId( DATAVALUE_IMPORT, id1.getUid() ).size() );
+        assertEquals( Long.valueOf( 1000 ), notifier.getNotificationCounts().get( DATAVALUE_IMPORT ) );
+    }
+
+    @Test
+    public void testGetNotifications()
+    {
+        Notifier notifier = new RingBufferNotifier();
+
+        notifier.notify( id1, "Import started" );
+
+        assertEquals( JobType.values().length, notifier.getNotifications().size() );
+        assertEquals( 1, notifier.getNotifications().get( DATAVALUE_IMPORT ).size() );
+        assertEquals( 0, notifier.getNotifications().get( ANALYTICS_TABLE ).size() );
+    }
+}
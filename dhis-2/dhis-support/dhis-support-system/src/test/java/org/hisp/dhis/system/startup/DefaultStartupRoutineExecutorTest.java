@@ -0,0 +1,199 @@
+package org.hisp.dhis.system.startup;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The build revision is read from the build.properties of the test resources.
+ *
+ * @author agent
+ */
+@RunWith( MockitoJUnitRunner.class )
+public class DefaultStartupRoutineExecutorTest
+{
+    private static final String REVISION = "abc1234";
+
+    @Mock
+    private DhisConfigurationProvider config;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private List<StartupRoutine> startupRoutines = new ArrayList<>();
+
+    @InjectMocks
+    private DefaultStartupRoutineExecutor executor;
+
+    private List<String> executed = Collections.synchronizedList( new ArrayList<>() );
+
+    @Test
+    public void testSkipExecutedVersion()
+        throws Exception
+    {
+        setLedger( "RoutineA", "1-" + REVISION );
+
+        startupRoutines.add( createRoutine( "RoutineA", 1, "1", false, () -> {} ) );
+        startupRoutines.add( createRoutine( "RoutineB", 1, "1", false, () -> {} ) );
+        startupRoutines.add( createRoutine( "RoutineC", 2, null, false, () -> {} ) );
+
+        executor.execute();
+
+        assertEquals( 2, executed.size() );
+        assertEquals( "RoutineB", executed.get( 0 ) );
+        assertEquals( "RoutineC", executed.get( 1 ) );
+
+        verify( jdbcTemplate ).update( startsWith( "insert" ), eq( "RoutineB" ), eq( "1-" + REVISION ), any() );
+        verify( jdbcTemplate, never() ).update( startsWith( "insert" ), eq( "RoutineA" ), any(), any() );
+        verify( jdbcTemplate, never() ).update( startsWith( "insert" ), eq( "RoutineC" ), any(), any() );
+    }
+
+    @Test
+    public void testExecuteParallel()
+        throws Exception
+    {
+        when( config.isEnabled( ConfigurationKey.SYSTEM_STARTUP_PARALLEL ) ).thenReturn( true );
+
+        CyclicBarrier barrier = new CyclicBarrier( 2 );
+
+        startupRoutines.add( createRoutine( "RoutineA", 1, null, true, () -> await( barrier ) ) );
+        startupRoutines.add( createRoutine( "RoutineB", 1, null, true, () -> await( barrier ) ) );
+        startupRoutines.add( createRoutine( "RoutineC", 1, null, false, () -> {
+            assertTrue( executed.contains( "RoutineA" ) );
+            assertTrue( executed.contains( "RoutineB" ) );
+        } ) );
+        startupRoutines.add( createRoutine( "RoutineD", 2, null, true, () -> {} ) );
+
+        executor.execute();
+
+        assertEquals( 4, executed.size() );
+        assertEquals( "RoutineC", executed.get( 2 ) );
+        assertEquals( "RoutineD", executed.get( 3 ) );
+    }
+
+    @Test
+    public void testExecuteParallelDisabled()
+        throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+
+        Runnable task = () -> {
+            assertEquals( 1, running.incrementAndGet() );
+            running.decrementAndGet();
+        };
+
+        startupRoutines.add( createRoutine( "RoutineA", 1, null, true, task ) );
+        startupRoutines.add( createRoutine( "RoutineB", 1, null, true, task ) );
+
+        executor.execute();
+
+        assertEquals( 2, executed.size() );
+        assertEquals( "RoutineA", executed.get( 0 ) );
+        assertEquals( "RoutineB", executed.get( 1 ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private StartupRoutine createRoutine( String name, int runlevel, String version, boolean parallel, Runnable task )
+    {
+        AbstractStartupRoutine routine = new AbstractStartupRoutine()
+        {
+            @Override
+            public void execute()
+            {
+                task.run();
+                executed.add( getName() );
+            }
+        };
+
+        routine.setName( name );
+        routine.setRunlevel( runlevel );
+        routine.setVersion( version );
+        routine.setParallel( parallel );
+
+        return routine;
+    }
+
+    private void setLedger( String name, String version )
+        throws Exception
+    {
+        ResultSet rs = mock( ResultSet.class );
+        when( rs.getString( "name" ) ).thenReturn( name );
+        when( rs.getString( "version" ) ).thenReturn( version );
+
+        doAnswer( invocation -> {
+            ((RowCallbackHandler) invocation.getArguments()[1]).processRow( rs );
+            return null;
+        } ).when( jdbcTemplate ).query( anyString(), any( RowCallbackHandler.class ) );
+    }
+
+    private void await( CyclicBarrier barrier )
+    {
+        try
+        {
+            barrier.await( 10, TimeUnit.SECONDS );
+        }
+        catch ( Exception ex )
+        {
+            throw new RuntimeException( ex );
+        }
+    }
+}
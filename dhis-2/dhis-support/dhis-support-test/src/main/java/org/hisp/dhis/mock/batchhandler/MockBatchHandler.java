@@ -29,6 +29,7 @@ package org.hisp.dhis.mock.batchhandler;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hisp.quick.BatchHandler;
@@ -40,9 +41,9 @@ import org.hisp.quick.JdbcConfiguration;
 public class MockBatchHandler<T>
     implements BatchHandler<T>
 {
-    private List<T> inserts = new ArrayList<>();
-    private List<T> updates = new ArrayList<>();
-    private List<T> deletes = new ArrayList<>();
+    private List<T> inserts = Collections.synchronizedList( new ArrayList<>() );
+    private List<T> updates = Collections.synchronizedList( new ArrayList<>() );
+    private List<T> deletes = Collections.synchronizedList( new ArrayList<>() );
     
     private boolean findSelf = false;
     
@@ -36,7 +36,10 @@ import org.hisp.dhis.common.Grid;
 import org.hisp.dhis.common.IdScheme;
 import org.hisp.dhis.common.cache.CacheStrategy;
 import org.hisp.dhis.dxf2.datavalueset.DataValueSet;
+import org.hisp.dhis.system.grid.CsvGridWriter;
 import org.hisp.dhis.system.grid.GridUtils;
+import org.hisp.dhis.system.grid.GridWriter;
+import org.hisp.dhis.system.grid.JsonGridWriter;
 import org.hisp.dhis.webapi.mvc.annotation.ApiVersion;
 import org.hisp.dhis.webapi.utils.ContextUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -409,7 +412,7 @@ public class AnalyticsController
     // -------------------------------------------------------------------------
 
     @RequestMapping( value = RESOURCE_PATH + RAW_DATA_PATH + ".json", method = RequestMethod.GET )
-    public @ResponseBody Grid getRawDataJson(
+    public void getRawDataJson(
         @RequestParam Set<String> dimension,
         @RequestParam( required = false ) Date startDate,
         @RequestParam( required = false ) Date endDate,
@@ -430,7 +433,10 @@ public class AnalyticsController
             false, false, false, showHierarchy, false, includeMetadataDetails, displayProperty, outputIdScheme, inputIdScheme, false, null, null, userOrgUnit, true, apiVersion, null );
 
         contextUtils.configureAnalyticsResponse( response, ContextUtils.CONTENT_TYPE_JSON, CacheStrategy.RESPECT_SYSTEM_SETTING, null, false, params.getLatestEndDate() );
-        return analyticsService.getRawDataValues( params );
+
+        GridWriter writer = new JsonGridWriter( response.getOutputStream() );
+        analyticsService.writeRawDataValues( params, writer );
+        writer.close();
     }
 
     @RequestMapping( value = RESOURCE_PATH + RAW_DATA_PATH + ".csv", method = RequestMethod.GET )
@@ -455,8 +461,10 @@ public class AnalyticsController
             false, false, false, showHierarchy, false, includeMetadataDetails, displayProperty, outputIdScheme, inputIdScheme, false, null, null, userOrgUnit, true, apiVersion, null );
 
         contextUtils.configureAnalyticsResponse( response, ContextUtils.CONTENT_TYPE_CSV, CacheStrategy.RESPECT_SYSTEM_SETTING, null, false, params.getLatestEndDate() );
-        Grid grid = analyticsService.getRawDataValues( params );
-        GridUtils.toCsv( grid, response.getWriter() );
+
+        GridWriter writer = new CsvGridWriter( response.getWriter() );
+        analyticsService.writeRawDataValues( params, writer );
+        writer.close();
     }
 
     // -------------------------------------------------------------------------
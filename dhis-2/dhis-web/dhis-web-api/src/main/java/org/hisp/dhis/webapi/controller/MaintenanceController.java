@@ -28,6 +28,7 @@ package org.hisp.dhis.webapi.controller;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.analytics.AnalyticsCache;
 import org.hisp.dhis.analytics.AnalyticsTableService;
 import org.hisp.dhis.analytics.partition.PartitionManager;
 import org.hisp.dhis.appmanager.AppManager;
@@ -47,6 +48,7 @@ import org.hisp.dhis.common.DhisApiVersion;
 import org.hisp.dhis.webapi.service.WebMessageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -84,6 +86,9 @@ public class MaintenanceController
     @Autowired
     private PartitionManager partitionManager;
 
+    @Autowired
+    private AnalyticsCache analyticsCache;
+
     @Autowired
     private RenderService renderService;
 
@@ -213,6 +218,24 @@ public class MaintenanceController
     {
         cacheManager.clearCache();
         partitionManager.clearCaches();
+        analyticsCache.invalidateAll();
+    }
+
+    @RequestMapping( value = "/analyticsCacheClear", method = { RequestMethod.PUT, RequestMethod.POST } )
+    @PreAuthorize( "hasRole('ALL') or hasRole('F_PERFORM_MAINTENANCE')" )
+    @ResponseStatus( HttpStatus.NO_CONTENT )
+    public void clearAnalyticsCache()
+    {
+        analyticsCache.invalidateAll();
+    }
+
+    @RequestMapping( value = "/analyticsCacheStatistics", method = RequestMethod.GET )
+    @PreAuthorize( "hasRole('ALL') or hasRole('F_PERFORM_MAINTENANCE')" )
+    public void getAnalyticsCacheStatistics( HttpServletResponse response )
+        throws IOException
+    {
+        response.setContentType( MediaType.APPLICATION_JSON_VALUE );
+        renderService.toJson( response.getOutputStream(), analyticsCache.getStatistics() );
     }
 
     @RequestMapping( value = "/dataPruning/organisationUnits/{uid}", method = { RequestMethod.PUT, RequestMethod.POST } )
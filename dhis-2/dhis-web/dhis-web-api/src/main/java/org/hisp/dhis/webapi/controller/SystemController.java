@@ -192,6 +192,15 @@ public class SystemController
         renderService.toJson( response.getOutputStream(), notifier.getNotifications() );
     }
 
+    @RequestMapping( value = "/tasks/counts", method = RequestMethod.GET, produces = { "*/*", "application/json" } )
+    public void getTaskCountsJson( HttpServletResponse response )
+        throws IOException
+    {
+        setNoStore( response );
+
+        renderService.toJson( response.getOutputStream(), notifier.getNotificationCounts() );
+    }
+
     @RequestMapping( value = "/tasks/{jobType}", method = RequestMethod.GET, produces = { "*/*", "application/json" } )
     public void getTaskJson( @PathVariable( "jobType" ) String jobType, @RequestParam( required = false ) String lastId, HttpServletResponse response )
         throws IOException